@@ -0,0 +1,40 @@
+package com.example.android.quakereport;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.SystemClock;
+
+/**
+ * {@link SyncScheduler} that starts the {@link SyncService} with an inexact, non-waking alarm.
+ * The alarm does not wake the device up: it goes off with the next wakeup the system batches
+ * it with, so syncs do not cost a wakeup of their own.
+ */
+public class AlarmSyncScheduler implements SyncScheduler {
+
+    private final Context mContext;
+
+    public AlarmSyncScheduler(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    @Override
+    public void schedule(long delayMillis) {
+        AlarmManager alarmManager = (AlarmManager) mContext.getSystemService(Context.ALARM_SERVICE);
+        // On KitKat and later set() is inexact, so the system can batch it with other alarms
+        alarmManager.set(AlarmManager.ELAPSED_REALTIME,
+                SystemClock.elapsedRealtime() + delayMillis, getSyncIntent());
+    }
+
+    @Override
+    public void cancel() {
+        AlarmManager alarmManager = (AlarmManager) mContext.getSystemService(Context.ALARM_SERVICE);
+        alarmManager.cancel(getSyncIntent());
+    }
+
+    private PendingIntent getSyncIntent() {
+        Intent intent = new Intent(mContext, SyncService.class);
+        return PendingIntent.getService(mContext, 0, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.android.quakereport;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Evaluates the alert rules against every batch of earthquakes downloaded, and remembers the
+ * earthquakes it alerted for, so each one alerts only once even though it shows up again in
+ * later downloads, with revised fields.
+ * <p>
+ * An id is kept until its earthquake is older than the longest time window of the rules, after
+ * which it cannot match again. At most {@link #MAX_ALERTED_IDS} ids are kept, so rules matching
+ * nearly every earthquake over a long window do not grow the state without bound.
+ * <p>
+ * This class has no Android dependencies. It is thread-safe.
+ */
+public class AlertEngine {
+
+    /**
+     * Largest number of alerted earthquake ids remembered
+     */
+    public static final int MAX_ALERTED_IDS = 10000;
+
+    private volatile AlertIndex mIndex;
+
+    /**
+     * Times of the earthquakes alerted for by id, in the order of the alerts
+     */
+    private final LinkedHashMap<String, Long> mAlertedIds = new LinkedHashMap<>();
+
+    /**
+     * An earthquake that matched a rule
+     */
+    public static final class Alert {
+        private final Earthquake mEarthquake;
+        private final AlertRule mRule;
+
+        Alert(Earthquake earthquake, AlertRule rule) {
+            mEarthquake = earthquake;
+            mRule = rule;
+        }
+
+        public Earthquake getEarthquake() {
+            return mEarthquake;
+        }
+
+        /**
+         * Returns the first rule the earthquake matched
+         */
+        public AlertRule getRule() {
+            return mRule;
+        }
+    }
+
+    /**
+     * Constructs a new {@link AlertEngine}
+     *
+     * @param index      compiled rules
+     * @param alertedIds times of the earthquakes already alerted for by id, i.e. as saved from
+     *                   {@link #getAlertedIds()}
+     */
+    public AlertEngine(AlertIndex index, Map<String, Long> alertedIds) {
+        mIndex = index;
+        for (Map.Entry<String, Long> alerted : alertedIds.entrySet()) {
+            markAlerted(alerted.getKey(), alerted.getValue());
+        }
+    }
+
+    /**
+     * Replaces the rules, keeping the ids already alerted for
+     */
+    public void setIndex(AlertIndex index) {
+        mIndex = index;
+    }
+
+    public AlertIndex getIndex() {
+        return mIndex;
+    }
+
+    /**
+     * Matches a batch of earthquakes against the rules
+     *
+     * @param now current time, the end of the time windows of the rules
+     * @return alerts for the earthquakes that matched a rule and were not alerted for before
+     */
+    public List<Alert> evaluate(EarthquakeTable earthquakes, long now) {
+        AlertIndex index = mIndex;
+        if (index.size() == 0) {
+            return Collections.emptyList();
+        }
+        List<Alert> alerts = new ArrayList<>();
+        for (int row = 0; row < earthquakes.size(); row++) {
+            if (earthquakes.isDeleted(row)) {
+                continue;
+            }
+            int position = index.findRule(earthquakes.getMagnitude(row),
+                    earthquakes.getLatitude(row), earthquakes.getLongitude(row),
+                    earthquakes.getTimeInMilliseconds(row), now);
+            if (position >= 0 && markAlerted(earthquakes.getId(row),
+                    earthquakes.getTimeInMilliseconds(row))) {
+                alerts.add(new Alert(earthquakes.get(row), index.getRule(position)));
+            }
+        }
+        forgetBefore(now - index.getMaxWindowMillis());
+        return alerts;
+    }
+
+    /**
+     * Returns the times of the earthquakes alerted for by id, in the order of the alerts
+     */
+    public synchronized Map<String, Long> getAlertedIds() {
+        return new LinkedHashMap<>(mAlertedIds);
+    }
+
+    /**
+     * Remembers that an earthquake was alerted for
+     *
+     * @return false if it already was
+     */
+    private synchronized boolean markAlerted(String id, long timeInMilliseconds) {
+        if (mAlertedIds.containsKey(id)) {
+            return false;
+        }
+        mAlertedIds.put(id, timeInMilliseconds);
+        if (mAlertedIds.size() > MAX_ALERTED_IDS) {
+            // Drop the earthquake that happened first, the next to leave the windows anyway
+            Map.Entry<String, Long> oldest = null;
+            for (Map.Entry<String, Long> alerted : mAlertedIds.entrySet()) {
+                if (oldest == null || alerted.getValue() < oldest.getValue()) {
+                    oldest = alerted;
+                }
+            }
+            mAlertedIds.remove(oldest.getKey());
+        }
+        return true;
+    }
+
+    /**
+     * Forgets the earthquakes that happened before the given time, which no rule matches
+     */
+    private synchronized void forgetBefore(long timeInMilliseconds) {
+        Iterator<Long> times = mAlertedIds.values().iterator();
+        while (times.hasNext()) {
+            if (times.next() < timeInMilliseconds) {
+                times.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.example.android.quakereport;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Alert rules compiled for matching many earthquakes against many rules, so the cost of an
+ * earthquake grows with the rules that could match it rather than with all of them.
+ * <p>
+ * The world is split into a grid of {@link #CELL_DEGREES} degree cells, and every rule with a
+ * site is listed in the cells its circle overlaps, including across the antimeridian and over
+ * the poles. An earthquake only looks at the rules of its own cell, plus the rules matching
+ * anywhere. Every list is sorted by minimum magnitude, so the scan stops at the first rule
+ * asking for more than the earthquake has; an earthquake below every threshold, the common
+ * case, costs a single comparison.
+ * <p>
+ * This class has no Android dependencies. It is immutable and can be shared between threads.
+ */
+public class AlertIndex {
+
+    /**
+     * Size of a grid cell in degrees of latitude and longitude
+     */
+    public static final double CELL_DEGREES = 5;
+
+    private static final int ROWS = (int) (180 / CELL_DEGREES);
+    private static final int COLUMNS = (int) (360 / CELL_DEGREES);
+
+    private static final double EARTH_RADIUS_KM = 6371.0088;
+
+    /**
+     * Margin in degrees added around the box of a circle, against rounding errors
+     */
+    private static final double MARGIN_DEGREES = 1e-6;
+
+    private static final int[] NO_RULES = new int[0];
+
+    private final AlertRule[] mRules;
+
+    /**
+     * Positions of the rules with a site overlapping each cell, by ascending minimum magnitude
+     */
+    private final int[][] mCells;
+
+    /**
+     * Positions of the rules matching anywhere, by ascending minimum magnitude
+     */
+    private final int[] mGlobalRules;
+
+    /**
+     * Smallest minimum magnitude of all rules
+     */
+    private final double mMinMagnitude;
+
+    /**
+     * Longest time window of all rules
+     */
+    private final long mMaxWindowMillis;
+
+    public AlertIndex(List<AlertRule> rules) {
+        mRules = rules.toArray(new AlertRule[rules.size()]);
+        mCells = new int[ROWS * COLUMNS][];
+
+        Integer[] order = new Integer[mRules.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Double.compare(mRules[a].getMinMagnitude(), mRules[b].getMinMagnitude());
+            }
+        });
+
+        // Count the rules of every cell, then fill them in order of magnitude
+        int[] counts = new int[mCells.length];
+        int globalCount = 0;
+        long maxWindowMillis = 0;
+        for (AlertRule rule : mRules) {
+            maxWindowMillis = Math.max(maxWindowMillis, rule.getWindowMillis());
+            if (rule.isGlobal()) {
+                globalCount++;
+            } else {
+                for (int cell : getCells(rule)) {
+                    counts[cell]++;
+                }
+            }
+        }
+        for (int cell = 0; cell < mCells.length; cell++) {
+            mCells[cell] = counts[cell] == 0 ? NO_RULES : new int[counts[cell]];
+        }
+        mGlobalRules = new int[globalCount];
+        Arrays.fill(counts, 0);
+        globalCount = 0;
+        for (int position : order) {
+            AlertRule rule = mRules[position];
+            if (rule.isGlobal()) {
+                mGlobalRules[globalCount++] = position;
+            } else {
+                for (int cell : getCells(rule)) {
+                    mCells[cell][counts[cell]++] = position;
+                }
+            }
+        }
+        mMinMagnitude = order.length > 0
+                ? mRules[order[0]].getMinMagnitude() : Double.POSITIVE_INFINITY;
+        mMaxWindowMillis = maxWindowMillis;
+    }
+
+    /**
+     * Returns the number of rules
+     */
+    public int size() {
+        return mRules.length;
+    }
+
+    /**
+     * Returns the longest time window of the rules, 0 if there are none; no earthquake older
+     * than that matches
+     */
+    public long getMaxWindowMillis() {
+        return mMaxWindowMillis;
+    }
+
+    /**
+     * Returns the rule at the given position of the list the index was built from
+     */
+    public AlertRule getRule(int position) {
+        return mRules[position];
+    }
+
+    /**
+     * Finds the first rule, in the order of the list the index was built from, that an
+     * earthquake with the given fields matches
+     *
+     * @param latitude  latitude of the epicenter, or NaN if it is unknown
+     * @param longitude longitude of the epicenter, or NaN if it is unknown
+     * @param now       current time, the end of the time windows
+     * @return position of the rule, or -1 if none matches
+     */
+    public int findRule(double magnitude, double latitude, double longitude,
+                        long timeInMilliseconds, long now) {
+        if (!(magnitude >= mMinMagnitude)) {
+            return -1;
+        }
+        int found = findRule(mGlobalRules, Integer.MAX_VALUE, magnitude, latitude, longitude,
+                timeInMilliseconds, now);
+        if (!Double.isNaN(latitude) && !Double.isNaN(longitude)) {
+            found = findRule(mCells[getCell(latitude, longitude)], found, magnitude, latitude,
+                    longitude, timeInMilliseconds, now);
+        }
+        return found == Integer.MAX_VALUE ? -1 : found;
+    }
+
+    private int findRule(int[] positions, int found, double magnitude, double latitude,
+                         double longitude, long timeInMilliseconds, long now) {
+        for (int position : positions) {
+            AlertRule rule = mRules[position];
+            if (rule.getMinMagnitude() > magnitude) {
+                break;
+            }
+            if (position < found
+                    && rule.matches(magnitude, latitude, longitude, timeInMilliseconds, now)) {
+                found = position;
+            }
+        }
+        return found;
+    }
+
+    private static int getCell(double latitude, double longitude) {
+        return getRow(latitude) * COLUMNS + getColumn(longitude);
+    }
+
+    private static int getRow(double latitude) {
+        int row = (int) Math.floor((latitude + 90) / CELL_DEGREES);
+        return Math.max(0, Math.min(ROWS - 1, row));
+    }
+
+    private static int getColumn(double longitude) {
+        int column = (int) Math.floor((longitude + 180) / CELL_DEGREES) % COLUMNS;
+        return column < 0 ? column + COLUMNS : column;
+    }
+
+    /**
+     * Returns the cells overlapping the bounding box of the circle of a rule
+     */
+    private static int[] getCells(AlertRule rule) {
+        double angle = rule.getRadiusKm() / EARTH_RADIUS_KM;
+        double latitude = rule.getLatitude();
+        double latitudeDelta = Math.toDegrees(angle) + MARGIN_DEGREES;
+        double south = latitude - latitudeDelta;
+        double north = latitude + latitudeDelta;
+
+        // A circle around a pole spans every longitude; otherwise its widest point is
+        // narrower than its latitude extent by the cosine of the latitude
+        int firstColumn = 0;
+        int columns = COLUMNS;
+        if (south > -90 && north < 90) {
+            double sine = Math.sin(angle) / Math.cos(Math.toRadians(latitude));
+            if (sine < 1) {
+                double longitudeDelta = Math.toDegrees(Math.asin(sine)) + MARGIN_DEGREES;
+                double west = rule.getLongitude() - longitudeDelta;
+                firstColumn = (int) Math.floor((west + 180) / CELL_DEGREES);
+                int lastColumn = (int) Math.floor(
+                        (rule.getLongitude() + longitudeDelta + 180) / CELL_DEGREES);
+                columns = Math.min(COLUMNS, lastColumn - firstColumn + 1);
+            }
+        }
+
+        int firstRow = getRow(south);
+        int lastRow = getRow(north);
+        int[] cells = new int[(lastRow - firstRow + 1) * columns];
+        int i = 0;
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column < firstColumn + columns; column++) {
+                int wrapped = column % COLUMNS;
+                cells[i++] = row * COLUMNS + (wrapped < 0 ? wrapped + COLUMNS : wrapped);
+            }
+        }
+        return cells;
+    }
+}
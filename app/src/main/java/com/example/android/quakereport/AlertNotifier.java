@@ -0,0 +1,150 @@
+package com.example.android.quakereport;
+
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.support.v4.app.NotificationCompat;
+import android.support.v4.app.NotificationManagerCompat;
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Posts a notification for every fetched earthquake matching one of the alert rules set in the
+ * settings. Rules are evaluated on the thread that fetched the earthquakes, never the main
+ * thread; they are compiled again only when the settings change.
+ */
+public class AlertNotifier implements QueryUtils.BatchListener {
+
+    /**
+     * File of the ids of the earthquakes already alerted for, so they do not alert again after
+     * the process restarts
+     */
+    private static final String STATE_FILE = "alerts";
+    private static final String ALERTED_IDS_KEY = "alerted_ids";
+
+    /**
+     * Separator of the saved ids, and of an id from the time of its earthquake; USGS event ids
+     * are alphanumeric
+     */
+    private static final String ID_SEPARATOR = ",";
+    private static final char TIME_SEPARATOR = ':';
+
+    /**
+     * Id of the alert notifications, told apart by the earthquake id as their tag
+     */
+    private static final int NOTIFICATION_ID = 1;
+
+    private final Context mContext;
+
+    /**
+     * Engine, created on the first batch so the saved state is not read on the main thread
+     */
+    private AlertEngine mEngine;
+
+    /**
+     * Rules the engine was compiled from, as written in the settings
+     */
+    private String mRules;
+
+    public AlertNotifier(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    @Override
+    public void onBatch(EarthquakeTable earthquakes) {
+        AlertEngine engine = getEngine();
+        List<AlertEngine.Alert> alerts = engine.evaluate(earthquakes, System.currentTimeMillis());
+        if (alerts.isEmpty()) {
+            return;
+        }
+        saveAlertedIds(engine);
+        for (AlertEngine.Alert alert : alerts) {
+            notify(alert);
+        }
+    }
+
+    /**
+     * Returns the engine, with the rules currently set in the settings
+     */
+    private synchronized AlertEngine getEngine() {
+        String rules = EarthquakePreferences.getAlertRules(mContext);
+        if (mEngine == null) {
+            SharedPreferences state = mContext.getSharedPreferences(STATE_FILE,
+                    Context.MODE_PRIVATE);
+            mEngine = new AlertEngine(new AlertIndex(AlertRule.parseAll(rules)),
+                    parseAlertedIds(state.getString(ALERTED_IDS_KEY, "")));
+            mRules = rules;
+        } else if (!rules.equals(mRules)) {
+            mEngine.setIndex(new AlertIndex(AlertRule.parseAll(rules)));
+            mRules = rules;
+        }
+        return mEngine;
+    }
+
+    /**
+     * Saves the ids alerted for; synchronized so an older list is not saved over a newer one
+     */
+    private synchronized void saveAlertedIds(AlertEngine engine) {
+        List<String> entries = new ArrayList<>();
+        for (Map.Entry<String, Long> alerted : engine.getAlertedIds().entrySet()) {
+            entries.add(alerted.getKey() + TIME_SEPARATOR + alerted.getValue());
+        }
+        mContext.getSharedPreferences(STATE_FILE, Context.MODE_PRIVATE).edit()
+                .putString(ALERTED_IDS_KEY, TextUtils.join(ID_SEPARATOR, entries))
+                .apply();
+    }
+
+    /**
+     * Parses the saved ids with the times of their earthquakes. Ids saved without a time count
+     * as alerted now, so they are kept for one more time window.
+     */
+    private static Map<String, Long> parseAlertedIds(String saved) {
+        Map<String, Long> alertedIds = new LinkedHashMap<>();
+        if (saved.isEmpty()) {
+            return alertedIds;
+        }
+        long now = System.currentTimeMillis();
+        for (String entry : saved.split(ID_SEPARATOR)) {
+            int separator = entry.indexOf(TIME_SEPARATOR);
+            if (separator < 0) {
+                alertedIds.put(entry, now);
+                continue;
+            }
+            try {
+                alertedIds.put(entry.substring(0, separator),
+                        Long.parseLong(entry.substring(separator + 1)));
+            } catch (NumberFormatException e) {
+                // Skip a damaged entry
+            }
+        }
+        return alertedIds;
+    }
+
+    private void notify(AlertEngine.Alert alert) {
+        Earthquake earthquake = alert.getEarthquake();
+        String magnitude = String.format(Locale.getDefault(), "%.1f", earthquake.getMagnitude());
+        Intent intent = new Intent(Intent.ACTION_VIEW, Uri.parse(earthquake.getUrl()));
+        PendingIntent contentIntent = PendingIntent.getActivity(mContext, 0, intent, 0);
+
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(mContext)
+                .setSmallIcon(R.mipmap.ic_launcher)
+                .setContentTitle(mContext.getString(R.string.alert_notification_title,
+                        magnitude, earthquake.getLocation()))
+                .setContentText(mContext.getString(R.string.alert_notification_text,
+                        alert.getRule().getDefinition()))
+                .setWhen(earthquake.getTimeInMilliseconds())
+                .setCategory(NotificationCompat.CATEGORY_EVENT)
+                .setPriority(NotificationCompat.PRIORITY_HIGH)
+                .setContentIntent(contentIntent)
+                .setAutoCancel(true);
+        NotificationManagerCompat.from(mContext)
+                .notify(earthquake.getId(), NOTIFICATION_ID, builder.build());
+    }
+}
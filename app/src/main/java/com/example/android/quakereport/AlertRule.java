@@ -0,0 +1,213 @@
+package com.example.android.quakereport;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A user-defined alert: earthquakes of at least a magnitude, within a radius around a site or
+ * anywhere, that happened within a time window before they are seen.
+ * <p>
+ * Rules are written as whitespace separated tokens in any order, e.g. {@code "M6 500km
+ * 35.68,139.69 12h"}: {@code M<magnitude>} (required), {@code <radius>km} together with
+ * {@code <latitude>,<longitude>}, and {@code <hours>h} or {@code <days>d}. Without a radius the
+ * rule matches anywhere; without a window it uses {@link #DEFAULT_WINDOW_MILLIS}.
+ * <p>
+ * This class has no Android dependencies. It is immutable.
+ */
+public final class AlertRule {
+
+    /**
+     * Time window of rules that do not give one, so a backfill of old events does not alert
+     */
+    public static final long DEFAULT_WINDOW_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * Separators between the rules of {@link #parseAll(String)}
+     */
+    private static final String RULE_SEPARATORS = "[;\\n]";
+
+    private static final double EARTH_RADIUS_KM = 6371.0088;
+
+    private final String mDefinition;
+    private final double mMinMagnitude;
+    private final double mLatitude;
+    private final double mLongitude;
+    private final double mRadiusKm;
+    private final long mWindowMillis;
+
+    /**
+     * Constructs a new {@link AlertRule}
+     *
+     * @param definition   text the rule was parsed from, shown in its alerts
+     * @param minMagnitude smallest magnitude that matches
+     * @param latitude     latitude of the site in degrees, ignored if the radius is infinite
+     * @param longitude    longitude of the site in degrees, ignored if the radius is infinite
+     * @param radiusKm     largest distance in kilometers from the site that matches, or
+     *                     {@link Double#POSITIVE_INFINITY} to match anywhere
+     * @param windowMillis largest age of a matching earthquake
+     */
+    public AlertRule(String definition, double minMagnitude, double latitude, double longitude,
+                     double radiusKm, long windowMillis) {
+        mDefinition = definition;
+        mMinMagnitude = minMagnitude;
+        mLatitude = latitude;
+        mLongitude = longitude;
+        mRadiusKm = radiusKm;
+        mWindowMillis = windowMillis;
+    }
+
+    /**
+     * Parses one rule
+     *
+     * @return the rule, or null if the definition is not valid
+     */
+    public static AlertRule parse(String definition) {
+        String trimmed = definition.trim();
+        double minMagnitude = Double.NaN;
+        double latitude = Double.NaN;
+        double longitude = Double.NaN;
+        double radiusKm = Double.POSITIVE_INFINITY;
+        long windowMillis = DEFAULT_WINDOW_MILLIS;
+        try {
+            for (String token : trimmed.toLowerCase(Locale.US).split("\\s+")) {
+                if (token.startsWith("m")) {
+                    minMagnitude = Double.parseDouble(token.substring(1));
+                } else if (token.endsWith("km")) {
+                    radiusKm = Double.parseDouble(token.substring(0, token.length() - 2));
+                } else if (token.endsWith("h")) {
+                    windowMillis = (long) (Double.parseDouble(
+                            token.substring(0, token.length() - 1)) * TimeUnit.HOURS.toMillis(1));
+                } else if (token.endsWith("d")) {
+                    windowMillis = (long) (Double.parseDouble(
+                            token.substring(0, token.length() - 1)) * TimeUnit.DAYS.toMillis(1));
+                } else if (token.indexOf(',') > 0) {
+                    int comma = token.indexOf(',');
+                    latitude = Double.parseDouble(token.substring(0, comma));
+                    longitude = Double.parseDouble(token.substring(comma + 1));
+                } else {
+                    return null;
+                }
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        boolean hasSite = !Double.isNaN(latitude) && !Double.isNaN(longitude);
+        if (Double.isNaN(minMagnitude) || windowMillis <= 0 || !(radiusKm > 0)
+                || hasSite == Double.isInfinite(radiusKm)) {
+            return null;
+        }
+        if (hasSite && (Math.abs(latitude) > 90 || Math.abs(longitude) > 180)) {
+            return null;
+        }
+        return new AlertRule(trimmed, minMagnitude, latitude, longitude, radiusKm, windowMillis);
+    }
+
+    /**
+     * Parses rules separated by newlines or semicolons, skipping blank and invalid ones; see
+     * {@link #findInvalid(String)} to report the invalid ones
+     */
+    public static List<AlertRule> parseAll(String definitions) {
+        List<AlertRule> rules = new ArrayList<>();
+        if (definitions == null) {
+            return rules;
+        }
+        for (String definition : definitions.split(RULE_SEPARATORS)) {
+            if (definition.trim().isEmpty()) {
+                continue;
+            }
+            AlertRule rule = parse(definition);
+            if (rule != null) {
+                rules.add(rule);
+            }
+        }
+        return rules;
+    }
+
+    /**
+     * Returns the rules, separated by newlines or semicolons, that are not valid, trimmed
+     */
+    public static List<String> findInvalid(String definitions) {
+        List<String> invalid = new ArrayList<>();
+        if (definitions == null) {
+            return invalid;
+        }
+        for (String definition : definitions.split(RULE_SEPARATORS)) {
+            String trimmed = definition.trim();
+            if (!trimmed.isEmpty() && parse(trimmed) == null) {
+                invalid.add(trimmed);
+            }
+        }
+        return invalid;
+    }
+
+    public String getDefinition() {
+        return mDefinition;
+    }
+
+    public double getMinMagnitude() {
+        return mMinMagnitude;
+    }
+
+    public double getLatitude() {
+        return mLatitude;
+    }
+
+    public double getLongitude() {
+        return mLongitude;
+    }
+
+    public double getRadiusKm() {
+        return mRadiusKm;
+    }
+
+    public long getWindowMillis() {
+        return mWindowMillis;
+    }
+
+    /**
+     * Returns true if the rule matches anywhere on earth
+     */
+    public boolean isGlobal() {
+        return Double.isInfinite(mRadiusKm);
+    }
+
+    /**
+     * Returns true if an earthquake with the given fields matches the rule
+     *
+     * @param latitude  latitude of the epicenter, or NaN if it is unknown
+     * @param longitude longitude of the epicenter, or NaN if it is unknown
+     * @param now       current time, the end of the time window
+     */
+    public boolean matches(double magnitude, double latitude, double longitude,
+                           long timeInMilliseconds, long now) {
+        if (magnitude < mMinMagnitude || timeInMilliseconds < now - mWindowMillis) {
+            return false;
+        }
+        if (isGlobal()) {
+            return true;
+        }
+        return distanceKm(mLatitude, mLongitude, latitude, longitude) <= mRadiusKm;
+    }
+
+    /**
+     * Returns the great circle distance in kilometers between two points, or NaN if one of
+     * them is unknown
+     */
+    public static double distanceKm(double latitude1, double longitude1, double latitude2,
+                                    double longitude2) {
+        double phi1 = Math.toRadians(latitude1);
+        double phi2 = Math.toRadians(latitude2);
+        double sinHalfPhi = Math.sin((phi2 - phi1) / 2);
+        double sinHalfLambda = Math.sin(Math.toRadians(longitude2 - longitude1) / 2);
+        double a = sinHalfPhi * sinHalfPhi
+                + Math.cos(phi1) * Math.cos(phi2) * sinHalfLambda * sinHalfLambda;
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    @Override
+    public String toString() {
+        return mDefinition;
+    }
+}
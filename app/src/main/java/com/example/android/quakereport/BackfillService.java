@@ -0,0 +1,127 @@
+package com.example.android.quakereport;
+
+import android.app.IntentService;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Downloads the earthquake history of a time range into the {@link EarthquakeStore} for
+ * offline use, with a {@link CatalogBackfill}. The completed slices are checkpointed after
+ * every slice and the intent is redelivered if the process is killed, so the download resumes
+ * where it stopped.
+ */
+public class BackfillService extends IntentService {
+
+    /**
+     * Tag for log messages
+     */
+    private static final String LOG_TAG = BackfillService.class.getSimpleName();
+
+    private static final String EXTRA_START = "start";
+    private static final String EXTRA_END = "end";
+    private static final String EXTRA_MIN_MAGNITUDE = "min_magnitude";
+
+    private static final String PREFS_NAME = "backfill_state";
+
+    /**
+     * Most events a USGS query returns
+     */
+    private static final int USGS_RESULT_CAP = 20000;
+
+    /**
+     * Number of slices downloaded at the same time
+     */
+    private static final int MAX_CONCURRENT_SLICES = 3;
+
+    private static final long INITIAL_SLICE_MILLIS = TimeUnit.DAYS.toMillis(30);
+    private static final long MIN_SLICE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    public BackfillService() {
+        super(BackfillService.class.getSimpleName());
+        // Start over from the checkpoint if the process is killed during a download
+        setIntentRedelivery(true);
+    }
+
+    /**
+     * Starts downloading the earthquakes of at least the given magnitude between two times
+     */
+    public static void start(Context context, long startMillis, long endMillis,
+                             double minMagnitude) {
+        Intent intent = new Intent(context, BackfillService.class)
+                .putExtra(EXTRA_START, startMillis)
+                .putExtra(EXTRA_END, endMillis)
+                .putExtra(EXTRA_MIN_MAGNITUDE, minMagnitude);
+        context.startService(intent);
+    }
+
+    @Override
+    protected void onHandleIntent(Intent intent) {
+        long start = intent.getLongExtra(EXTRA_START, 0);
+        long end = intent.getLongExtra(EXTRA_END, 0);
+        final double minMagnitude = intent.getDoubleExtra(EXTRA_MIN_MAGNITUDE, 0);
+
+        final SharedPreferences state = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+        final String checkpointKey = minMagnitude + ":" + start + ":" + end;
+        TimeRangeSet checkpoint = TimeRangeSet.decode(state.getString(checkpointKey, null));
+        final EarthquakeStore store = EarthquakeStore.getInstance(this);
+
+        ExecutorService executor = Executors.newFixedThreadPool(MAX_CONCURRENT_SLICES);
+        CatalogBackfill backfill = new CatalogBackfill(new CatalogBackfill.SliceSource() {
+            @Override
+            public EarthquakeTable fetch(long startMillis, long endMillis, int offset, int limit)
+                    throws IOException {
+                String url = buildSliceUrl(startMillis, endMillis, minMagnitude, offset, limit);
+                EarthquakeTable earthquakes = QueryUtils.fetchEarthquakeData(url);
+                if (earthquakes == null) {
+                    throw new IOException("Could not fetch " + url);
+                }
+                return earthquakes;
+            }
+        }, executor, MAX_CONCURRENT_SLICES, USGS_RESULT_CAP, INITIAL_SLICE_MILLIS,
+                MIN_SLICE_MILLIS);
+
+        try {
+            boolean complete = backfill.run(start, end, checkpoint, new CatalogBackfill.Listener() {
+                @Override
+                public void onSlice(long startMillis, long endMillis, EarthquakeTable earthquakes,
+                                    TimeRangeSet checkpoint) {
+                    store.merge(earthquakes);
+                    // Only checkpoint what is safely in the store
+                    state.edit().putString(checkpointKey, checkpoint.encode()).apply();
+                }
+            });
+            if (complete) {
+                state.edit().remove(checkpointKey).apply();
+            } else {
+                Log.e(LOG_TAG, backfill.getFailedSlices() + " slices failed, they are fetched "
+                        + "again when the backfill is restarted");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static String buildSliceUrl(long startMillis, long endMillis, double minMagnitude,
+                                        int offset, int limit) {
+        UsgsQueryBuilder builder = new UsgsQueryBuilder()
+                .format(UsgsQueryBuilder.Format.CSV)
+                .eventType(UsgsQueryBuilder.EVENT_TYPE_EARTHQUAKE)
+                .timeWindow(startMillis, endMillis)
+                .minMagnitude(minMagnitude)
+                .limit(limit)
+                .orderBy(EarthquakeQuery.ORDER_BY_TIME);
+        if (offset > 0) {
+            builder.offset(offset);
+        }
+        return builder.build();
+    }
+}
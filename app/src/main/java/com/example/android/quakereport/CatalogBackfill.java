@@ -0,0 +1,198 @@
+package com.example.android.quakereport;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+
+/**
+ * Downloads every earthquake of a long time range. USGS caps the number of events a query
+ * returns, so the range is cut into time slices that are fetched in parallel; a slice that
+ * comes back full is split in two and fetched again, so dense periods end up in short slices
+ * and quiet ones in long slices. A full slice too short to be split is fetched a page at a
+ * time instead. Every slice is handed to the {@link Listener} as soon as it arrives and then
+ * dropped, so at most one slice per running download is held in memory.
+ * Completed slices are recorded in a {@link TimeRangeSet}, so a backfill that was interrupted
+ * resumes where it stopped.
+ * <p>
+ * This class has no Android dependencies.
+ */
+public class CatalogBackfill {
+
+    /**
+     * Fetches the earthquakes of one time slice. Called on the executor.
+     */
+    public interface SliceSource {
+        /**
+         * @param startMillis start of the slice, inclusive
+         * @param endMillis   end of the slice, exclusive
+         * @param offset      number of earthquakes of the slice to skip, in the order of the
+         *                    response, 0 for the first page
+         * @param limit       maximum number of earthquakes to return
+         */
+        EarthquakeTable fetch(long startMillis, long endMillis, int offset, int limit)
+                throws IOException;
+    }
+
+    /**
+     * Receives the slices, one at a time on the thread running the backfill
+     */
+    public interface Listener {
+        /**
+         * Called with the earthquakes of a completed slice, or of a page of a slice fetched a
+         * page at a time. A slice is added to the checkpoint before its last page is handed
+         * over; the checkpoint should be saved once the earthquakes are stored.
+         */
+        void onSlice(long startMillis, long endMillis, EarthquakeTable earthquakes,
+                     TimeRangeSet checkpoint);
+    }
+
+    private final SliceSource mSource;
+    private final Executor mExecutor;
+    private final int mMaxConcurrent;
+    private final int mResultCap;
+    private final long mInitialSliceMillis;
+    private final long mMinSliceMillis;
+
+    private int mFailedSlices;
+    private int mSplitSlices;
+    private int mPagedSlices;
+
+    /**
+     * Constructs a new {@link CatalogBackfill}
+     *
+     * @param source             fetches one slice
+     * @param executor           executor the slices are fetched on
+     * @param maxConcurrent      maximum number of slices fetched at the same time
+     * @param resultCap          number of events a query returns at most
+     * @param initialSliceMillis length of the slices the range is first cut into
+     * @param minSliceMillis     length under which a full slice is not split any further, but
+     *                           fetched a page at a time
+     */
+    public CatalogBackfill(SliceSource source, Executor executor, int maxConcurrent, int resultCap,
+                           long initialSliceMillis, long minSliceMillis) {
+        mSource = source;
+        mExecutor = executor;
+        mMaxConcurrent = Math.max(1, maxConcurrent);
+        mResultCap = resultCap;
+        mInitialSliceMillis = Math.max(1, initialSliceMillis);
+        mMinSliceMillis = Math.max(1, minSliceMillis);
+    }
+
+    /**
+     * Downloads the parts of the range that are not in the checkpoint yet. A slice that fails
+     * is left out of the checkpoint, to be fetched by the next run.
+     *
+     * @param startMillis start of the range, inclusive
+     * @param endMillis   end of the range, exclusive
+     * @param checkpoint  slices already downloaded; completed slices are added to it
+     * @param listener    receives every completed slice
+     * @return true if the whole range is downloaded
+     * @throws InterruptedException if the thread was interrupted; completed slices are kept
+     */
+    public boolean run(long startMillis, long endMillis, TimeRangeSet checkpoint,
+                       Listener listener) throws InterruptedException {
+        mFailedSlices = 0;
+        mSplitSlices = 0;
+        mPagedSlices = 0;
+
+        // Start, end and offset of the slices left to fetch
+        Deque<long[]> pending = new ArrayDeque<>();
+        for (long[] gap : checkpoint.getGaps(startMillis, endMillis)) {
+            for (long start = gap[0]; start < gap[1]; start += mInitialSliceMillis) {
+                pending.add(new long[]{start, Math.min(gap[1], start + mInitialSliceMillis), 0});
+            }
+        }
+
+        CompletionService<SliceResult> completion = new ExecutorCompletionService<>(mExecutor);
+        int running = 0;
+        while (!pending.isEmpty() || running > 0) {
+            while (running < mMaxConcurrent && !pending.isEmpty()) {
+                final long[] slice = pending.poll();
+                completion.submit(new Callable<SliceResult>() {
+                    @Override
+                    public SliceResult call() throws Exception {
+                        return new SliceResult(slice[0], slice[1], (int) slice[2],
+                                mSource.fetch(slice[0], slice[1], (int) slice[2], mResultCap));
+                    }
+                });
+                running++;
+            }
+
+            Future<SliceResult> done = completion.take();
+            running--;
+            SliceResult result;
+            try {
+                result = done.get();
+            } catch (ExecutionException e) {
+                mFailedSlices++;
+                continue;
+            }
+
+            long length = result.mEnd - result.mStart;
+            boolean full = result.mEarthquakes.size() >= mResultCap;
+            if (full && result.mOffset == 0 && length > mMinSliceMillis) {
+                // The slice may have been cut off by the cap, fetch both halves instead
+                long middle = result.mStart + length / 2;
+                pending.addFirst(new long[]{middle, result.mEnd, 0});
+                pending.addFirst(new long[]{result.mStart, middle, 0});
+                mSplitSlices++;
+                continue;
+            }
+            if (full) {
+                // Too short to split: fetch the next page, and only then count the slice done
+                pending.addFirst(new long[]{result.mStart, result.mEnd,
+                        result.mOffset + result.mEarthquakes.size()});
+                if (result.mOffset == 0) {
+                    mPagedSlices++;
+                }
+                listener.onSlice(result.mStart, result.mEnd, result.mEarthquakes, checkpoint);
+                continue;
+            }
+            checkpoint.add(result.mStart, result.mEnd);
+            listener.onSlice(result.mStart, result.mEnd, result.mEarthquakes, checkpoint);
+        }
+        return checkpoint.covers(startMillis, endMillis);
+    }
+
+    /**
+     * Returns the number of slices that failed during the last run
+     */
+    public int getFailedSlices() {
+        return mFailedSlices;
+    }
+
+    /**
+     * Returns the number of full slices split in two during the last run
+     */
+    public int getSplitSlices() {
+        return mSplitSlices;
+    }
+
+    /**
+     * Returns the number of full slices too short to split that were fetched a page at a time
+     * during the last run
+     */
+    public int getPagedSlices() {
+        return mPagedSlices;
+    }
+
+    private static class SliceResult {
+        final long mStart;
+        final long mEnd;
+        final int mOffset;
+        final EarthquakeTable mEarthquakes;
+
+        SliceResult(long start, long end, int offset, EarthquakeTable earthquakes) {
+            mStart = start;
+            mEnd = end;
+            mOffset = offset;
+            mEarthquakes = earthquakes;
+        }
+    }
+}
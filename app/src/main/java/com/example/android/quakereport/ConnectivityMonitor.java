@@ -0,0 +1,162 @@
+package com.example.android.quakereport;
+
+import android.annotation.TargetApi;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkInfo;
+import android.net.NetworkRequest;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Follows whether the device is online, and tells its listeners when that changes. It only
+ * listens while it has listeners: through a network callback from Lollipop on, and through the
+ * connectivity broadcasts before. The {@link ConnectivityReceiver} tells it about the
+ * broadcasts while refreshes are queued.
+ * <p>
+ * When the network comes back, a listener refreshes what it shows, which syncs the queued
+ * refreshes along; with no listener, the {@link SyncService} syncs them.
+ * <p>
+ * Listeners are added, removed and called on the main thread.
+ */
+public final class ConnectivityMonitor {
+
+    /**
+     * Told when the device goes online or offline
+     */
+    public interface Listener {
+        void onConnectivityChanged(boolean connected);
+    }
+
+    private static ConnectivityMonitor sInstance;
+
+    private final Context mContext;
+    private final ConnectivityManager mConnectivityManager;
+    private final List<Listener> mListeners = new ArrayList<>();
+
+    private final BroadcastReceiver mReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            onNetworkChanged();
+        }
+    };
+
+    /**
+     * Network callback registered while there are listeners, from Lollipop on
+     */
+    private ConnectivityManager.NetworkCallback mNetworkCallback;
+
+    /**
+     * Whether the device was online at the last change
+     */
+    private boolean mConnected;
+
+    private ConnectivityMonitor(Context context) {
+        mContext = context;
+        mConnectivityManager =
+                (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+    }
+
+    /**
+     * Returns the monitor shared by the whole app
+     */
+    public static synchronized ConnectivityMonitor getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ConnectivityMonitor(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Returns true if the device has a connected network right now
+     */
+    public boolean isConnected() {
+        NetworkInfo networkInfo = mConnectivityManager.getActiveNetworkInfo();
+        return networkInfo != null && networkInfo.isConnected();
+    }
+
+    public void addListener(Listener listener) {
+        if (mListeners.isEmpty()) {
+            mConnected = isConnected();
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+                registerNetworkCallback();
+            } else {
+                mContext.registerReceiver(mReceiver,
+                        new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+            }
+        }
+        mListeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        if (mListeners.remove(listener) && mListeners.isEmpty()) {
+            if (mNetworkCallback != null) {
+                unregisterNetworkCallback();
+            } else {
+                mContext.unregisterReceiver(mReceiver);
+            }
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private void registerNetworkCallback() {
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+        final Runnable networkChanged = new Runnable() {
+            @Override
+            public void run() {
+                onNetworkChanged();
+            }
+        };
+        // Called on a thread of the system, the listeners are told on the main thread
+        mNetworkCallback = new ConnectivityManager.NetworkCallback() {
+            @Override
+            public void onAvailable(Network network) {
+                mainHandler.post(networkChanged);
+            }
+
+            @Override
+            public void onLost(Network network) {
+                mainHandler.post(networkChanged);
+            }
+        };
+        mConnectivityManager.registerNetworkCallback(new NetworkRequest.Builder()
+                .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                .build(), mNetworkCallback);
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private void unregisterNetworkCallback() {
+        mConnectivityManager.unregisterNetworkCallback(mNetworkCallback);
+        mNetworkCallback = null;
+    }
+
+    /**
+     * Called for every connectivity broadcast or network callback, which also come for a
+     * switch between two connected networks
+     */
+    void onNetworkChanged() {
+        boolean connected = isConnected();
+        boolean changed = connected != mConnected;
+        mConnected = connected;
+        if (mListeners.isEmpty()) {
+            if (connected) {
+                SyncService.drainRefreshQueue(mContext);
+            }
+            return;
+        }
+        if (changed) {
+            for (Listener listener : new ArrayList<>(mListeners)) {
+                listener.onConnectivityChanged(connected);
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.android.quakereport;
+
+import android.content.BroadcastReceiver;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+
+/**
+ * Wakes the app up when the network comes back while refreshes are queued, even if its
+ * process was killed meanwhile. It is only enabled while there are queued refreshes, so the
+ * app is not started for every network change.
+ */
+public class ConnectivityReceiver extends BroadcastReceiver {
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        ConnectivityMonitor.getInstance(context).onNetworkChanged();
+    }
+
+    /**
+     * Enables or disables the receiver. This is on a background thread.
+     */
+    static void setEnabled(Context context, boolean enabled) {
+        context.getPackageManager().setComponentEnabledSetting(
+                new ComponentName(context, ConnectivityReceiver.class),
+                enabled ? PackageManager.COMPONENT_ENABLED_STATE_ENABLED
+                        : PackageManager.COMPONENT_ENABLED_STATE_DISABLED,
+                PackageManager.DONT_KILL_APP);
+    }
+}
@@ -0,0 +1,473 @@
+package com.example.android.quakereport;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Disk-backed cache of HTTP response bodies with a size limit and least-recently-used eviction.
+ * Every response is kept as two files in the cache directory: the body and a small text file with
+ * the url and the validators (ETag, Last-Modified) used to revalidate it.
+ * <p>
+ * Bodies are written while the caller reads the network stream through an {@link Editor}, so a
+ * response never has to be buffered in memory to be cached. This class has no Android
+ * dependencies so it can be exercised against a local HTTP server on a plain JVM.
+ */
+public final class DiskResponseCache {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String BODY_SUFFIX = ".body";
+    private static final String META_SUFFIX = ".meta";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final File mDirectory;
+    private final long mMaxSize;
+
+    /**
+     * Entries in access order, so the eldest entry is the least recently used one
+     */
+    private final LinkedHashMap<String, Entry> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private long mSize;
+    private boolean mInitialized;
+
+    private int mHitCount;
+    private int mMissCount;
+    private int mRevalidationCount;
+
+    /**
+     * Constructs a new {@link DiskResponseCache}. The directory is only read on first use.
+     *
+     * @param directory directory the responses are written to
+     * @param maxSize   maximum number of bytes of response bodies kept on disk
+     */
+    public DiskResponseCache(File directory, long maxSize) {
+        mDirectory = directory;
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * Returns the cached response for the given url, or null if there is none.
+     */
+    public synchronized Snapshot get(String url) {
+        initialize();
+        Entry entry = mEntries.get(keyOf(url));
+        if (entry == null) {
+            return null;
+        }
+        // Keep the access order across restarts
+        metaFile(entry.key).setLastModified(System.currentTimeMillis());
+        return new Snapshot(entry);
+    }
+
+    /**
+     * Starts caching a response. The returned stream must be read in place of {@code body};
+     * every byte read is also written to disk. The response only enters the cache once
+     * {@link Editor#commit()} is called.
+     *
+     * @param url          url of the request
+     * @param etag         value of the ETag header, or null
+     * @param lastModified value of the Last-Modified header, or null
+     * @param expires      time in milliseconds from Epoch until which the response is fresh
+     * @param body         decoded response body as read from the network
+     */
+    public Editor edit(String url, String etag, String lastModified, long expires, InputStream body)
+            throws IOException {
+        synchronized (this) {
+            initialize();
+        }
+        Entry entry = new Entry(keyOf(url), url, etag, lastModified, expires);
+        return new Editor(entry, body);
+    }
+
+    /**
+     * Extends the freshness of a cached response after the server confirmed it is unchanged.
+     */
+    public synchronized void update(Snapshot snapshot, long expires) {
+        Entry entry = snapshot.mEntry;
+        if (mEntries.get(entry.key) != entry) {
+            return;
+        }
+        entry.expires = expires;
+        try {
+            writeMetadata(entry, metaFile(entry.key));
+        } catch (IOException e) {
+            remove(entry.key);
+        }
+    }
+
+    /**
+     * Drops a cached response that could not be read, unless it was replaced meanwhile
+     */
+    public synchronized void remove(Snapshot snapshot) {
+        Entry entry = snapshot.mEntry;
+        if (mEntries.get(entry.key) == entry) {
+            remove(entry.key);
+        }
+    }
+
+    /**
+     * Counts a response served from the cache without asking the server
+     */
+    public synchronized void recordHit() {
+        mHitCount++;
+    }
+
+    /**
+     * Counts a response served from the cache after the server answered 304 Not Modified
+     */
+    public synchronized void recordRevalidation() {
+        mHitCount++;
+        mRevalidationCount++;
+    }
+
+    /**
+     * Counts a response that had to be downloaded
+     */
+    public synchronized void recordMiss() {
+        mMissCount++;
+    }
+
+    /**
+     * Returns the number of responses served from the cache, including revalidated ones
+     */
+    public synchronized int getHitCount() {
+        return mHitCount;
+    }
+
+    /**
+     * Returns the number of responses that had to be downloaded
+     */
+    public synchronized int getMissCount() {
+        return mMissCount;
+    }
+
+    /**
+     * Returns the number of cached responses the server confirmed with 304 Not Modified
+     */
+    public synchronized int getRevalidationCount() {
+        return mRevalidationCount;
+    }
+
+    /**
+     * Returns the number of bytes of response bodies currently on disk
+     */
+    public synchronized long getSize() {
+        initialize();
+        return mSize;
+    }
+
+    public long getMaxSize() {
+        return mMaxSize;
+    }
+
+    /**
+     * Loads the entries found in the cache directory, least recently used first
+     */
+    private void initialize() {
+        if (mInitialized) {
+            return;
+        }
+        mInitialized = true;
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            return;
+        }
+
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        List<File> metaFiles = new ArrayList<>();
+        for (File file : files) {
+            if (file.getName().endsWith(META_SUFFIX)) {
+                metaFiles.add(file);
+            } else if (file.getName().endsWith(TEMP_SUFFIX)) {
+                // Left over by a write that never completed
+                file.delete();
+            }
+        }
+        Collections.sort(metaFiles, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long difference = a.lastModified() - b.lastModified();
+                return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+            }
+        });
+
+        for (File metaFile : metaFiles) {
+            String name = metaFile.getName();
+            String key = name.substring(0, name.length() - META_SUFFIX.length());
+            File bodyFile = bodyFile(key);
+            Entry entry = readMetadata(key, metaFile);
+            if (entry == null || !bodyFile.isFile()) {
+                metaFile.delete();
+                bodyFile.delete();
+                continue;
+            }
+            entry.length = bodyFile.length();
+            mEntries.put(key, entry);
+            mSize += entry.length;
+        }
+        trimToSize();
+    }
+
+    /**
+     * Moves a fully written response into the cache, replacing any previous version
+     */
+    private synchronized void commit(Entry entry, File tempBody) throws IOException {
+        File tempMeta = new File(mDirectory, entry.key + META_SUFFIX + TEMP_SUFFIX);
+        writeMetadata(entry, tempMeta);
+
+        remove(entry.key);
+        if (!tempBody.renameTo(bodyFile(entry.key)) || !tempMeta.renameTo(metaFile(entry.key))) {
+            tempBody.delete();
+            tempMeta.delete();
+            remove(entry.key);
+            throw new IOException("Could not commit cache entry for " + entry.url);
+        }
+        mEntries.put(entry.key, entry);
+        mSize += entry.length;
+        trimToSize();
+    }
+
+    /**
+     * Evicts least recently used entries until the cache fits in its size limit
+     */
+    private void trimToSize() {
+        Iterator<Map.Entry<String, Entry>> iterator = mEntries.entrySet().iterator();
+        while (mSize > mMaxSize && iterator.hasNext()) {
+            Entry eldest = iterator.next().getValue();
+            iterator.remove();
+            mSize -= eldest.length;
+            bodyFile(eldest.key).delete();
+            metaFile(eldest.key).delete();
+        }
+    }
+
+    private void remove(String key) {
+        Entry entry = mEntries.remove(key);
+        if (entry != null) {
+            mSize -= entry.length;
+        }
+        bodyFile(key).delete();
+        metaFile(key).delete();
+    }
+
+    private File bodyFile(String key) {
+        return new File(mDirectory, key + BODY_SUFFIX);
+    }
+
+    private File metaFile(String key) {
+        return new File(mDirectory, key + META_SUFFIX);
+    }
+
+    private static void writeMetadata(Entry entry, File file) throws IOException {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), UTF_8);
+        try {
+            writer.write(entry.url + "\n");
+            writer.write((entry.etag == null ? "" : entry.etag) + "\n");
+            writer.write((entry.lastModified == null ? "" : entry.lastModified) + "\n");
+            writer.write(entry.expires + "\n");
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static Entry readMetadata(String key, File file) {
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF_8));
+            String url = reader.readLine();
+            String etag = reader.readLine();
+            String lastModified = reader.readLine();
+            String expires = reader.readLine();
+            if (url == null || etag == null || lastModified == null || expires == null) {
+                return null;
+            }
+            return new Entry(key, url,
+                    etag.isEmpty() ? null : etag,
+                    lastModified.isEmpty() ? null : lastModified,
+                    Long.parseLong(expires));
+        } catch (IOException | NumberFormatException e) {
+            return null;
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the file name used for the given url
+     */
+    private static String keyOf(String url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            byte[] hash = digest.digest(url.getBytes(UTF_8));
+            StringBuilder key = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                key.append(Character.forDigit((b >> 4) & 0xf, 16));
+                key.append(Character.forDigit(b & 0xf, 16));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Metadata of a cached response
+     */
+    private static final class Entry {
+        final String key;
+        final String url;
+        final String etag;
+        final String lastModified;
+        long expires;
+        long length;
+
+        Entry(String key, String url, String etag, String lastModified, long expires) {
+            this.key = key;
+            this.url = url;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.expires = expires;
+        }
+    }
+
+    /**
+     * A cached response as it was when it was looked up
+     */
+    public final class Snapshot {
+        private final Entry mEntry;
+
+        private Snapshot(Entry entry) {
+            mEntry = entry;
+        }
+
+        public String getETag() {
+            return mEntry.etag;
+        }
+
+        public String getLastModified() {
+            return mEntry.lastModified;
+        }
+
+        /**
+         * Returns true if the response can still be used without asking the server
+         */
+        public boolean isFresh(long now) {
+            return now < mEntry.expires;
+        }
+
+        /**
+         * Opens the cached body. Throws if the entry was evicted in the meantime.
+         */
+        public InputStream openBody() throws IOException {
+            return new FileInputStream(bodyFile(mEntry.key));
+        }
+    }
+
+    /**
+     * Stream that copies everything read from the network body into a temporary file
+     */
+    public final class Editor extends FilterInputStream {
+        private final Entry mEntry;
+        private final File mTempFile;
+        private final OutputStream mOutput;
+        private boolean mDone;
+
+        private Editor(Entry entry, InputStream body) throws IOException {
+            super(body);
+            mEntry = entry;
+            mTempFile = File.createTempFile(entry.key, BODY_SUFFIX + TEMP_SUFFIX, mDirectory);
+            mOutput = new FileOutputStream(mTempFile);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            int read = super.read(buffer, offset, count);
+            if (read > 0) {
+                write(buffer, offset, read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Skipped bytes still have to end up in the cached body
+            byte[] buffer = new byte[(int) Math.min(n, 8192)];
+            int read = read(buffer, 0, buffer.length);
+            return read < 0 ? 0 : read;
+        }
+
+        private void write(byte[] buffer, int offset, int count) throws IOException {
+            if (!mDone) {
+                mOutput.write(buffer, offset, count);
+                mEntry.length += count;
+            }
+        }
+
+        /**
+         * Reads whatever is left of the body and stores the response in the cache.
+         * Call this only after the body was consumed successfully.
+         */
+        public void commit() throws IOException {
+            if (mDone) {
+                return;
+            }
+            byte[] buffer = new byte[8192];
+            while (read(buffer, 0, buffer.length) != -1) {
+                // drain the rest of the body into the cache
+            }
+            mDone = true;
+            mOutput.close();
+            DiskResponseCache.this.commit(mEntry, mTempFile);
+        }
+
+        /**
+         * Closes the network stream, dropping the response if it was not committed
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                if (!mDone) {
+                    mDone = true;
+                    mOutput.close();
+                    mTempFile.delete();
+                }
+            }
+        }
+    }
+}
@@ -5,24 +5,74 @@ package com.example.android.quakereport;
  */
 public class Earthquake {
 
+    private String mId;
     private double mMagnitude;
-    private String mLocation;
+
+    /**
+     * Offset and primary location of the place, from {@link EarthquakeTable#PLACE_POOL}
+     */
+    private String mLocationOffset;
+    private String mPrimaryLocation;
+
     private long mTimeInMilliseconds;
+    private long mUpdated;
+
+    /**
+     * Detail url, or null if it is {@link EarthquakeTable#URL_PREFIX} + id
+     */
     private String mUrl;
+    private boolean mDeleted;
+
+    /**
+     * Epicenter and depth, NaN when USGS sent no coordinates
+     */
+    private double mLongitude = Double.NaN;
+    private double mLatitude = Double.NaN;
+    private double mDepth = Double.NaN;
+
+    /**
+     * Display-ready fields, computed off the UI thread once the earthquake is loaded
+     */
+    private EarthquakeDisplay mDisplay;
 
     /**
      * Constructs a new {@link Earthquake} object
      *
+     * @param id                 USGS event id of earthquake
      * @param magnitude          magnitude of earthquake
      * @param location           location of earthquake
      * @param timeInMilliseconds timeInMilliseconds (from Epoch) of earthquake
+     * @param updated            time in milliseconds (from Epoch) the event was last updated
      * @param url                url address for details of the earthquake
      */
-    public Earthquake(double magnitude, String location, long timeInMilliseconds, String url) {
+    public Earthquake(String id, double magnitude, String location, long timeInMilliseconds,
+                      long updated, String url) {
+        mId = id;
         mMagnitude = magnitude;
-        mLocation = location;
+        if (location != null) {
+            String[] parts = EarthquakeFormats.splitLocation(location);
+            mLocationOffset = EarthquakeTable.PLACE_POOL.intern(parts[0]);
+            mPrimaryLocation = EarthquakeTable.PLACE_POOL.intern(parts[1]);
+        }
         mTimeInMilliseconds = timeInMilliseconds;
-        mUrl = url;
+        mUpdated = updated;
+        if (url != null && !EarthquakeTable.isDefaultUrl(id, url)) {
+            mUrl = url;
+        }
+    }
+
+    /**
+     * Constructs an {@link Earthquake} that only marks the event with the given id as deleted
+     * by USGS, so it can be removed from the local store.
+     */
+    public static Earthquake deleted(String id, long updated) {
+        Earthquake earthquake = new Earthquake(id, 0, null, 0, updated, null);
+        earthquake.mDeleted = true;
+        return earthquake;
+    }
+
+    public String getId() {
+        return mId;
     }
 
     public double getMagnitude() {
@@ -30,14 +80,71 @@ public class Earthquake {
     }
 
     public String getLocation() {
-        return mLocation;
+        if (mLocationOffset == null) {
+            return mPrimaryLocation;
+        }
+        return mLocationOffset + EarthquakeFormats.LOCATION_SEPARATOR + mPrimaryLocation;
     }
 
     public long getTimeInMilliseconds() {
         return mTimeInMilliseconds;
     }
 
+    public long getUpdated() {
+        return mUpdated;
+    }
+
     public String getUrl() {
-        return mUrl;
+        if (mUrl != null || mDeleted) {
+            return mUrl;
+        }
+        return EarthquakeTable.URL_PREFIX + mId;
+    }
+
+    public boolean isDeleted() {
+        return mDeleted;
+    }
+
+    /**
+     * Sets the epicenter and depth of the earthquake
+     *
+     * @param longitude longitude of the epicenter in degrees
+     * @param latitude  latitude of the epicenter in degrees
+     * @param depth     depth of the hypocenter in kilometers
+     */
+    public void setCoordinates(double longitude, double latitude, double depth) {
+        mLongitude = longitude;
+        mLatitude = latitude;
+        mDepth = depth;
+    }
+
+    public double getLongitude() {
+        return mLongitude;
+    }
+
+    public double getLatitude() {
+        return mLatitude;
+    }
+
+    public double getDepth() {
+        return mDepth;
+    }
+
+    /**
+     * Returns true if the epicenter of the earthquake is known
+     */
+    public boolean hasCoordinates() {
+        return !Double.isNaN(mLongitude) && !Double.isNaN(mLatitude);
+    }
+
+    /**
+     * Returns the display-ready fields, or null if they were not computed yet
+     */
+    public EarthquakeDisplay getDisplay() {
+        return mDisplay;
+    }
+
+    public void setDisplay(EarthquakeDisplay display) {
+        mDisplay = display;
     }
 }
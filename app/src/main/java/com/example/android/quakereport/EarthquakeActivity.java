@@ -16,50 +16,160 @@
 package com.example.android.quakereport;
 
 import android.app.LoaderManager;
-import android.content.Context;
+import android.app.ProgressDialog;
+import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.Loader;
 import android.content.SharedPreferences;
-import android.net.ConnectivityManager;
-import android.net.NetworkInfo;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.preference.PreferenceManager;
+import android.support.v4.content.FileProvider;
+import android.support.v7.app.AlertDialog;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
-import android.widget.AdapterView;
-import android.widget.ListView;
 import android.widget.TextView;
+import android.widget.Toast;
 
-import java.util.ArrayList;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.util.Arrays;
 import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
-public class EarthquakeActivity extends AppCompatActivity implements LoaderManager.LoaderCallbacks<List<Earthquake>> {
+public class EarthquakeActivity extends AppCompatActivity implements LoaderManager.LoaderCallbacks<EarthquakeTable>,
+        SharedPreferences.OnSharedPreferenceChangeListener,
+        ConnectivityMonitor.Listener, ExportFragment.Callbacks {
 
     /**
      * String tag for logging purposes
      */
     public static final String LOG_TAG = EarthquakeActivity.class.getName();
 
-    /**
-     * URL for earthquake data from the USGS dataset
-     */
-    private static final String USGS_REQUEST_URL =
-            "https://earthquake.usgs.gov/fdsnws/event/1/query";
-
     /**
      * Constant value for the earthquake loader ID. We can choose any integer.
      * This really only comes into play if you're using multiple loaders.
      */
     private static final int EARTHQUAKE_LOADER_ID = 1;
 
+    /**
+     * Number of earthquakes requested at a time while scrolling
+     */
+    private static final int PAGE_SIZE = 128;
+
+    /**
+     * Maximum number of pages of earthquakes kept in memory
+     */
+    private static final int MAX_PAGES_IN_MEMORY = 5;
+
+    /**
+     * Period the statistics are counted over, up to now
+     */
+    private static final long STATISTICS_PERIOD_MILLIS = TimeUnit.DAYS.toMillis(7);
+
+    /**
+     * Number of regions listed in the statistics
+     */
+    private static final int STATISTICS_TOP_REGIONS = 5;
+
+    /**
+     * Directory of the cache the exports are written to, shared through the file provider
+     */
+    private static final String EXPORT_DIRECTORY = "exports";
+
+    /**
+     * Suffix of the package name making the authority of the file provider
+     */
+    private static final String EXPORT_AUTHORITY_SUFFIX = ".fileprovider";
+
     /**
      * Adapter for the list of earthquakes
      */
     private EarthquakeAdapter mAdapter;
 
+    /**
+     * Pages of earthquakes shown by the adapter
+     */
+    private EarthquakePager mPager;
+
+    /**
+     * Background thread the following pages are loaded on
+     */
+    private ExecutorService mPageExecutor;
+
+    /**
+     * Background thread the list updates are computed on
+     */
+    private ExecutorService mDiffExecutor;
+
+    /**
+     * Writes the exports, retained across configuration changes
+     */
+    private ExportFragment mExportFragment;
+
+    /**
+     * Progress of the export being written, or null
+     */
+    private ProgressDialog mExportDialog;
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Earthquakes the list shows, before any page loaded from USGS past them
+     */
+    private EarthquakeTable mShownResult;
+
+    /**
+     * Incremented for every new result, so a list update computed for an older one is dropped
+     */
+    private int mResultGeneration;
+
+    /**
+     * Answers the settings from the loaded earthquakes, null until they are loaded
+     */
+    private EarthquakeQueryEngine mQueryEngine;
+
+    /**
+     * Query URL of the loaded earthquakes, without the settings applied locally
+     */
+    private String mCatalogUrl;
+
+    /**
+     * Statistics of the loaded earthquakes, kept up to date with live changes once shown
+     */
+    private EarthquakeAggregator mAggregator;
+
+    /**
+     * Polls the USGS summary feeds while live mode is on
+     */
+    private LiveFeedPoller mLivePoller;
+
+    /**
+     * True while the device has no network, so the list can not be refreshed
+     */
+    private boolean mOffline;
+
+    /**
+     * True between onResume and onPause
+     */
+    private boolean mResumed;
+
+    /**
+     * List of earthquakes
+     */
+    private RecyclerView mRecyclerView;
+
     /**
      * TextView that is displayed when the list is empty
      */
@@ -78,26 +188,17 @@ public class EarthquakeActivity extends AppCompatActivity implements LoaderManag
         // Find a reference to the loading indicator in the layout
         loadingIndicator = findViewById(R.id.loading_indicator);
 
-        // Find a reference to the {@link ListView} in the layout
-        ListView earthquakeListView = (ListView) findViewById(R.id.list);
+        // Find a reference to the {@link RecyclerView} in the layout
+        mRecyclerView = (RecyclerView) findViewById(R.id.list);
         mEmptyStateTextView = (TextView) findViewById(R.id.empty_view);
-        earthquakeListView.setEmptyView(mEmptyStateTextView);
-
-        // Create a new {@link EarthquakeAdapter} of earthquakes
-        mAdapter = new EarthquakeAdapter(this, new ArrayList<Earthquake>());
-
-        // Set the adapter on the {@link ListView}
-        // so the list can be populated in the user interface
-        earthquakeListView.setAdapter(mAdapter);
+        final LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        mRecyclerView.setLayoutManager(layoutManager);
 
-        // Set listener on ListView item and attach implicit intent to open website for more
-        // details on the earthquake
-        earthquakeListView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+        // Create a new {@link EarthquakeAdapter} of earthquakes. Tapping an earthquake opens
+        // its USGS page for more details.
+        mAdapter = new EarthquakeAdapter(this, new EarthquakeAdapter.OnEarthquakeClickListener() {
             @Override
-            public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
-                // Find the current earthquake that was clicked on
-                Earthquake currentEarthquake = mAdapter.getItem(position);
-
+            public void onEarthquakeClick(EarthquakeTable.Cursor currentEarthquake) {
                 // Convert the String URL into a URI object (to pass into the Intent constructor)
                 Uri earthquakeUri = Uri.parse(currentEarthquake.getUrl());
 
@@ -110,78 +211,367 @@ public class EarthquakeActivity extends AppCompatActivity implements LoaderManag
             }
         });
 
-        //Check network connectivity and details
-        ConnectivityManager connMgr = (ConnectivityManager) getSystemService(Context.CONNECTIVITY_SERVICE);
-        NetworkInfo networkInfo = connMgr.getActiveNetworkInfo();
+        // Create the pager that loads further earthquakes as the user scrolls
+        mPageExecutor = Executors.newSingleThreadExecutor();
+        mDiffExecutor = Executors.newSingleThreadExecutor();
+        mPager = new EarthquakePager(PAGE_SIZE, MAX_PAGES_IN_MEMORY, mPageExecutor,
+                new Executor() {
+                    @Override
+                    public void execute(Runnable command) {
+                        mMainHandler.post(command);
+                    }
+                },
+                mAdapter);
+        mAdapter.setPager(mPager);
+
+        // Set the adapter on the {@link RecyclerView}
+        // so the list can be populated in the user interface
+        mRecyclerView.setAdapter(mAdapter);
+
+        // Show the empty state text whenever the list is empty
+        mAdapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onChanged() {
+                updateEmptyView();
+            }
 
-        // if there is connection, fetch data
-        if (networkInfo != null && networkInfo.isConnected()) {
-            // Get a reference to the LoaderManager, in order to interact with loaders.
-            LoaderManager loaderManager = getLoaderManager();
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                updateEmptyView();
+            }
 
-            // Initialize the loader. Pass in the int ID constant defined above and pass in null for
-            // the bundle. Pass in this activity for the LoaderCallbacks parameter (which is valid
-            // because this activity implements the LoaderCallbacks interface).
-            loaderManager.initLoader(EARTHQUAKE_LOADER_ID, null, this);
-        } else {
-            // otherwise display error
-            loadingIndicator.setVisibility(View.GONE);
-            mEmptyStateTextView.setText(R.string.no_internet_connection);
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                updateEmptyView();
+            }
+        });
+
+        // Tell the pager which rows are visible, so it can fetch the next page before the
+        // user reaches the end of the list and release pages that scrolled far away
+        mRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                int first = layoutManager.findFirstVisibleItemPosition();
+                int last = layoutManager.findLastVisibleItemPosition();
+                if (first != RecyclerView.NO_POSITION) {
+                    mPager.onVisibleRangeChanged(first, Math.max(first, last));
+                }
+            }
+        });
+
+        // In live mode, new and updated events are applied to the list as they come in
+        mLivePoller = new LiveFeedPoller(this, new LiveFeedPoller.Callback() {
+            @Override
+            public void onDelta(EarthquakeDelta delta) {
+                if (mQueryEngine != null) {
+                    int[] changedRows = mQueryEngine.apply(delta);
+                    if (mAggregator != null) {
+                        mAggregator.update(changedRows);
+                    }
+                    showQueryResult(EarthquakePreferences.getQuery(EarthquakeActivity.this));
+                }
+            }
+        });
+
+        // An export started before a rotation goes on, show its progress again
+        mExportFragment = (ExportFragment) getFragmentManager()
+                .findFragmentByTag(ExportFragment.TAG);
+        if (mExportFragment == null) {
+            mExportFragment = new ExportFragment();
+            getFragmentManager().beginTransaction()
+                    .add(mExportFragment, ExportFragment.TAG)
+                    .commit();
+        } else if (mExportFragment.isRunning()) {
+            showExportDialog(mExportFragment.getProgress());
         }
 
+        // Apply changed settings to the loaded earthquakes instead of loading them again
+        PreferenceManager.getDefaultSharedPreferences(this)
+                .registerOnSharedPreferenceChangeListener(this);
+
+        // Show what is stored right away, online or not; offline, the loader queues the
+        // refresh and the list is refreshed once the network is back
+        getLoaderManager().initLoader(EARTHQUAKE_LOADER_ID, null, this);
     }
 
     @Override
-    public Loader<List<Earthquake>> onCreateLoader(int id, Bundle args) {
+    protected void onStart() {
+        super.onStart();
+        ConnectivityMonitor monitor = ConnectivityMonitor.getInstance(this);
+        monitor.addListener(this);
+        boolean connected = monitor.isConnected();
+        updateOfflineState(connected);
+        if (connected && SyncManager.hasQueuedRefreshes(this)) {
+            // The network came back while stopped, which the monitor did not see
+            refreshList();
+        }
+    }
 
-        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(this);
-        String minMagnitude = sharedPrefs.getString(
-                getString(R.string.settings_min_magnitude_key),
-                getString(R.string.settings_min_magnitude_default));
+    @Override
+    protected void onStop() {
+        super.onStop();
+        ConnectivityMonitor.getInstance(this).removeListener(this);
+    }
 
-        String orderBy = sharedPrefs.getString(
-                getString(R.string.settings_order_by_key),
-                getString(R.string.settings_order_by_default)
-        );
+    @Override
+    public void onConnectivityChanged(boolean connected) {
+        updateOfflineState(connected);
+        if (connected) {
+            refreshList();
+            mPager.retryFailedPages();
+        }
+    }
 
-        Uri baseUri = Uri.parse(USGS_REQUEST_URL);
-        Uri.Builder uriBuilder = baseUri.buildUpon();
+    /**
+     * Syncs what was asked for while offline, along with the list
+     */
+    private void refreshList() {
+        Loader<EarthquakeTable> loader = getLoaderManager().getLoader(EARTHQUAKE_LOADER_ID);
+        if (loader != null) {
+            ((EarthquakeLoader) loader).refresh();
+        }
+    }
 
-        uriBuilder.appendQueryParameter("format", "geojson");
-        uriBuilder.appendQueryParameter("limit", "128");
-        uriBuilder.appendQueryParameter("minmag", minMagnitude);
-        uriBuilder.appendQueryParameter("orderby", orderBy);
+    /**
+     * Tells the user the list is not being refreshed while offline
+     */
+    private void updateOfflineState(boolean connected) {
+        mOffline = !connected;
+        if (getSupportActionBar() != null) {
+            getSupportActionBar().setSubtitle(
+                    mOffline ? getString(R.string.offline_subtitle) : null);
+        }
+        mEmptyStateTextView.setText(mOffline ? R.string.no_internet_connection
+                : R.string.no_earthquakes);
+    }
 
-        return new EarthquakeLoader(EarthquakeActivity.this, uriBuilder.toString());
+    @Override
+    public Loader<EarthquakeTable> onCreateLoader(int id, Bundle args) {
+        // Load the most recent earthquakes above the magnitude threshold; the sort order and
+        // location filter are applied locally
+        EarthquakeQuery query = EarthquakePreferences.getQuery(this);
+        return new EarthquakeLoader(EarthquakeActivity.this,
+                EarthquakeSync.buildCatalogUrl(query.getMinMagnitude()));
     }
 
     @Override
-    public void onLoadFinished(Loader<List<Earthquake>> loader, List<Earthquake> earthquakes) {
+    public void onLoadFinished(Loader<EarthquakeTable> loader, EarthquakeTable earthquakes) {
         // Hide loading indicator because the data has been loaded
         loadingIndicator.setVisibility(View.GONE);
 
-        // Clear the adapter of previous earthquake data
-        mAdapter.clear();
+        if (earthquakes == null) {
+            earthquakes = new EarthquakeTable(0);
+        }
+        mCatalogUrl = ((EarthquakeLoader) loader).getUrl();
+        double catalogMinMagnitude = Double.parseDouble(
+                Uri.parse(mCatalogUrl).getQueryParameter("minmag"));
+        mQueryEngine = new EarthquakeQueryEngine(earthquakes, catalogMinMagnitude);
+        mAggregator = null;
+        mLivePoller.reset(earthquakes, catalogMinMagnitude);
+        applyQuery();
+    }
+
+    @Override
+    public void onLoaderReset(Loader<EarthquakeTable> loader) {
+        // Loader reset, so we can clear out our existing data.
+        mQueryEngine = null;
+        mAggregator = null;
+        clearList();
+    }
 
-        // If there is a valid list of {@link Earthquake}s, then add them to the adapter's
-        // data set. This will trigger the ListView to update.
-        if (earthquakes != null && !earthquakes.isEmpty()) {
-            mAdapter.addAll(earthquakes);
+    @Override
+    public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+        if (getString(R.string.settings_min_magnitude_key).equals(key)
+                || getString(R.string.settings_order_by_key).equals(key)
+                || getString(R.string.settings_location_filter_key).equals(key)) {
+            applyQuery();
+        } else if (getString(R.string.settings_sync_interval_key).equals(key)) {
+            SyncManager.scheduleSync(this);
+        } else if (getString(R.string.settings_live_mode_key).equals(key)) {
+            updateLiveMode();
+        }
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        mResumed = true;
+        updateLiveMode();
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        // Only poll while the list is on screen
+        mResumed = false;
+        mLivePoller.stop();
+    }
+
+    private void updateLiveMode() {
+        boolean liveMode = PreferenceManager.getDefaultSharedPreferences(this).getBoolean(
+                getString(R.string.settings_live_mode_key), false);
+        if (liveMode && mResumed) {
+            mLivePoller.start();
         } else {
-            // Set empty state text to display "No earthquakes found."
-            mEmptyStateTextView.setText(R.string.no_earthquakes);
+            mLivePoller.stop();
+        }
+    }
+
+    /**
+     * Shows the earthquakes matching the settings. They are selected from the loaded
+     * earthquakes when those cover the settings, otherwise they are loaded again.
+     */
+    private void applyQuery() {
+        if (mQueryEngine == null) {
+            // Nothing loaded yet, the settings are applied once it is
+            return;
+        }
+        EarthquakeQuery query = EarthquakePreferences.getQuery(this);
+        if (!mQueryEngine.covers(query)) {
+            // Lower magnitudes than were loaded, so ask for them
+            mQueryEngine = null;
+            mAggregator = null;
+            clearList();
+            loadingIndicator.setVisibility(View.VISIBLE);
+            getLoaderManager().restartLoader(EARTHQUAKE_LOADER_ID, null, this);
+            return;
+        }
+
+        showQueryResult(query);
+    }
+
+    /**
+     * Shows the earthquakes the query engine selects for the query. When the list already
+     * shows earthquakes, the rows that changed are worked out on a background thread and
+     * only those are redrawn.
+     */
+    private void showQueryResult(EarthquakeQuery query) {
+        final EarthquakeTable result = mQueryEngine.select(query);
+
+        // The loaded earthquakes are the most recent ones. Ordered by time, the list goes on
+        // past them with the older ones, requested from USGS as the user scrolls. Ordered by
+        // magnitude it ends with them: older earthquakes would not fall in order after them.
+        // USGS can not filter by location either.
+        EarthquakePager.PageSource next = null;
+        if (query.isOrderedByTime() && !query.hasLocationFilter()
+                && mQueryEngine.getTable().size() >= EarthquakeSync.CATALOG_SIZE) {
+            String requestUrl = new UsgsQueryBuilder()
+                    .format(UsgsQueryBuilder.Format.CSV)
+                    .eventType(UsgsQueryBuilder.EVENT_TYPE_EARTHQUAKE)
+                    .before(mQueryEngine.getOldestTime())
+                    .minMagnitude(query.getMinMagnitude())
+                    .orderBy(EarthquakeQuery.ORDER_BY_TIME)
+                    .build();
+            next = new UsgsPageSource(requestUrl, EarthquakeStore.getInstance(this),
+                    new EarthquakeFormatter(this));
+        }
+        final EarthquakePager.PageSource source = new TablePageSource(result, next);
+        final EarthquakeTable firstPage = TablePageSource.slice(result, 0, PAGE_SIZE);
+        final int generation = ++mResultGeneration;
+
+        if (result.size() == 0) {
+            // Set empty state text to display "No earthquakes found.", unless nothing could be
+            // downloaded
+            mEmptyStateTextView.setText(mOffline ? R.string.no_internet_connection
+                    : R.string.no_earthquakes);
+        }
+
+        final EarthquakeTable shown = mShownResult;
+        if (shown == null || mPager.getCount() != shown.size()) {
+            // Nothing to compare with, or pages from USGS are shown past the old result
+            mShownResult = result;
+            mPager.reset(source, firstPage, result.size());
+            return;
         }
+
+        mDiffExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final ListDiff.Result diff = ListDiff.compute(getIds(shown), getVersions(shown),
+                        getIds(result), getVersions(result));
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mResultGeneration) {
+                            // A newer result is on its way
+                            return;
+                        }
+                        mShownResult = result;
+                        if (mPager.getCount() != shown.size()) {
+                            // A page arrived since the diff was computed, so the diff no longer
+                            // matches what the list shows
+                            mPager.reset(source, firstPage, result.size());
+                            return;
+                        }
+                        mPager.replace(source, firstPage, result.size());
+                        diff.dispatchTo(mAdapter);
+                    }
+                });
+            }
+        });
+    }
+
+    private static String[] getIds(EarthquakeTable earthquakes) {
+        String[] ids = new String[earthquakes.size()];
+        for (int row = 0; row < ids.length; row++) {
+            ids[row] = earthquakes.getId(row);
+        }
+        return ids;
+    }
+
+    private static long[] getVersions(EarthquakeTable earthquakes) {
+        long[] versions = new long[earthquakes.size()];
+        for (int row = 0; row < versions.length; row++) {
+            versions[row] = earthquakes.getUpdated(row);
+        }
+        return versions;
+    }
+
+    private void clearList() {
+        mResultGeneration++;
+        mShownResult = null;
+        mPager.reset(null, null);
+    }
+
+    private void updateEmptyView() {
+        mEmptyStateTextView.setVisibility(mAdapter.getItemCount() == 0 ? View.VISIBLE : View.GONE);
     }
 
     @Override
-    public void onLoaderReset(Loader<List<Earthquake>> loader) {
-        // Loader reset, so we can clear out our existing data.
-        mAdapter.clear();
+    protected void onDestroy() {
+        super.onDestroy();
+        PreferenceManager.getDefaultSharedPreferences(this)
+                .unregisterOnSharedPreferenceChangeListener(this);
+        // Stop loading pages nobody will see
+        mPageExecutor.shutdownNow();
+        mDiffExecutor.shutdownNow();
+        // The export goes on in its retained fragment, which cancels it if the activity
+        // finishes for good; a new activity shows its progress again
+        if (mExportDialog != null) {
+            mExportDialog.dismiss();
+            mExportDialog = null;
+        }
+        mLivePoller.release();
+    }
+
+    /**
+     * Adds the performance metrics to {@code adb shell dumpsys activity
+     * com.example.android.quakereport/.EarthquakeActivity}, as JSON when given {@code --json}
+     */
+    @Override
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(prefix, fd, writer, args);
+        writer.print(prefix);
+        writer.println("Metrics:");
+        boolean json = args != null && Arrays.asList(args).contains("--json");
+        writer.println(json ? Metrics.dumpJson() : Metrics.dumpText());
     }
 
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.main, menu);
+        // The performance metrics screen is a debugging aid
+        menu.findItem(R.id.action_metrics).setVisible(BuildConfig.DEBUG);
         return true;
     }
 
@@ -192,9 +582,150 @@ public class EarthquakeActivity extends AppCompatActivity implements LoaderManag
             Intent settingsIntent = new Intent(this, SettingsActivity.class);
             startActivity(settingsIntent);
             return true;
+        } else if (id == R.id.action_backfill) {
+            // End on a day boundary, so asking again the same day resumes the same download
+            long day = TimeUnit.DAYS.toMillis(1);
+            long end = (System.currentTimeMillis() / day + 1) * day;
+            BackfillService.start(this, end - 365 * day, end,
+                    EarthquakePreferences.getQuery(this).getMinMagnitude());
+            Toast.makeText(this, R.string.backfill_started, Toast.LENGTH_SHORT).show();
+            return true;
+        } else if (id == R.id.action_statistics) {
+            showStatistics();
+            return true;
+        } else if (id == R.id.action_export) {
+            new AlertDialog.Builder(this)
+                    .setTitle(R.string.export_title)
+                    .setItems(R.array.export_format_labels,
+                            new DialogInterface.OnClickListener() {
+                                @Override
+                                public void onClick(DialogInterface dialog, int which) {
+                                    export(EarthquakeExporter.Format.values()[which]);
+                                }
+                            })
+                    .show();
+            return true;
+        } else if (id == R.id.action_metrics) {
+            startActivity(new Intent(this, MetricsActivity.class));
+            return true;
         } else if (id == R.id.action_about) {
             startActivity(new Intent(this, AboutActivity.class));
         }
         return super.onOptionsItemSelected(item);
     }
+
+    /**
+     * Shows how many of the loaded earthquakes matching the minimum magnitude happened in the
+     * past week, by magnitude and by region
+     */
+    private void showStatistics() {
+        if (mQueryEngine == null) {
+            return;
+        }
+        double minMagnitude = EarthquakePreferences.getQuery(this).getMinMagnitude();
+        long since = System.currentTimeMillis() - STATISTICS_PERIOD_MILLIS;
+        // Live changes keep the counts up to date; they are only counted again for another
+        // magnitude or once the week moved on by an hour
+        if (mAggregator == null || mAggregator.getMinMagnitude() != minMagnitude
+                || since - mAggregator.getSinceMillis() > EarthquakeAggregator.HOUR_MILLIS) {
+            mAggregator = new EarthquakeAggregator(mQueryEngine.getTable(), minMagnitude, since,
+                    TimeZone.getDefault());
+            mAggregator.aggregate();
+        }
+
+        StringBuilder message = new StringBuilder(
+                getString(R.string.statistics_summary, mAggregator.getCount(), minMagnitude));
+        int[] bandCounts = mAggregator.getMagnitudeBandCounts();
+        for (int band = bandCounts.length; band >= 1; band--) {
+            if (bandCounts[band - 1] > 0) {
+                message.append('\n').append(
+                        getString(R.string.statistics_magnitude_band, band, bandCounts[band - 1]));
+            }
+        }
+        List<EarthquakeAggregator.RegionCount> regions =
+                mAggregator.getTopRegions(STATISTICS_TOP_REGIONS);
+        if (!regions.isEmpty()) {
+            message.append("\n\n").append(getString(R.string.statistics_top_regions));
+            for (EarthquakeAggregator.RegionCount region : regions) {
+                message.append('\n').append(getString(R.string.statistics_region,
+                        region.getRegion(), region.getCount()));
+            }
+        }
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.statistics_title)
+                .setMessage(message)
+                .setPositiveButton(android.R.string.ok, null)
+                .show();
+    }
+
+    /**
+     * Exports the stored earthquakes matching the minimum magnitude in the background, showing
+     * its progress, then offers to share the file
+     */
+    private void export(EarthquakeExporter.Format format) {
+        if (mExportFragment.isRunning()) {
+            return;
+        }
+        double minMagnitude = EarthquakePreferences.getQuery(this).getMinMagnitude();
+        File file = new File(new File(getCacheDir(), EXPORT_DIRECTORY),
+                "earthquakes." + format.getExtension());
+        showExportDialog(0);
+        mExportFragment.start(EarthquakeStore.getInstance(this), minMagnitude, format, file);
+    }
+
+    /**
+     * Shows the progress of the export being written, which the user can cancel
+     */
+    private void showExportDialog(int progress) {
+        ProgressDialog dialog = new ProgressDialog(this);
+        dialog.setMessage(getString(R.string.export_progress));
+        dialog.setProgressStyle(ProgressDialog.STYLE_HORIZONTAL);
+        dialog.setProgressNumberFormat(null);
+        dialog.setMax(ExportFragment.PROGRESS_MAX);
+        dialog.setCancelable(true);
+        dialog.setCanceledOnTouchOutside(false);
+        dialog.setOnCancelListener(new DialogInterface.OnCancelListener() {
+            @Override
+            public void onCancel(DialogInterface dialog) {
+                mExportFragment.cancel();
+                mExportDialog = null;
+            }
+        });
+        dialog.show();
+        dialog.setProgress(progress);
+        mExportDialog = dialog;
+    }
+
+    @Override
+    public void onExportProgress(int progress) {
+        if (mExportDialog != null) {
+            mExportDialog.setProgress(progress);
+        }
+    }
+
+    @Override
+    public void onExportFinished(File file, EarthquakeExporter.Format format, boolean exported) {
+        if (mExportDialog != null) {
+            mExportDialog.dismiss();
+            mExportDialog = null;
+        }
+        if (isFinishing()) {
+            return;
+        }
+        if (exported) {
+            shareExport(file, format);
+        } else {
+            Toast.makeText(this, R.string.export_failed, Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    private void shareExport(File file, EarthquakeExporter.Format format) {
+        Uri uri = FileProvider.getUriForFile(this, getPackageName() + EXPORT_AUTHORITY_SUFFIX,
+                file);
+        Intent shareIntent = new Intent(Intent.ACTION_SEND)
+                .setType(format.getMimeType())
+                .putExtra(Intent.EXTRA_STREAM, uri)
+                .addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        startActivity(Intent.createChooser(shareIntent, getString(R.string.export_share)));
+    }
 }
@@ -4,223 +4,216 @@ package com.example.android.quakereport;
 import android.content.Context;
 import android.graphics.drawable.GradientDrawable;
 import android.support.v4.content.ContextCompat;
+import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ArrayAdapter;
 import android.widget.TextView;
 
-import java.text.DecimalFormat;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.List;
-import java.util.Locale;
+/**
+ * {@link RecyclerView} adapter over paged earthquakes. Loaded pages only redraw their own rows,
+ * and a new list of earthquakes is applied through the updates of a {@link ListDiff}, so rows
+ * that did not change are not bound again.
+ */
+public class EarthquakeAdapter extends RecyclerView.Adapter<EarthquakeAdapter.ViewHolder>
+        implements EarthquakePager.Callback, ListDiff.Callback {
 
-public class EarthquakeAdapter extends ArrayAdapter<Earthquake> {
+    /**
+     * Told when the user taps an earthquake
+     */
+    public interface OnEarthquakeClickListener {
+        /**
+         * @param earthquake cursor on the tapped earthquake, only valid during the call
+         */
+        void onEarthquakeClick(EarthquakeTable.Cursor earthquake);
+    }
+
+    private final Context mContext;
 
-    public static final String LOCATION_SEPARATOR = " of ";
-    public static final String OFFSET_SEPARATOR = "km";
+    /**
+     * Paged earthquakes, which are the data source of the adapter
+     */
+    private EarthquakePager mPager;
+
+    private final OnEarthquakeClickListener mClickListener;
+
+    /**
+     * Formatter for earthquakes that reach the list without display fields, created on demand
+     */
+    private EarthquakeFormatter mFormatter;
 
     /**
      * Constructs a new {@link EarthquakeAdapter}
      *
-     * @param context     context of the app
-     * @param earthquakes List of Earthquakes, which is the data source of the adapter
+     * @param context       context of the app
+     * @param clickListener told when the user taps an earthquake
      */
-    public EarthquakeAdapter(Context context, List<Earthquake> earthquakes) {
-        super(context, 0, earthquakes);
+    public EarthquakeAdapter(Context context, OnEarthquakeClickListener clickListener) {
+        mContext = context;
+        mClickListener = clickListener;
     }
 
+    /**
+     * Sets the paged earthquakes, which are the data source of the adapter. The pager must
+     * report to this adapter as its {@link EarthquakePager.Callback}.
+     */
+    public void setPager(EarthquakePager pager) {
+        mPager = pager;
+        notifyDataSetChanged();
+    }
+
+    public Context getContext() {
+        return mContext;
+    }
 
     @Override
-    public View getView(int position, View convertView, ViewGroup parent) {
-        View listItemView = convertView;
-        if (listItemView == null) {
-            listItemView = LayoutInflater.from(getContext()).inflate(R.layout.earthquake_list_item,
-                    parent, false);
-        }
-        Earthquake currentEarthquake = getItem(position);
+    public int getItemCount() {
+        return mPager != null ? mPager.getCount() : 0;
+    }
 
-        TextView magnitudeTextView = (TextView) listItemView.findViewById(R.id.magnitude);
-        // Format the magnitude to show 1 decimal place
-        String formattedMagnitude = formatMagnitude(currentEarthquake.getMagnitude());
-        magnitudeTextView.setText(formattedMagnitude);
+    /**
+     * Returns a cursor on the earthquake at the given position, or null while its page is
+     * being loaded. The cursor is only valid until the next call.
+     */
+    public EarthquakeTable.Cursor getItem(int position) {
+        return mPager.getRow(position);
+    }
 
-        // Set the proper background color on the magnitude circle.
-        // Fetch the background from the TextView, which is a GradientDrawable.
-        GradientDrawable magnitudeCircle = (GradientDrawable) magnitudeTextView.getBackground();
-        // Get the appropriate background color based on the current earthquake magnitude
-        int magnitudeColor = getMagnitudeColor(currentEarthquake.getMagnitude());
-        // Set the color on the magnitude circle
-        magnitudeCircle.setColor(magnitudeColor);
+    @Override
+    public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        View listItemView = LayoutInflater.from(getContext()).inflate(R.layout.earthquake_list_item,
+                parent, false);
+        return new ViewHolder(listItemView);
+    }
 
-        String[] locationParts = splitLocation(currentEarthquake.getLocation());
+    @Override
+    public void onBindViewHolder(ViewHolder holder, int position) {
+        long start = Metrics.start();
+        bind(holder, position);
+        Metrics.stop(Metrics.BIND, start);
+    }
 
-        TextView locationOffsetTextView = (TextView) listItemView.findViewById(R.id.location_offset);
-        locationOffsetTextView.setText(locationParts[0]);
+    private void bind(ViewHolder holder, int position) {
+        EarthquakeTable.Cursor currentEarthquake = getItem(position);
+        if (currentEarthquake == null) {
+            // The page of this row is still loading, show an empty row until it arrives
+            holder.bindPlaceholder(ContextCompat.getColor(getContext(), R.color.magnitude1));
+            return;
+        }
 
-        TextView locationTextView = (TextView) listItemView.findViewById(R.id.primary_location);
-        locationTextView.setText(locationParts[1]);
+        // The display fields are normally formatted off the UI thread when the page is loaded
+        EarthquakeDisplay display = currentEarthquake.getDisplay();
+        if (display == null) {
+            if (mFormatter == null) {
+                mFormatter = new EarthquakeFormatter(getContext());
+            }
+            display = mFormatter.format(currentEarthquake);
+            currentEarthquake.setDisplay(display);
+        }
+        holder.bind(display);
+    }
 
-        // Create a new Date object from the time in milliseconds of the earthquake
-        Date dateObject = new Date(currentEarthquake.getTimeInMilliseconds());
-        // Format the date string (i.e. "Mar 3, 1984")
-        String formattedDate = formatDate(dateObject);
-        TextView dateTextView = (TextView) listItemView.findViewById(R.id.date);
-        dateTextView.setText(formattedDate);
+    @Override
+    public void onPagesReset() {
+        notifyDataSetChanged();
+    }
 
-        // Find the TextView with view ID time
-        TextView timeView = (TextView) listItemView.findViewById(R.id.time);
-        // Format the time string (i.e. "4:30PM")
-        String formattedTime = formatTime(dateObject);
-        // Display the time of the current earthquake in that TextView
-        timeView.setText(formattedTime);
+    @Override
+    public void onPageLoaded(int positionStart, int itemCount, int oldCount, int newCount) {
+        // Rows of the page that were already counted showed placeholders until now
+        int changedCount = Math.min(positionStart + itemCount, Math.min(oldCount, newCount))
+                - positionStart;
+        if (changedCount > 0) {
+            notifyItemRangeChanged(positionStart, changedCount);
+        }
+        if (newCount > oldCount) {
+            notifyItemRangeInserted(oldCount, newCount - oldCount);
+        } else if (newCount < oldCount) {
+            // A short page revealed the end of the list
+            notifyItemRangeRemoved(newCount, oldCount - newCount);
+        }
+    }
 
-        return listItemView;
+    @Override
+    public void onPageFailed(int positionStart, int oldCount, int newCount) {
+        // The rows of the page stay placeholders until it is requested again
+        if (newCount > oldCount) {
+            notifyItemRangeInserted(oldCount, newCount - oldCount);
+        }
     }
 
-    /**
-     * Return the formatted date string (i.e. "Mar 3, 1984") from a Date object.
-     */
-    private String formatDate(Date dateObject) {
-        SimpleDateFormat dateFormat = new SimpleDateFormat("MMM dd, yyyy", Locale.getDefault());
-        return dateFormat.format(dateObject);
+    @Override
+    public void onInserted(int position, int count) {
+        notifyItemRangeInserted(position, count);
     }
 
-    /**
-     * Return the formatted date string (i.e. "4:30 PM") from a Date object.
-     */
-    private String formatTime(Date dateObject) {
-        SimpleDateFormat timeFormat = new SimpleDateFormat("h:mm a", Locale.getDefault());
-        return timeFormat.format(dateObject);
+    @Override
+    public void onRemoved(int position, int count) {
+        notifyItemRangeRemoved(position, count);
     }
 
-    /**
-     * Splits original location into two sub-strings
-     *
-     * @param location original location
-     * @return array of strings containing location sub-strings
-     */
-    private String[] splitLocation(String location) {
-        String[] result = new String[2];
-        if (location.contains(LOCATION_SEPARATOR)) {
-            result = location.split(LOCATION_SEPARATOR);
-            result[0] = getLocalizedOffset(result[0]);
-        } else {
-            result[0] = getContext().getString(R.string.near_the);
-            result[1] = location;
-        }
-        return result;
+    @Override
+    public void onMoved(int fromPosition, int toPosition) {
+        notifyItemMoved(fromPosition, toPosition);
     }
 
-    /**
-     * Return the formatted magnitude string showing 1 decimal place (i.e. "3.2")
-     * from a decimal magnitude value.
-     */
-    private String formatMagnitude(double magnitude) {
-        DecimalFormat magnitudeFormat = new DecimalFormat("0.0");
-        return magnitudeFormat.format(magnitude);
-    }
-
-    private int getMagnitudeColor(double magnitude) {
-        int magnitudeColorResourceId;
-        int magnitudeFloor = (int) Math.floor(magnitude);
-        switch (magnitudeFloor) {
-            case 0:
-            case 1:
-                magnitudeColorResourceId = R.color.magnitude1;
-                break;
-            case 2:
-                magnitudeColorResourceId = R.color.magnitude2;
-                break;
-            case 3:
-                magnitudeColorResourceId = R.color.magnitude3;
-                break;
-            case 4:
-                magnitudeColorResourceId = R.color.magnitude4;
-                break;
-            case 5:
-                magnitudeColorResourceId = R.color.magnitude5;
-                break;
-            case 6:
-                magnitudeColorResourceId = R.color.magnitude6;
-                break;
-            case 7:
-                magnitudeColorResourceId = R.color.magnitude7;
-                break;
-            case 8:
-                magnitudeColorResourceId = R.color.magnitude8;
-                break;
-            case 9:
-                magnitudeColorResourceId = R.color.magnitude9;
-                break;
-            default:
-                magnitudeColorResourceId = R.color.magnitude10plus;
-                break;
-        }
-        return ContextCompat.getColor(getContext(), magnitudeColorResourceId);
+    @Override
+    public void onChanged(int position, int count) {
+        notifyItemRangeChanged(position, count);
     }
 
     /**
-     * Localizes Offset distance and orientation (43km WNW of..)
-     * This method ony gets called when the offset string contains "of"
-     *
-     * @param offsetString String of the distance and direction offset
-     * @return Localized offset according to available locales in the app
+     * Keeps the views of a list item, so they are only looked up when the item is inflated
      */
-    private String getLocalizedOffset(String offsetString) {
-        if (offsetString.contains(OFFSET_SEPARATOR)) {
-            String[] offsetParts = new String[2];
-            offsetParts = offsetString.split(OFFSET_SEPARATOR);
-            String km = offsetParts[0];
-            String direction = getLocalizedDirection(offsetParts[1]);
-            return getContext().getString(R.string.friendly_location, km, direction);
+    class ViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener {
+        final TextView magnitudeTextView;
+        final GradientDrawable magnitudeCircle;
+        final TextView locationOffsetTextView;
+        final TextView locationTextView;
+        final TextView dateTextView;
+        final TextView timeView;
+
+        ViewHolder(View listItemView) {
+            super(listItemView);
+            magnitudeTextView = (TextView) listItemView.findViewById(R.id.magnitude);
+            // The background of the magnitude TextView is a GradientDrawable.
+            magnitudeCircle = (GradientDrawable) magnitudeTextView.getBackground();
+            locationOffsetTextView = (TextView) listItemView.findViewById(R.id.location_offset);
+            locationTextView = (TextView) listItemView.findViewById(R.id.primary_location);
+            dateTextView = (TextView) listItemView.findViewById(R.id.date);
+            timeView = (TextView) listItemView.findViewById(R.id.time);
+            listItemView.setOnClickListener(this);
         }
-        // if string contains "of" but not "km" return original offset string in english
-        return offsetString + LOCATION_SEPARATOR;
-    }
 
-    /**
-     * Localizes earthquake direction according to available locales
-     *
-     * @param direction The direction in english
-     * @return The localized direction if available in app
-     */
-    private String getLocalizedDirection(String direction) {
-        switch (direction) {
-            case " N":
-                return getContext().getString(R.string.orientation_N);
-            case " NE":
-                return getContext().getString(R.string.orientation_NE);
-            case " NW":
-                return getContext().getString(R.string.orientation_NW);
-            case " NNE":
-                return getContext().getString(R.string.orientation_NNE);
-            case " NNW":
-                return getContext().getString(R.string.orientation_N);
-            case " S":
-                return getContext().getString(R.string.orientation_S);
-            case " SE":
-                return getContext().getString(R.string.orientation_SE);
-            case " SW":
-                return getContext().getString(R.string.orientation_SW);
-            case " SSE":
-                return getContext().getString(R.string.orientation_SSE);
-            case " SSW":
-                return getContext().getString(R.string.orientation_SSW);
-            case " E":
-                return getContext().getString(R.string.orientation_E);
-            case " ENE":
-                return getContext().getString(R.string.orientation_ENE);
-            case " ESE":
-                return getContext().getString(R.string.orientation_ESE);
-            case " W":
-                return getContext().getString(R.string.orientation_W);
-            case " WNW":
-                return getContext().getString(R.string.orientation_WNW);
-            case " WSW":
-                return getContext().getString(R.string.orientation_WSW);
+        void bind(EarthquakeDisplay display) {
+            magnitudeTextView.setText(display.getMagnitude());
+            // Set the proper background color on the magnitude circle.
+            magnitudeCircle.setColor(display.getMagnitudeColor());
+            locationOffsetTextView.setText(display.getLocationOffset());
+            locationTextView.setText(display.getPrimaryLocation());
+            dateTextView.setText(display.getDate());
+            timeView.setText(display.getTime());
+        }
+
+        void bindPlaceholder(int color) {
+            magnitudeTextView.setText(null);
+            magnitudeCircle.setColor(color);
+            locationOffsetTextView.setText(null);
+            locationTextView.setText(null);
+            dateTextView.setText(null);
+            timeView.setText(null);
+        }
+
+        @Override
+        public void onClick(View view) {
+            int position = getAdapterPosition();
+            if (position == RecyclerView.NO_POSITION) {
+                return;
+            }
+            EarthquakeTable.Cursor earthquake = getItem(position);
+            if (earthquake != null) {
+                mClickListener.onEarthquakeClick(earthquake);
+            }
         }
-        return direction;
     }
 }
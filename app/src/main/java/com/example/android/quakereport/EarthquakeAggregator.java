@@ -0,0 +1,448 @@
+package com.example.android.quakereport;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aggregates the earthquakes of a table from a magnitude and a start time on (i.e. "M4+ this
+ * week"): counts per magnitude band, the bands of {@link EarthquakeFormatter#getMagnitudeColor},
+ * counts per hour and per day, and counts per region, the primary location of the place
+ * strings. What every row added is remembered, so changed rows are applied with
+ * {@link #update} instead of aggregating the table again.
+ * <p>
+ * Large tables are aggregated in slices on an executor, each into partial counts merged at
+ * the end. This class has no Android dependencies. It is not thread-safe.
+ */
+public class EarthquakeAggregator {
+
+    public static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+    public static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * Number of rows below which a table is aggregated on the calling thread
+     */
+    static final int PARALLEL_THRESHOLD = 16384;
+
+    private final EarthquakeTable mTable;
+    private final double mMinMagnitude;
+    private final long mSinceMillis;
+    private final TimeZone mTimeZone;
+
+    /**
+     * Region of every place code of the table, for the codes mapped so far
+     */
+    private int[] mPlaceRegions = new int[0];
+    private int mMappedPlaces;
+
+    private final List<String> mRegions = new ArrayList<>();
+    private final Map<String, Integer> mRegionIds = new HashMap<>();
+
+    /**
+     * Magnitude band, 0 if it was not counted, and hour, day and region every row was counted
+     * in, for the rows aggregated so far
+     */
+    private int[] mRowBands = new int[0];
+    private int[] mRowHours = new int[0];
+    private int[] mRowDays = new int[0];
+    private int[] mRowRegions = new int[0];
+
+    private Counts mCounts = new Counts();
+
+    /**
+     * Constructs a new {@link EarthquakeAggregator}; nothing is counted until {@link #aggregate}
+     *
+     * @param table        earthquakes to aggregate
+     * @param minMagnitude smallest magnitude counted
+     * @param sinceMillis  earliest time counted
+     * @param timeZone     time zone hours and days are counted in
+     */
+    public EarthquakeAggregator(EarthquakeTable table, double minMagnitude, long sinceMillis,
+                                TimeZone timeZone) {
+        mTable = table;
+        mMinMagnitude = minMagnitude;
+        mSinceMillis = sinceMillis;
+        mTimeZone = timeZone;
+    }
+
+    public double getMinMagnitude() {
+        return mMinMagnitude;
+    }
+
+    public long getSinceMillis() {
+        return mSinceMillis;
+    }
+
+    /**
+     * Counts every row of the table on the calling thread
+     */
+    public void aggregate() {
+        mapPlaces();
+        prepareRows();
+        Counts counts = new Counts();
+        countRows(0, mTable.size(), counts);
+        mCounts = counts;
+    }
+
+    /**
+     * Counts every row of the table, in slices on the executor when the table is large.
+     * Waits for the slices; must not be called from a thread of the executor.
+     *
+     * @param executor    executor the slices run on
+     * @param parallelism number of slices
+     */
+    public void aggregate(Executor executor, int parallelism) throws InterruptedException {
+        int size = mTable.size();
+        if (parallelism < 2 || size < PARALLEL_THRESHOLD) {
+            aggregate();
+            return;
+        }
+        mapPlaces();
+        prepareRows();
+
+        List<FutureTask<Counts>> slices = new ArrayList<>(parallelism);
+        int sliceSize = (size + parallelism - 1) / parallelism;
+        for (int start = 0; start < size; start += sliceSize) {
+            final int sliceStart = start;
+            final int sliceEnd = Math.min(size, start + sliceSize);
+            FutureTask<Counts> slice = new FutureTask<>(new Callable<Counts>() {
+                @Override
+                public Counts call() {
+                    // Slices write the remembered values of their own rows only
+                    Counts counts = new Counts();
+                    countRows(sliceStart, sliceEnd, counts);
+                    return counts;
+                }
+            });
+            slices.add(slice);
+            executor.execute(slice);
+        }
+
+        Counts counts = new Counts();
+        for (FutureTask<Counts> slice : slices) {
+            counts.add(join(slice));
+        }
+        mCounts = counts;
+    }
+
+    /**
+     * Applies rows that were inserted or overwritten since the last aggregation: what they
+     * added before is taken back and they are counted again
+     *
+     * @param rows rows of the table, as returned by {@link EarthquakeQueryEngine#apply}
+     */
+    public void update(int[] rows) {
+        mapPlaces();
+        int counted = mRowBands.length;
+        prepareRows();
+        for (int row : rows) {
+            if (row < counted) {
+                uncount(row, mCounts);
+                count(row, mCounts);
+            }
+        }
+        // Every row added to the table since is new
+        countRows(counted, mTable.size(), mCounts);
+    }
+
+    /**
+     * Returns the number of earthquakes counted
+     */
+    public int getCount() {
+        return mCounts.mTotal;
+    }
+
+    /**
+     * Returns the number of earthquakes of every magnitude band, indexed by
+     * {@link EarthquakeFormats#getMagnitudeBand} - 1
+     */
+    public int[] getMagnitudeBandCounts() {
+        return mCounts.mBands.clone();
+    }
+
+    /**
+     * Returns the number of earthquakes of every hour, in the time zone of the aggregator
+     */
+    public TimeSeries getHourlyCounts() {
+        return new TimeSeries(mCounts.mHours, HOUR_MILLIS);
+    }
+
+    /**
+     * Returns the number of earthquakes of every day, in the time zone of the aggregator
+     */
+    public TimeSeries getDailyCounts() {
+        return new TimeSeries(mCounts.mDays, DAY_MILLIS);
+    }
+
+    /**
+     * Returns the regions with the most earthquakes, most first
+     *
+     * @param limit largest number of regions returned
+     */
+    public List<RegionCount> getTopRegions(int limit) {
+        int[] counts = mCounts.mRegions;
+        List<RegionCount> top = new ArrayList<>(limit);
+        boolean[] taken = new boolean[counts.length];
+        // Repeated selection: the limit is a handful of regions out of many
+        while (top.size() < limit) {
+            int best = -1;
+            for (int region = 0; region < counts.length; region++) {
+                if (!taken[region] && counts[region] > 0
+                        && (best < 0 || counts[region] > counts[best])) {
+                    best = region;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            taken[best] = true;
+            top.add(new RegionCount(mRegions.get(best), counts[best]));
+        }
+        return top;
+    }
+
+    /**
+     * Maps the place codes added to the table since the last call to their region, the
+     * primary location the table keeps apart
+     */
+    private void mapPlaces() {
+        int placeCount = mTable.getPlaceCount();
+        String[] regions = new String[placeCount - mMappedPlaces];
+        for (int i = 0; i < regions.length; i++) {
+            regions[i] = mTable.getPlacePrimary(mMappedPlaces + i);
+        }
+        addPlaces(regions);
+    }
+
+    /**
+     * Gives the codes past the mapped ones the ids of their regions
+     */
+    private void addPlaces(String[] regions) {
+        int placeCount = mMappedPlaces + regions.length;
+        if (mPlaceRegions.length < placeCount) {
+            mPlaceRegions = Arrays.copyOf(mPlaceRegions,
+                    Math.max(placeCount, mPlaceRegions.length * 2));
+        }
+        for (int i = 0; i < regions.length; i++) {
+            String region = regions[i];
+            Integer id = mRegionIds.get(region);
+            if (id == null) {
+                id = mRegions.size();
+                mRegions.add(region);
+                mRegionIds.put(region, id);
+            }
+            mPlaceRegions[mMappedPlaces + i] = id;
+        }
+        mMappedPlaces = placeCount;
+    }
+
+    /**
+     * Makes room for the remembered values of every row of the table
+     */
+    private void prepareRows() {
+        int size = mTable.size();
+        if (mRowBands.length < size) {
+            mRowBands = Arrays.copyOf(mRowBands, size);
+            mRowHours = Arrays.copyOf(mRowHours, size);
+            mRowDays = Arrays.copyOf(mRowDays, size);
+            mRowRegions = Arrays.copyOf(mRowRegions, size);
+        }
+    }
+
+    private void countRows(int start, int end, Counts counts) {
+        for (int row = start; row < end; row++) {
+            count(row, counts);
+        }
+    }
+
+    /**
+     * Counts the row if it matches, and remembers what it added
+     */
+    private void count(int row, Counts counts) {
+        mRowBands[row] = 0;
+        if (mTable.isDeleted(row)) {
+            return;
+        }
+        double magnitude = mTable.getMagnitude(row);
+        long time = mTable.getTimeInMilliseconds(row);
+        if (magnitude < mMinMagnitude || time < mSinceMillis) {
+            return;
+        }
+        long localTime = time + mTimeZone.getOffset(time);
+        int band = EarthquakeFormats.getMagnitudeBand(magnitude);
+        int hour = (int) floorDiv(localTime, HOUR_MILLIS);
+        int day = (int) floorDiv(localTime, DAY_MILLIS);
+        int region = mPlaceRegions[mTable.getPlaceCode(row)];
+        counts.add(band, hour, day, region, 1);
+        mRowBands[row] = band;
+        mRowHours[row] = hour;
+        mRowDays[row] = day;
+        mRowRegions[row] = region;
+    }
+
+    /**
+     * Takes back what the row added when it was counted
+     */
+    private void uncount(int row, Counts counts) {
+        int band = mRowBands[row];
+        if (band != 0) {
+            counts.add(band, mRowHours[row], mRowDays[row], mRowRegions[row], -1);
+            mRowBands[row] = 0;
+        }
+    }
+
+    private static <T> T join(FutureTask<T> slice) throws InterruptedException {
+        try {
+            return slice.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static long floorDiv(long value, long divisor) {
+        long quotient = value / divisor;
+        return value % divisor < 0 ? quotient - 1 : quotient;
+    }
+
+    /**
+     * Counts of every aggregate, for the whole table or one slice of it
+     */
+    private static class Counts {
+        private int mTotal;
+        private final int[] mBands = new int[EarthquakeFormats.MAGNITUDE_BANDS];
+        private final Buckets mHours = new Buckets();
+        private final Buckets mDays = new Buckets();
+        private int[] mRegions = new int[16];
+
+        void add(int band, int hour, int day, int region, int delta) {
+            mTotal += delta;
+            mBands[band - 1] += delta;
+            mHours.add(hour, delta);
+            mDays.add(day, delta);
+            if (region >= mRegions.length) {
+                mRegions = Arrays.copyOf(mRegions, Math.max(region + 1, mRegions.length * 2));
+            }
+            mRegions[region] += delta;
+        }
+
+        void add(Counts other) {
+            mTotal += other.mTotal;
+            for (int band = 0; band < mBands.length; band++) {
+                mBands[band] += other.mBands[band];
+            }
+            mHours.add(other.mHours);
+            mDays.add(other.mDays);
+            if (other.mRegions.length > mRegions.length) {
+                mRegions = Arrays.copyOf(mRegions, other.mRegions.length);
+            }
+            for (int region = 0; region < other.mRegions.length; region++) {
+                mRegions[region] += other.mRegions[region];
+            }
+        }
+    }
+
+    /**
+     * Counts of consecutive time buckets, growing to cover every bucket added
+     */
+    private static class Buckets {
+        private int mFirst;
+        private int[] mCounts = new int[0];
+
+        void add(int bucket, int delta) {
+            if (mCounts.length == 0) {
+                mFirst = bucket;
+                mCounts = new int[16];
+            } else if (bucket < mFirst) {
+                int grow = Math.max(mFirst - bucket, mCounts.length);
+                int[] counts = new int[mCounts.length + grow];
+                System.arraycopy(mCounts, 0, counts, grow, mCounts.length);
+                mCounts = counts;
+                mFirst -= grow;
+            } else if (bucket - mFirst >= mCounts.length) {
+                mCounts = Arrays.copyOf(mCounts,
+                        Math.max(bucket - mFirst + 1, mCounts.length * 2));
+            }
+            mCounts[bucket - mFirst] += delta;
+        }
+
+        void add(Buckets other) {
+            for (int i = 0; i < other.mCounts.length; i++) {
+                if (other.mCounts[i] != 0) {
+                    add(other.mFirst + i, other.mCounts[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Number of earthquakes of consecutive hours or days, from the first with an earthquake to
+     * the last
+     */
+    public static class TimeSeries {
+        private final long mBucketMillis;
+        private final int mFirst;
+        private final int[] mCounts;
+
+        TimeSeries(Buckets buckets, long bucketMillis) {
+            mBucketMillis = bucketMillis;
+            int start = 0;
+            int end = buckets.mCounts.length;
+            while (start < end && buckets.mCounts[start] == 0) {
+                start++;
+            }
+            while (end > start && buckets.mCounts[end - 1] == 0) {
+                end--;
+            }
+            mFirst = buckets.mFirst + start;
+            mCounts = Arrays.copyOfRange(buckets.mCounts, start, end);
+        }
+
+        public int size() {
+            return mCounts.length;
+        }
+
+        /**
+         * Returns the start of the bucket as a local time in the time zone of the aggregator,
+         * in milliseconds since the epoch
+         */
+        public long getLocalStartMillis(int index) {
+            return (mFirst + index) * mBucketMillis;
+        }
+
+        public int getCount(int index) {
+            return mCounts[index];
+        }
+    }
+
+    /**
+     * Number of earthquakes of a region
+     */
+    public static class RegionCount {
+        private final String mRegion;
+        private final int mCount;
+
+        RegionCount(String region, int count) {
+            mRegion = region;
+            mCount = count;
+        }
+
+        /**
+         * Returns the primary location of the region (i.e. "Anchorage, Alaska")
+         */
+        public String getRegion() {
+            return mRegion;
+        }
+
+        public int getCount() {
+            return mCount;
+        }
+    }
+}
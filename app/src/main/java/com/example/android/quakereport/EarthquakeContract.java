@@ -0,0 +1,86 @@
+package com.example.android.quakereport;
+
+import android.provider.BaseColumns;
+
+/**
+ * API Contract for the local earthquake database.
+ */
+public final class EarthquakeContract {
+
+    private EarthquakeContract() {
+    }
+
+    /**
+     * Inner class that defines constant values for the earthquakes database table.
+     * Each entry in the table represents a single USGS event.
+     */
+    public static final class EarthquakeEntry implements BaseColumns {
+
+        public static final String TABLE_NAME = "earthquakes";
+
+        public static final String _ID = BaseColumns._ID;
+
+        /**
+         * USGS event id, unique for every earthquake. Type: TEXT
+         */
+        public static final String COLUMN_EVENT_ID = "event_id";
+
+        /**
+         * Magnitude of the earthquake. Type: REAL
+         */
+        public static final String COLUMN_MAGNITUDE = "magnitude";
+
+        /**
+         * Place string as returned by USGS (i.e. "43km WNW of Anchorage, Alaska"). Type: TEXT
+         */
+        public static final String COLUMN_LOCATION = "location";
+
+        /**
+         * Origin time in milliseconds from Epoch. Type: INTEGER
+         */
+        public static final String COLUMN_TIME = "time";
+
+        /**
+         * Time in milliseconds from Epoch the event was last updated by USGS. Type: INTEGER
+         */
+        public static final String COLUMN_UPDATED = "updated";
+
+        /**
+         * Url address for details of the earthquake. Type: TEXT
+         */
+        public static final String COLUMN_URL = "url";
+
+        /**
+         * Longitude of the epicenter in degrees, NULL if unknown. Type: REAL
+         */
+        public static final String COLUMN_LONGITUDE = "longitude";
+
+        /**
+         * Latitude of the epicenter in degrees, NULL if unknown. Type: REAL
+         */
+        public static final String COLUMN_LATITUDE = "latitude";
+
+        /**
+         * Depth of the hypocenter in kilometers, NULL if unknown. Type: REAL
+         */
+        public static final String COLUMN_DEPTH = "depth";
+    }
+
+    /**
+     * Inner class that defines the table keeping the sync high-water mark of every query.
+     */
+    public static final class SyncStateEntry implements BaseColumns {
+
+        public static final String TABLE_NAME = "sync_state";
+
+        /**
+         * Normalized request url the high-water mark belongs to. Type: TEXT
+         */
+        public static final String COLUMN_QUERY = "query";
+
+        /**
+         * Latest "updated" time seen for the query, in milliseconds from Epoch. Type: INTEGER
+         */
+        public static final String COLUMN_UPDATED = "updated";
+    }
+}
@@ -0,0 +1,432 @@
+package com.example.android.quakereport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+
+/**
+ * Streaming reader for the USGS {@code format=csv} and {@code format=text} responses, and the
+ * csv summary feeds. They hold one line per event with far fewer fields than GeoJSON, so there
+ * is less to download and less to skip. The columns are found by the names of the header line;
+ * the text format starts its header with '#' and separates fields with '|'.
+ * <p>
+ * Numbers and times are read straight from the line buffer, so the id and place are the only
+ * objects made per event. The text format has no update time, so the event time stands in for
+ * it, and no deleted events.
+ * <p>
+ * The summary feeds are not filtered by event type or magnitude. Events of another type, i.e.
+ * quarry blasts, are read as deleted, so an event reclassified as one leaves the store; events
+ * without a magnitude are skipped, there is nothing to show of them.
+ * <p>
+ * This class has no Android dependencies so it can be exercised on a plain JVM.
+ */
+public final class EarthquakeCsvParser {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final long DAY_MILLIS = 86400000L;
+
+    /**
+     * Powers of ten a decimal with at most 15 digits is exactly divided by
+     */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+    };
+    private static final int MAX_FAST_DIGITS = 15;
+
+    /**
+     * Column names of each format, in the order of {@link #ID} to {@link #TYPE}
+     */
+    private static final String[] CSV_COLUMNS = {
+            "id", "time", "updated", "mag", "place", "longitude", "latitude", "depth", "status",
+            "type"
+    };
+    private static final String[] TEXT_COLUMNS = {
+            "EventID", "Time", null, "Magnitude", "EventLocationName", "Longitude", "Latitude",
+            "Depth/km", null, "EventType"
+    };
+
+    private static final int ID = 0;
+    private static final int TIME = 1;
+    private static final int UPDATED = 2;
+    private static final int MAGNITUDE = 3;
+    private static final int PLACE = 4;
+    private static final int LONGITUDE = 5;
+    private static final int LATITUDE = 6;
+    private static final int DEPTH = 7;
+    private static final int STATUS = 8;
+    /**
+     * Optional column, a response without it is read as holding earthquakes only
+     */
+    private static final int TYPE = 9;
+
+    private static final char[] DELETED = "deleted".toCharArray();
+    private static final char[] EARTHQUAKE = "earthquake".toCharArray();
+
+    private EarthquakeCsvParser() {
+    }
+
+    /**
+     * Parses the stream and appends every earthquake to the given table. If the response is
+     * malformed part way through, the earthquakes read so far are kept in the table and an
+     * {@link IOException} is thrown.
+     *
+     * @param inputStream stream containing a USGS csv or text response
+     * @param table       table the earthquakes are appended to
+     * @return number of rows appended, deleted ones included
+     */
+    public static int parse(InputStream inputStream, EarthquakeTable table) throws IOException {
+        LineReader reader = new LineReader(new InputStreamReader(inputStream, UTF_8));
+        if (!reader.readLine()) {
+            // No events, the text format may not even have a header
+            return 0;
+        }
+        int[] columns = readHeader(reader);
+
+        int count = 0;
+        while (reader.readLine()) {
+            if (reader.isBlank()) {
+                continue;
+            }
+            String id = reader.getString(columns[ID]);
+            long updated = reader.getTime(columns[UPDATED]);
+            if (id.isEmpty()) {
+                throw malformed(reader, "Event without id");
+            }
+            if ((columns[STATUS] >= 0 && reader.equals(columns[STATUS], DELETED))
+                    || !isEarthquake(reader, columns[TYPE])) {
+                table.addDeleted(id, updated);
+            } else {
+                double magnitude = reader.getDouble(columns[MAGNITUDE]);
+                if (Double.isNaN(magnitude)) {
+                    // Nothing to show of it, and it must not cost the rest of the feed
+                    continue;
+                }
+                table.add(id, magnitude, reader.getString(columns[PLACE]),
+                        reader.getTime(columns[TIME]), updated, null,
+                        reader.getDouble(columns[LONGITUDE]), reader.getDouble(columns[LATITUDE]),
+                        reader.getDouble(columns[DEPTH]));
+            }
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns false if the type field names another type of event than an earthquake. A
+     * missing or empty type passes.
+     */
+    private static boolean isEarthquake(LineReader reader, int typeField) throws IOException {
+        return typeField < 0 || reader.isEmpty(typeField) || reader.equals(typeField, EARTHQUAKE);
+    }
+
+    /**
+     * Finds the field of every column in the header line
+     *
+     * @return index of the field of each column, -1 for a column the format does not have
+     */
+    private static int[] readHeader(LineReader reader) throws IOException {
+        String[] names = CSV_COLUMNS;
+        if (reader.startsWith('#')) {
+            names = TEXT_COLUMNS;
+            reader.setDelimiter('|');
+        }
+        int[] columns = new int[names.length];
+        for (int column = 0; column < names.length; column++) {
+            columns[column] = -1;
+            for (int field = 0; field < reader.getFieldCount() && names[column] != null; field++) {
+                String name = reader.getString(field);
+                if (names[column].equals(field == 0 && names == TEXT_COLUMNS
+                        ? name.substring(1).trim() : name.trim())) {
+                    columns[column] = field;
+                    break;
+                }
+            }
+            if (columns[column] < 0 && names[column] != null && column != TYPE) {
+                throw malformed(reader, "Missing column " + names[column]);
+            }
+        }
+        if (columns[UPDATED] < 0) {
+            columns[UPDATED] = columns[TIME];
+        }
+        return columns;
+    }
+
+    private static IOException malformed(LineReader reader, String message) {
+        return new IOException(message + " at line " + reader.getLineNumber());
+    }
+
+    /**
+     * Reads a line at a time into one reused buffer, unquoting csv fields, and parses fields
+     * from the buffer
+     */
+    private static final class LineReader {
+        private final Reader mReader;
+        private final char[] mInput = new char[8192];
+        private int mInputPosition;
+        private int mInputLimit;
+
+        private char mDelimiter = ',';
+        private char[] mLine = new char[256];
+        private int[] mFieldStarts = new int[32];
+        private int[] mFieldEnds = new int[32];
+        private int mFieldCount;
+        private int mLineNumber;
+
+        LineReader(Reader reader) {
+            mReader = reader;
+        }
+
+        void setDelimiter(char delimiter) {
+            mDelimiter = delimiter;
+            // Split the line already read again
+            int length = mFieldEnds[mFieldCount - 1];
+            mFieldCount = 0;
+            int start = 0;
+            for (int i = 0; i <= length; i++) {
+                if (i == length || mLine[i] == delimiter) {
+                    addField(start, i);
+                    start = i + 1;
+                }
+            }
+        }
+
+        /**
+         * Reads the next line
+         *
+         * @return false at the end of the stream
+         */
+        boolean readLine() throws IOException {
+            int length = 0;
+            int fieldStart = 0;
+            boolean quoted = false;
+            boolean any = false;
+            mFieldCount = 0;
+            while (true) {
+                if (mInputPosition == mInputLimit) {
+                    mInputLimit = mReader.read(mInput, 0, mInput.length);
+                    mInputPosition = 0;
+                    if (mInputLimit <= 0) {
+                        mInputLimit = 0;
+                        if (!any) {
+                            return false;
+                        }
+                        if (quoted) {
+                            throw malformed(this, "Unterminated quote");
+                        }
+                        break;
+                    }
+                }
+                char c = mInput[mInputPosition++];
+                any = true;
+                if (quoted) {
+                    if (c == '"') {
+                        if (peek() == '"') {
+                            mInputPosition++;
+                        } else {
+                            quoted = false;
+                            continue;
+                        }
+                    }
+                } else if (c == '\n') {
+                    break;
+                } else if (c == '\r') {
+                    continue;
+                } else if (c == '"' && mDelimiter == ',') {
+                    quoted = true;
+                    continue;
+                } else if (c == mDelimiter) {
+                    addField(fieldStart, length);
+                    fieldStart = length;
+                    continue;
+                }
+                if (length == mLine.length) {
+                    char[] line = new char[length * 2];
+                    System.arraycopy(mLine, 0, line, 0, length);
+                    mLine = line;
+                }
+                mLine[length++] = c;
+            }
+            addField(fieldStart, length);
+            mLineNumber++;
+            return true;
+        }
+
+        /**
+         * Returns the next input character without consuming it, or 0 at the end of the
+         * stream. Only called inside quotes, so refilling the input loses nothing.
+         */
+        private char peek() throws IOException {
+            if (mInputPosition == mInputLimit) {
+                mInputLimit = mReader.read(mInput, 0, mInput.length);
+                mInputPosition = 0;
+                if (mInputLimit <= 0) {
+                    mInputLimit = 0;
+                    return 0;
+                }
+            }
+            return mInput[mInputPosition];
+        }
+
+        private void addField(int start, int end) {
+            if (mFieldCount == mFieldStarts.length) {
+                int[] starts = new int[mFieldCount * 2];
+                int[] ends = new int[mFieldCount * 2];
+                System.arraycopy(mFieldStarts, 0, starts, 0, mFieldCount);
+                System.arraycopy(mFieldEnds, 0, ends, 0, mFieldCount);
+                mFieldStarts = starts;
+                mFieldEnds = ends;
+            }
+            mFieldStarts[mFieldCount] = start;
+            mFieldEnds[mFieldCount] = end;
+            mFieldCount++;
+        }
+
+        int getFieldCount() {
+            return mFieldCount;
+        }
+
+        int getLineNumber() {
+            return mLineNumber;
+        }
+
+        boolean isBlank() {
+            return mFieldCount == 1 && mFieldEnds[0] == 0;
+        }
+
+        boolean startsWith(char c) {
+            return mFieldEnds[0] > 0 && mLine[0] == c;
+        }
+
+        String getString(int field) throws IOException {
+            checkField(field);
+            return new String(mLine, mFieldStarts[field], mFieldEnds[field] - mFieldStarts[field]);
+        }
+
+        boolean isEmpty(int field) throws IOException {
+            checkField(field);
+            return mFieldStarts[field] == mFieldEnds[field];
+        }
+
+        boolean equals(int field, char[] value) throws IOException {
+            checkField(field);
+            int start = mFieldStarts[field];
+            if (mFieldEnds[field] - start != value.length) {
+                return false;
+            }
+            for (int i = 0; i < value.length; i++) {
+                if (mLine[start + i] != value[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Parses a decimal number, or returns NaN for an empty field. Plain decimals of up to
+         * 15 digits, i.e. every USGS value, are parsed without allocating; anything else goes
+         * through {@link Double#parseDouble}.
+         */
+        double getDouble(int field) throws IOException {
+            checkField(field);
+            int start = mFieldStarts[field];
+            int end = mFieldEnds[field];
+            if (start == end) {
+                return Double.NaN;
+            }
+            int i = start;
+            boolean negative = mLine[i] == '-';
+            if (negative || mLine[i] == '+') {
+                i++;
+            }
+            long mantissa = 0;
+            int digits = 0;
+            int decimals = -1;
+            for (; i < end; i++) {
+                char c = mLine[i];
+                if (c >= '0' && c <= '9') {
+                    mantissa = mantissa * 10 + (c - '0');
+                    digits++;
+                    if (decimals >= 0) {
+                        decimals++;
+                    }
+                } else if (c == '.' && decimals < 0) {
+                    decimals = 0;
+                } else {
+                    break;
+                }
+            }
+            if (i == end && digits > 0 && digits <= MAX_FAST_DIGITS) {
+                // Both the mantissa and the power of ten are exact, so is their quotient
+                double value = decimals > 0 ? mantissa / POWERS_OF_TEN[decimals] : mantissa;
+                return negative ? -value : value;
+            }
+            try {
+                return Double.parseDouble(getString(field));
+            } catch (NumberFormatException e) {
+                throw malformed(this, "Malformed number");
+            }
+        }
+
+        /**
+         * Parses an ISO 8601 UTC time, i.e. "2017-06-25T11:32:07.040Z", with or without the
+         * fraction of a second and the zone
+         */
+        long getTime(int field) throws IOException {
+            checkField(field);
+            int i = mFieldStarts[field];
+            int end = mFieldEnds[field];
+            if (end - i < 19 || mLine[i + 4] != '-' || mLine[i + 7] != '-'
+                    || mLine[i + 10] != 'T' || mLine[i + 13] != ':' || mLine[i + 16] != ':') {
+                throw malformed(this, "Malformed time");
+            }
+            long year = getDigits(i, 4);
+            long month = getDigits(i + 5, 2);
+            long day = getDigits(i + 8, 2);
+            long millis = getDigits(i + 11, 2) * 3600000 + getDigits(i + 14, 2) * 60000
+                    + getDigits(i + 17, 2) * 1000;
+            i += 19;
+            if (i < end && mLine[i] == '.') {
+                int scale = 100;
+                for (i++; i < end && mLine[i] >= '0' && mLine[i] <= '9'; i++) {
+                    millis += (mLine[i] - '0') * scale;
+                    scale /= 10;
+                }
+            }
+            if (i < end && !(mLine[i] == 'Z' && i + 1 == end)) {
+                throw malformed(this, "Time not in UTC");
+            }
+            if (month < 1 || month > 12 || day < 1 || day > 31) {
+                throw malformed(this, "Malformed time");
+            }
+            // Day count from the epoch of a civil date, after Howard Hinnant's days_from_civil
+            year -= month <= 2 ? 1 : 0;
+            long era = (year >= 0 ? year : year - 399) / 400;
+            long yearOfEra = year - era * 400;
+            long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+            long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+            long days = era * 146097 + dayOfEra - 719468;
+            return days * DAY_MILLIS + millis;
+        }
+
+        private long getDigits(int start, int count) throws IOException {
+            long value = 0;
+            for (int i = start; i < start + count; i++) {
+                char c = mLine[i];
+                if (c < '0' || c > '9') {
+                    throw malformed(this, "Malformed time");
+                }
+                value = value * 10 + (c - '0');
+            }
+            return value;
+        }
+
+        private void checkField(int field) throws IOException {
+            if (field >= mFieldCount) {
+                throw malformed(this, "Missing field " + field);
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.android.quakereport;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import com.example.android.quakereport.EarthquakeContract.EarthquakeEntry;
+import com.example.android.quakereport.EarthquakeContract.SyncStateEntry;
+
+/**
+ * Database helper for the local earthquake store. Manages database creation and version management.
+ */
+public class EarthquakeDbHelper extends SQLiteOpenHelper {
+
+    /**
+     * Name of the database file
+     */
+    private static final String DATABASE_NAME = "earthquakes.db";
+
+    /**
+     * Database version. If you change the database schema, you must increment the database version.
+     */
+    private static final int DATABASE_VERSION = 2;
+
+    public EarthquakeDbHelper(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        String createEarthquakesTable = "CREATE TABLE " + EarthquakeEntry.TABLE_NAME + " ("
+                + EarthquakeEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + EarthquakeEntry.COLUMN_EVENT_ID + " TEXT NOT NULL UNIQUE, "
+                + EarthquakeEntry.COLUMN_MAGNITUDE + " REAL NOT NULL, "
+                + EarthquakeEntry.COLUMN_LOCATION + " TEXT NOT NULL, "
+                + EarthquakeEntry.COLUMN_TIME + " INTEGER NOT NULL, "
+                + EarthquakeEntry.COLUMN_UPDATED + " INTEGER NOT NULL, "
+                + EarthquakeEntry.COLUMN_URL + " TEXT NOT NULL, "
+                + EarthquakeEntry.COLUMN_LONGITUDE + " REAL, "
+                + EarthquakeEntry.COLUMN_LATITUDE + " REAL, "
+                + EarthquakeEntry.COLUMN_DEPTH + " REAL);";
+
+        String createSyncStateTable = "CREATE TABLE " + SyncStateEntry.TABLE_NAME + " ("
+                + SyncStateEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + SyncStateEntry.COLUMN_QUERY + " TEXT NOT NULL UNIQUE, "
+                + SyncStateEntry.COLUMN_UPDATED + " INTEGER NOT NULL);";
+
+        db.execSQL(createEarthquakesTable);
+        db.execSQL(createSyncStateTable);
+        db.execSQL("CREATE INDEX earthquakes_magnitude ON " + EarthquakeEntry.TABLE_NAME
+                + " (" + EarthquakeEntry.COLUMN_MAGNITUDE + ");");
+        db.execSQL("CREATE INDEX earthquakes_time ON " + EarthquakeEntry.TABLE_NAME
+                + " (" + EarthquakeEntry.COLUMN_TIME + ");");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // The database is only a cache of USGS data, so it can simply be rebuilt
+        db.execSQL("DROP TABLE IF EXISTS " + EarthquakeEntry.TABLE_NAME);
+        db.execSQL("DROP TABLE IF EXISTS " + SyncStateEntry.TABLE_NAME);
+        onCreate(db);
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.android.quakereport;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Changes of a live feed against the earthquakes already shown: the events that are new, the
+ * ones USGS updated since and the ones to take off the list, because USGS deleted them or they
+ * fell below the magnitude threshold. {@link Tracker} computes them from every polled feed.
+ * <p>
+ * This class has no Android dependencies.
+ */
+public class EarthquakeDelta {
+
+    private final EarthquakeTable mInserted;
+    private final EarthquakeTable mUpdated;
+    private final EarthquakeTable mRemoved;
+
+    public EarthquakeDelta(EarthquakeTable inserted, EarthquakeTable updated,
+                           EarthquakeTable removed) {
+        mInserted = inserted;
+        mUpdated = updated;
+        mRemoved = removed;
+    }
+
+    /**
+     * Returns the events that were not known yet
+     */
+    public EarthquakeTable getInserted() {
+        return mInserted;
+    }
+
+    /**
+     * Returns the new version of the known events that changed
+     */
+    public EarthquakeTable getUpdated() {
+        return mUpdated;
+    }
+
+    /**
+     * Returns the new version of the known events that leave the list: deleted rows, or rows
+     * below the magnitude threshold
+     */
+    public EarthquakeTable getRemoved() {
+        return mRemoved;
+    }
+
+    public boolean isEmpty() {
+        return mInserted.size() == 0 && mUpdated.size() == 0 && mRemoved.size() == 0;
+    }
+
+    /**
+     * Remembers the id and update time of every known event, so a polled feed only yields
+     * what changed. Not thread-safe: seed it and feed it from the same thread.
+     */
+    public static class Tracker {
+
+        private final Map<String, Long> mUpdatedById = new HashMap<>();
+
+        /**
+         * Forgets every known event and learns the ones of the table
+         */
+        public void reset(EarthquakeTable known) {
+            mUpdatedById.clear();
+            if (known == null) {
+                return;
+            }
+            for (int row = 0; row < known.size(); row++) {
+                if (!known.isDeleted(row)) {
+                    mUpdatedById.put(known.getId(row), known.getUpdated(row));
+                }
+            }
+        }
+
+        /**
+         * Returns what changed in the feed since the last call, and remembers it
+         *
+         * @param feed         events of a polled feed
+         * @param minMagnitude new events below this magnitude are ignored, known ones are
+         *                     removed
+         */
+        public EarthquakeDelta diff(EarthquakeTable feed, double minMagnitude) {
+            EarthquakeTable inserted = new EarthquakeTable(0);
+            EarthquakeTable updated = new EarthquakeTable(0);
+            EarthquakeTable removed = new EarthquakeTable(0);
+            for (int row = 0; row < feed.size(); row++) {
+                Long known = mUpdatedById.get(feed.getId(row));
+                if (feed.isDeleted(row) || feed.getMagnitude(row) < minMagnitude) {
+                    if (known != null) {
+                        // Would otherwise stay on the list as it was
+                        removed.addRow(feed, row);
+                        mUpdatedById.remove(feed.getId(row));
+                    }
+                    continue;
+                }
+                if (known == null) {
+                    inserted.addRow(feed, row);
+                } else if (feed.getUpdated(row) > known) {
+                    updated.addRow(feed, row);
+                } else {
+                    continue;
+                }
+                mUpdatedById.put(feed.getId(row), feed.getUpdated(row));
+            }
+            return new EarthquakeDelta(inserted, updated, removed);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.android.quakereport;
+
+/**
+ * Display-ready fields of an {@link Earthquake}, formatted once when the earthquake is loaded
+ * so binding a list row does not have to format or allocate anything.
+ */
+public class EarthquakeDisplay {
+
+    private final String mMagnitude;
+    private final int mMagnitudeColor;
+    private final String mLocationOffset;
+    private final String mPrimaryLocation;
+    private final String mDate;
+    private final String mTime;
+
+    /**
+     * Constructs a new {@link EarthquakeDisplay} object
+     *
+     * @param magnitude       magnitude with 1 decimal place (i.e. "3.2")
+     * @param magnitudeColor  color of the magnitude circle
+     * @param locationOffset  localized offset (i.e. "43KM WNW of") or "Near the"
+     * @param primaryLocation primary location (i.e. "Anchorage, Alaska")
+     * @param date            formatted date (i.e. "Mar 3, 1984")
+     * @param time            formatted time (i.e. "4:30 PM")
+     */
+    public EarthquakeDisplay(String magnitude, int magnitudeColor, String locationOffset,
+                             String primaryLocation, String date, String time) {
+        mMagnitude = magnitude;
+        mMagnitudeColor = magnitudeColor;
+        mLocationOffset = locationOffset;
+        mPrimaryLocation = primaryLocation;
+        mDate = date;
+        mTime = time;
+    }
+
+    public String getMagnitude() {
+        return mMagnitude;
+    }
+
+    public int getMagnitudeColor() {
+        return mMagnitudeColor;
+    }
+
+    public String getLocationOffset() {
+        return mLocationOffset;
+    }
+
+    public String getPrimaryLocation() {
+        return mPrimaryLocation;
+    }
+
+    public String getDate() {
+        return mDate;
+    }
+
+    public String getTime() {
+        return mTime;
+    }
+}
@@ -0,0 +1,721 @@
+package com.example.android.quakereport;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Streams earthquakes to a file as CSV, GeoJSON or a compact columnar binary format. The rows
+ * are pulled from a {@link Source} a chunk of {@link #CHUNK_ROWS} at a time into one reused
+ * {@link EarthquakeTable}, and written through one reused buffer, so memory use does not grow
+ * with the number of rows. Deleted rows are skipped.
+ * <p>
+ * The columnar format is a sequence of chunks, each holding every column of its rows in turn,
+ * big endian:
+ * <pre>
+ * file    = "QCOL" version:int chunk* 0:int rowCount:long
+ * chunk   = rows:int
+ *           id:string[rows]
+ *           timeDelta:zigzag[rows]           (from the previous row, the first from 0)
+ *           updatedDelta:zigzag[rows]        (from the time of the row)
+ *           magnitude:short[rows]            (hundredths)
+ *           places:varint place:string[places] placeIndex:varint[rows]
+ *           longitude:int[rows] latitude:int[rows]   (1e-5 degrees)
+ *           depth:int[rows]                  (meters)
+ *           url:string[rows]                 (empty for the url built from the id)
+ * string  = length:varint utf8[length]
+ * </pre>
+ * Unknown values are stored as the smallest value of their type. Values are rounded to the
+ * precision USGS publishes them with.
+ * <p>
+ * This class has no Android dependencies.
+ */
+public final class EarthquakeExporter {
+
+    /**
+     * Number of rows read from the source at a time
+     */
+    public static final int CHUNK_ROWS = 1024;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final byte[] COLUMNAR_MAGIC = {'Q', 'C', 'O', 'L'};
+    private static final int COLUMNAR_VERSION = 1;
+    private static final double MAGNITUDE_SCALE = 100;
+    private static final double DEGREE_SCALE = 1e5;
+    private static final double DEPTH_SCALE = 1000;
+
+    private static final String CSV_HEADER =
+            "id,time,updated,magnitude,place,longitude,latitude,depth,url\n";
+    private static final String GEOJSON_HEADER = "{\"type\":\"FeatureCollection\",\"features\":[";
+    private static final String GEOJSON_FOOTER = "\n]}\n";
+
+    private static final long DAY_MILLIS = 86400000L;
+
+    /**
+     * Formats an export can be written in
+     */
+    public enum Format {
+        CSV("csv", "text/csv"),
+        GEOJSON("geojson", "application/geo+json"),
+        COLUMNAR("qcol", "application/octet-stream");
+
+        private final String mExtension;
+        private final String mMimeType;
+
+        Format(String extension, String mimeType) {
+            mExtension = extension;
+            mMimeType = mimeType;
+        }
+
+        public String getExtension() {
+            return mExtension;
+        }
+
+        public String getMimeType() {
+            return mMimeType;
+        }
+    }
+
+    /**
+     * Earthquakes to export, read a chunk at a time
+     */
+    public interface Source {
+        /**
+         * Replaces the rows of the chunk with the next earthquakes, at most the given number
+         *
+         * @return false once there are no earthquakes left
+         */
+        boolean read(EarthquakeTable chunk, int maxRows) throws IOException;
+    }
+
+    /**
+     * Told about the progress of an export after every chunk, on the exporting thread
+     */
+    public interface ProgressListener {
+        /**
+         * @param rows      number of rows read so far
+         * @param totalRows number of rows to read, or -1 if unknown
+         */
+        void onProgress(long rows, long totalRows);
+    }
+
+    private EarthquakeExporter() {
+    }
+
+    /**
+     * Returns a source reading the rows of a table, i.e. the earthquakes the app has loaded
+     */
+    public static Source fromTable(final EarthquakeTable table) {
+        return new Source() {
+            private int mNextRow;
+
+            @Override
+            public boolean read(EarthquakeTable chunk, int maxRows) {
+                chunk.clear();
+                int end = Math.min(table.size(), mNextRow + maxRows);
+                for (; mNextRow < end; mNextRow++) {
+                    chunk.addRow(table, mNextRow);
+                }
+                return chunk.size() > 0;
+            }
+        };
+    }
+
+    /**
+     * Returns a source reading back a file written in {@link Format#COLUMNAR}. Its chunks are
+     * the ones that were written, so the given maximum number of rows is not used.
+     *
+     * @throws IOException if the data is not in the columnar format
+     */
+    public static Source readColumnar(ReadableByteChannel channel) throws IOException {
+        return new ColumnarSource(channel);
+    }
+
+    /**
+     * Exports every earthquake of the source into a file, through a {@link FileChannel}. The
+     * file is written aside and moved in place once complete, so a failed or cancelled export
+     * leaves no partial file behind. Meant to run on a background executor.
+     *
+     * @param totalRows number of rows the source holds for the progress, or -1 if unknown
+     * @param listener  progress listener, or null
+     * @return the number of earthquakes written
+     */
+    public static long exportToFile(Source source, long totalRows, Format format, File file,
+                                    ProgressListener listener) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        FileChannel channel = new FileOutputStream(temp).getChannel();
+        long rows;
+        boolean complete = false;
+        try {
+            rows = export(source, totalRows, format, channel, listener);
+            complete = true;
+        } finally {
+            channel.close();
+            if (!complete) {
+                temp.delete();
+            }
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Could not move the export to " + file);
+        }
+        return rows;
+    }
+
+    /**
+     * Exports every earthquake of the source to the channel. An interrupt of the calling thread
+     * stops the export with an {@link InterruptedIOException}.
+     *
+     * @param totalRows number of rows the source holds for the progress, or -1 if unknown
+     * @param listener  progress listener, or null
+     * @return the number of earthquakes written
+     */
+    public static long export(Source source, long totalRows, Format format,
+                              WritableByteChannel channel, ProgressListener listener)
+            throws IOException {
+        Output output = new Output(channel);
+        EarthquakeTable chunk = new EarthquakeTable(CHUNK_ROWS);
+        StringBuilder text = new StringBuilder();
+        long rowsRead = 0;
+        long rowsWritten = 0;
+
+        if (format == Format.CSV) {
+            output.writeText(CSV_HEADER);
+        } else if (format == Format.GEOJSON) {
+            output.writeText(GEOJSON_HEADER);
+        } else {
+            output.writeBytes(COLUMNAR_MAGIC);
+            output.writeInt(COLUMNAR_VERSION);
+        }
+        while (source.read(chunk, CHUNK_ROWS)) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Export cancelled");
+            }
+            switch (format) {
+                case CSV:
+                    rowsWritten += writeCsv(chunk, text, output);
+                    break;
+                case GEOJSON:
+                    rowsWritten += writeGeoJson(chunk, rowsWritten, text, output);
+                    break;
+                default:
+                    rowsWritten += writeColumnar(chunk, output);
+                    break;
+            }
+            rowsRead += chunk.size();
+            if (listener != null) {
+                listener.onProgress(rowsRead, totalRows);
+            }
+        }
+        if (format == Format.GEOJSON) {
+            output.writeText(GEOJSON_FOOTER);
+        } else if (format == Format.COLUMNAR) {
+            output.writeInt(0);
+            output.writeLong(rowsWritten);
+        }
+        output.flush();
+        return rowsWritten;
+    }
+
+    private static int writeCsv(EarthquakeTable chunk, StringBuilder text, Output output)
+            throws IOException {
+        int written = 0;
+        for (int row = 0; row < chunk.size(); row++) {
+            if (chunk.isDeleted(row)) {
+                continue;
+            }
+            text.setLength(0);
+            appendCsvField(text, chunk.getId(row)).append(',');
+            appendIsoTime(text, chunk.getTimeInMilliseconds(row)).append(',');
+            appendIsoTime(text, chunk.getUpdated(row)).append(',');
+            appendNumber(text, chunk.getMagnitude(row)).append(',');
+            appendCsvField(text, chunk.getLocation(row)).append(',');
+            appendNumber(text, chunk.getLongitude(row)).append(',');
+            appendNumber(text, chunk.getLatitude(row)).append(',');
+            appendNumber(text, chunk.getDepth(row)).append(',');
+            appendCsvField(text, chunk.getUrl(row)).append('\n');
+            output.writeText(text);
+            written++;
+        }
+        return written;
+    }
+
+    private static int writeGeoJson(EarthquakeTable chunk, long rowsBefore, StringBuilder text,
+                                    Output output) throws IOException {
+        int written = 0;
+        for (int row = 0; row < chunk.size(); row++) {
+            if (chunk.isDeleted(row)) {
+                continue;
+            }
+            text.setLength(0);
+            // Same layout as the USGS feeds, one feature per line
+            text.append(rowsBefore + written == 0 ? "\n" : ",\n");
+            text.append("{\"type\":\"Feature\",\"id\":");
+            appendJsonString(text, chunk.getId(row));
+            text.append(",\"properties\":{\"mag\":");
+            appendJsonNumber(text, chunk.getMagnitude(row));
+            text.append(",\"place\":");
+            appendJsonString(text, chunk.getLocation(row));
+            text.append(",\"time\":").append(chunk.getTimeInMilliseconds(row));
+            text.append(",\"updated\":").append(chunk.getUpdated(row));
+            text.append(",\"url\":");
+            appendJsonString(text, chunk.getUrl(row));
+            text.append("},\"geometry\":");
+            if (chunk.hasCoordinates(row)) {
+                text.append("{\"type\":\"Point\",\"coordinates\":[")
+                        .append(chunk.getLongitude(row)).append(',')
+                        .append(chunk.getLatitude(row));
+                if (!Double.isNaN(chunk.getDepth(row))) {
+                    text.append(',').append(chunk.getDepth(row));
+                }
+                text.append("]}");
+            } else {
+                text.append("null");
+            }
+            text.append('}');
+            output.writeText(text);
+            written++;
+        }
+        return written;
+    }
+
+    private static int writeColumnar(EarthquakeTable chunk, Output output) throws IOException {
+        int size = chunk.size();
+        int rows = 0;
+        for (int row = 0; row < size; row++) {
+            if (!chunk.isDeleted(row)) {
+                rows++;
+            }
+        }
+        if (rows == 0) {
+            // An empty chunk would read as the end of the file
+            return 0;
+        }
+        output.writeInt(rows);
+        for (int row = 0; row < size; row++) {
+            if (!chunk.isDeleted(row)) {
+                output.writeString(chunk.getId(row));
+            }
+        }
+        long previousTime = 0;
+        for (int row = 0; row < size; row++) {
+            if (!chunk.isDeleted(row)) {
+                long time = chunk.getTimeInMilliseconds(row);
+                output.writeZigZag(time - previousTime);
+                previousTime = time;
+            }
+        }
+        for (int row = 0; row < size; row++) {
+            if (!chunk.isDeleted(row)) {
+                output.writeZigZag(chunk.getUpdated(row) - chunk.getTimeInMilliseconds(row));
+            }
+        }
+        for (int row = 0; row < size; row++) {
+            if (!chunk.isDeleted(row)) {
+                double magnitude = chunk.getMagnitude(row);
+                output.writeShort(Double.isNaN(magnitude) ? Short.MIN_VALUE
+                        : (short) Math.round(magnitude * MAGNITUDE_SCALE));
+            }
+        }
+        output.writeVarLong(chunk.getPlaceCount());
+        for (int code = 0; code < chunk.getPlaceCount(); code++) {
+            output.writeString(chunk.getPlace(code));
+        }
+        for (int row = 0; row < size; row++) {
+            if (!chunk.isDeleted(row)) {
+                output.writeVarLong(chunk.getPlaceCode(row));
+            }
+        }
+        for (int row = 0; row < size; row++) {
+            if (!chunk.isDeleted(row)) {
+                output.writeInt(quantize(chunk.getLongitude(row), DEGREE_SCALE));
+            }
+        }
+        for (int row = 0; row < size; row++) {
+            if (!chunk.isDeleted(row)) {
+                output.writeInt(quantize(chunk.getLatitude(row), DEGREE_SCALE));
+            }
+        }
+        for (int row = 0; row < size; row++) {
+            if (!chunk.isDeleted(row)) {
+                output.writeInt(quantize(chunk.getDepth(row), DEPTH_SCALE));
+            }
+        }
+        for (int row = 0; row < size; row++) {
+            if (!chunk.isDeleted(row)) {
+                String url = chunk.getCustomUrl(row);
+                output.writeString(url != null ? url : "");
+            }
+        }
+        return rows;
+    }
+
+    private static int quantize(double value, double scale) {
+        return Double.isNaN(value) ? Integer.MIN_VALUE : (int) Math.round(value * scale);
+    }
+
+    private static double dequantize(int value, double scale) {
+        return value == Integer.MIN_VALUE ? Double.NaN : value / scale;
+    }
+
+    private static StringBuilder appendCsvField(StringBuilder text, String value) {
+        if (value == null) {
+            return text;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            return text.append(value);
+        }
+        text.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                text.append('"');
+            }
+            text.append(c);
+        }
+        return text.append('"');
+    }
+
+    private static StringBuilder appendNumber(StringBuilder text, double value) {
+        return Double.isNaN(value) ? text : text.append(value);
+    }
+
+    private static void appendJsonNumber(StringBuilder text, double value) {
+        if (Double.isNaN(value)) {
+            text.append("null");
+        } else {
+            text.append(value);
+        }
+    }
+
+    private static void appendJsonString(StringBuilder text, String value) {
+        if (value == null) {
+            text.append("null");
+            return;
+        }
+        text.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                text.append('\\').append(c);
+            } else if (c < 0x20) {
+                text.append(String.format("\\u%04x", (int) c));
+            } else {
+                text.append(c);
+            }
+        }
+        text.append('"');
+    }
+
+    /**
+     * Appends a time as ISO 8601 in UTC, i.e. "2017-06-25T11:32:07.000Z", without the
+     * allocations of a date format
+     */
+    static StringBuilder appendIsoTime(StringBuilder text, long timeInMilliseconds) {
+        long days = timeInMilliseconds / DAY_MILLIS;
+        long millisOfDay = timeInMilliseconds % DAY_MILLIS;
+        if (millisOfDay < 0) {
+            days--;
+            millisOfDay += DAY_MILLIS;
+        }
+        // Civil date of a day count from the epoch, after Howard Hinnant's days_from_civil
+        long z = days + 719468;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long monthIndex = (5 * dayOfYear + 2) / 153;
+        long day = dayOfYear - (153 * monthIndex + 2) / 5 + 1;
+        long month = monthIndex < 10 ? monthIndex + 3 : monthIndex - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        appendPadded(text, year, 4).append('-');
+        appendPadded(text, month, 2).append('-');
+        appendPadded(text, day, 2).append('T');
+        appendPadded(text, millisOfDay / 3600000, 2).append(':');
+        appendPadded(text, millisOfDay / 60000 % 60, 2).append(':');
+        appendPadded(text, millisOfDay / 1000 % 60, 2).append('.');
+        return appendPadded(text, millisOfDay % 1000, 3).append('Z');
+    }
+
+    private static StringBuilder appendPadded(StringBuilder text, long value, int digits) {
+        long bound = 1;
+        for (int i = 1; i < digits; i++) {
+            bound *= 10;
+        }
+        for (; bound > 1 && value < bound; bound /= 10) {
+            text.append('0');
+        }
+        return text.append(value);
+    }
+
+    /**
+     * Writes to a channel through one reused buffer
+     */
+    private static final class Output {
+        private final WritableByteChannel mChannel;
+        private final ByteBuffer mBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        Output(WritableByteChannel channel) {
+            mChannel = channel;
+        }
+
+        /**
+         * Writes text as UTF-8, without encoding it into a temporary array first
+         */
+        void writeText(CharSequence text) throws IOException {
+            int length = text.length();
+            for (int i = 0; i < length; i++) {
+                char c = text.charAt(i);
+                if (c < 0x80) {
+                    ensure(1);
+                    mBuffer.put((byte) c);
+                } else if (c < 0x800) {
+                    ensure(2);
+                    mBuffer.put((byte) (0xC0 | c >> 6));
+                    mBuffer.put((byte) (0x80 | c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < length
+                        && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                    ensure(4);
+                    mBuffer.put((byte) (0xF0 | codePoint >> 18));
+                    mBuffer.put((byte) (0x80 | codePoint >> 12 & 0x3F));
+                    mBuffer.put((byte) (0x80 | codePoint >> 6 & 0x3F));
+                    mBuffer.put((byte) (0x80 | codePoint & 0x3F));
+                } else {
+                    if (Character.isSurrogate(c)) {
+                        // Unpaired surrogate, as String.getBytes replaces it
+                        c = '?';
+                    }
+                    ensure(3);
+                    mBuffer.put((byte) (0xE0 | c >> 12));
+                    mBuffer.put((byte) (0x80 | c >> 6 & 0x3F));
+                    mBuffer.put((byte) (0x80 | c & 0x3F));
+                }
+            }
+        }
+
+        void writeBytes(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                ensure(1);
+                int count = Math.min(mBuffer.remaining(), bytes.length - offset);
+                mBuffer.put(bytes, offset, count);
+                offset += count;
+            }
+        }
+
+        void writeString(String value) throws IOException {
+            byte[] bytes = value.getBytes(UTF_8);
+            writeVarLong(bytes.length);
+            writeBytes(bytes);
+        }
+
+        void writeShort(short value) throws IOException {
+            ensure(2);
+            mBuffer.putShort(value);
+        }
+
+        void writeInt(int value) throws IOException {
+            ensure(4);
+            mBuffer.putInt(value);
+        }
+
+        void writeLong(long value) throws IOException {
+            ensure(8);
+            mBuffer.putLong(value);
+        }
+
+        void writeVarLong(long value) throws IOException {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                mBuffer.put((byte) (value & 0x7F | 0x80));
+                value >>>= 7;
+            }
+            mBuffer.put((byte) value);
+        }
+
+        void writeZigZag(long value) throws IOException {
+            writeVarLong(value << 1 ^ value >> 63);
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (mBuffer.remaining() < bytes) {
+                drain();
+            }
+        }
+
+        void flush() throws IOException {
+            drain();
+        }
+
+        private void drain() throws IOException {
+            mBuffer.flip();
+            while (mBuffer.hasRemaining()) {
+                mChannel.write(mBuffer);
+            }
+            mBuffer.clear();
+        }
+    }
+
+    /**
+     * Reads back the chunks of a {@link Format#COLUMNAR} file through one reused buffer
+     */
+    private static final class ColumnarSource implements Source {
+        private final ReadableByteChannel mChannel;
+        private final ByteBuffer mBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private byte[] mBytes = new byte[256];
+        private boolean mDone;
+
+        private String[] mIds = new String[CHUNK_ROWS];
+        private long[] mTimes = new long[CHUNK_ROWS];
+        private long[] mUpdated = new long[CHUNK_ROWS];
+        private double[] mMagnitudes = new double[CHUNK_ROWS];
+        private String[] mPlaces = new String[CHUNK_ROWS];
+        private int[] mPlaceCodes = new int[CHUNK_ROWS];
+        private double[] mLongitudes = new double[CHUNK_ROWS];
+        private double[] mLatitudes = new double[CHUNK_ROWS];
+        private double[] mDepths = new double[CHUNK_ROWS];
+
+        ColumnarSource(ReadableByteChannel channel) throws IOException {
+            mChannel = channel;
+            mBuffer.flip();
+            ensure(COLUMNAR_MAGIC.length + 4);
+            for (byte b : COLUMNAR_MAGIC) {
+                if (mBuffer.get() != b) {
+                    throw new IOException("Not a columnar earthquake export");
+                }
+            }
+            int version = mBuffer.getInt();
+            if (version != COLUMNAR_VERSION) {
+                throw new IOException("Unsupported columnar export version " + version);
+            }
+        }
+
+        @Override
+        public boolean read(EarthquakeTable chunk, int maxRows) throws IOException {
+            chunk.clear();
+            if (mDone) {
+                return false;
+            }
+            ensure(4);
+            int rows = mBuffer.getInt();
+            if (rows == 0) {
+                ensure(8);
+                mBuffer.getLong();
+                mDone = true;
+                return false;
+            }
+            if (rows < 0 || rows > CHUNK_ROWS) {
+                throw new IOException("Corrupt chunk of " + rows + " rows");
+            }
+            for (int row = 0; row < rows; row++) {
+                mIds[row] = readString();
+            }
+            long time = 0;
+            for (int row = 0; row < rows; row++) {
+                time += readZigZag();
+                mTimes[row] = time;
+            }
+            for (int row = 0; row < rows; row++) {
+                mUpdated[row] = mTimes[row] + readZigZag();
+            }
+            for (int row = 0; row < rows; row++) {
+                ensure(2);
+                short magnitude = mBuffer.getShort();
+                mMagnitudes[row] = magnitude == Short.MIN_VALUE ? Double.NaN
+                        : magnitude / MAGNITUDE_SCALE;
+            }
+            int placeCount = (int) readVarLong();
+            if (mPlaces.length < placeCount) {
+                mPlaces = new String[placeCount];
+            }
+            for (int code = 0; code < placeCount; code++) {
+                mPlaces[code] = readString();
+            }
+            for (int row = 0; row < rows; row++) {
+                mPlaceCodes[row] = (int) readVarLong();
+            }
+            readInts(mLongitudes, rows, DEGREE_SCALE);
+            readInts(mLatitudes, rows, DEGREE_SCALE);
+            readInts(mDepths, rows, DEPTH_SCALE);
+            for (int row = 0; row < rows; row++) {
+                String url = readString();
+                chunk.add(mIds[row], mMagnitudes[row], mPlaces[mPlaceCodes[row]], mTimes[row],
+                        mUpdated[row], url.isEmpty() ? null : url, mLongitudes[row],
+                        mLatitudes[row], mDepths[row]);
+            }
+            return true;
+        }
+
+        private void readInts(double[] values, int rows, double scale) throws IOException {
+            for (int row = 0; row < rows; row++) {
+                ensure(4);
+                values[row] = dequantize(mBuffer.getInt(), scale);
+            }
+        }
+
+        private String readString() throws IOException {
+            int length = (int) readVarLong();
+            if (mBytes.length < length) {
+                mBytes = new byte[Math.max(length, mBytes.length * 2)];
+            }
+            int offset = 0;
+            while (offset < length) {
+                ensure(1);
+                int count = Math.min(mBuffer.remaining(), length - offset);
+                mBuffer.get(mBytes, offset, count);
+                offset += count;
+            }
+            return new String(mBytes, 0, length, UTF_8);
+        }
+
+        private long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                ensure(1);
+                byte b = mBuffer.get();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Corrupt varint");
+        }
+
+        private long readZigZag() throws IOException {
+            long value = readVarLong();
+            return value >>> 1 ^ -(value & 1);
+        }
+
+        /**
+         * Makes sure the given number of bytes can be read from the buffer
+         */
+        private void ensure(int bytes) throws IOException {
+            if (mBuffer.remaining() >= bytes) {
+                return;
+            }
+            mBuffer.compact();
+            while (mBuffer.position() < bytes) {
+                if (mChannel.read(mBuffer) < 0) {
+                    throw new EOFException("Columnar export cut short");
+                }
+            }
+            mBuffer.flip();
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.android.quakereport;
+
+import java.text.DecimalFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Locale dependent formats and USGS place string parsing used to display earthquakes.
+ * This class has no Android dependencies so it can be benchmarked on a plain JVM;
+ * {@link EarthquakeFormatter} adds the localized resources on top of it.
+ * <p>
+ * The formats are reused between calls, so an instance must not be shared between threads.
+ */
+public class EarthquakeFormats {
+
+    public static final String LOCATION_SEPARATOR = " of ";
+    public static final String OFFSET_SEPARATOR = "km";
+
+    /**
+     * Directions used in USGS place strings, in the order {@link #getDirectionIndex} returns
+     */
+    public static final String[] DIRECTIONS = {
+            "N", "NE", "NW", "NNE", "NNW",
+            "S", "SE", "SW", "SSE", "SSW",
+            "E", "ENE", "ESE",
+            "W", "WNW", "WSW"
+    };
+
+    /**
+     * Number of magnitude bands, the last one holding every magnitude of 10 and above
+     */
+    public static final int MAGNITUDE_BANDS = 10;
+
+    private final SimpleDateFormat mDateFormat;
+    private final SimpleDateFormat mTimeFormat;
+    private final DecimalFormat mMagnitudeFormat;
+    private final Date mDate = new Date();
+
+    /**
+     * Constructs a new {@link EarthquakeFormats} for the given locale
+     */
+    public EarthquakeFormats(Locale locale) {
+        mDateFormat = new SimpleDateFormat("MMM dd, yyyy", locale);
+        mTimeFormat = new SimpleDateFormat("h:mm a", locale);
+        mMagnitudeFormat = new DecimalFormat("0.0");
+    }
+
+    /**
+     * Return the formatted magnitude string showing 1 decimal place (i.e. "3.2")
+     * from a decimal magnitude value.
+     */
+    public String formatMagnitude(double magnitude) {
+        return mMagnitudeFormat.format(magnitude);
+    }
+
+    /**
+     * Return the formatted date string (i.e. "Mar 3, 1984") from a time in milliseconds.
+     */
+    public String formatDate(long timeInMilliseconds) {
+        mDate.setTime(timeInMilliseconds);
+        return mDateFormat.format(mDate);
+    }
+
+    /**
+     * Return the formatted time string (i.e. "4:30 PM") from a time in milliseconds.
+     */
+    public String formatTime(long timeInMilliseconds) {
+        mDate.setTime(timeInMilliseconds);
+        return mTimeFormat.format(mDate);
+    }
+
+    /**
+     * Splits original location into two sub-strings at the first separator, so a primary
+     * location holding one too (i.e. "10km N of Gulf of California") is kept whole
+     *
+     * @param location original location (i.e. "43km WNW of Anchorage, Alaska")
+     * @return the offset (i.e. "43km WNW", or null if there is none) and the primary location
+     */
+    public static String[] splitLocation(String location) {
+        String[] result = new String[2];
+        int separator = location.indexOf(LOCATION_SEPARATOR);
+        if (separator >= 0) {
+            result[0] = location.substring(0, separator);
+            result[1] = location.substring(separator + LOCATION_SEPARATOR.length());
+        } else {
+            result[1] = location;
+        }
+        return result;
+    }
+
+    /**
+     * Splits an offset (i.e. "43km WNW") into distance and direction
+     *
+     * @return the distance (i.e. "43") and direction (i.e. " WNW"), or null if the offset has
+     * no distance
+     */
+    public static String[] splitOffset(String offset) {
+        int separator = offset.indexOf(OFFSET_SEPARATOR);
+        if (separator < 0) {
+            return null;
+        }
+        return new String[]{
+                offset.substring(0, separator),
+                offset.substring(separator + OFFSET_SEPARATOR.length())
+        };
+    }
+
+    /**
+     * Returns the index in {@link #DIRECTIONS} of a direction as found in an offset
+     * (i.e. " WNW"), or -1 if it is not a known direction
+     */
+    public static int getDirectionIndex(String direction) {
+        switch (direction) {
+            case " N":
+                return 0;
+            case " NE":
+                return 1;
+            case " NW":
+                return 2;
+            case " NNE":
+                return 3;
+            case " NNW":
+                return 4;
+            case " S":
+                return 5;
+            case " SE":
+                return 6;
+            case " SW":
+                return 7;
+            case " SSE":
+                return 8;
+            case " SSW":
+                return 9;
+            case " E":
+                return 10;
+            case " ENE":
+                return 11;
+            case " ESE":
+                return 12;
+            case " W":
+                return 13;
+            case " WNW":
+                return 14;
+            case " WSW":
+                return 15;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the magnitude band (1 to {@link #MAGNITUDE_BANDS}) the magnitude circle is
+     * colored by. Magnitudes from 0 up to 2 share the first band; anything outside 0 to 10
+     * falls in the last band.
+     */
+    public static int getMagnitudeBand(double magnitude) {
+        int magnitudeFloor = (int) Math.floor(magnitude);
+        if (magnitudeFloor == 0) {
+            return 1;
+        }
+        if (magnitudeFloor < 0 || magnitudeFloor > MAGNITUDE_BANDS) {
+            return MAGNITUDE_BANDS;
+        }
+        return magnitudeFloor;
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.android.quakereport;
+
+import android.content.Context;
+import android.support.v4.content.ContextCompat;
+
+import java.util.Locale;
+
+/**
+ * Formats earthquakes into {@link EarthquakeDisplay} fields. Meant to run on the background
+ * thread that loaded the earthquakes. The formats are reused between calls, so an instance
+ * must not be shared between threads. They follow the current locale: when it changed since the
+ * last call, they are made again for the new one.
+ */
+public class EarthquakeFormatter {
+
+    /**
+     * Color of every magnitude band, indexed by {@link EarthquakeFormats#getMagnitudeBand} - 1
+     */
+    private static final int[] MAGNITUDE_COLOR_IDS = {
+            R.color.magnitude1,
+            R.color.magnitude2,
+            R.color.magnitude3,
+            R.color.magnitude4,
+            R.color.magnitude5,
+            R.color.magnitude6,
+            R.color.magnitude7,
+            R.color.magnitude8,
+            R.color.magnitude9,
+            R.color.magnitude10plus
+    };
+
+    /**
+     * Localized direction of every entry of {@link EarthquakeFormats#DIRECTIONS}
+     */
+    private static final int[] DIRECTION_STRING_IDS = {
+            R.string.orientation_N,
+            R.string.orientation_NE,
+            R.string.orientation_NW,
+            R.string.orientation_NNE,
+            R.string.orientation_NNW,
+            R.string.orientation_S,
+            R.string.orientation_SE,
+            R.string.orientation_SW,
+            R.string.orientation_SSE,
+            R.string.orientation_SSW,
+            R.string.orientation_E,
+            R.string.orientation_ENE,
+            R.string.orientation_ESE,
+            R.string.orientation_W,
+            R.string.orientation_WNW,
+            R.string.orientation_WSW
+    };
+
+    /**
+     * Maximum number of place strings whose localized parts are kept
+     */
+    private static final int LOCATION_CACHE_SIZE = 512;
+
+    /**
+     * Localized location parts shared by every formatter, for the locale they were resolved in
+     */
+    private static LocationLocalizer sLocalizer;
+
+    private final Context mContext;
+    private Locale mLocale;
+    private EarthquakeFormats mFormats;
+
+    /**
+     * Constructs a new {@link EarthquakeFormatter} for the current locale
+     *
+     * @param context context of the app, used to look up localized strings and colors
+     */
+    public EarthquakeFormatter(Context context) {
+        mContext = context.getApplicationContext();
+        mLocale = Locale.getDefault();
+        mFormats = new EarthquakeFormats(mLocale);
+    }
+
+    /**
+     * Returns the locale of the last earthquakes formatted
+     */
+    public Locale getLocale() {
+        return mLocale;
+    }
+
+    /**
+     * Computes the display fields of every earthquake of the table
+     */
+    public void formatAll(EarthquakeTable earthquakes) {
+        if (earthquakes == null) {
+            return;
+        }
+        updateLocale();
+        EarthquakeTable.Cursor cursor = earthquakes.cursor();
+        for (int row = 0; row < earthquakes.size(); row++) {
+            cursor.moveTo(row);
+            if (!cursor.isDeleted()) {
+                cursor.setDisplay(formatRow(cursor));
+            }
+        }
+    }
+
+    /**
+     * Returns the display fields of the earthquake the cursor is on
+     */
+    public EarthquakeDisplay format(EarthquakeTable.Cursor earthquake) {
+        updateLocale();
+        return formatRow(earthquake);
+    }
+
+    /**
+     * Returns the display fields of the earthquake the cursor is on, in the locale of the
+     * formats
+     */
+    private EarthquakeDisplay formatRow(EarthquakeTable.Cursor earthquake) {
+        String[] locationParts = splitLocation(earthquake.getLocation());
+        long time = earthquake.getTimeInMilliseconds();
+        return new EarthquakeDisplay(
+                mFormats.formatMagnitude(earthquake.getMagnitude()),
+                getMagnitudeColor(earthquake.getMagnitude()),
+                locationParts[0],
+                locationParts[1],
+                mFormats.formatDate(time),
+                mFormats.formatTime(time));
+    }
+
+    /**
+     * Makes the formats again if the locale changed, i.e. while a loader outlived its activity
+     */
+    private void updateLocale() {
+        Locale locale = Locale.getDefault();
+        if (!locale.equals(mLocale)) {
+            mLocale = locale;
+            mFormats = new EarthquakeFormats(locale);
+        }
+    }
+
+    /**
+     * Splits original location into a localized offset and the primary location
+     *
+     * @param location original location
+     * @return array of strings containing location sub-strings
+     */
+    private String[] splitLocation(String location) {
+        return getLocalizer(mContext).localize(location);
+    }
+
+    /**
+     * Returns the color of the magnitude circle for the given magnitude
+     */
+    public int getMagnitudeColor(double magnitude) {
+        int band = EarthquakeFormats.getMagnitudeBand(magnitude);
+        return ContextCompat.getColor(mContext, MAGNITUDE_COLOR_IDS[band - 1]);
+    }
+
+    /**
+     * Returns the {@link LocationLocalizer} of the current locale, resolving its strings when
+     * the locale changed since the last call
+     */
+    private static synchronized LocationLocalizer getLocalizer(Context context) {
+        Locale locale = context.getResources().getConfiguration().locale;
+        if (sLocalizer == null || !sLocalizer.getLocale().equals(locale)) {
+            String[] directions = new String[DIRECTION_STRING_IDS.length];
+            for (int i = 0; i < directions.length; i++) {
+                directions[i] = context.getString(DIRECTION_STRING_IDS[i]);
+            }
+            sLocalizer = new LocationLocalizer(locale, directions,
+                    context.getString(R.string.near_the),
+                    context.getString(R.string.friendly_location),
+                    LOCATION_CACHE_SIZE);
+        }
+        return sLocalizer;
+    }
+
+    /**
+     * Drops the localized location strings, to be resolved again from the new configuration
+     */
+    public static synchronized void onConfigurationChanged() {
+        sLocalizer = null;
+    }
+}
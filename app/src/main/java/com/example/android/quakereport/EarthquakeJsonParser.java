@@ -0,0 +1,308 @@
+package com.example.android.quakereport;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pull-based reader for the USGS GeoJSON response. It walks {@code features[].properties}
+ * and {@code features[].geometry} straight off the response stream and hands every
+ * {@link Earthquake} to a {@link Listener} as soon as it has been read, so the payload is never
+ * held in memory as a String or a DOM.
+ * <p>
+ * This class has no Android dependencies so it can be exercised on a plain JVM.
+ */
+public final class EarthquakeJsonParser {
+
+    /**
+     * Receives earthquakes one by one while the response is being read
+     */
+    public interface Listener {
+        void onEarthquake(Earthquake earthquake);
+    }
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private EarthquakeJsonParser() {
+    }
+
+    /**
+     * Parses the whole stream and returns the earthquakes in the order of the response.
+     *
+     * @param inputStream stream containing the USGS GeoJSON response
+     * @return list of earthquakes found in the response
+     */
+    public static List<Earthquake> parse(InputStream inputStream) throws IOException {
+        final List<Earthquake> earthquakes = new ArrayList<>();
+        parse(inputStream, new Listener() {
+            @Override
+            public void onEarthquake(Earthquake earthquake) {
+                earthquakes.add(earthquake);
+            }
+        });
+        return earthquakes;
+    }
+
+    /**
+     * Parses the stream and emits every earthquake to the given listener. If the response is
+     * malformed part way through, the earthquakes emitted so far have already been delivered
+     * and an {@link IOException} is thrown.
+     *
+     * @param inputStream stream containing the USGS GeoJSON response
+     * @param listener    receiver of every parsed earthquake
+     * @return number of earthquakes emitted
+     */
+    public static int parse(InputStream inputStream, final Listener listener) throws IOException {
+        return parseFeatures(inputStream, new FeatureHandler() {
+            @Override
+            public void onFeature(Feature feature) throws IOException {
+                listener.onEarthquake(feature.toEarthquake());
+            }
+        });
+    }
+
+    /**
+     * Parses the stream and appends every earthquake to the given table, without building
+     * an object per earthquake. If the response is malformed part way through, the earthquakes
+     * read so far are kept in the table and an {@link IOException} is thrown.
+     *
+     * @param inputStream stream containing the USGS GeoJSON response
+     * @param table       table the earthquakes are appended to
+     * @return number of earthquakes appended
+     */
+    public static int parse(InputStream inputStream, final EarthquakeTable table)
+            throws IOException {
+        return parseFeatures(inputStream, new FeatureHandler() {
+            @Override
+            public void onFeature(Feature feature) throws IOException {
+                feature.appendTo(table);
+            }
+        });
+    }
+
+    private static int parseFeatures(InputStream inputStream, FeatureHandler handler)
+            throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(inputStream, UTF_8));
+        try {
+            return readResponse(reader, handler);
+        } catch (IllegalStateException | NumberFormatException e) {
+            // Thrown by JsonReader when a value has an unexpected type
+            MalformedJsonException malformed = new MalformedJsonException(e.getMessage());
+            malformed.initCause(e);
+            throw malformed;
+        }
+    }
+
+    /**
+     * Reads the top level object and looks for the "features" array, skipping everything else
+     */
+    private static int readResponse(JsonReader reader, FeatureHandler handler) throws IOException {
+        // A single holder is reused for every feature
+        Feature feature = new Feature();
+        int count = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("features".equals(reader.nextName())) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    feature.clear();
+                    readFeature(reader, feature);
+                    handler.onFeature(feature);
+                    count++;
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return count;
+    }
+
+    /**
+     * Reads one element of the "features" array
+     */
+    private static void readFeature(JsonReader reader, Feature feature) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id":
+                    feature.id = nextString(reader);
+                    break;
+                case "properties":
+                    readProperties(reader, feature);
+                    break;
+                case "geometry":
+                    readGeometry(reader, feature);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+    }
+
+    /**
+     * Reads the "properties" object of a feature, keeping only the fields the app uses
+     */
+    private static void readProperties(JsonReader reader, Feature feature) throws IOException {
+        feature.hasProperties = true;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "mag":
+                    if (reader.peek() == JsonToken.NULL) {
+                        reader.nextNull();
+                    } else {
+                        feature.magnitude = reader.nextDouble();
+                        feature.hasMagnitude = true;
+                    }
+                    break;
+                case "place":
+                    feature.location = nextString(reader);
+                    break;
+                case "time":
+                    feature.time = reader.nextLong();
+                    feature.hasTime = true;
+                    break;
+                case "updated":
+                    feature.updated = reader.nextLong();
+                    break;
+                case "url":
+                    feature.url = nextString(reader);
+                    break;
+                case "status":
+                    feature.deleted = "deleted".equals(nextString(reader));
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+    }
+
+    /**
+     * Reads the "geometry" point of a feature: longitude, latitude and depth in kilometers
+     */
+    private static void readGeometry(JsonReader reader, Feature feature) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            // Deleted events have no geometry
+            reader.nextNull();
+            return;
+        }
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("coordinates".equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                for (int i = 0; reader.hasNext(); i++) {
+                    if (reader.peek() != JsonToken.NUMBER) {
+                        reader.skipValue();
+                    } else if (i == 0) {
+                        feature.longitude = reader.nextDouble();
+                    } else if (i == 1) {
+                        feature.latitude = reader.nextDouble();
+                    } else if (i == 2) {
+                        feature.depth = reader.nextDouble();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    /**
+     * Reads a string value, mapping a JSON null to "null" as org.json's getString does
+     */
+    private static String nextString(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return "null";
+        }
+        return reader.nextString();
+    }
+
+    /**
+     * Receives every feature once it has been read completely
+     */
+    private interface FeatureHandler {
+        void onFeature(Feature feature) throws IOException;
+    }
+
+    /**
+     * Fields of a feature collected while reading it, since the feature id comes after
+     * its properties in the USGS response.
+     */
+    private static final class Feature {
+        String id;
+        boolean hasProperties;
+        boolean hasMagnitude;
+        double magnitude;
+        String location;
+        boolean hasTime;
+        long time;
+        long updated;
+        String url;
+        boolean deleted;
+        double longitude;
+        double latitude;
+        double depth;
+
+        void clear() {
+            id = null;
+            hasProperties = false;
+            hasMagnitude = false;
+            magnitude = 0;
+            location = null;
+            hasTime = false;
+            time = 0;
+            updated = 0;
+            url = null;
+            deleted = false;
+            longitude = Double.NaN;
+            latitude = Double.NaN;
+            depth = Double.NaN;
+        }
+
+        Earthquake toEarthquake() throws MalformedJsonException {
+            validate();
+            if (deleted) {
+                return Earthquake.deleted(id, updated);
+            }
+            Earthquake earthquake = new Earthquake(id, magnitude, location, time, updated, url);
+            earthquake.setCoordinates(longitude, latitude, depth);
+            return earthquake;
+        }
+
+        void appendTo(EarthquakeTable table) throws MalformedJsonException {
+            validate();
+            if (deleted) {
+                table.addDeleted(id, updated);
+            } else {
+                table.add(id, magnitude, location, time, updated, url, longitude, latitude, depth);
+            }
+        }
+
+        private void validate() throws MalformedJsonException {
+            if (id == null || !hasProperties) {
+                throw new MalformedJsonException("Feature without id or properties");
+            }
+            if (!deleted && (!hasMagnitude || location == null || !hasTime || url == null)) {
+                throw new MalformedJsonException("Feature properties are missing a required field");
+            }
+        }
+    }
+}
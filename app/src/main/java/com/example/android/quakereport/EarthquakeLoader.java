@@ -3,45 +3,358 @@ package com.example.android.quakereport;
 
 import android.content.AsyncTaskLoader;
 import android.content.Context;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
 
-import java.util.List;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Loads a list of earthquakes by using an AsyncTask to perform the
- * network request to the given URL.
+ * Loads a table of earthquakes by using an AsyncTask. The last result saved as an
+ * {@link EarthquakeSnapshot}, or else the earthquakes kept in the {@link EarthquakeStore}, are
+ * delivered first, then, unless a background sync refreshed the store recently, the store is
+ * synced with the given URL and the refreshed list is delivered and saved as the new snapshot.
+ * The store drops the snapshot whenever it changes, so a snapshot is never older than the
+ * store.
+ * <p>
+ * The last result is kept and delivered again whenever the loader starts, i.e. after a
+ * rotation or when returning to the activity; it is only synced again once older than the
+ * staleness window. Loads requested while one is in flight share its result, and an abandoned
+ * or reset loader cancels its request, closing the connection it is reading from. The
+ * loader outlives a change of locale too: earthquakes formatted in another locale than the
+ * current one are read and formatted again instead of being delivered.
+ * <p>
+ * Offline, the stored earthquakes are delivered as they are and the sync is queued, see
+ * {@link SyncManager#syncNow}.
  */
-public class EarthquakeLoader extends AsyncTaskLoader<List<Earthquake>> {
+public class EarthquakeLoader extends AsyncTaskLoader<EarthquakeTable> {
     /**
      * Tag for log messages
      */
     public static final String LOG_TAG = EarthquakeLoader.class.getName();
 
+    /**
+     * Number of earthquakes shown when the query does not set a limit
+     */
+    private static final int DEFAULT_LIMIT = 128;
+
+    /**
+     * Age after which the delivered earthquakes are synced again when the loader starts
+     */
+    public static final long DEFAULT_STALE_AFTER_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
     /**
      * Query URL
      */
     private String mUrl;
 
+    /**
+     * Local store the earthquakes are served from
+     */
+    private EarthquakeStore mStore;
+
+    /**
+     * Formats the loaded earthquakes on the loader thread, so the list does not have to
+     */
+    private EarthquakeFormatter mFormatter;
+
+    /**
+     * True once the stored earthquakes have been delivered and the next load should sync
+     */
+    private boolean mSyncPending;
+
+    /**
+     * When the current load was started, for {@link Metrics#LOADER_QUEUE}
+     */
+    private volatile long mLoadStart;
+
+    /**
+     * Age after which the delivered earthquakes are synced again
+     */
+    private final long mStaleAfterMillis;
+
+    /**
+     * Last delivered earthquakes
+     */
+    private EarthquakeTable mEarthquakes;
+
+    /**
+     * Locale the last loaded earthquakes were formatted in, set by the loading thread
+     */
+    private volatile Locale mLoadedLocale;
+
+    /**
+     * Locale {@link #mEarthquakes} were formatted in
+     */
+    private Locale mLocale;
+
+    /**
+     * When the delivered earthquakes were last up to date, in {@link SystemClock#elapsedRealtime}
+     */
+    private long mUpToDateAt;
+
+    /**
+     * True from the start of a load until its result is delivered or canceled
+     */
+    private boolean mLoadInFlight;
+
+    /**
+     * Thread running the current load, interrupted to cancel it; guarded by mLoadThreadLock
+     */
+    private Thread mLoadThread;
+    private final Object mLoadThreadLock = new Object();
+
     public EarthquakeLoader(Context context, String url) {
+        this(context, url, DEFAULT_STALE_AFTER_MILLIS);
+    }
+
+    /**
+     * Constructs a new {@link EarthquakeLoader}
+     *
+     * @param context          context of the app
+     * @param url              query URL
+     * @param staleAfterMillis age after which delivered earthquakes are synced again when the
+     *                         loader starts
+     */
+    public EarthquakeLoader(Context context, String url, long staleAfterMillis) {
         super(context);
         mUrl = url;
+        mStaleAfterMillis = staleAfterMillis;
+        mStore = EarthquakeStore.getInstance(context);
+        mFormatter = new EarthquakeFormatter(context);
+    }
+
+    /**
+     * Returns the query URL of this loader
+     */
+    public String getUrl() {
+        return mUrl;
     }
 
     @Override
     protected void onStartLoading() {
-        forceLoad();
+        if (mEarthquakes != null && !Locale.getDefault().equals(mLocale)) {
+            // Formatted for the activity of the old locale, read them again
+            mEarthquakes = null;
+        }
+        if (mEarthquakes != null) {
+            // Show the last result right away, whether or not it is synced again
+            super.deliverResult(mEarthquakes);
+        }
+        boolean contentChanged = takeContentChanged();
+        if (mEarthquakes == null) {
+            requestLoad();
+        } else if (contentChanged
+                || SystemClock.elapsedRealtime() - mUpToDateAt >= mStaleAfterMillis) {
+            mSyncPending = true;
+            requestLoad();
+        }
+    }
+
+    /**
+     * Syncs the store again and delivers the result, i.e. once the network is back; the
+     * refreshes queued while offline are synced along
+     */
+    public void refresh() {
+        mSyncPending = true;
+        if (isStarted()) {
+            requestLoad();
+        } else {
+            onContentChanged();
+        }
+    }
+
+    /**
+     * Starts a load, unless one is in flight already: its result is then delivered instead
+     */
+    private void requestLoad() {
+        if (!mLoadInFlight) {
+            forceLoad();
+        }
+    }
+
+    @Override
+    protected void onForceLoad() {
+        mLoadInFlight = true;
+        mLoadStart = Metrics.start();
+        super.onForceLoad();
+    }
+
+    @Override
+    protected void onAbandon() {
+        // The result will not be shown, so stop the request instead of letting it run out
+        cancelLoad();
+        interruptLoad();
+    }
+
+    @Override
+    protected void onReset() {
+        cancelLoad();
+        interruptLoad();
+        mLoadInFlight = false;
+        mEarthquakes = null;
+    }
+
+    /**
+     * Interrupts the thread running the current load, which cancels the sync it is in
+     */
+    private void interruptLoad() {
+        synchronized (mLoadThreadLock) {
+            if (mLoadThread != null) {
+                mLoadThread.interrupt();
+            }
+        }
     }
 
     /**
      * This is on a background thread.
      */
     @Override
-    public List<Earthquake> loadInBackground() {
+    public EarthquakeTable loadInBackground() {
+        Metrics.stop(Metrics.LOADER_QUEUE, mLoadStart);
+        long start = Metrics.start();
+        synchronized (mLoadThreadLock) {
+            mLoadThread = Thread.currentThread();
+        }
+        try {
+            EarthquakeTable earthquakes = load();
+            mLoadedLocale = mFormatter.getLocale();
+            return earthquakes;
+        } finally {
+            synchronized (mLoadThreadLock) {
+                mLoadThread = null;
+                // Do not leave an interrupt to the next task of the pooled thread
+                Thread.interrupted();
+            }
+            Metrics.stop(Metrics.LOADER_LOAD, start);
+        }
+    }
+
+    private EarthquakeTable load() {
         if (mUrl == null) {
             return null;
         }
 
-        // Perform the network request, parse the response, and extract a list of earthquakes.
-        List<Earthquake> earthquakes = QueryUtils.fetchEarthquakeData(mUrl);
+        if (!mSyncPending) {
+            // Serve what is stored right away and sync on the next load. The snapshot is a
+            // single sequential read, the store is only queried when there is none.
+            EarthquakeTable cached = readSnapshot();
+            if (cached == null) {
+                long modificationCount = mStore.getModificationCount();
+                cached = queryStore();
+                saveSnapshot(cached, modificationCount);
+            }
+            if (cached.size() > 0) {
+                // Warm data from the background sync is shown without waiting for the network.
+                // Offline, the sync is queued right away instead of making another load.
+                mSyncPending = !SyncManager.isFresh(getContext());
+                if (mSyncPending && !ConnectivityMonitor.getInstance(getContext()).isConnected()) {
+                    SyncManager.syncNow(getContext(), mUrl);
+                    mSyncPending = false;
+                }
+                return cached;
+            }
+        }
+        mSyncPending = false;
+
+        // Fetch what changed since the last sync, merge it into the store and read it back.
+        SyncManager.syncNow(getContext(), mUrl);
+        if (Thread.currentThread().isInterrupted()) {
+            // Cancelled, the result would not be delivered
+            return null;
+        }
+        long modificationCount = mStore.getModificationCount();
+        EarthquakeTable earthquakes = queryStore();
+        saveSnapshot(earthquakes, modificationCount);
+        return earthquakes;
+    }
+
+    @Override
+    public void deliverResult(EarthquakeTable data) {
+        mLoadInFlight = false;
+        if (isReset()) {
+            return;
+        }
+        if (data != null && !Locale.getDefault().equals(mLoadedLocale)) {
+            // The locale changed during the load, so did the activity
+            mEarthquakes = null;
+            if (isStarted()) {
+                requestLoad();
+            }
+            return;
+        }
+        mEarthquakes = data;
+        mLocale = mLoadedLocale;
+        if (!mSyncPending) {
+            mUpToDateAt = SystemClock.elapsedRealtime();
+        }
+        super.deliverResult(data);
+        if (mSyncPending && isStarted()) {
+            requestLoad();
+        }
+    }
+
+    @Override
+    public void onCanceled(EarthquakeTable data) {
+        mLoadInFlight = false;
+    }
+
+    /**
+     * Reads the earthquakes matching the query URL from the local store
+     */
+    private EarthquakeTable queryStore() {
+        Uri uri = Uri.parse(mUrl);
+        double minMagnitude = parseDouble(uri.getQueryParameter("minmag"), 0);
+        int limit = (int) parseDouble(uri.getQueryParameter("limit"), DEFAULT_LIMIT);
+        EarthquakeTable earthquakes =
+                mStore.query(minMagnitude, uri.getQueryParameter("orderby"), limit);
+        mFormatter.formatAll(earthquakes);
         return earthquakes;
     }
+
+    /**
+     * Reads the snapshot of the last result for the query URL, or returns null if there is none
+     */
+    private EarthquakeTable readSnapshot() {
+        try {
+            EarthquakeTable earthquakes = mStore.loadSnapshot(mUrl);
+            if (earthquakes != null) {
+                mFormatter.formatAll(earthquakes);
+            }
+            return earthquakes;
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem reading the earthquake snapshot", e);
+            return null;
+        }
+    }
+
+    /**
+     * Saves the result as the snapshot, unless the store changed since it was read
+     *
+     * @param modificationCount {@link EarthquakeStore#getModificationCount()} from before the
+     *                          result was read
+     */
+    private void saveSnapshot(EarthquakeTable earthquakes, long modificationCount) {
+        if (earthquakes.size() == 0) {
+            return;
+        }
+        try {
+            mStore.saveSnapshot(mUrl, earthquakes, modificationCount);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem saving the earthquake snapshot", e);
+        }
+    }
+
+    private static double parseDouble(String value, double defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
 }
@@ -0,0 +1,325 @@
+package com.example.android.quakereport;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Windowed, paged view of a large list of earthquakes. Pages are fetched from a
+ * {@link PageSource} as the user nears them, one page ahead of the visible rows is prefetched,
+ * and pages far from the visible rows are released so that at most {@code maxPages} pages are
+ * held in memory however far the user scrolls. A page that could not be loaded is not the end
+ * of the list: its rows stay as placeholders and it is requested again when they are shown, or
+ * by {@link #retryFailedPages()}.
+ * <p>
+ * All methods must be called from the same thread, the one {@code callbackExecutor} posts to.
+ */
+public class EarthquakePager {
+
+    /**
+     * Loads one page of earthquakes. Called on the background executor.
+     */
+    public interface PageSource {
+        /**
+         * @param offset zero based position of the first earthquake of the page
+         * @param limit  maximum number of earthquakes to return
+         * @return the earthquakes of the page, fewer than {@code limit} on the last page
+         */
+        EarthquakeTable loadPage(int offset, int limit) throws IOException;
+    }
+
+    /**
+     * Told when rows change so the list can redraw them. Releasing a page does not change any
+     * row: its rows are requested again when they are shown.
+     */
+    public interface Callback {
+        /**
+         * Called when the pager started over, so every row may have changed
+         */
+        void onPagesReset();
+
+        /**
+         * Called when a page arrived
+         *
+         * @param positionStart position of the first row of the page
+         * @param itemCount     number of rows of the page
+         * @param oldCount      number of rows of the list before the page arrived
+         * @param newCount      number of rows of the list now
+         */
+        void onPageLoaded(int positionStart, int itemCount, int oldCount, int newCount);
+
+        /**
+         * Called when a page could not be loaded. A page past the known rows is counted all the
+         * same, so the list gains its rows as placeholders.
+         *
+         * @param positionStart position of the first row of the page
+         * @param oldCount      number of rows of the list before the page failed
+         * @param newCount      number of rows of the list now
+         */
+        void onPageFailed(int positionStart, int oldCount, int newCount);
+    }
+
+    private final int mPageSize;
+    private final int mMaxPages;
+    private final Executor mBackgroundExecutor;
+    private final Executor mCallbackExecutor;
+    private final Callback mCallback;
+
+    private PageSource mSource;
+    /**
+     * Pages in memory, each one held through the cursor used to read it
+     */
+    private final Map<Integer, EarthquakeTable.Cursor> mPages = new HashMap<>();
+    private final Set<Integer> mLoadingPages = new HashSet<>();
+    /**
+     * Pages whose last load failed
+     */
+    private final Set<Integer> mFailedPages = new HashSet<>();
+
+    /**
+     * Number of pages known to exist, loaded or not
+     */
+    private int mPageCount;
+    /**
+     * Size of the last page, once a short page revealed the end of the list
+     */
+    private int mLastPageSize = -1;
+    /**
+     * Number of rows the source is known to have before any page beyond the first is loaded
+     */
+    private int mKnownCount;
+    /**
+     * Incremented on every reset, so pages requested for an older source are ignored
+     */
+    private int mGeneration;
+
+    private int mFirstVisiblePage;
+    private int mLastVisiblePage;
+
+    /**
+     * Constructs a new {@link EarthquakePager}
+     *
+     * @param pageSize           number of earthquakes per page
+     * @param maxPages           maximum number of pages held in memory, at least 3
+     * @param backgroundExecutor executor the pages are loaded on
+     * @param callbackExecutor   executor of the thread that owns the pager (the UI thread)
+     * @param callback           told when the pages change
+     */
+    public EarthquakePager(int pageSize, int maxPages, Executor backgroundExecutor,
+                           Executor callbackExecutor, Callback callback) {
+        mPageSize = pageSize;
+        mMaxPages = Math.max(3, maxPages);
+        mBackgroundExecutor = backgroundExecutor;
+        mCallbackExecutor = callbackExecutor;
+        mCallback = callback;
+    }
+
+    /**
+     * Starts over with a new source, using the given earthquakes as its first page.
+     *
+     * @param source    source of the following pages
+     * @param firstPage first page of the source, or null if it is not known yet
+     */
+    public void reset(PageSource source, EarthquakeTable firstPage) {
+        reset(source, firstPage, 0);
+    }
+
+    /**
+     * Starts over with a new source, using the given earthquakes as its first page.
+     *
+     * @param source     source of the following pages
+     * @param firstPage  first page of the source, or null if it is not known yet
+     * @param knownCount number of rows the source is known to have, i.e. the size of an
+     *                   in-memory source; the list has at least that many rows right away
+     */
+    public void reset(PageSource source, EarthquakeTable firstPage, int knownCount) {
+        replace(source, firstPage, knownCount);
+        mCallback.onPagesReset();
+    }
+
+    /**
+     * Like {@link #reset(PageSource, EarthquakeTable, int)}, but without telling the
+     * {@link Callback}: the caller tells the list which rows changed, i.e. from a
+     * {@link ListDiff}.
+     */
+    public void replace(PageSource source, EarthquakeTable firstPage, int knownCount) {
+        mGeneration++;
+        mSource = source;
+        mPages.clear();
+        mLoadingPages.clear();
+        mFailedPages.clear();
+        mPageCount = 0;
+        mLastPageSize = -1;
+        mKnownCount = knownCount;
+        if (firstPage != null) {
+            addPage(0, firstPage);
+        } else if (source != null) {
+            requestPage(0);
+        }
+        // Keep the visible range, the list does not necessarily scroll back to the top
+        releaseDistantPages();
+    }
+
+    public int getPageSize() {
+        return mPageSize;
+    }
+
+    /**
+     * Returns the number of rows of the list, including rows of released pages
+     */
+    public int getCount() {
+        int count;
+        if (mLastPageSize >= 0) {
+            count = (mPageCount - 1) * mPageSize + mLastPageSize;
+        } else {
+            count = mPageCount * mPageSize;
+        }
+        return Math.max(count, mKnownCount);
+    }
+
+    /**
+     * Returns a cursor on the earthquake at the given position, or null if its page is not in
+     * memory. A missing page is requested and {@link Callback#onPageLoaded} is called once
+     * it arrives. The cursor is shared by every row of the page, so it is only valid until the
+     * next call.
+     */
+    public EarthquakeTable.Cursor getRow(int position) {
+        int page = position / mPageSize;
+        EarthquakeTable.Cursor cursor = mPages.get(page);
+        if (cursor == null) {
+            requestPage(page);
+            return null;
+        }
+        int index = position % mPageSize;
+        return index < cursor.getTable().size() ? cursor.moveTo(index) : null;
+    }
+
+    /**
+     * Tells the pager which rows are on screen, so it can prefetch the next page and release
+     * pages that are far away.
+     */
+    public void onVisibleRangeChanged(int firstPosition, int lastPosition) {
+        mFirstVisiblePage = firstPosition / mPageSize;
+        mLastVisiblePage = Math.max(mFirstVisiblePage, lastPosition / mPageSize);
+
+        for (int page = mFirstVisiblePage; page <= mLastVisiblePage; page++) {
+            requestPage(page);
+        }
+        // Prefetch one page ahead, unless the end of the list is known
+        if (mLastPageSize < 0) {
+            requestPage(mLastVisiblePage + 1);
+        }
+        releaseDistantPages();
+    }
+
+    /**
+     * Requests the pages that could not be loaded again, i.e. once the network is back. Only
+     * the visible pages and the one after them are requested, the others are when they are
+     * shown.
+     */
+    public void retryFailedPages() {
+        for (int page : new ArrayList<>(mFailedPages)) {
+            if (page >= mFirstVisiblePage && page <= mLastVisiblePage + 1) {
+                requestPage(page);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of pages currently held in memory
+     */
+    public int getPagesInMemory() {
+        return mPages.size();
+    }
+
+    private void requestPage(final int page) {
+        if (mSource == null || mPages.containsKey(page) || mLoadingPages.contains(page)) {
+            return;
+        }
+        if (mLastPageSize >= 0 && page >= mPageCount) {
+            return;
+        }
+        mLoadingPages.add(page);
+
+        final int generation = mGeneration;
+        final PageSource source = mSource;
+        mBackgroundExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                EarthquakeTable earthquakes = null;
+                try {
+                    earthquakes = source.loadPage(page * mPageSize, mPageSize);
+                } catch (IOException e) {
+                    // Leave the page missing, it is requested again when it is needed
+                }
+                final EarthquakeTable result = earthquakes;
+                mCallbackExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        onPageLoaded(generation, page, result);
+                    }
+                });
+            }
+        });
+    }
+
+    private void onPageLoaded(int generation, int page, EarthquakeTable earthquakes) {
+        if (generation != mGeneration) {
+            return;
+        }
+        mLoadingPages.remove(page);
+        if (earthquakes == null) {
+            // Not the end of the list, whatever the size of what was read before the failure
+            mFailedPages.add(page);
+            int oldCount = getCount();
+            if (mLastPageSize < 0) {
+                mPageCount = Math.max(mPageCount, page + 1);
+            }
+            mCallback.onPageFailed(page * mPageSize, oldCount, getCount());
+            return;
+        }
+        mFailedPages.remove(page);
+        int oldCount = getCount();
+        addPage(page, earthquakes);
+        releaseDistantPages();
+        mCallback.onPageLoaded(page * mPageSize, earthquakes.size(), oldCount, getCount());
+    }
+
+    private void addPage(int page, EarthquakeTable earthquakes) {
+        mPages.put(page, earthquakes.cursor());
+        mPageCount = Math.max(mPageCount, page + 1);
+        if (earthquakes.size() < mPageSize
+                && page * mPageSize + earthquakes.size() >= mKnownCount) {
+            // A short page is the last one
+            mPageCount = page + 1;
+            mLastPageSize = earthquakes.size();
+        }
+    }
+
+    /**
+     * Drops the pages farthest from the visible ones until the window fits in memory
+     */
+    private void releaseDistantPages() {
+        while (mPages.size() > mMaxPages) {
+            int farthestPage = -1;
+            int farthestDistance = -1;
+            for (int page : mPages.keySet()) {
+                int distance = page < mFirstVisiblePage ? mFirstVisiblePage - page
+                        : (page > mLastVisiblePage ? page - mLastVisiblePage : 0);
+                if (distance > farthestDistance) {
+                    farthestDistance = distance;
+                    farthestPage = page;
+                }
+            }
+            if (farthestDistance <= 0) {
+                // Never release a visible page
+                return;
+            }
+            mPages.remove(farthestPage);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.android.quakereport;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+
+/**
+ * Reads the settings of the app.
+ */
+public final class EarthquakePreferences {
+
+    private EarthquakePreferences() {
+    }
+
+    /**
+     * Returns the query set in the settings
+     */
+    public static EarthquakeQuery getQuery(Context context) {
+        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(context);
+        String minMagnitude = sharedPrefs.getString(
+                context.getString(R.string.settings_min_magnitude_key),
+                context.getString(R.string.settings_min_magnitude_default));
+
+        String orderBy = sharedPrefs.getString(
+                context.getString(R.string.settings_order_by_key),
+                context.getString(R.string.settings_order_by_default)
+        );
+
+        String locationFilter = sharedPrefs.getString(
+                context.getString(R.string.settings_location_filter_key), null);
+
+        return new EarthquakeQuery(parseDouble(minMagnitude, 0), orderBy, locationFilter);
+    }
+
+    /**
+     * Returns the number of minutes between background syncs, 0 if they are turned off
+     */
+    public static long getSyncIntervalMinutes(Context context) {
+        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(context);
+        String interval = sharedPrefs.getString(
+                context.getString(R.string.settings_sync_interval_key),
+                context.getString(R.string.settings_sync_interval_default));
+        return (long) parseDouble(interval, 0);
+    }
+
+    /**
+     * Returns the alert rules set in the settings, as written, or an empty string if there
+     * are none
+     */
+    public static String getAlertRules(Context context) {
+        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(context);
+        return sharedPrefs.getString(context.getString(R.string.settings_alert_rules_key), "");
+    }
+
+    private static double parseDouble(String value, double defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.android.quakereport;
+
+/**
+ * What the user asked to see: a magnitude threshold, a sort order and an optional
+ * location filter.
+ */
+public class EarthquakeQuery {
+
+    public static final String ORDER_BY_MAGNITUDE = "magnitude";
+    public static final String ORDER_BY_TIME = "time";
+
+    private final double mMinMagnitude;
+    private final String mOrderBy;
+    private final String mLocationFilter;
+
+    /**
+     * Constructs a new {@link EarthquakeQuery}
+     *
+     * @param minMagnitude   smallest magnitude to show
+     * @param orderBy        {@link #ORDER_BY_MAGNITUDE} or {@link #ORDER_BY_TIME}, both descending
+     * @param locationFilter text the location must contain, ignoring case, or null for any
+     */
+    public EarthquakeQuery(double minMagnitude, String orderBy, String locationFilter) {
+        mMinMagnitude = minMagnitude;
+        mOrderBy = ORDER_BY_TIME.equals(orderBy) ? ORDER_BY_TIME : ORDER_BY_MAGNITUDE;
+        mLocationFilter = locationFilter == null || locationFilter.trim().isEmpty()
+                ? null : locationFilter.trim();
+    }
+
+    public double getMinMagnitude() {
+        return mMinMagnitude;
+    }
+
+    public String getOrderBy() {
+        return mOrderBy;
+    }
+
+    public boolean isOrderedByTime() {
+        return ORDER_BY_TIME.equals(mOrderBy);
+    }
+
+    public String getLocationFilter() {
+        return mLocationFilter;
+    }
+
+    public boolean hasLocationFilter() {
+        return mLocationFilter != null;
+    }
+}
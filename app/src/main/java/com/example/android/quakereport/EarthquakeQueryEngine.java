@@ -0,0 +1,376 @@
+package com.example.android.quakereport;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Answers {@link EarthquakeQuery}s from a table of earthquakes already on hand, so changing
+ * the magnitude threshold, the sort order or the location filter does not need a network
+ * round trip. Two permutations of the rows are sorted once when the engine is built, by
+ * magnitude and by time; a magnitude threshold is then a binary search in the magnitude
+ * order and a scan in the time order. Live changes are applied with {@link #apply}, which
+ * moves only the changed rows within the orders. They are applied to a copy of the table the
+ * engine was built from, which may still be held by others, i.e. the loader that delivered it.
+ * <p>
+ * This class has no Android dependencies. It is not thread-safe.
+ */
+public class EarthquakeQueryEngine {
+
+    private final EarthquakeTable mTable;
+
+    /**
+     * Smallest magnitude the table is known to hold every loaded earthquake for
+     */
+    private final double mCoveredMinMagnitude;
+
+    /**
+     * Rows ordered by magnitude, then time, both descending
+     */
+    private int[] mByMagnitude;
+
+    /**
+     * Rows ordered by time, descending
+     */
+    private int[] mByTime;
+
+    /**
+     * Number of rows in the orders; the arrays may be longer
+     */
+    private int mIndexedCount;
+
+    /**
+     * Row of every event id, built on the first {@link #apply}
+     */
+    private Map<String, Integer> mRowsById;
+
+    /**
+     * Spatial index of the table, built on the first viewport query
+     */
+    private EarthquakeSpatialIndex mSpatialIndex;
+
+    private final RowOrder mMagnitudeOrder = new RowOrder() {
+        @Override
+        public int compare(int a, int b) {
+            int order = Double.compare(mTable.getMagnitude(b), mTable.getMagnitude(a));
+            if (order != 0) {
+                return order;
+            }
+            return compareLongs(mTable.getTimeInMilliseconds(b), mTable.getTimeInMilliseconds(a));
+        }
+    };
+
+    private final RowOrder mTimeOrder = new RowOrder() {
+        @Override
+        public int compare(int a, int b) {
+            return compareLongs(mTable.getTimeInMilliseconds(b), mTable.getTimeInMilliseconds(a));
+        }
+    };
+
+    /**
+     * Location filter {@link #mPlaceMatches} was computed for
+     */
+    private String mMatchedFilter;
+
+    /**
+     * Whether every place of the table dictionary matches {@link #mMatchedFilter}
+     */
+    private boolean[] mPlaceMatches;
+
+    /**
+     * Constructs a new {@link EarthquakeQueryEngine} and sorts its indexes
+     *
+     * @param table               earthquakes on hand; the engine works on a copy of them
+     * @param coveredMinMagnitude magnitude threshold the table was loaded with. Queries with a
+     *                            lower threshold can not be answered from the table.
+     */
+    public EarthquakeQueryEngine(EarthquakeTable table, double coveredMinMagnitude) {
+        mTable = table.copy();
+        mCoveredMinMagnitude = coveredMinMagnitude;
+
+        int[] rows = new int[mTable.size()];
+        int count = 0;
+        for (int row = 0; row < mTable.size(); row++) {
+            if (!mTable.isDeleted(row)) {
+                rows[count++] = row;
+            }
+        }
+        mByMagnitude = Arrays.copyOf(rows, count);
+        mByTime = Arrays.copyOf(rows, count);
+        mIndexedCount = count;
+        sort(mByMagnitude, mMagnitudeOrder);
+        sort(mByTime, mTimeOrder);
+    }
+
+    public EarthquakeTable getTable() {
+        return mTable;
+    }
+
+    /**
+     * Returns the spatial index of the earthquakes on hand, for map viewport queries. It is
+     * built on the first call and again after changes were applied.
+     */
+    public EarthquakeSpatialIndex getSpatialIndex() {
+        if (mSpatialIndex == null) {
+            mSpatialIndex = new EarthquakeSpatialIndex(mTable);
+        }
+        return mSpatialIndex;
+    }
+
+    /**
+     * Returns the time of the oldest earthquake on hand, or {@link Long#MAX_VALUE} if there is
+     * none. Every earthquake older than it is outside the loaded window.
+     */
+    public long getOldestTime() {
+        return mIndexedCount == 0 ? Long.MAX_VALUE
+                : mTable.getTimeInMilliseconds(mByTime[mIndexedCount - 1]);
+    }
+
+    /**
+     * Returns true if the query can be answered from the earthquakes on hand
+     */
+    public boolean covers(EarthquakeQuery query) {
+        return query.getMinMagnitude() >= mCoveredMinMagnitude;
+    }
+
+    /**
+     * Returns the rows of the table matching the query, in the order it asks for
+     */
+    public int[] selectRows(EarthquakeQuery query) {
+        boolean[] placeMatches = matchPlaces(query.getLocationFilter());
+        double minMagnitude = query.getMinMagnitude();
+
+        int[] order;
+        int candidates;
+        if (query.isOrderedByTime()) {
+            order = mByTime;
+            candidates = mIndexedCount;
+        } else {
+            // Every row past the first one below the threshold is below it too
+            order = mByMagnitude;
+            candidates = countAtLeast(minMagnitude);
+        }
+
+        int[] result = new int[candidates];
+        int count = 0;
+        for (int i = 0; i < candidates; i++) {
+            int row = order[i];
+            if (mTable.getMagnitude(row) >= minMagnitude
+                    && (placeMatches == null || placeMatches[mTable.getPlaceCode(row)])) {
+                result[count++] = row;
+            }
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Returns a new table with the earthquakes matching the query, in the order it asks for
+     */
+    public EarthquakeTable select(EarthquakeQuery query) {
+        int[] rows = selectRows(query);
+        EarthquakeTable result = new EarthquakeTable(rows.length);
+        for (int row : rows) {
+            result.addRow(mTable, row);
+        }
+        return result;
+    }
+
+    /**
+     * Applies live changes: new events are added to the table and updated and removed ones
+     * overwritten, and only those rows are moved within the orders. A removed event leaves the
+     * orders if it was deleted, or falls below the threshold of the queries.
+     *
+     * @return the rows that were inserted, updated or removed
+     */
+    public int[] apply(EarthquakeDelta delta) {
+        if (mRowsById == null) {
+            mRowsById = new HashMap<>();
+            for (int row = 0; row < mTable.size(); row++) {
+                mRowsById.put(mTable.getId(row), row);
+            }
+        }
+        // Discard the cached location matches, the new rows may have new places
+        mMatchedFilter = null;
+        mPlaceMatches = null;
+        // The spatial index does not follow changes, build it again when it is needed
+        mSpatialIndex = null;
+
+        EarthquakeTable updated = delta.getUpdated();
+        EarthquakeTable removed = delta.getRemoved();
+        EarthquakeTable inserted = delta.getInserted();
+        int[] changed = new int[updated.size() + removed.size() + inserted.size()];
+        int count = 0;
+        count = overwrite(updated, changed, count);
+        count = overwrite(removed, changed, count);
+        for (int i = 0; i < inserted.size(); i++) {
+            if (mRowsById.containsKey(inserted.getId(i))) {
+                continue;
+            }
+            mTable.addRow(inserted, i);
+            int row = mTable.size() - 1;
+            mRowsById.put(mTable.getId(row), row);
+            index(row);
+            changed[count++] = row;
+        }
+        return count == changed.length ? changed : Arrays.copyOf(changed, count);
+    }
+
+    /**
+     * Overwrites the rows of the known events with their new version and moves them within the
+     * orders
+     *
+     * @param changed rows changed so far, the overwritten ones are appended
+     * @param count   number of rows changed so far
+     * @return number of rows changed now
+     */
+    private int overwrite(EarthquakeTable events, int[] changed, int count) {
+        for (int i = 0; i < events.size(); i++) {
+            Integer row = mRowsById.get(events.getId(i));
+            if (row == null) {
+                continue;
+            }
+            boolean indexed = !mTable.isDeleted(row);
+            if (indexed) {
+                remove(mByMagnitude, row);
+                remove(mByTime, row);
+                mIndexedCount--;
+            }
+            mTable.setRow(row, events, i);
+            index(row);
+            changed[count++] = row;
+        }
+        return count;
+    }
+
+    /**
+     * Inserts a row that is not in the orders yet at its place in both of them
+     */
+    private void index(int row) {
+        if (mTable.isDeleted(row)) {
+            return;
+        }
+        if (mIndexedCount == mByMagnitude.length) {
+            int capacity = Math.max(16, mIndexedCount * 2);
+            mByMagnitude = Arrays.copyOf(mByMagnitude, capacity);
+            mByTime = Arrays.copyOf(mByTime, capacity);
+        }
+        insert(mByMagnitude, row, mMagnitudeOrder);
+        insert(mByTime, row, mTimeOrder);
+        mIndexedCount++;
+    }
+
+    /**
+     * Inserts the row after every row that does not come after it
+     */
+    private void insert(int[] order, int row, RowOrder rowOrder) {
+        int low = 0;
+        int high = mIndexedCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (rowOrder.compare(order[middle], row) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        System.arraycopy(order, low, order, low + 1, mIndexedCount - low);
+        order[low] = row;
+    }
+
+    /**
+     * Removes the row from an order, shifting the rows after it
+     */
+    private void remove(int[] order, int row) {
+        for (int i = 0; i < mIndexedCount; i++) {
+            if (order[i] == row) {
+                System.arraycopy(order, i + 1, order, i, mIndexedCount - i - 1);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of rows with at least the given magnitude, by binary search in the
+     * magnitude order
+     */
+    private int countAtLeast(double minMagnitude) {
+        int low = 0;
+        int high = mIndexedCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (mTable.getMagnitude(mByMagnitude[middle]) >= minMagnitude) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns which places of the dictionary contain the filter, or null if there is no filter.
+     * The result is kept for the next query with the same filter.
+     */
+    private boolean[] matchPlaces(String filter) {
+        if (filter == null) {
+            return null;
+        }
+        if (filter.equals(mMatchedFilter)) {
+            return mPlaceMatches;
+        }
+        String needle = filter.toLowerCase(Locale.ROOT);
+        boolean[] matches = new boolean[mTable.getPlaceCount()];
+        for (int code = 0; code < matches.length; code++) {
+            matches[code] = mTable.getPlace(code).toLowerCase(Locale.ROOT).contains(needle);
+        }
+        mMatchedFilter = filter;
+        mPlaceMatches = matches;
+        return matches;
+    }
+
+    private static int compareLongs(long a, long b) {
+        return a < b ? -1 : (a == b ? 0 : 1);
+    }
+
+    /**
+     * Order of two rows, like a {@link java.util.Comparator} without boxing
+     */
+    private interface RowOrder {
+        int compare(int a, int b);
+    }
+
+    /**
+     * Stable merge sort of row numbers
+     */
+    private static void sort(int[] rows, RowOrder order) {
+        if (rows.length < 2) {
+            return;
+        }
+        int[] buffer = new int[rows.length];
+        int[] source = rows;
+        int[] target = buffer;
+        for (int width = 1; width < rows.length; width *= 2) {
+            for (int start = 0; start < rows.length; start += 2 * width) {
+                int middle = Math.min(start + width, rows.length);
+                int end = Math.min(start + 2 * width, rows.length);
+                int left = start;
+                int right = middle;
+                for (int i = start; i < end; i++) {
+                    if (left < middle && (right >= end
+                            || order.compare(source[left], source[right]) <= 0)) {
+                        target[i] = source[left++];
+                    } else {
+                        target[i] = source[right++];
+                    }
+                }
+            }
+            int[] swap = source;
+            source = target;
+            target = swap;
+        }
+        if (source != rows) {
+            System.arraycopy(source, 0, rows, 0, rows.length);
+        }
+    }
+}
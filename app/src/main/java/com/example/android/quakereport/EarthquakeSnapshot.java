@@ -0,0 +1,373 @@
+package com.example.android.quakereport;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary snapshot of a table of earthquakes, so the last result can be shown at startup
+ * without waiting for the database or the network. The format is versioned and written in one
+ * piece:
+ * <ul>
+ * <li>header: magic number, format version, the key the snapshot was saved for (the query
+ * url) and the number of rows</li>
+ * <li>string table of the distinct places, every row refers to its place by index</li>
+ * <li>one record per row: event id, magnitude in hundredths, time as the difference to the
+ * previous row, updated time as the difference to the time, epicenter in 1e-5 degrees and
+ * depth in meters, all as variable length integers; the url only when it does not follow the
+ * usual event page pattern</li>
+ * <li>a CRC32 of everything before it</li>
+ * </ul>
+ * Display fields are locale dependent and not saved. Deleted rows are not saved.
+ * <p>
+ * This class has no Android dependencies so it can be benchmarked on a plain JVM.
+ */
+public final class EarthquakeSnapshot {
+
+    /**
+     * Version of the format, incremented when it changes so older snapshots are ignored
+     */
+    public static final int VERSION = 1;
+
+    private static final int MAGIC = 0x51524B53;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static final int FLAG_CUSTOM_URL = 1;
+    private static final int FLAG_COORDINATES = 1 << 1;
+    private static final int FLAG_DEPTH = 1 << 2;
+
+    private static final double MAGNITUDE_SCALE = 100;
+    private static final double COORDINATE_SCALE = 1e5;
+    private static final double DEPTH_SCALE = 1000;
+
+    private EarthquakeSnapshot() {
+    }
+
+    /**
+     * Writes the snapshot to a temporary file and renames it over the given one, so a reader
+     * never sees a partly written snapshot.
+     *
+     * @param file        file the snapshot is saved to
+     * @param key         identifies what the earthquakes are the result of, i.e. the query url
+     * @param earthquakes earthquakes to save
+     */
+    public static void save(File file, String key, EarthquakeTable earthquakes) throws IOException {
+        File tempFile = new File(file.getPath() + TEMP_SUFFIX);
+        OutputStream outputStream = new FileOutputStream(tempFile);
+        boolean saved = false;
+        try {
+            try {
+                write(outputStream, key, earthquakes);
+            } finally {
+                outputStream.close();
+            }
+            if (!tempFile.renameTo(file)) {
+                throw new IOException("Could not replace " + file);
+            }
+            saved = true;
+        } finally {
+            if (!saved) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Reads the snapshot saved in the given file
+     *
+     * @param key key the snapshot must have been saved for
+     * @return the earthquakes of the snapshot, or null if there is no snapshot or it was saved
+     * for another key or by another version of the format
+     * @throws IOException if the file can not be read or is corrupt
+     */
+    public static EarthquakeTable load(File file, String key) throws IOException {
+        InputStream inputStream;
+        try {
+            inputStream = new FileInputStream(file);
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+        try {
+            return read(inputStream, key);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * Writes the snapshot to the stream, which is not closed
+     */
+    public static void write(OutputStream outputStream, String key, EarthquakeTable earthquakes)
+            throws IOException {
+        int count = 0;
+        for (int row = 0; row < earthquakes.size(); row++) {
+            if (!earthquakes.isDeleted(row)) {
+                count++;
+            }
+        }
+
+        Encoder encoder = new Encoder(64 + count * 32);
+        encoder.writeInt(MAGIC);
+        encoder.writeVarint(VERSION);
+        encoder.writeString(key);
+        encoder.writeVarint(count);
+        encoder.writeVarint(earthquakes.getPlaceCount());
+        for (int code = 0; code < earthquakes.getPlaceCount(); code++) {
+            encoder.writeString(earthquakes.getPlace(code));
+        }
+
+        long previousTime = 0;
+        for (int row = 0; row < earthquakes.size(); row++) {
+            if (earthquakes.isDeleted(row)) {
+                continue;
+            }
+            String url = earthquakes.getCustomUrl(row);
+            double depth = earthquakes.getDepth(row);
+            int flags = 0;
+            if (url != null) {
+                flags |= FLAG_CUSTOM_URL;
+            }
+            if (earthquakes.hasCoordinates(row)) {
+                flags |= FLAG_COORDINATES;
+            }
+            if (!Double.isNaN(depth)) {
+                flags |= FLAG_DEPTH;
+            }
+
+            long time = earthquakes.getTimeInMilliseconds(row);
+            encoder.writeString(earthquakes.getId(row));
+            encoder.writeVarint(flags);
+            encoder.writeSignedVarint(Math.round(earthquakes.getMagnitude(row) * MAGNITUDE_SCALE));
+            encoder.writeSignedVarint(time - previousTime);
+            encoder.writeSignedVarint(earthquakes.getUpdated(row) - time);
+            encoder.writeVarint(earthquakes.getPlaceCode(row));
+            if (url != null) {
+                encoder.writeString(url);
+            }
+            if ((flags & FLAG_COORDINATES) != 0) {
+                encoder.writeSignedVarint(
+                        Math.round(earthquakes.getLongitude(row) * COORDINATE_SCALE));
+                encoder.writeSignedVarint(
+                        Math.round(earthquakes.getLatitude(row) * COORDINATE_SCALE));
+            }
+            if ((flags & FLAG_DEPTH) != 0) {
+                encoder.writeSignedVarint(Math.round(depth * DEPTH_SCALE));
+            }
+            previousTime = time;
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(encoder.mBuffer, 0, encoder.mLength);
+        encoder.writeInt((int) crc.getValue());
+        outputStream.write(encoder.mBuffer, 0, encoder.mLength);
+    }
+
+    /**
+     * Reads a snapshot from the stream, which is read to its end but not closed
+     *
+     * @param key key the snapshot must have been saved for
+     * @return the earthquakes of the snapshot, or null if it was saved for another key or by
+     * another version of the format
+     * @throws IOException if the stream can not be read or the snapshot is corrupt
+     */
+    public static EarthquakeTable read(InputStream inputStream, String key) throws IOException {
+        Decoder decoder = new Decoder(readFully(inputStream));
+        if (decoder.mLength < 8 || decoder.readInt() != MAGIC) {
+            throw new IOException("Not an earthquake snapshot");
+        }
+        if (decoder.readVarint() != VERSION) {
+            return null;
+        }
+
+        // Check the whole snapshot before trusting any count in it
+        int end = decoder.mLength - 4;
+        CRC32 crc = new CRC32();
+        crc.update(decoder.mBuffer, 0, end);
+        if ((int) crc.getValue() != decoder.getInt(end)) {
+            throw new IOException("Corrupt earthquake snapshot");
+        }
+        decoder.mLength = end;
+
+        if (!key.equals(decoder.readString())) {
+            return null;
+        }
+        int count = decoder.readVarint();
+        String[] places = new String[decoder.readVarint()];
+        for (int code = 0; code < places.length; code++) {
+            places[code] = decoder.readString();
+        }
+
+        EarthquakeTable earthquakes = new EarthquakeTable(count);
+        long previousTime = 0;
+        for (int i = 0; i < count; i++) {
+            String id = decoder.readString();
+            int flags = decoder.readVarint();
+            double magnitude = decoder.readSignedVarint() / MAGNITUDE_SCALE;
+            long time = previousTime + decoder.readSignedVarint();
+            long updated = time + decoder.readSignedVarint();
+            int place = decoder.readVarint();
+            if (place >= places.length) {
+                throw new IOException("Corrupt earthquake snapshot");
+            }
+            String url = (flags & FLAG_CUSTOM_URL) != 0 ? decoder.readString() : null;
+            double longitude = Double.NaN;
+            double latitude = Double.NaN;
+            double depth = Double.NaN;
+            if ((flags & FLAG_COORDINATES) != 0) {
+                longitude = decoder.readSignedVarint() / COORDINATE_SCALE;
+                latitude = decoder.readSignedVarint() / COORDINATE_SCALE;
+            }
+            if ((flags & FLAG_DEPTH) != 0) {
+                depth = decoder.readSignedVarint() / DEPTH_SCALE;
+            }
+            earthquakes.add(id, magnitude, places[place], time, updated, url,
+                    longitude, latitude, depth);
+            previousTime = time;
+        }
+        earthquakes.trimToSize();
+        return earthquakes;
+    }
+
+    private static byte[] readFully(InputStream inputStream) throws IOException {
+        byte[] buffer = new byte[Math.max(inputStream.available(), 8192)];
+        int length = 0;
+        while (true) {
+            int read = inputStream.read(buffer, length, buffer.length - length);
+            if (read < 0) {
+                return length == buffer.length ? buffer : Arrays.copyOf(buffer, length);
+            }
+            length += read;
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+        }
+    }
+
+    /**
+     * Appends to a growing byte array, faster than a stream for many small values
+     */
+    private static final class Encoder {
+        byte[] mBuffer;
+        int mLength;
+
+        Encoder(int capacity) {
+            mBuffer = new byte[capacity];
+        }
+
+        void writeInt(int value) {
+            ensureCapacity(4);
+            mBuffer[mLength++] = (byte) (value >>> 24);
+            mBuffer[mLength++] = (byte) (value >>> 16);
+            mBuffer[mLength++] = (byte) (value >>> 8);
+            mBuffer[mLength++] = (byte) value;
+        }
+
+        /**
+         * Writes a non-negative value in groups of 7 bits, low group first
+         */
+        void writeVarint(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                mBuffer[mLength++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            mBuffer[mLength++] = (byte) value;
+        }
+
+        /**
+         * Writes a value that may be negative, zigzag encoded so small values stay short
+         */
+        void writeSignedVarint(long value) {
+            writeVarint((value << 1) ^ (value >> 63));
+        }
+
+        void writeString(String value) {
+            byte[] bytes = value.getBytes(UTF_8);
+            writeVarint(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, mBuffer, mLength, bytes.length);
+            mLength += bytes.length;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (mLength + extra > mBuffer.length) {
+                mBuffer = Arrays.copyOf(mBuffer, Math.max(mBuffer.length * 2, mLength + extra));
+            }
+        }
+    }
+
+    /**
+     * Reads back what {@link Encoder} wrote, checking every read against the end of the data
+     */
+    private static final class Decoder {
+        final byte[] mBuffer;
+        int mLength;
+        int mPosition;
+
+        Decoder(byte[] buffer) {
+            mBuffer = buffer;
+            mLength = buffer.length;
+        }
+
+        int readInt() throws IOException {
+            require(4);
+            int value = getInt(mPosition);
+            mPosition += 4;
+            return value;
+        }
+
+        int getInt(int offset) {
+            return ((mBuffer[offset] & 0xFF) << 24) | ((mBuffer[offset + 1] & 0xFF) << 16)
+                    | ((mBuffer[offset + 2] & 0xFF) << 8) | (mBuffer[offset + 3] & 0xFF);
+        }
+
+        int readVarint() throws IOException {
+            long value = readLongVarint();
+            if (value > Integer.MAX_VALUE) {
+                throw new IOException("Corrupt earthquake snapshot");
+            }
+            return (int) value;
+        }
+
+        long readSignedVarint() throws IOException {
+            long value = readLongVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        String readString() throws IOException {
+            int length = readVarint();
+            require(length);
+            String value = new String(mBuffer, mPosition, length, UTF_8);
+            mPosition += length;
+            return value;
+        }
+
+        private long readLongVarint() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                require(1);
+                byte b = mBuffer[mPosition++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Corrupt earthquake snapshot");
+        }
+
+        private void require(int count) throws IOException {
+            if (count < 0 || mPosition + count > mLength) {
+                throw new IOException("Truncated earthquake snapshot");
+            }
+        }
+    }
+}
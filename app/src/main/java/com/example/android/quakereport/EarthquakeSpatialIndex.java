@@ -0,0 +1,412 @@
+package com.example.android.quakereport;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Spatial index over the epicenters of a table of earthquakes, answering the viewport queries
+ * of a map: the earthquakes inside a bounding box, or clusters of them at low zoom levels.
+ * <p>
+ * Longitude and latitude are quantized to {@link #LEVELS} bits each and interleaved into a
+ * Z-order code, and the rows are sorted by that code. Every cell of the implicit quadtree is
+ * then a contiguous range of the sorted rows, found by binary search. A query walks down the
+ * quadtree from the whole world and only looks at single epicenters in cells crossed by the
+ * edge of the box; cells fully inside are taken whole. A cluster is a quadtree cell; its size
+ * and the average of its epicenters come from prefix sums, without visiting its rows.
+ * <p>
+ * This class has no Android dependencies. It is built once for a table and does not follow
+ * later changes to it; it is immutable and can be shared between threads.
+ */
+public class EarthquakeSpatialIndex {
+
+    /**
+     * Depth of the quadtree, i.e. bits per axis of the quantized coordinates. At the deepest
+     * level a cell spans about 0.01 degrees.
+     */
+    public static final int LEVELS = 15;
+
+    /**
+     * Quadtree levels added to the map zoom level to get the cluster cell level. At zoom z the
+     * world is 256 * 2^z pixels wide, so clusters are cells of about 64 pixels.
+     */
+    private static final int CLUSTER_LEVELS_PER_ZOOM = 2;
+
+    /**
+     * Cells with at most this many rows are scanned instead of split further
+     */
+    private static final int SCAN_THRESHOLD = 16;
+
+    private static final int CELLS_PER_AXIS = 1 << LEVELS;
+
+    private final EarthquakeTable mTable;
+
+    /**
+     * Z-order code of every indexed row, ascending
+     */
+    private final int[] mCodes;
+
+    /**
+     * Table row, longitude and latitude of every indexed row, in the order of {@link #mCodes}
+     */
+    private final int[] mRows;
+    private final double[] mLongitudes;
+    private final double[] mLatitudes;
+
+    /**
+     * Sums of the longitudes and latitudes of the first i indexed rows, at index i
+     */
+    private final double[] mLongitudeSums;
+    private final double[] mLatitudeSums;
+
+    /**
+     * A group of earthquakes close to each other, drawn as one marker on the map
+     */
+    public static final class Cluster {
+        private final double mLongitude;
+        private final double mLatitude;
+        private final int mCount;
+        private final int mRow;
+
+        Cluster(double longitude, double latitude, int count, int row) {
+            mLongitude = longitude;
+            mLatitude = latitude;
+            mCount = count;
+            mRow = row;
+        }
+
+        /**
+         * Returns the average longitude of the epicenters of the cluster
+         */
+        public double getLongitude() {
+            return mLongitude;
+        }
+
+        /**
+         * Returns the average latitude of the epicenters of the cluster
+         */
+        public double getLatitude() {
+            return mLatitude;
+        }
+
+        /**
+         * Returns the number of earthquakes of the cluster
+         */
+        public int getCount() {
+            return mCount;
+        }
+
+        /**
+         * Returns the table row of the earthquake if the cluster has only one, otherwise -1
+         */
+        public int getRow() {
+            return mRow;
+        }
+    }
+
+    /**
+     * Builds the index over every row of the table that is not deleted and has coordinates
+     */
+    public EarthquakeSpatialIndex(EarthquakeTable table) {
+        mTable = table;
+
+        // Sort code and row together, the code in the high half
+        long[] keys = new long[table.size()];
+        int count = 0;
+        for (int row = 0; row < table.size(); row++) {
+            if (!table.isDeleted(row) && table.hasCoordinates(row)) {
+                int code = interleave(quantizeLongitude(table.getLongitude(row)),
+                        quantizeLatitude(table.getLatitude(row)));
+                keys[count++] = ((long) code << 32) | row;
+            }
+        }
+        Arrays.sort(keys, 0, count);
+
+        mCodes = new int[count];
+        mRows = new int[count];
+        mLongitudes = new double[count];
+        mLatitudes = new double[count];
+        mLongitudeSums = new double[count + 1];
+        mLatitudeSums = new double[count + 1];
+        for (int i = 0; i < count; i++) {
+            int row = (int) keys[i];
+            mCodes[i] = (int) (keys[i] >>> 32);
+            mRows[i] = row;
+            mLongitudes[i] = table.getLongitude(row);
+            mLatitudes[i] = table.getLatitude(row);
+            mLongitudeSums[i + 1] = mLongitudeSums[i] + mLongitudes[i];
+            mLatitudeSums[i + 1] = mLatitudeSums[i] + mLatitudes[i];
+        }
+    }
+
+    public EarthquakeTable getTable() {
+        return mTable;
+    }
+
+    /**
+     * Returns the number of indexed earthquakes
+     */
+    public int size() {
+        return mRows.length;
+    }
+
+    /**
+     * Returns the table rows of the earthquakes inside the bounding box, edges included, in no
+     * particular order. A box with {@code west > east} crosses the antimeridian.
+     *
+     * @param south southern latitude of the box in degrees
+     * @param west  western longitude of the box in degrees
+     * @param north northern latitude of the box in degrees
+     * @param east  eastern longitude of the box in degrees
+     */
+    public int[] selectRows(double south, double west, double north, double east) {
+        RowCollector collector = new RowCollector();
+        if (west > east) {
+            collector.collect(new Box(south, west, north, 180));
+            collector.collect(new Box(south, -180, north, east));
+        } else {
+            collector.collect(new Box(south, west, north, east));
+        }
+        return Arrays.copyOf(collector.mResult, collector.mCount);
+    }
+
+    /**
+     * Groups the earthquakes inside the bounding box into clusters sized for the given map
+     * zoom level. Clusters are cells of a fixed grid, so panning the map does not regroup the
+     * earthquakes; a cell crossed by the edge of the box only counts the earthquakes inside.
+     *
+     * @param south southern latitude of the box in degrees
+     * @param west  western longitude of the box in degrees
+     * @param north northern latitude of the box in degrees
+     * @param east  eastern longitude of the box in degrees
+     * @param zoom  map zoom level, 0 showing the whole world in 256 pixels
+     */
+    public List<Cluster> cluster(double south, double west, double north, double east, int zoom) {
+        int level = Math.max(0, Math.min(LEVELS, zoom + CLUSTER_LEVELS_PER_ZOOM));
+        ClusterCollector collector = new ClusterCollector(level);
+        if (west > east) {
+            collector.collect(new Box(south, west, north, 180));
+            collector.collect(new Box(south, -180, north, east));
+        } else {
+            collector.collect(new Box(south, west, north, east));
+        }
+        return collector.mClusters;
+    }
+
+    /**
+     * Bounding box in degrees and in quantized cells
+     */
+    private static final class Box {
+        final double mSouth;
+        final double mWest;
+        final double mNorth;
+        final double mEast;
+        final int mMinX;
+        final int mMinY;
+        final int mMaxX;
+        final int mMaxY;
+
+        Box(double south, double west, double north, double east) {
+            mSouth = south;
+            mWest = west;
+            mNorth = north;
+            mEast = east;
+            mMinX = quantizeLongitude(west);
+            mMinY = quantizeLatitude(south);
+            mMaxX = quantizeLongitude(east);
+            mMaxY = quantizeLatitude(north);
+        }
+
+        boolean isEmpty() {
+            return mSouth > mNorth || mWest > mEast;
+        }
+
+        boolean contains(double longitude, double latitude) {
+            return latitude >= mSouth && latitude <= mNorth
+                    && longitude >= mWest && longitude <= mEast;
+        }
+    }
+
+    /**
+     * Walks down the quadtree over the cells that intersect a box
+     */
+    private abstract class Walker {
+
+        /**
+         * Level of the cells the walk reports
+         */
+        private final int mCellLevel;
+
+        /**
+         * Whether larger cells may be reported too, when they are inside the box or small
+         * enough to scan
+         */
+        private final boolean mLargerCells;
+
+        Walker(int cellLevel, boolean largerCells) {
+            mCellLevel = cellLevel;
+            mLargerCells = largerCells;
+        }
+
+        void collect(Box box) {
+            if (!box.isEmpty() && mCodes.length > 0) {
+                visit(box, 0, 0, 0, 0, mCodes.length);
+            }
+        }
+
+        /**
+         * Visits the cell at position (x, y) of the given level, whose rows are [from, to)
+         */
+        private void visit(Box box, int level, int x, int y, int from, int to) {
+            if (from == to) {
+                return;
+            }
+            int shift = LEVELS - level;
+            int minX = x << shift;
+            int minY = y << shift;
+            int maxX = minX + (1 << shift) - 1;
+            int maxY = minY + (1 << shift) - 1;
+            if (maxX < box.mMinX || minX > box.mMaxX || maxY < box.mMinY || minY > box.mMaxY) {
+                return;
+            }
+            // Cells strictly between the quantized edges only hold epicenters inside the box
+            boolean inside = minX > box.mMinX && maxX < box.mMaxX
+                    && minY > box.mMinY && maxY < box.mMaxY;
+            if (level == mCellLevel
+                    || (mLargerCells && (inside || to - from <= SCAN_THRESHOLD))) {
+                onCell(box, from, to, inside);
+                return;
+            }
+
+            // Split into the four children, which are consecutive ranges of codes
+            int childShift = 2 * (shift - 1);
+            int base = interleave(minX, minY);
+            int start = from;
+            for (int quadrant = 0; quadrant < 4; quadrant++) {
+                int end = quadrant == 3 ? to
+                        : lowerBound(start, to, base + ((quadrant + 1) << childShift));
+                visit(box, level + 1, 2 * x + (quadrant & 1), 2 * y + (quadrant >> 1),
+                        start, end);
+                start = end;
+            }
+        }
+
+        /**
+         * Called for every reported cell that intersects the box
+         *
+         * @param inside true if every row of the cell is inside the box
+         */
+        abstract void onCell(Box box, int from, int to, boolean inside);
+    }
+
+    private class RowCollector extends Walker {
+        int[] mResult = new int[16];
+        int mCount;
+
+        RowCollector() {
+            super(LEVELS, true);
+        }
+
+        @Override
+        void onCell(Box box, int from, int to, boolean inside) {
+            if (mCount + to - from > mResult.length) {
+                mResult = Arrays.copyOf(mResult, Math.max(mResult.length * 2, mCount + to - from));
+            }
+            if (inside) {
+                System.arraycopy(mRows, from, mResult, mCount, to - from);
+                mCount += to - from;
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                if (box.contains(mLongitudes[i], mLatitudes[i])) {
+                    mResult[mCount++] = mRows[i];
+                }
+            }
+        }
+    }
+
+    private class ClusterCollector extends Walker {
+        final List<Cluster> mClusters = new ArrayList<>();
+
+        ClusterCollector(int level) {
+            super(level, false);
+        }
+
+        @Override
+        void onCell(Box box, int from, int to, boolean inside) {
+            if (inside) {
+                int count = to - from;
+                mClusters.add(new Cluster(
+                        (mLongitudeSums[to] - mLongitudeSums[from]) / count,
+                        (mLatitudeSums[to] - mLatitudeSums[from]) / count,
+                        count, count == 1 ? mRows[from] : -1));
+                return;
+            }
+            double longitudeSum = 0;
+            double latitudeSum = 0;
+            int count = 0;
+            int row = -1;
+            for (int i = from; i < to; i++) {
+                if (box.contains(mLongitudes[i], mLatitudes[i])) {
+                    longitudeSum += mLongitudes[i];
+                    latitudeSum += mLatitudes[i];
+                    count++;
+                    row = mRows[i];
+                }
+            }
+            if (count > 0) {
+                mClusters.add(new Cluster(longitudeSum / count, latitudeSum / count, count,
+                        count == 1 ? row : -1));
+            }
+        }
+    }
+
+    /**
+     * Returns the first index in [from, to) whose code is at least the given one
+     */
+    private int lowerBound(int from, int to, int code) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (mCodes[middle] < code) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static int quantizeLongitude(double longitude) {
+        return quantize((longitude + 180) / 360);
+    }
+
+    private static int quantizeLatitude(double latitude) {
+        return quantize((latitude + 90) / 180);
+    }
+
+    private static int quantize(double fraction) {
+        int cell = (int) Math.floor(fraction * CELLS_PER_AXIS);
+        return Math.max(0, Math.min(CELLS_PER_AXIS - 1, cell));
+    }
+
+    /**
+     * Returns the Z-order code of a cell: the bits of x and y interleaved, x in the even bits
+     */
+    private static int interleave(int x, int y) {
+        return spread(x) | (spread(y) << 1);
+    }
+
+    /**
+     * Moves the low 16 bits of the value to the even bits
+     */
+    private static int spread(int value) {
+        value &= 0xFFFF;
+        value = (value | (value << 8)) & 0x00FF00FF;
+        value = (value | (value << 4)) & 0x0F0F0F0F;
+        value = (value | (value << 2)) & 0x33333333;
+        value = (value | (value << 1)) & 0x55555555;
+        return value;
+    }
+}
@@ -0,0 +1,308 @@
+package com.example.android.quakereport;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.example.android.quakereport.EarthquakeContract.EarthquakeEntry;
+import com.example.android.quakereport.EarthquakeContract.SyncStateEntry;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Persistent on-device store of earthquakes keyed by USGS event id. All methods touch the
+ * database or the disk and must be called off the main thread.
+ * <p>
+ * The store also keeps an {@link EarthquakeSnapshot} of the last result read from it, so it can
+ * be shown at startup without a query. Every merge deletes the snapshot, so it is never served
+ * once the store changed, whichever sync, backfill or live feed changed it.
+ */
+public final class EarthquakeStore {
+
+    /**
+     * Name of the snapshot file in the cache directory
+     */
+    private static final String SNAPSHOT_FILE_NAME = "earthquakes.snapshot";
+
+    private static final String[] EARTHQUAKE_PROJECTION = {
+            EarthquakeEntry.COLUMN_EVENT_ID,
+            EarthquakeEntry.COLUMN_MAGNITUDE,
+            EarthquakeEntry.COLUMN_LOCATION,
+            EarthquakeEntry.COLUMN_TIME,
+            EarthquakeEntry.COLUMN_UPDATED,
+            EarthquakeEntry.COLUMN_URL,
+            EarthquakeEntry.COLUMN_LONGITUDE,
+            EarthquakeEntry.COLUMN_LATITUDE,
+            EarthquakeEntry.COLUMN_DEPTH
+    };
+
+    /**
+     * {@link #EARTHQUAKE_PROJECTION} followed by the row id, which exports page by
+     */
+    private static final String[] EXPORT_PROJECTION = {
+            EarthquakeEntry.COLUMN_EVENT_ID,
+            EarthquakeEntry.COLUMN_MAGNITUDE,
+            EarthquakeEntry.COLUMN_LOCATION,
+            EarthquakeEntry.COLUMN_TIME,
+            EarthquakeEntry.COLUMN_UPDATED,
+            EarthquakeEntry.COLUMN_URL,
+            EarthquakeEntry.COLUMN_LONGITUDE,
+            EarthquakeEntry.COLUMN_LATITUDE,
+            EarthquakeEntry.COLUMN_DEPTH,
+            EarthquakeEntry._ID
+    };
+
+    private static EarthquakeStore sInstance;
+
+    private final EarthquakeDbHelper mDbHelper;
+
+    private final File mSnapshotFile;
+
+    /**
+     * Number of merges so far, so a result read before a merge is not saved as the snapshot
+     * after it; guarded by mSnapshotLock
+     */
+    private long mModificationCount;
+    private final Object mSnapshotLock = new Object();
+
+    private EarthquakeStore(Context context) {
+        mDbHelper = new EarthquakeDbHelper(context);
+        mSnapshotFile = new File(context.getCacheDir(), SNAPSHOT_FILE_NAME);
+    }
+
+    /**
+     * Returns the store shared by the whole app, so every caller uses the same database connection.
+     */
+    public static synchronized EarthquakeStore getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new EarthquakeStore(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Returns the stored earthquakes with at least the given magnitude.
+     *
+     * @param minMagnitude smallest magnitude to return
+     * @param orderBy      {@link EarthquakeQuery#ORDER_BY_MAGNITUDE} or
+     *                     {@link EarthquakeQuery#ORDER_BY_TIME}, both descending
+     * @param limit        maximum number of earthquakes to return
+     */
+    public EarthquakeTable query(double minMagnitude, String orderBy, int limit) {
+        String sortColumn = EarthquakeQuery.ORDER_BY_TIME.equals(orderBy)
+                ? EarthquakeEntry.COLUMN_TIME : EarthquakeEntry.COLUMN_MAGNITUDE;
+
+        SQLiteDatabase db = mDbHelper.getReadableDatabase();
+        Cursor cursor = db.query(EarthquakeEntry.TABLE_NAME,
+                EARTHQUAKE_PROJECTION,
+                EarthquakeEntry.COLUMN_MAGNITUDE + " >= ?",
+                new String[]{String.valueOf(minMagnitude)},
+                null,
+                null,
+                sortColumn + " DESC",
+                String.valueOf(limit));
+
+        EarthquakeTable earthquakes = new EarthquakeTable(cursor.getCount());
+        try {
+            while (cursor.moveToNext()) {
+                addRow(cursor, earthquakes);
+            }
+        } finally {
+            cursor.close();
+        }
+        return earthquakes;
+    }
+
+    /**
+     * Returns the number of stored earthquakes with at least the given magnitude
+     */
+    public long count(double minMagnitude) {
+        return DatabaseUtils.queryNumEntries(mDbHelper.getReadableDatabase(),
+                EarthquakeEntry.TABLE_NAME, EarthquakeEntry.COLUMN_MAGNITUDE + " >= ?",
+                new String[]{String.valueOf(minMagnitude)});
+    }
+
+    /**
+     * Returns a source of every stored earthquake with at least the given magnitude, for an
+     * export. Every chunk is its own query starting after the last row of the previous one, so
+     * no cursor stays open and the memory used does not grow with the store.
+     */
+    public EarthquakeExporter.Source openExport(final double minMagnitude) {
+        return new EarthquakeExporter.Source() {
+            private long mLastRowId = -1;
+
+            @Override
+            public boolean read(EarthquakeTable chunk, int maxRows) {
+                chunk.clear();
+                SQLiteDatabase db = mDbHelper.getReadableDatabase();
+                Cursor cursor = db.query(EarthquakeEntry.TABLE_NAME,
+                        EXPORT_PROJECTION,
+                        EarthquakeEntry._ID + " > ? AND "
+                                + EarthquakeEntry.COLUMN_MAGNITUDE + " >= ?",
+                        new String[]{String.valueOf(mLastRowId), String.valueOf(minMagnitude)},
+                        null,
+                        null,
+                        EarthquakeEntry._ID,
+                        String.valueOf(maxRows));
+                try {
+                    while (cursor.moveToNext()) {
+                        addRow(cursor, chunk);
+                        mLastRowId = cursor.getLong(EARTHQUAKE_PROJECTION.length);
+                    }
+                } finally {
+                    cursor.close();
+                }
+                return chunk.size() > 0;
+            }
+        };
+    }
+
+    /**
+     * Appends the row the cursor is on, read with {@link #EARTHQUAKE_PROJECTION}
+     */
+    private static void addRow(Cursor cursor, EarthquakeTable earthquakes) {
+        earthquakes.add(
+                cursor.getString(0),
+                cursor.getDouble(1),
+                cursor.getString(2),
+                cursor.getLong(3),
+                cursor.getLong(4),
+                cursor.getString(5),
+                getDoubleOrNaN(cursor, 6),
+                getDoubleOrNaN(cursor, 7),
+                getDoubleOrNaN(cursor, 8));
+    }
+
+    /**
+     * Merges a batch of earthquakes into the store in a single transaction. New events are
+     * inserted, known events are replaced and events marked as deleted are removed.
+     *
+     * @return the latest "updated" time found in the batch, or 0 if the batch is empty
+     */
+    public long merge(EarthquakeTable earthquakes) {
+        long highWaterMark = 0;
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            EarthquakeTable.Cursor earthquake = earthquakes.cursor();
+            for (int row = 0; row < earthquakes.size(); row++) {
+                earthquake.moveTo(row);
+                highWaterMark = Math.max(highWaterMark, earthquake.getUpdated());
+                if (earthquake.isDeleted()) {
+                    db.delete(EarthquakeEntry.TABLE_NAME,
+                            EarthquakeEntry.COLUMN_EVENT_ID + " = ?",
+                            new String[]{earthquake.getId()});
+                    continue;
+                }
+                values.clear();
+                values.put(EarthquakeEntry.COLUMN_EVENT_ID, earthquake.getId());
+                values.put(EarthquakeEntry.COLUMN_MAGNITUDE, earthquake.getMagnitude());
+                values.put(EarthquakeEntry.COLUMN_LOCATION, earthquake.getLocation());
+                values.put(EarthquakeEntry.COLUMN_TIME, earthquake.getTimeInMilliseconds());
+                values.put(EarthquakeEntry.COLUMN_UPDATED, earthquake.getUpdated());
+                values.put(EarthquakeEntry.COLUMN_URL, earthquake.getUrl());
+                putDoubleOrNull(values, EarthquakeEntry.COLUMN_LONGITUDE,
+                        earthquake.getLongitude());
+                putDoubleOrNull(values, EarthquakeEntry.COLUMN_LATITUDE, earthquake.getLatitude());
+                putDoubleOrNull(values, EarthquakeEntry.COLUMN_DEPTH, earthquake.getDepth());
+                db.insertWithOnConflict(EarthquakeEntry.TABLE_NAME, null, values,
+                        SQLiteDatabase.CONFLICT_REPLACE);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        synchronized (mSnapshotLock) {
+            mModificationCount++;
+            mSnapshotFile.delete();
+        }
+        return highWaterMark;
+    }
+
+    /**
+     * Returns the number of merges so far; read it before querying a result to be saved with
+     * {@link #saveSnapshot(String, EarthquakeTable, long)}
+     */
+    public long getModificationCount() {
+        synchronized (mSnapshotLock) {
+            return mModificationCount;
+        }
+    }
+
+    /**
+     * Reads the snapshot saved for the given key, deleting it if it is corrupt
+     *
+     * @return the earthquakes of the snapshot, or null if there is none for the key or the
+     * store changed since it was saved
+     */
+    public EarthquakeTable loadSnapshot(String key) throws IOException {
+        try {
+            return EarthquakeSnapshot.load(mSnapshotFile, key);
+        } catch (IOException e) {
+            mSnapshotFile.delete();
+            throw e;
+        }
+    }
+
+    /**
+     * Saves a result read from the store as the snapshot for the given key, unless the store
+     * changed since it was read
+     *
+     * @param modificationCount {@link #getModificationCount()} from before the result was read
+     * @return false if the store changed and the snapshot was not saved
+     */
+    public boolean saveSnapshot(String key, EarthquakeTable earthquakes, long modificationCount)
+            throws IOException {
+        synchronized (mSnapshotLock) {
+            if (modificationCount != mModificationCount) {
+                return false;
+            }
+            EarthquakeSnapshot.save(mSnapshotFile, key, earthquakes);
+            return true;
+        }
+    }
+
+    /**
+     * Returns the latest "updated" time synced for the given query, or 0 if it was never synced.
+     */
+    public long getHighWaterMark(String query) {
+        SQLiteDatabase db = mDbHelper.getReadableDatabase();
+        Cursor cursor = db.query(SyncStateEntry.TABLE_NAME,
+                new String[]{SyncStateEntry.COLUMN_UPDATED},
+                SyncStateEntry.COLUMN_QUERY + " = ?",
+                new String[]{query},
+                null, null, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Stores the latest "updated" time synced for the given query.
+     */
+    public void setHighWaterMark(String query, long updated) {
+        ContentValues values = new ContentValues();
+        values.put(SyncStateEntry.COLUMN_QUERY, query);
+        values.put(SyncStateEntry.COLUMN_UPDATED, updated);
+        mDbHelper.getWritableDatabase().insertWithOnConflict(SyncStateEntry.TABLE_NAME, null,
+                values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    private static double getDoubleOrNaN(Cursor cursor, int column) {
+        return cursor.isNull(column) ? Double.NaN : cursor.getDouble(column);
+    }
+
+    private static void putDoubleOrNull(ContentValues values, String column, double value) {
+        if (Double.isNaN(value)) {
+            values.putNull(column);
+        } else {
+            values.put(column, value);
+        }
+    }
+}
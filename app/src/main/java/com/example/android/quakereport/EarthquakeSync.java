@@ -0,0 +1,236 @@
+package com.example.android.quakereport;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps the {@link EarthquakeStore} up to date with USGS. The first sync of a query downloads
+ * the full window; later syncs only ask for events updated after the stored high-water mark.
+ */
+public final class EarthquakeSync {
+
+    /**
+     * Number of the most recent earthquakes kept in sync and shown when the app opens
+     */
+    public static final int CATALOG_SIZE = 1000;
+
+    /**
+     * Largest number of changes asked for at once; more are fetched a page at a time
+     */
+    private static final int SYNC_PAGE_SIZE = 1000;
+
+    /**
+     * Held during a sync, so the app and the background sync never sync at the same time
+     */
+    private static final Lock SYNC_LOCK = new ReentrantLock();
+
+    /**
+     * Number of requests fetched at the same time
+     */
+    private static final int FETCH_THREADS = 4;
+
+    /**
+     * Number of requests sent to the same host at the same time
+     */
+    private static final int MAX_REQUESTS_PER_HOST = 3;
+
+    private static MultiFeedFetcher sFetcher;
+
+    private EarthquakeSync() {
+    }
+
+    /**
+     * Returns the request url of the catalog of the most recent earthquakes of at least the
+     * given magnitude. It asks for csv, which has every field the store keeps, deleted events
+     * included, at a fraction of the size of GeoJSON.
+     */
+    public static String buildCatalogUrl(double minMagnitude) {
+        return new UsgsQueryBuilder()
+                .format(UsgsQueryBuilder.Format.CSV)
+                .eventType(UsgsQueryBuilder.EVENT_TYPE_EARTHQUAKE)
+                .limit(CATALOG_SIZE)
+                .minMagnitude(minMagnitude)
+                .orderBy(EarthquakeQuery.ORDER_BY_TIME)
+                .build();
+    }
+
+    /**
+     * Fetches what changed for the given request and merges it into the store. If another
+     * sync is running, waits for it first; the changes it left are then all that is fetched.
+     *
+     * @param store      local earthquake store
+     * @param requestUrl USGS query url as built by {@link EarthquakeActivity}
+     * @return true if the server could be reached and the store is up to date
+     */
+    public static boolean sync(EarthquakeStore store, String requestUrl) {
+        return syncAll(store, Collections.singletonList(requestUrl));
+    }
+
+    /**
+     * Fetches what changed for every request at once and merges it into the store, every
+     * event once. A request that fails keeps its high-water mark, so the next sync asks it
+     * for the same changes again.
+     *
+     * @param store       local earthquake store
+     * @param requestUrls USGS query urls, i.e. regions or magnitude bands
+     * @return true if every request could be synced, false if one failed or the calling
+     * thread was interrupted
+     */
+    public static boolean syncAll(EarthquakeStore store, List<String> requestUrls) {
+        try {
+            SYNC_LOCK.lockInterruptibly();
+        } catch (InterruptedException e) {
+            // Cancelled while waiting for another sync
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        long start = Metrics.start();
+        long handshakes = QueryUtils.getTransport().getHandshakeCount();
+        try {
+            return syncAllLocked(store, requestUrls);
+        } finally {
+            SYNC_LOCK.unlock();
+            Metrics.stop(Metrics.SYNC, start);
+            Metrics.record(Metrics.SYNC_HANDSHAKES,
+                    QueryUtils.getTransport().getHandshakeCount() - handshakes);
+        }
+    }
+
+    private static boolean syncAllLocked(EarthquakeStore store, List<String> requestUrls) {
+        int count = requestUrls.size();
+        List<String> queries = new ArrayList<>(count);
+        List<String> syncUrls = new ArrayList<>(count);
+        boolean[] incremental = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            String requestUrl = requestUrls.get(i);
+            String query = normalizeQuery(requestUrl);
+            long highWaterMark = store.getHighWaterMark(query);
+
+            String syncUrl = requestUrl;
+            if (highWaterMark > 0) {
+                syncUrl = UsgsQueryBuilder.fromUrl(requestUrl)
+                        .updatedAfter(highWaterMark)
+                        .includeDeleted()
+                        .limit(SYNC_PAGE_SIZE)
+                        .build();
+                incremental[i] = true;
+            }
+            queries.add(query);
+            syncUrls.add(syncUrl);
+        }
+
+        MultiFeedFetcher.Result result;
+        try {
+            result = getFetcher().fetchAll(syncUrls);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        store.merge(result.getEarthquakes());
+        boolean complete = result.isComplete();
+
+        // A full page of changes may not be all of them: the mark only moves past the changes
+        // once every page was fetched, or those left out would never be synced
+        long[] latest = new long[count];
+        boolean[] synced = new boolean[count];
+        List<Integer> paged = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            EarthquakeTable changes = result.getFeed(syncUrls.get(i));
+            if (changes == null) {
+                continue;
+            }
+            latest[i] = getLatestUpdate(changes);
+            synced[i] = true;
+            if (incremental[i] && changes.size() >= SYNC_PAGE_SIZE) {
+                paged.add(i);
+            }
+        }
+        for (int offset = SYNC_PAGE_SIZE; !paged.isEmpty(); offset += SYNC_PAGE_SIZE) {
+            List<String> pageUrls = new ArrayList<>(paged.size());
+            for (int i : paged) {
+                pageUrls.add(UsgsQueryBuilder.fromUrl(syncUrls.get(i)).offset(offset).build());
+            }
+            try {
+                result = getFetcher().fetchAll(pageUrls);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            store.merge(result.getEarthquakes());
+
+            List<Integer> nextPaged = new ArrayList<>();
+            for (int page = 0; page < paged.size(); page++) {
+                int i = paged.get(page);
+                EarthquakeTable changes = result.getFeed(pageUrls.get(page));
+                if (changes == null) {
+                    synced[i] = false;
+                    complete = false;
+                    continue;
+                }
+                latest[i] = Math.max(latest[i], getLatestUpdate(changes));
+                if (changes.size() >= SYNC_PAGE_SIZE) {
+                    nextPaged.add(i);
+                }
+            }
+            paged = nextPaged;
+        }
+
+        for (int i = 0; i < count; i++) {
+            if (synced[i] && latest[i] > store.getHighWaterMark(queries.get(i))) {
+                store.setHighWaterMark(queries.get(i), latest[i]);
+            }
+        }
+        return complete;
+    }
+
+    /**
+     * Returns the latest update time of the given earthquakes, or 0 if there are none
+     */
+    private static long getLatestUpdate(EarthquakeTable earthquakes) {
+        long latest = 0;
+        for (int row = 0; row < earthquakes.size(); row++) {
+            latest = Math.max(latest, earthquakes.getUpdated(row));
+        }
+        return latest;
+    }
+
+    /**
+     * Returns the fetcher shared by every sync, so identical requests in flight are merged
+     */
+    private static synchronized MultiFeedFetcher getFetcher() {
+        if (sFetcher == null) {
+            ExecutorService executor = Executors.newFixedThreadPool(FETCH_THREADS);
+            sFetcher = new MultiFeedFetcher(new MultiFeedFetcher.FeedSource() {
+                @Override
+                public EarthquakeTable fetch(String url) throws IOException {
+                    EarthquakeTable earthquakes = QueryUtils.fetchEarthquakeData(url);
+                    if (earthquakes == null) {
+                        throw new IOException("Could not fetch " + url);
+                    }
+                    return earthquakes;
+                }
+
+                @Override
+                public void cancel(Thread thread) {
+                    QueryUtils.cancelRequest(thread);
+                }
+            }, executor, MAX_REQUESTS_PER_HOST);
+        }
+        return sFetcher;
+    }
+
+    /**
+     * Returns the request url with its parameters sorted, so it names the same query whatever
+     * their order. The sort order is dropped unless the query has a limit, since it then picks
+     * which events belong to the result.
+     */
+    static String normalizeQuery(String requestUrl) {
+        return UsgsQueryBuilder.fromUrl(requestUrl).buildQueryKey();
+    }
+}
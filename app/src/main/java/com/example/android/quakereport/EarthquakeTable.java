@@ -0,0 +1,664 @@
+package com.example.android.quakereport;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Column oriented collection of earthquakes. Every field is kept in its own primitive array
+ * instead of one {@link Earthquake} object per event; place strings are dictionary encoded and
+ * detail urls are only built when asked for, unless USGS sent one that does not follow the
+ * usual event page pattern. Rows are read through a reusable {@link Cursor}.
+ * <p>
+ * A place is kept as its offset and primary location, both from the {@link #PLACE_POOL} shared
+ * by every table, since few of them are distinct while whole place strings mostly are. Place
+ * strings are joined again when asked for.
+ * <p>
+ * This class has no Android dependencies. It is not thread-safe: fill it on one thread and
+ * hand it over once it is complete.
+ */
+public class EarthquakeTable {
+
+    /**
+     * Prefix of the detail url of every USGS event, followed by the event id
+     */
+    public static final String URL_PREFIX = "https://earthquake.usgs.gov/earthquakes/eventpage/";
+
+    /**
+     * Pool of the offsets and primary locations of the places of every table
+     */
+    public static final StringPool PLACE_POOL = new StringPool(16384);
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private int mSize;
+    private String[] mIds;
+    private double[] mMagnitudes;
+    private long[] mTimes;
+    private long[] mUpdated;
+    private int[] mPlaces;
+    /**
+     * Epicenter and depth of every row, NaN when unknown
+     */
+    private double[] mLongitudes;
+    private double[] mLatitudes;
+    private double[] mDepths;
+
+    /**
+     * Offset (i.e. "43km WNW", or null if there is none) and primary location (i.e. "Anchorage,
+     * Alaska") of the distinct places, indexed by the values of {@link #mPlaces}
+     */
+    private String[] mPlaceOffsets = new String[DEFAULT_CAPACITY];
+    private String[] mPlacePrimaries = new String[DEFAULT_CAPACITY];
+    private int mPlaceCount;
+    /**
+     * Open addressing hash table of the place codes plus one, 0 for a free slot; only kept
+     * while rows are being added
+     */
+    private int[] mPlaceSlots;
+
+    /**
+     * Urls that do not follow {@link #URL_PREFIX} + id, allocated on the first such url
+     */
+    private String[] mUrls;
+
+    private final BitSet mDeleted = new BitSet();
+
+    /**
+     * Display-ready fields, allocated once the table is formatted
+     */
+    private EarthquakeDisplay[] mDisplays;
+
+    public EarthquakeTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a new {@link EarthquakeTable} with room for the given number of rows
+     */
+    public EarthquakeTable(int capacity) {
+        capacity = Math.max(capacity, 1);
+        mIds = new String[capacity];
+        mMagnitudes = new double[capacity];
+        mTimes = new long[capacity];
+        mUpdated = new long[capacity];
+        mPlaces = new int[capacity];
+        mLongitudes = new double[capacity];
+        mLatitudes = new double[capacity];
+        mDepths = new double[capacity];
+    }
+
+    /**
+     * Returns the number of rows
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Appends an earthquake
+     *
+     * @param id                 USGS event id of earthquake
+     * @param magnitude          magnitude of earthquake
+     * @param location           location of earthquake
+     * @param timeInMilliseconds timeInMilliseconds (from Epoch) of earthquake
+     * @param updated            time in milliseconds (from Epoch) the event was last updated
+     * @param url                url address for details of the earthquake
+     */
+    public void add(String id, double magnitude, String location, long timeInMilliseconds,
+                    long updated, String url) {
+        add(id, magnitude, location, timeInMilliseconds, updated, url,
+                Double.NaN, Double.NaN, Double.NaN);
+    }
+
+    /**
+     * Appends an earthquake with its epicenter and depth
+     *
+     * @param id                 USGS event id of earthquake
+     * @param magnitude          magnitude of earthquake
+     * @param location           location of earthquake
+     * @param timeInMilliseconds timeInMilliseconds (from Epoch) of earthquake
+     * @param updated            time in milliseconds (from Epoch) the event was last updated
+     * @param url                url address for details of the earthquake
+     * @param longitude          longitude of the epicenter in degrees, or NaN if unknown
+     * @param latitude           latitude of the epicenter in degrees, or NaN if unknown
+     * @param depth              depth of the hypocenter in kilometers, or NaN if unknown
+     */
+    public void add(String id, double magnitude, String location, long timeInMilliseconds,
+                    long updated, String url, double longitude, double latitude, double depth) {
+        add(id, magnitude, encodePlace(location), timeInMilliseconds, updated, url, longitude,
+                latitude, depth);
+    }
+
+    private void add(String id, double magnitude, int place, long timeInMilliseconds,
+                     long updated, String url, double longitude, double latitude, double depth) {
+        int row = appendRow(id, updated);
+        mLongitudes[row] = longitude;
+        mLatitudes[row] = latitude;
+        mDepths[row] = depth;
+        mMagnitudes[row] = magnitude;
+        mTimes[row] = timeInMilliseconds;
+        mPlaces[row] = place;
+        if (url != null && !isDefaultUrl(id, url)) {
+            if (mUrls == null) {
+                mUrls = new String[mIds.length];
+            }
+            mUrls[row] = url;
+        }
+    }
+
+    /**
+     * Appends a row that only marks the event with the given id as deleted by USGS
+     */
+    public void addDeleted(String id, long updated) {
+        int row = appendRow(id, updated);
+        mPlaces[row] = -1;
+        mLongitudes[row] = Double.NaN;
+        mLatitudes[row] = Double.NaN;
+        mDepths[row] = Double.NaN;
+        mDeleted.set(row);
+    }
+
+    /**
+     * Appends a copy of the given earthquake
+     */
+    public void add(Earthquake earthquake) {
+        if (earthquake.isDeleted()) {
+            addDeleted(earthquake.getId(), earthquake.getUpdated());
+        } else {
+            add(earthquake.getId(), earthquake.getMagnitude(), earthquake.getLocation(),
+                    earthquake.getTimeInMilliseconds(), earthquake.getUpdated(),
+                    earthquake.getUrl(), earthquake.getLongitude(), earthquake.getLatitude(),
+                    earthquake.getDepth());
+        }
+    }
+
+    public String getId(int row) {
+        return mIds[row];
+    }
+
+    public double getMagnitude(int row) {
+        return mMagnitudes[row];
+    }
+
+    public String getLocation(int row) {
+        int place = mPlaces[row];
+        return place < 0 ? null : getPlace(place);
+    }
+
+    public long getTimeInMilliseconds(int row) {
+        return mTimes[row];
+    }
+
+    public long getUpdated(int row) {
+        return mUpdated[row];
+    }
+
+    /**
+     * Returns the longitude of the epicenter in degrees, or NaN if it is unknown
+     */
+    public double getLongitude(int row) {
+        return mLongitudes[row];
+    }
+
+    /**
+     * Returns the latitude of the epicenter in degrees, or NaN if it is unknown
+     */
+    public double getLatitude(int row) {
+        return mLatitudes[row];
+    }
+
+    /**
+     * Returns the depth of the hypocenter in kilometers, or NaN if it is unknown
+     */
+    public double getDepth(int row) {
+        return mDepths[row];
+    }
+
+    /**
+     * Returns true if the epicenter of the row is known
+     */
+    public boolean hasCoordinates(int row) {
+        return !Double.isNaN(mLongitudes[row]) && !Double.isNaN(mLatitudes[row]);
+    }
+
+    /**
+     * Returns the detail url, built from the event id unless USGS sent a different one
+     */
+    public String getUrl(int row) {
+        if (mDeleted.get(row)) {
+            return null;
+        }
+        if (mUrls != null && mUrls[row] != null) {
+            return mUrls[row];
+        }
+        return URL_PREFIX + mIds[row];
+    }
+
+    /**
+     * Returns the url USGS sent for the row if it does not follow {@link #URL_PREFIX} + id,
+     * otherwise null
+     */
+    String getCustomUrl(int row) {
+        return mUrls != null ? mUrls[row] : null;
+    }
+
+    public boolean isDeleted(int row) {
+        return mDeleted.get(row);
+    }
+
+    /**
+     * Returns the display-ready fields of the row, or null if they were not computed yet
+     */
+    public EarthquakeDisplay getDisplay(int row) {
+        return mDisplays == null ? null : mDisplays[row];
+    }
+
+    public void setDisplay(int row, EarthquakeDisplay display) {
+        if (mDisplays == null) {
+            mDisplays = new EarthquakeDisplay[mIds.length];
+        }
+        mDisplays[row] = display;
+    }
+
+    /**
+     * Returns the number of distinct place strings
+     */
+    public int getPlaceCount() {
+        return mPlaceCount;
+    }
+
+    /**
+     * Returns the dictionary code of the place of the row, or -1 for a deleted row
+     */
+    public int getPlaceCode(int row) {
+        return mPlaces[row];
+    }
+
+    /**
+     * Returns the place string with the given dictionary code, joined from its offset and
+     * primary location
+     */
+    public String getPlace(int code) {
+        String offset = mPlaceOffsets[code];
+        return offset == null ? mPlacePrimaries[code]
+                : offset + EarthquakeFormats.LOCATION_SEPARATOR + mPlacePrimaries[code];
+    }
+
+    /**
+     * Returns the offset of the place with the given dictionary code (i.e. "43km WNW"), or null
+     * if it has none
+     */
+    public String getPlaceOffset(int code) {
+        return mPlaceOffsets[code];
+    }
+
+    /**
+     * Returns the primary location of the place with the given dictionary code (i.e.
+     * "Anchorage, Alaska"), without allocating
+     */
+    public String getPlacePrimary(int code) {
+        return mPlacePrimaries[code];
+    }
+
+    /**
+     * Appends a copy of a row of another table, including its display fields
+     */
+    public void addRow(EarthquakeTable source, int row) {
+        if (source.isDeleted(row)) {
+            addDeleted(source.getId(row), source.getUpdated(row));
+            return;
+        }
+        String url = source.mUrls != null ? source.mUrls[row] : null;
+        add(source.getId(row), source.getMagnitude(row), copyPlace(source, row),
+                source.getTimeInMilliseconds(row), source.getUpdated(row), url,
+                source.getLongitude(row), source.getLatitude(row), source.getDepth(row));
+        EarthquakeDisplay display = source.getDisplay(row);
+        if (display != null) {
+            setDisplay(mSize - 1, display);
+        }
+    }
+
+    /**
+     * Overwrites a row with a copy of a row of another table, including its display fields
+     */
+    public void setRow(int row, EarthquakeTable source, int sourceRow) {
+        mIds[row] = source.getId(sourceRow);
+        mUpdated[row] = source.getUpdated(sourceRow);
+        mLongitudes[row] = source.getLongitude(sourceRow);
+        mLatitudes[row] = source.getLatitude(sourceRow);
+        mDepths[row] = source.getDepth(sourceRow);
+        if (source.isDeleted(sourceRow)) {
+            mPlaces[row] = -1;
+            mDeleted.set(row);
+        } else {
+            mMagnitudes[row] = source.getMagnitude(sourceRow);
+            mTimes[row] = source.getTimeInMilliseconds(sourceRow);
+            mPlaces[row] = copyPlace(source, sourceRow);
+            mDeleted.clear(row);
+        }
+        String url = source.mUrls != null ? source.mUrls[sourceRow] : null;
+        if (url != null && mUrls == null) {
+            mUrls = new String[mIds.length];
+        }
+        if (mUrls != null) {
+            mUrls[row] = url;
+        }
+        EarthquakeDisplay display = source.getDisplay(sourceRow);
+        if (display != null || mDisplays != null) {
+            setDisplay(row, display);
+        }
+    }
+
+    /**
+     * Returns a copy of the table, display fields included, that can be changed or handed to
+     * another thread without touching this one. The columns are copied as they are, so rows
+     * and place codes stay the same.
+     */
+    public EarthquakeTable copy() {
+        int capacity = Math.max(mSize, 1);
+        EarthquakeTable copy = new EarthquakeTable(1);
+        copy.mSize = mSize;
+        copy.mIds = Arrays.copyOf(mIds, capacity);
+        copy.mMagnitudes = Arrays.copyOf(mMagnitudes, capacity);
+        copy.mTimes = Arrays.copyOf(mTimes, capacity);
+        copy.mUpdated = Arrays.copyOf(mUpdated, capacity);
+        copy.mPlaces = Arrays.copyOf(mPlaces, capacity);
+        copy.mLongitudes = Arrays.copyOf(mLongitudes, capacity);
+        copy.mLatitudes = Arrays.copyOf(mLatitudes, capacity);
+        copy.mDepths = Arrays.copyOf(mDepths, capacity);
+        if (mUrls != null) {
+            copy.mUrls = Arrays.copyOf(mUrls, capacity);
+        }
+        if (mDisplays != null) {
+            copy.mDisplays = Arrays.copyOf(mDisplays, capacity);
+        }
+        copy.mPlaceOffsets = Arrays.copyOf(mPlaceOffsets, Math.max(mPlaceCount, 1));
+        copy.mPlacePrimaries = Arrays.copyOf(mPlacePrimaries, copy.mPlaceOffsets.length);
+        copy.mPlaceCount = mPlaceCount;
+        copy.mDeleted.or(mDeleted);
+        return copy;
+    }
+
+    /**
+     * Builds an {@link Earthquake} object for the row, for callers that need to keep one
+     */
+    public Earthquake get(int row) {
+        if (mDeleted.get(row)) {
+            return Earthquake.deleted(mIds[row], mUpdated[row]);
+        }
+        Earthquake earthquake = new Earthquake(mIds[row], mMagnitudes[row], getLocation(row),
+                mTimes[row], mUpdated[row], getUrl(row));
+        earthquake.setCoordinates(mLongitudes[row], mLatitudes[row], mDepths[row]);
+        earthquake.setDisplay(getDisplay(row));
+        return earthquake;
+    }
+
+    /**
+     * Shrinks the columns to the number of rows and drops the place encoder, once no more rows
+     * are going to be added. Adding rows afterwards still works, it just grows the table again.
+     */
+    public void trimToSize() {
+        mIds = Arrays.copyOf(mIds, Math.max(mSize, 1));
+        mMagnitudes = Arrays.copyOf(mMagnitudes, mIds.length);
+        mTimes = Arrays.copyOf(mTimes, mIds.length);
+        mUpdated = Arrays.copyOf(mUpdated, mIds.length);
+        mPlaces = Arrays.copyOf(mPlaces, mIds.length);
+        mLongitudes = Arrays.copyOf(mLongitudes, mIds.length);
+        mLatitudes = Arrays.copyOf(mLatitudes, mIds.length);
+        mDepths = Arrays.copyOf(mDepths, mIds.length);
+        if (mUrls != null) {
+            mUrls = Arrays.copyOf(mUrls, mIds.length);
+        }
+        if (mDisplays != null) {
+            mDisplays = Arrays.copyOf(mDisplays, mIds.length);
+        }
+        mPlaceOffsets = Arrays.copyOf(mPlaceOffsets, Math.max(mPlaceCount, 1));
+        mPlacePrimaries = Arrays.copyOf(mPlacePrimaries, mPlaceOffsets.length);
+        mPlaceSlots = null;
+    }
+
+    /**
+     * Removes every row but keeps the capacity, so the table can be filled again without
+     * allocating, i.e. as the chunk of a streaming export
+     */
+    public void clear() {
+        Arrays.fill(mIds, 0, mSize, null);
+        if (mUrls != null) {
+            Arrays.fill(mUrls, 0, mSize, null);
+        }
+        if (mDisplays != null) {
+            Arrays.fill(mDisplays, 0, mSize, null);
+        }
+        Arrays.fill(mPlaceOffsets, 0, mPlaceCount, null);
+        Arrays.fill(mPlacePrimaries, 0, mPlaceCount, null);
+        mPlaceCount = 0;
+        if (mPlaceSlots != null) {
+            Arrays.fill(mPlaceSlots, 0);
+        }
+        mDeleted.clear();
+        mSize = 0;
+    }
+
+    /**
+     * Returns a new cursor over the rows of this table
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    private int appendRow(String id, long updated) {
+        if (mSize == mIds.length) {
+            grow();
+        }
+        int row = mSize++;
+        mIds[row] = id;
+        mUpdated[row] = updated;
+        return row;
+    }
+
+    private void grow() {
+        int capacity = Math.max(mIds.length * 2, DEFAULT_CAPACITY);
+        mIds = Arrays.copyOf(mIds, capacity);
+        mMagnitudes = Arrays.copyOf(mMagnitudes, capacity);
+        mTimes = Arrays.copyOf(mTimes, capacity);
+        mUpdated = Arrays.copyOf(mUpdated, capacity);
+        mPlaces = Arrays.copyOf(mPlaces, capacity);
+        mLongitudes = Arrays.copyOf(mLongitudes, capacity);
+        mLatitudes = Arrays.copyOf(mLatitudes, capacity);
+        mDepths = Arrays.copyOf(mDepths, capacity);
+        if (mUrls != null) {
+            mUrls = Arrays.copyOf(mUrls, capacity);
+        }
+        if (mDisplays != null) {
+            mDisplays = Arrays.copyOf(mDisplays, capacity);
+        }
+    }
+
+    /**
+     * Returns the code of a place string, adding it to the dictionary if it is new. Known
+     * places are found from the string itself, without splitting it.
+     */
+    private int encodePlace(String location) {
+        int separator = location.indexOf(EarthquakeFormats.LOCATION_SEPARATOR);
+        int primaryStart = separator < 0 ? 0
+                : separator + EarthquakeFormats.LOCATION_SEPARATOR.length();
+        int hash = hashPlace(separator < 0 ? 0 : hash(location, 0, separator),
+                hash(location, primaryStart, location.length()));
+        int[] slots = getPlaceSlots();
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int code = slots[slot] - 1;
+            if (code < 0) {
+                String offset = separator < 0 ? null : location.substring(0, separator);
+                String primary = separator < 0 ? location : location.substring(primaryStart);
+                return addPlace(slot, PLACE_POOL.intern(offset), PLACE_POOL.intern(primary));
+            }
+            String offset = mPlaceOffsets[code];
+            String primary = mPlacePrimaries[code];
+            if ((offset == null ? separator < 0
+                    : separator == offset.length() && location.startsWith(offset))
+                    && location.length() - primaryStart == primary.length()
+                    && location.startsWith(primary, primaryStart)) {
+                return code;
+            }
+        }
+    }
+
+    /**
+     * Returns the code in this table of the place of a row of another table, without joining
+     * the place string
+     */
+    private int copyPlace(EarthquakeTable source, int row) {
+        String offset = source.mPlaceOffsets[source.mPlaces[row]];
+        String primary = source.mPlacePrimaries[source.mPlaces[row]];
+        int hash = hashPlace(offset == null ? 0 : offset.hashCode(), primary.hashCode());
+        int[] slots = getPlaceSlots();
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int code = slots[slot] - 1;
+            if (code < 0) {
+                return addPlace(slot, offset, primary);
+            }
+            if (primary.equals(mPlacePrimaries[code]) && (offset == null
+                    ? mPlaceOffsets[code] == null : offset.equals(mPlaceOffsets[code]))) {
+                return code;
+            }
+        }
+    }
+
+    private int addPlace(int slot, String offset, String primary) {
+        if (mPlaceCount == mPlaceOffsets.length) {
+            mPlaceOffsets = Arrays.copyOf(mPlaceOffsets, mPlaceCount * 2);
+            mPlacePrimaries = Arrays.copyOf(mPlacePrimaries, mPlaceCount * 2);
+        }
+        int code = mPlaceCount++;
+        mPlaceOffsets[code] = offset;
+        mPlacePrimaries[code] = primary;
+        mPlaceSlots[slot] = code + 1;
+        if (mPlaceCount * 2 > mPlaceSlots.length) {
+            // Keep the table at most half full, so probes stay short
+            mPlaceSlots = null;
+            getPlaceSlots();
+        }
+        return code;
+    }
+
+    /**
+     * Returns the hash table of the place codes, building it again if it was dropped
+     */
+    private int[] getPlaceSlots() {
+        if (mPlaceSlots == null) {
+            int capacity = Integer.highestOneBit(Math.max(mPlaceCount, DEFAULT_CAPACITY)) * 4;
+            int[] slots = new int[capacity];
+            int mask = capacity - 1;
+            for (int code = 0; code < mPlaceCount; code++) {
+                String offset = mPlaceOffsets[code];
+                int slot = hashPlace(offset == null ? 0 : offset.hashCode(),
+                        mPlacePrimaries[code].hashCode()) & mask;
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = code + 1;
+            }
+            mPlaceSlots = slots;
+        }
+        return mPlaceSlots;
+    }
+
+    private static int hashPlace(int offsetHash, int primaryHash) {
+        int hash = offsetHash * 31 + primaryHash;
+        // Spread the bits the mask keeps
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Returns the {@link String#hashCode} of a part of a string, without taking it apart
+     */
+    private static int hash(String string, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + string.charAt(i);
+        }
+        return hash;
+    }
+
+    /**
+     * Returns true if the url is {@link #URL_PREFIX} + id, so it need not be kept
+     */
+    static boolean isDefaultUrl(String id, String url) {
+        return url.length() == URL_PREFIX.length() + id.length()
+                && url.startsWith(URL_PREFIX) && url.endsWith(id);
+    }
+
+    /**
+     * Flyweight view of one row. Moving it to another row does not allocate, so a single cursor
+     * can be used to read the whole table.
+     */
+    public class Cursor {
+        private int mRow = -1;
+
+        /**
+         * Moves the cursor to the given row and returns it
+         */
+        public Cursor moveTo(int row) {
+            mRow = row;
+            return this;
+        }
+
+        public int getRow() {
+            return mRow;
+        }
+
+        public EarthquakeTable getTable() {
+            return EarthquakeTable.this;
+        }
+
+        public String getId() {
+            return EarthquakeTable.this.getId(mRow);
+        }
+
+        public double getMagnitude() {
+            return EarthquakeTable.this.getMagnitude(mRow);
+        }
+
+        public String getLocation() {
+            return EarthquakeTable.this.getLocation(mRow);
+        }
+
+        public long getTimeInMilliseconds() {
+            return EarthquakeTable.this.getTimeInMilliseconds(mRow);
+        }
+
+        public long getUpdated() {
+            return EarthquakeTable.this.getUpdated(mRow);
+        }
+
+        public double getLongitude() {
+            return EarthquakeTable.this.getLongitude(mRow);
+        }
+
+        public double getLatitude() {
+            return EarthquakeTable.this.getLatitude(mRow);
+        }
+
+        public double getDepth() {
+            return EarthquakeTable.this.getDepth(mRow);
+        }
+
+        public String getUrl() {
+            return EarthquakeTable.this.getUrl(mRow);
+        }
+
+        public boolean isDeleted() {
+            return EarthquakeTable.this.isDeleted(mRow);
+        }
+
+        public EarthquakeDisplay getDisplay() {
+            return EarthquakeTable.this.getDisplay(mRow);
+        }
+
+        public void setDisplay(EarthquakeDisplay display) {
+            EarthquakeTable.this.setDisplay(mRow, display);
+        }
+    }
+}
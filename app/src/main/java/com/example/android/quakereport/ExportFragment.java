@@ -0,0 +1,226 @@
+package com.example.android.quakereport;
+
+import android.app.Activity;
+import android.app.Fragment;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Headless fragment writing an export of the stored earthquakes in the background. It is
+ * retained across configuration changes, so rotating the screen neither cancels the export
+ * nor loses its result: the new activity picks up the progress and is told when it is done.
+ * The export is only cancelled when the user cancels it or the activity finishes for good.
+ * <p>
+ * The activity it is added to must implement {@link Callbacks}. Everything but the export
+ * itself runs on the main thread.
+ */
+public class ExportFragment extends Fragment {
+
+    /**
+     * Tag the fragment is added with
+     */
+    public static final String TAG = ExportFragment.class.getSimpleName();
+
+    /**
+     * Steps of the export progress
+     */
+    public static final int PROGRESS_MAX = 100;
+
+    /**
+     * Told about the progress and the outcome of the export, on the main thread, while the
+     * fragment is attached
+     */
+    public interface Callbacks {
+        void onExportProgress(int progress);
+
+        void onExportFinished(File file, EarthquakeExporter.Format format, boolean exported);
+    }
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Background thread the exports are written on
+     */
+    private ExecutorService mExecutor;
+
+    private Callbacks mCallbacks;
+
+    /**
+     * Export being written, or null
+     */
+    private Future<?> mExport;
+
+    /**
+     * Number of exports started, so the outcome of a cancelled one is told apart
+     */
+    private int mGeneration;
+
+    /**
+     * Progress of the export being written, out of {@link #PROGRESS_MAX}
+     */
+    private int mProgress;
+
+    /**
+     * Outcome of an export that finished while no activity was attached, delivered to the
+     * next one, or null
+     */
+    private Runnable mPendingResult;
+
+    @Override
+    public void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setRetainInstance(true);
+        mExecutor = Executors.newSingleThreadExecutor();
+    }
+
+    @Override
+    public void onAttach(Activity activity) {
+        super.onAttach(activity);
+        mCallbacks = (Callbacks) activity;
+    }
+
+    @Override
+    public void onActivityCreated(Bundle savedInstanceState) {
+        super.onActivityCreated(savedInstanceState);
+        if (mPendingResult != null) {
+            Runnable result = mPendingResult;
+            mPendingResult = null;
+            result.run();
+        }
+    }
+
+    @Override
+    public void onDetach() {
+        super.onDetach();
+        mCallbacks = null;
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        // The activity finished for good: cancel the export, which deletes its partial file
+        mExecutor.shutdownNow();
+        mExport = null;
+    }
+
+    /**
+     * Returns true while an export is being written
+     */
+    public boolean isRunning() {
+        return mExport != null;
+    }
+
+    /**
+     * Returns the progress of the export being written, out of {@link #PROGRESS_MAX}
+     */
+    public int getProgress() {
+        return mProgress;
+    }
+
+    /**
+     * Starts exporting the stored earthquakes of at least the given magnitude, unless an
+     * export is running already
+     */
+    public void start(final EarthquakeStore store, final double minMagnitude,
+                      final EarthquakeExporter.Format format, final File file) {
+        if (mExport != null) {
+            return;
+        }
+        mProgress = 0;
+        final int generation = ++mGeneration;
+        final EarthquakeExporter.ProgressListener listener =
+                new EarthquakeExporter.ProgressListener() {
+                    @Override
+                    public void onProgress(final long rows, final long totalRows) {
+                        if (totalRows <= 0) {
+                            return;
+                        }
+                        mMainHandler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                mProgress = (int) Math.min(PROGRESS_MAX,
+                                        rows * PROGRESS_MAX / totalRows);
+                                if (mExport != null && mCallbacks != null) {
+                                    mCallbacks.onExportProgress(mProgress);
+                                }
+                            }
+                        });
+                    }
+                };
+        mExport = mExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                final boolean exported = exportToFile(store, minMagnitude, format, file,
+                        listener);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (mExport == null || generation != mGeneration) {
+                            // Cancelled meanwhile
+                            return;
+                        }
+                        mExport = null;
+                        deliverResult(file, format, exported);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Cancels the export being written, if any; its outcome is not delivered
+     */
+    public void cancel() {
+        if (mExport != null) {
+            mExport.cancel(true);
+            mExport = null;
+        }
+    }
+
+    private void deliverResult(final File file, final EarthquakeExporter.Format format,
+                               final boolean exported) {
+        Runnable result = new Runnable() {
+            @Override
+            public void run() {
+                mCallbacks.onExportFinished(file, format, exported);
+            }
+        };
+        if (mCallbacks != null) {
+            result.run();
+        } else {
+            mPendingResult = result;
+        }
+    }
+
+    /**
+     * Writes the export on the export thread
+     *
+     * @return true if the file was written
+     */
+    private static boolean exportToFile(EarthquakeStore store, double minMagnitude,
+                                        EarthquakeExporter.Format format, File file,
+                                        EarthquakeExporter.ProgressListener listener) {
+        File directory = file.getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.e(TAG, "Could not create " + directory);
+            return false;
+        }
+        try {
+            EarthquakeExporter.exportToFile(store.openExport(minMagnitude),
+                    store.count(minMagnitude), format, file, listener);
+            return true;
+        } catch (IOException e) {
+            // Also thrown when the export is cancelled
+            Log.e(TAG, "Problem exporting the earthquakes", e);
+            return false;
+        }
+    }
+}
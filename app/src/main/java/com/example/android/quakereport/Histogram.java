@@ -0,0 +1,153 @@
+package com.example.android.quakereport;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of non-negative values with a bounded relative error, in the style of
+ * HdrHistogram: values below 64 have a bucket each, above that every power of two is split
+ * into 32 buckets, so a percentile is within about 3% of the recorded value. Recording is
+ * lock-free and never allocates, so it can be called on hot paths from any thread.
+ * <p>
+ * This class has no Android dependencies.
+ */
+public class Histogram {
+
+    /**
+     * Values below 2^LINEAR_BITS have a bucket of their own
+     */
+    private static final int LINEAR_BITS = 6;
+    private static final int LINEAR_BUCKETS = 1 << LINEAR_BITS;
+
+    /**
+     * Bits of a value kept above the linear range: 32 buckets per power of two
+     */
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * Largest value told apart from larger ones; larger values are counted as this
+     */
+    private static final long MAX_TRACKED_VALUE = (1L << 40) - 1;
+
+    private static final int BUCKET_COUNT = getBucket(MAX_TRACKED_VALUE) + 1;
+
+    private final String mName;
+    private final String mUnit;
+
+    private final AtomicLongArray mCounts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mSum = new AtomicLong();
+    private final AtomicLong mMax = new AtomicLong();
+
+    /**
+     * Constructs a new {@link Histogram}
+     *
+     * @param name name of the measured value in reports
+     * @param unit unit of the recorded values in reports, i.e. "us"
+     */
+    public Histogram(String name, String unit) {
+        mName = name;
+        mUnit = unit;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public String getUnit() {
+        return mUnit;
+    }
+
+    /**
+     * Records a value; negative values are recorded as 0
+     */
+    public void record(long value) {
+        value = Math.max(0, value);
+        mCounts.incrementAndGet(getBucket(Math.min(value, MAX_TRACKED_VALUE)));
+        mCount.incrementAndGet();
+        mSum.addAndGet(value);
+        long max = mMax.get();
+        while (value > max && !mMax.compareAndSet(max, value)) {
+            max = mMax.get();
+        }
+    }
+
+    public long getCount() {
+        return mCount.get();
+    }
+
+    public long getMax() {
+        return mMax.get();
+    }
+
+    /**
+     * Returns the mean of the recorded values, or 0 if none was recorded
+     */
+    public double getMean() {
+        long count = mCount.get();
+        return count == 0 ? 0 : (double) mSum.get() / count;
+    }
+
+    /**
+     * Returns the value below which the given percentage of the recorded values fall, as the
+     * largest value of its bucket, or 0 if none was recorded
+     *
+     * @param percentile percentage between 0 and 100
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = 0;
+        long[] counts = new long[BUCKET_COUNT];
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            counts[bucket] = mCounts.get(bucket);
+            total += counts[bucket];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * Math.min(100, percentile) / 100));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return Math.min(getBucketMax(bucket), mMax.get());
+            }
+        }
+        return mMax.get();
+    }
+
+    /**
+     * Forgets every recorded value. Values recorded at the same time may be partly kept.
+     */
+    public void reset() {
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            mCounts.set(bucket, 0);
+        }
+        mCount.set(0);
+        mSum.set(0);
+        mMax.set(0);
+    }
+
+    private static int getBucket(long value) {
+        if (value < LINEAR_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+        return LINEAR_BUCKETS + (exponent - LINEAR_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Returns the largest value counted in the bucket
+     */
+    private static long getBucketMax(int bucket) {
+        if (bucket < LINEAR_BUCKETS) {
+            return bucket;
+        }
+        int exponent = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + LINEAR_BITS;
+        int subBucket = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+        int shift = exponent - SUB_BUCKET_BITS;
+        return ((long) (SUB_BUCKETS + subBucket + 1) << shift) - 1;
+    }
+}
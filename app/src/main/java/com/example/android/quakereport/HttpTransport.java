@@ -0,0 +1,65 @@
+package com.example.android.quakereport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * Makes the HTTP GET requests behind {@link QueryUtils}, so how connections are made, kept and
+ * retried can be changed, or replaced by a stub that never touches the network.
+ * <p>
+ * This interface has no Android dependencies. Implementations are thread-safe.
+ */
+public interface HttpTransport {
+
+    /**
+     * Sends a GET request and returns the response once its headers arrived. The response must
+     * be closed, which lets its connection be reused.
+     *
+     * @param url     request url
+     * @param headers request headers, i.e. the validators of a conditional request
+     * @throws IOException if no response could be received, or the request was cancelled
+     */
+    Response get(String url, Map<String, String> headers) throws IOException;
+
+    /**
+     * Cancels the request the given thread is making, if any, so a connect or read it is
+     * blocked in fails right away. The thread should be interrupted first, so a request it is
+     * about to make is cancelled too.
+     */
+    void cancel(Thread thread);
+
+    /**
+     * Returns the number of TLS handshakes made so far, one for every new https connection
+     */
+    long getHandshakeCount();
+
+    /**
+     * Response of a request, read on the thread that made it
+     */
+    interface Response extends Closeable {
+
+        /**
+         * Returns the HTTP status code (i.e. 200)
+         */
+        int getCode();
+
+        /**
+         * Returns the value of the response header, or null if there is none
+         */
+        String getHeader(String name);
+
+        /**
+         * Returns the body as sent, not decompressed
+         */
+        InputStream getBody() throws IOException;
+
+        /**
+         * Releases the response; its connection is kept for the next request when the body
+         * was read to the end
+         */
+        @Override
+        void close();
+    }
+}
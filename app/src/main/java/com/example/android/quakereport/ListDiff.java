@@ -0,0 +1,213 @@
+package com.example.android.quakereport;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Computes the updates that turn one list of earthquakes into another, keyed on event id, so
+ * a list only has to redraw the rows that were inserted, removed, moved or changed. Rows keep
+ * their place when they are part of the longest run of events whose order did not change;
+ * only the others are moved.
+ * <p>
+ * The computation has no Android dependencies and is meant to run off the UI thread; the
+ * {@link Result} is dispatched on it.
+ */
+public final class ListDiff {
+
+    /**
+     * Receives the updates, in the order they have to be applied. Positions refer to the list
+     * as left by the previous updates.
+     */
+    public interface Callback {
+        void onInserted(int position, int count);
+
+        void onRemoved(int position, int count);
+
+        void onMoved(int fromPosition, int toPosition);
+
+        void onChanged(int position, int count);
+    }
+
+    private static final int INSERT = 0;
+    private static final int REMOVE = 1;
+    private static final int MOVE = 2;
+    private static final int CHANGE = 3;
+
+    private ListDiff() {
+    }
+
+    /**
+     * Updates computed by {@link #compute}
+     */
+    public static class Result {
+        /**
+         * Updates as {type, position, count or target position}
+         */
+        private final List<int[]> mUpdates = new ArrayList<>();
+
+        /**
+         * Returns the number of updates, after merging updates of adjacent rows
+         */
+        public int getUpdateCount() {
+            return mUpdates.size();
+        }
+
+        public void dispatchTo(Callback callback) {
+            for (int[] update : mUpdates) {
+                switch (update[0]) {
+                    case INSERT:
+                        callback.onInserted(update[1], update[2]);
+                        break;
+                    case REMOVE:
+                        callback.onRemoved(update[1], update[2]);
+                        break;
+                    case MOVE:
+                        callback.onMoved(update[1], update[2]);
+                        break;
+                    case CHANGE:
+                        callback.onChanged(update[1], update[2]);
+                        break;
+                }
+            }
+        }
+
+        private void add(int type, int position, int count) {
+            if (!mUpdates.isEmpty() && type != MOVE) {
+                int[] last = mUpdates.get(mUpdates.size() - 1);
+                if (last[0] == type) {
+                    // Merge runs of adjacent rows
+                    if ((type == INSERT || type == CHANGE) && last[1] + last[2] == position) {
+                        last[2] += count;
+                        return;
+                    }
+                    if (type == REMOVE && position + count == last[1]) {
+                        last[1] = position;
+                        last[2] += count;
+                        return;
+                    }
+                }
+            }
+            mUpdates.add(new int[]{type, position, count});
+        }
+    }
+
+    /**
+     * Computes the updates from the old list to the new one
+     *
+     * @param oldIds      event ids of the old list, each at most once
+     * @param oldVersions update time of every event of the old list
+     * @param newIds      event ids of the new list, each at most once
+     * @param newVersions update time of every event of the new list; an event whose update
+     *                    time differs from the old list is reported as changed
+     */
+    public static Result compute(String[] oldIds, long[] oldVersions,
+                                 String[] newIds, long[] newVersions) {
+        Result result = new Result();
+
+        Map<String, Integer> newPositions = new HashMap<>(newIds.length * 2);
+        for (int i = 0; i < newIds.length; i++) {
+            newPositions.put(newIds[i], i);
+        }
+
+        // Remove the events that are gone, from the end so the positions stay valid
+        List<String> current = new ArrayList<>(oldIds.length);
+        Map<String, Long> oldVersionsById = new HashMap<>(oldIds.length * 2);
+        for (int i = oldIds.length - 1; i >= 0; i--) {
+            if (!newPositions.containsKey(oldIds[i])) {
+                result.add(REMOVE, i, 1);
+            }
+        }
+        for (int i = 0; i < oldIds.length; i++) {
+            if (newPositions.containsKey(oldIds[i])) {
+                current.add(oldIds[i]);
+                oldVersionsById.put(oldIds[i], oldVersions[i]);
+            }
+        }
+
+        // The events on the longest increasing run of new positions stay, the others move
+        int[] targets = new int[current.size()];
+        for (int i = 0; i < targets.length; i++) {
+            targets[i] = newPositions.get(current.get(i));
+        }
+        Set<String> moving = new HashSet<>();
+        boolean[] stays = longestIncreasingRun(targets);
+        for (int i = 0; i < stays.length; i++) {
+            if (!stays[i]) {
+                moving.add(current.get(i));
+            }
+        }
+
+        // Park the moving events at the end, then move every one to its place in order
+        int parked = 0;
+        for (int i = current.size() - 1; i >= 0; i--) {
+            if (moving.contains(current.get(i))) {
+                int end = current.size() - 1 - parked;
+                if (i != end) {
+                    result.add(MOVE, i, current.size() - 1);
+                    current.add(current.remove(i));
+                }
+                parked++;
+            }
+        }
+        for (int i = 0; i < newIds.length; i++) {
+            String id = newIds[i];
+            if (!oldVersionsById.containsKey(id)) {
+                result.add(INSERT, i, 1);
+                current.add(i, id);
+            } else if (moving.contains(id)) {
+                int from = current.lastIndexOf(id);
+                if (from != i) {
+                    result.add(MOVE, from, i);
+                    current.remove(from);
+                    current.add(i, id);
+                }
+            }
+        }
+
+        // Report the events whose content changed at their final position
+        for (int i = 0; i < newIds.length; i++) {
+            Long oldVersion = oldVersionsById.get(newIds[i]);
+            if (oldVersion != null && oldVersion != newVersions[i]) {
+                result.add(CHANGE, i, 1);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns which values are part of a longest strictly increasing subsequence
+     */
+    private static boolean[] longestIncreasingRun(int[] values) {
+        int n = values.length;
+        // tails[k] is the index of the smallest value ending a run of length k + 1
+        int[] tails = new int[n];
+        int[] previous = new int[n];
+        int length = 0;
+        for (int i = 0; i < n; i++) {
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (values[tails[middle]] < values[i]) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            previous[i] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = i;
+            if (low == length) {
+                length++;
+            }
+        }
+        boolean[] onRun = new boolean[n];
+        for (int i = length > 0 ? tails[length - 1] : -1; i >= 0; i = previous[i]) {
+            onRun[i] = true;
+        }
+        return onRun;
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.android.quakereport;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Live mode: polls the small USGS summary feeds on a short interval and reports only the
+ * events that are new or were updated since the last poll. The feeds go through
+ * {@link QueryUtils}, so every poll is a conditional request and an unchanged feed costs no
+ * body. The changes are stored and formatted on a background thread and delivered on the main
+ * thread.
+ */
+public class LiveFeedPoller {
+
+    /**
+     * Summary feed of every earthquake of the past hour
+     */
+    private static final String PAST_HOUR_FEED =
+            "https://earthquake.usgs.gov/earthquakes/feed/v1.0/summary/all_hour.csv";
+
+    /**
+     * Summary feed of every earthquake of the past day, used to catch up on the first poll
+     */
+    private static final String PAST_DAY_FEED =
+            "https://earthquake.usgs.gov/earthquakes/feed/v1.0/summary/all_day.csv";
+
+    /**
+     * Time between two polls. USGS regenerates the summary feeds every minute.
+     */
+    private static final long POLL_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    /**
+     * Receives the changes on the main thread
+     */
+    public interface Callback {
+        void onDelta(EarthquakeDelta delta);
+    }
+
+    private final Context mContext;
+    private final Callback mCallback;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * Only used on the executor thread
+     */
+    private final EarthquakeDelta.Tracker mTracker = new EarthquakeDelta.Tracker();
+    private EarthquakeFormatter mFormatter;
+    private boolean mCaughtUp;
+
+    private boolean mRunning;
+    /**
+     * True while a poll is on its way, so restarting does not start a second polling loop
+     */
+    private boolean mPolling;
+    private double mMinMagnitude;
+
+    private final Runnable mPoll = new Runnable() {
+        @Override
+        public void run() {
+            if (mPolling) {
+                return;
+            }
+            mPolling = true;
+            final double minMagnitude = mMinMagnitude;
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    poll(minMagnitude);
+                }
+            });
+        }
+    };
+
+    public LiveFeedPoller(Context context, Callback callback) {
+        mContext = context.getApplicationContext();
+        mCallback = callback;
+    }
+
+    /**
+     * Starts over with the given earthquakes as the ones already known. Called on the main
+     * thread whenever the shown catalog is replaced.
+     *
+     * @param known        earthquakes already shown; copied, so the caller may keep changing it
+     * @param minMagnitude events below this magnitude are not reported
+     */
+    public void reset(EarthquakeTable known, double minMagnitude) {
+        mMinMagnitude = minMagnitude;
+        final EarthquakeTable snapshot = new EarthquakeTable(known != null ? known.size() : 0);
+        if (known != null) {
+            for (int row = 0; row < known.size(); row++) {
+                snapshot.addRow(known, row);
+            }
+        }
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mTracker.reset(snapshot);
+                mCaughtUp = false;
+            }
+        });
+    }
+
+    /**
+     * Starts polling, right away. Called on the main thread.
+     */
+    public void start() {
+        if (mRunning) {
+            return;
+        }
+        mRunning = true;
+        mHandler.post(mPoll);
+    }
+
+    /**
+     * Stops polling. Called on the main thread.
+     */
+    public void stop() {
+        mRunning = false;
+        mHandler.removeCallbacks(mPoll);
+    }
+
+    /**
+     * Stops polling for good
+     */
+    public void release() {
+        stop();
+        mExecutor.shutdownNow();
+    }
+
+    /**
+     * This is on a background thread.
+     */
+    private void poll(double minMagnitude) {
+        EarthquakeTable feed = QueryUtils.fetchEarthquakeData(
+                mCaughtUp ? PAST_HOUR_FEED : PAST_DAY_FEED);
+        EarthquakeDelta delta = null;
+        if (feed != null) {
+            mCaughtUp = true;
+            delta = mTracker.diff(feed, minMagnitude);
+            if (!delta.isEmpty()) {
+                EarthquakeStore store = EarthquakeStore.getInstance(mContext);
+                store.merge(delta.getInserted());
+                store.merge(delta.getUpdated());
+                store.merge(delta.getRemoved());
+                if (mFormatter == null) {
+                    mFormatter = new EarthquakeFormatter(mContext);
+                }
+                mFormatter.formatAll(delta.getInserted());
+                mFormatter.formatAll(delta.getUpdated());
+                mFormatter.formatAll(delta.getRemoved());
+            }
+        }
+
+        final EarthquakeDelta result = delta;
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mPolling = false;
+                if (!mRunning) {
+                    return;
+                }
+                if (result != null && !result.isEmpty()) {
+                    mCallback.onDelta(result);
+                }
+                mHandler.postDelayed(mPoll, POLL_INTERVAL_MILLIS);
+            }
+        });
+    }
+}
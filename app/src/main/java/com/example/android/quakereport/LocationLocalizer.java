@@ -0,0 +1,98 @@
+package com.example.android.quakereport;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Localizes USGS place strings for display, i.e. "43km WNW of Anchorage, Alaska" into the
+ * offset "43KM WNW of" and the primary location "Anchorage, Alaska". The localized strings are
+ * resolved once for a locale, and the result for every place string is kept in a bounded
+ * least-recently-used cache, since the same places come back row after row.
+ * <p>
+ * This class has no Android dependencies; {@link EarthquakeFormatter} builds it from the
+ * resources of the current locale. It is thread-safe.
+ */
+public class LocationLocalizer {
+
+    private final Locale mLocale;
+
+    /**
+     * Localized direction of every entry of {@link EarthquakeFormats#DIRECTIONS}
+     */
+    private final String[] mDirections;
+
+    /**
+     * Offset shown for places without one, i.e. "Near the"
+     */
+    private final String mNearThe;
+
+    /**
+     * Format of an offset with the distance and direction as arguments, i.e. "%1$sKM %2$s of"
+     */
+    private final String mOffsetFormat;
+
+    private final Map<String, String[]> mCache;
+
+    /**
+     * Constructs a new {@link LocationLocalizer}
+     *
+     * @param locale       locale of the strings
+     * @param directions   localized direction of every entry of
+     *                     {@link EarthquakeFormats#DIRECTIONS}
+     * @param nearThe      offset shown for places without one
+     * @param offsetFormat format of an offset, with the distance and direction as arguments
+     * @param cacheSize    maximum number of place strings kept
+     */
+    public LocationLocalizer(Locale locale, String[] directions, String nearThe,
+                             String offsetFormat, final int cacheSize) {
+        mLocale = locale;
+        mDirections = directions.clone();
+        mNearThe = nearThe;
+        mOffsetFormat = offsetFormat;
+        mCache = new LinkedHashMap<String, String[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String[]> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    public Locale getLocale() {
+        return mLocale;
+    }
+
+    /**
+     * Returns the localized offset and the primary location of a place string. The array is
+     * shared between callers and must not be modified.
+     */
+    public String[] localize(String place) {
+        synchronized (mCache) {
+            String[] result = mCache.get(place);
+            if (result != null) {
+                return result;
+            }
+        }
+        // Computed outside the lock; two threads may compute the same place, which is harmless
+        String[] result = EarthquakeFormats.splitLocation(place);
+        result[0] = result[0] == null ? mNearThe : localizeOffset(result[0]);
+        synchronized (mCache) {
+            mCache.put(place, result);
+        }
+        return result;
+    }
+
+    /**
+     * Localizes the distance and direction of an offset (i.e. "43km WNW")
+     */
+    private String localizeOffset(String offset) {
+        String[] offsetParts = EarthquakeFormats.splitOffset(offset);
+        if (offsetParts == null) {
+            // if string contains "of" but not "km" return original offset string in english
+            return offset + EarthquakeFormats.LOCATION_SEPARATOR;
+        }
+        int index = EarthquakeFormats.getDirectionIndex(offsetParts[1]);
+        String direction = index < 0 ? offsetParts[1] : mDirections[index];
+        return String.format(mLocale, mOffsetFormat, offsetParts[0], direction);
+    }
+}
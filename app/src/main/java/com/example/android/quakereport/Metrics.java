@@ -0,0 +1,267 @@
+package com.example.android.quakereport;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Latency histograms of the stages between a request and a row on screen: the HTTP request,
+ * the parse, the loader and the binding of rows. Recording is off unless enabled; when off,
+ * a timed section costs a volatile read and nothing is allocated. The reports also tell how
+ * well {@link EarthquakeTable#PLACE_POOL} deduplicates the places.
+ * <p>
+ * Timed sections are written as
+ * <pre>
+ * long start = Metrics.start();
+ * ...
+ * Metrics.stop(Metrics.PARSE, start);
+ * </pre>
+ * This class has no Android dependencies.
+ */
+public final class Metrics {
+
+    private static final String MICROSECONDS = "us";
+
+    private static final List<Histogram> sHistograms = new ArrayList<>();
+
+    /**
+     * Time of a sync of the store with USGS, every request and the merge included
+     */
+    public static final Histogram SYNC = register("sync", MICROSECONDS);
+
+    /**
+     * TLS handshakes made during a sync; 0 when every request reused a pooled connection
+     */
+    public static final Histogram SYNC_HANDSHAKES = register("sync_handshakes", "handshakes");
+
+    /**
+     * Host name lookup before an HTTP request
+     */
+    public static final Histogram HTTP_DNS = register("http_dns", MICROSECONDS);
+
+    /**
+     * Connection setup of an HTTP request, TCP and TLS handshakes included
+     */
+    public static final Histogram HTTP_CONNECT = register("http_connect", MICROSECONDS);
+
+    /**
+     * Time from the connection until the response headers arrived
+     */
+    public static final Histogram HTTP_TTFB = register("http_ttfb", MICROSECONDS);
+
+    /**
+     * Time spent waiting for the response body, not counting the parse it is streamed into
+     */
+    public static final Histogram HTTP_DOWNLOAD = register("http_download", MICROSECONDS);
+
+    /**
+     * CPU time of parsing a response, not counting the time waiting for its bytes
+     */
+    public static final Histogram PARSE = register("parse", MICROSECONDS);
+
+    /**
+     * Number of earthquakes in a parsed response
+     */
+    public static final Histogram PARSE_FEATURES = register("parse_features", "features");
+
+    /**
+     * Time a load waited between being started and running on the loader thread
+     */
+    public static final Histogram LOADER_QUEUE = register("loader_queue", MICROSECONDS);
+
+    /**
+     * Time the loader thread took to load the earthquakes
+     */
+    public static final Histogram LOADER_LOAD = register("loader_load", MICROSECONDS);
+
+    /**
+     * Time to bind one row of the list
+     */
+    public static final Histogram BIND = register("bind", MICROSECONDS);
+
+    private static volatile boolean sEnabled;
+
+    private Metrics() {
+    }
+
+    private static Histogram register(String name, String unit) {
+        Histogram histogram = new Histogram(name, unit);
+        sHistograms.add(histogram);
+        return histogram;
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * Turns recording on or off. What was recorded is kept.
+     */
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    /**
+     * Returns every histogram, in report order
+     */
+    public static List<Histogram> getHistograms() {
+        return Collections.unmodifiableList(sHistograms);
+    }
+
+    /**
+     * Returns the start time of a timed section, or 0 if recording is off
+     */
+    public static long start() {
+        return sEnabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the time since the given start of a timed section in microseconds, unless
+     * recording was off when the section started
+     */
+    public static void stop(Histogram histogram, long start) {
+        if (start != 0) {
+            histogram.record((System.nanoTime() - start) / 1000);
+        }
+    }
+
+    /**
+     * Records a value, if recording is on
+     */
+    public static void record(Histogram histogram, long value) {
+        if (sEnabled) {
+            histogram.record(value);
+        }
+    }
+
+    /**
+     * Forgets everything recorded so far
+     */
+    public static void reset() {
+        for (Histogram histogram : sHistograms) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Returns a plain text table of every histogram
+     */
+    public static String dumpText() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.US, "%-16s %8s %9s %9s %9s %9s %9s %s%n",
+                "stage", "count", "mean", "p50", "p90", "p99", "max", "unit"));
+        for (Histogram histogram : sHistograms) {
+            report.append(String.format(Locale.US, "%-16s %8d %9.1f %9d %9d %9d %9d %s%n",
+                    histogram.getName(),
+                    histogram.getCount(),
+                    histogram.getMean(),
+                    histogram.getValueAtPercentile(50),
+                    histogram.getValueAtPercentile(90),
+                    histogram.getValueAtPercentile(99),
+                    histogram.getMax(),
+                    histogram.getUnit()));
+        }
+        StringPool pool = EarthquakeTable.PLACE_POOL;
+        report.append(String.format(Locale.US,
+                "%nplace pool: %d strings, %.1f%% hits of %d lookups, ~%d bytes saved%n",
+                pool.size(), pool.getHitRate() * 100, pool.getLookups(), pool.getBytesSaved()));
+        return report.toString();
+    }
+
+    /**
+     * Returns a JSON report of every histogram
+     */
+    public static String dumpJson() {
+        StringWriter report = new StringWriter();
+        JsonWriter writer = new JsonWriter(report);
+        writer.setIndent("  ");
+        try {
+            writer.beginObject();
+            writer.name("enabled").value(sEnabled);
+            writer.name("histograms").beginArray();
+            for (Histogram histogram : sHistograms) {
+                writer.beginObject();
+                writer.name("name").value(histogram.getName());
+                writer.name("unit").value(histogram.getUnit());
+                writer.name("count").value(histogram.getCount());
+                writer.name("mean").value(histogram.getMean());
+                writer.name("p50").value(histogram.getValueAtPercentile(50));
+                writer.name("p90").value(histogram.getValueAtPercentile(90));
+                writer.name("p99").value(histogram.getValueAtPercentile(99));
+                writer.name("max").value(histogram.getMax());
+                writer.endObject();
+            }
+            writer.endArray();
+            StringPool pool = EarthquakeTable.PLACE_POOL;
+            writer.name("place_pool").beginObject();
+            writer.name("strings").value(pool.size());
+            writer.name("lookups").value(pool.getLookups());
+            writer.name("hits").value(pool.getHits());
+            writer.name("hit_rate").value(pool.getHitRate());
+            writer.name("bytes_saved").value(pool.getBytesSaved());
+            writer.endObject();
+            writer.endObject();
+            writer.close();
+        } catch (IOException e) {
+            // A StringWriter does not throw
+            throw new IllegalStateException(e);
+        }
+        return report.toString();
+    }
+
+    /**
+     * Stream that adds up the time spent blocked in its reads, to tell the time waiting for
+     * the network apart from the time spent parsing what was read
+     */
+    public static class TimedInputStream extends FilterInputStream {
+        private long mReadNanos;
+
+        public TimedInputStream(InputStream in) {
+            super(in);
+        }
+
+        /**
+         * Returns the time spent in reads so far, in nanoseconds
+         */
+        public long getReadNanos() {
+            return mReadNanos;
+        }
+
+        @Override
+        public int read() throws IOException {
+            long start = System.nanoTime();
+            try {
+                return super.read();
+            } finally {
+                mReadNanos += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            long start = System.nanoTime();
+            try {
+                return super.read(buffer, offset, count);
+            } finally {
+                mReadNanos += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public long skip(long count) throws IOException {
+            long start = System.nanoTime();
+            try {
+                return super.skip(count);
+            } finally {
+                mReadNanos += System.nanoTime() - start;
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.android.quakereport;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.preference.PreferenceManager;
+import android.support.v7.app.AppCompatActivity;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.widget.TextView;
+
+/**
+ * Debug screen showing the {@link Metrics} histograms, with actions to turn recording on or
+ * off, reset the histograms and share the JSON report.
+ */
+public class MetricsActivity extends AppCompatActivity {
+
+    private TextView mReportTextView;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_metrics);
+        mReportTextView = (TextView) findViewById(R.id.metrics_report);
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        showReport();
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.metrics, menu);
+        return true;
+    }
+
+    @Override
+    public boolean onPrepareOptionsMenu(Menu menu) {
+        menu.findItem(R.id.action_metrics_enabled).setChecked(Metrics.isEnabled());
+        return super.onPrepareOptionsMenu(menu);
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        int id = item.getItemId();
+        if (id == R.id.action_metrics_enabled) {
+            boolean enabled = !Metrics.isEnabled();
+            Metrics.setEnabled(enabled);
+            // Keep recording across restarts of the app
+            PreferenceManager.getDefaultSharedPreferences(this).edit()
+                    .putBoolean(getString(R.string.metrics_enabled_key), enabled)
+                    .apply();
+            showReport();
+            return true;
+        } else if (id == R.id.action_metrics_refresh) {
+            showReport();
+            return true;
+        } else if (id == R.id.action_metrics_reset) {
+            Metrics.reset();
+            showReport();
+            return true;
+        } else if (id == R.id.action_metrics_share) {
+            Intent shareIntent = new Intent(Intent.ACTION_SEND);
+            shareIntent.setType("application/json");
+            shareIntent.putExtra(Intent.EXTRA_TEXT, Metrics.dumpJson());
+            if (shareIntent.resolveActivity(getPackageManager()) != null) {
+                startActivity(Intent.createChooser(shareIntent, item.getTitle()));
+            }
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    private void showReport() {
+        mReportTextView.setText(Metrics.dumpText());
+    }
+}
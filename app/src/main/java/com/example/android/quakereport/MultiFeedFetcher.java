@@ -0,0 +1,310 @@
+package com.example.android.quakereport;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Fetches several USGS queries at once (regions, magnitude bands, time slices) on a bounded
+ * executor and merges them into one table with every event once. At most a given number of
+ * requests run against the same host at a time, and a query that is already being fetched,
+ * by this call or another one, is not requested again: the callers share the one response,
+ * each with its own copy of it, since tables are not thread-safe and callers change theirs, i.e.
+ * by formatting it. A request every caller gave up waiting for is cancelled.
+ * <p>
+ * This class has no Android dependencies. It is thread-safe.
+ */
+public class MultiFeedFetcher {
+
+    /**
+     * Fetches one query. Called on the executor, possibly from several threads at once.
+     */
+    public interface FeedSource {
+        /**
+         * @param url request url of the query
+         * @return the earthquakes of the response
+         * @throws IOException if the query could not be fetched
+         */
+        EarthquakeTable fetch(String url) throws IOException;
+
+        /**
+         * Aborts the fetch running on the given thread, i.e. by closing its connection. Called
+         * from another thread once no caller waits for the fetch; the thread is also
+         * interrupted.
+         */
+        void cancel(Thread thread);
+    }
+
+    /**
+     * Outcome of {@link #fetchAll}
+     */
+    public static class Result {
+        private final EarthquakeTable mEarthquakes;
+        private final Map<String, EarthquakeTable> mFeeds;
+        private final List<String> mFailedUrls;
+
+        Result(EarthquakeTable earthquakes, Map<String, EarthquakeTable> feeds,
+               List<String> failedUrls) {
+            mEarthquakes = earthquakes;
+            mFeeds = feeds;
+            mFailedUrls = failedUrls;
+        }
+
+        /**
+         * Returns the earthquakes of every fetched query, each event once with its latest
+         * update
+         */
+        public EarthquakeTable getEarthquakes() {
+            return mEarthquakes;
+        }
+
+        /**
+         * Returns the response of one query, or null if it failed. It belongs to this result,
+         * and may be the table of {@link #getEarthquakes()}.
+         */
+        public EarthquakeTable getFeed(String url) {
+            return mFeeds.get(url);
+        }
+
+        /**
+         * Returns the urls of the queries that could not be fetched
+         */
+        public List<String> getFailedUrls() {
+            return mFailedUrls;
+        }
+
+        public boolean isComplete() {
+            return mFailedUrls.isEmpty();
+        }
+    }
+
+    private final FeedSource mSource;
+    private final Executor mExecutor;
+    private final int mMaxRequestsPerHost;
+
+    /**
+     * Requests being fetched, by url
+     */
+    private final ConcurrentMap<String, Request> mInFlight =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Permits of every host requests were made to
+     */
+    private final ConcurrentMap<String, Semaphore> mHostPermits = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new {@link MultiFeedFetcher}
+     *
+     * @param source             fetches a single query
+     * @param executor           bounded executor the queries run on
+     * @param maxRequestsPerHost number of requests allowed to run against one host at a time
+     */
+    public MultiFeedFetcher(FeedSource source, Executor executor, int maxRequestsPerHost) {
+        mSource = source;
+        mExecutor = executor;
+        mMaxRequestsPerHost = Math.max(1, maxRequestsPerHost);
+    }
+
+    /**
+     * Fetches every query and waits for them. Must not be called from a thread of the executor.
+     *
+     * @param urls request urls; duplicates are fetched once
+     * @return the merged earthquakes, and which queries failed
+     * @throws InterruptedException if the calling thread was interrupted while waiting; the
+     *                              requests no other caller waits for are then cancelled
+     */
+    public Result fetchAll(List<String> urls) throws InterruptedException {
+        Map<String, Request> requests = new LinkedHashMap<>();
+        for (String url : urls) {
+            if (!requests.containsKey(url)) {
+                requests.put(url, request(url));
+            }
+        }
+
+        Map<String, EarthquakeTable> feeds = new HashMap<>();
+        List<String> failedUrls = new ArrayList<>();
+        List<EarthquakeTable> tables = new ArrayList<>();
+        try {
+            for (Map.Entry<String, Request> request : requests.entrySet()) {
+                try {
+                    EarthquakeTable feed = request.getValue().get().copy();
+                    feeds.put(request.getKey(), feed);
+                    tables.add(feed);
+                } catch (ExecutionException e) {
+                    failedUrls.add(request.getKey());
+                }
+            }
+        } catch (InterruptedException e) {
+            for (Request request : requests.values()) {
+                request.leave();
+            }
+            throw e;
+        }
+        return new Result(merge(tables), feeds, failedUrls);
+    }
+
+    /**
+     * Returns the request in flight for the url, starting it if there is none
+     */
+    private Request request(String url) {
+        while (true) {
+            Request request = mInFlight.get(url);
+            if (request != null) {
+                if (request.join()) {
+                    return request;
+                }
+                // Every caller of that one gave up and it is being cancelled
+                mInFlight.remove(url, request);
+                continue;
+            }
+            request = new Request(url);
+            if (mInFlight.putIfAbsent(url, request) == null) {
+                mExecutor.execute(request);
+                return request;
+            }
+            // Another caller started the same request first
+        }
+    }
+
+    private Semaphore getHostPermits(String url) {
+        String host;
+        try {
+            host = new URL(url).getHost();
+        } catch (MalformedURLException e) {
+            host = "";
+        }
+        Semaphore permits = mHostPermits.get(host);
+        if (permits == null) {
+            permits = new Semaphore(mMaxRequestsPerHost);
+            Semaphore existing = mHostPermits.putIfAbsent(host, permits);
+            if (existing != null) {
+                permits = existing;
+            }
+        }
+        return permits;
+    }
+
+    /**
+     * Fetch of one query, shared by every caller waiting for it
+     */
+    private class Request extends FutureTask<EarthquakeTable> {
+        private final String mUrl;
+
+        /**
+         * Thread running the fetch, while it runs
+         */
+        private volatile Thread mRunner;
+
+        /**
+         * Number of callers waiting for the fetch, guarded by this
+         */
+        private int mWaiters = 1;
+
+        Request(final String url) {
+            super(new Callable<EarthquakeTable>() {
+                @Override
+                public EarthquakeTable call() throws Exception {
+                    Semaphore permits = getHostPermits(url);
+                    permits.acquire();
+                    try {
+                        return mSource.fetch(url);
+                    } finally {
+                        permits.release();
+                    }
+                }
+            });
+            mUrl = url;
+        }
+
+        @Override
+        public void run() {
+            mRunner = Thread.currentThread();
+            try {
+                super.run();
+            } finally {
+                mRunner = null;
+            }
+        }
+
+        /**
+         * Adds a caller waiting for the fetch
+         *
+         * @return false if every caller gave up and the fetch is being cancelled
+         */
+        synchronized boolean join() {
+            if (mWaiters == 0) {
+                return false;
+            }
+            mWaiters++;
+            return true;
+        }
+
+        /**
+         * Removes a caller that gave up waiting, cancelling the fetch if it was the last one
+         */
+        void leave() {
+            synchronized (this) {
+                if (--mWaiters > 0) {
+                    return;
+                }
+            }
+            if (cancel(true)) {
+                Thread runner = mRunner;
+                if (runner != null) {
+                    mSource.cancel(runner);
+                }
+            }
+        }
+
+        @Override
+        protected void done() {
+            mInFlight.remove(mUrl, this);
+        }
+    }
+
+    /**
+     * Merges the tables into one, keeping for every event id the row updated last. Events keep
+     * the position they first appeared at. A single table is returned as it is.
+     */
+    static EarthquakeTable merge(List<EarthquakeTable> tables) {
+        if (tables.size() == 1) {
+            return tables.get(0);
+        }
+        // Table index and row of the latest version of every event
+        Map<String, int[]> latest = new LinkedHashMap<>();
+        int totalRows = 0;
+        for (int t = 0; t < tables.size(); t++) {
+            EarthquakeTable table = tables.get(t);
+            totalRows += table.size();
+            for (int row = 0; row < table.size(); row++) {
+                int[] best = latest.get(table.getId(row));
+                if (best == null) {
+                    latest.put(table.getId(row), new int[]{t, row});
+                } else if (table.getUpdated(row)
+                        > tables.get(best[0]).getUpdated(best[1])) {
+                    best[0] = t;
+                    best[1] = row;
+                }
+            }
+        }
+
+        EarthquakeTable merged = new EarthquakeTable(Math.min(totalRows, latest.size()));
+        for (int[] best : latest.values()) {
+            merged.addRow(tables.get(best[0]), best[1]);
+        }
+        return merged;
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.android.quakereport;
+
+import android.app.Application;
+import android.content.res.Configuration;
+import android.preference.PreferenceManager;
+
+import java.io.File;
+
+/**
+ * Sets up the app wide state shared by activities and loaders.
+ */
+public class QuakeReportApplication extends Application {
+
+    /**
+     * Maximum size in bytes of the HTTP response cache
+     */
+    private static final long HTTP_CACHE_SIZE = 10 * 1024 * 1024;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        // The cache directory is only read on first use, off the main thread
+        File cacheDirectory = new File(getCacheDir(), "http");
+        QueryUtils.setResponseCache(new DiskResponseCache(cacheDirectory, HTTP_CACHE_SIZE));
+
+        // Performance metrics are only recorded once turned on from their debug screen
+        Metrics.setEnabled(PreferenceManager.getDefaultSharedPreferences(this)
+                .getBoolean(getString(R.string.metrics_enabled_key), false));
+
+        // Earthquakes matching the alert rules set in the settings are notified as they arrive
+        QueryUtils.setBatchListener(new AlertNotifier(this));
+
+        // Keep the catalog fresh in the background, so the app opens on recent data
+        SyncManager.scheduleSync(this);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        // Place strings are localized again for the new locale
+        EarthquakeFormatter.onConfigurationChanged();
+    }
+}
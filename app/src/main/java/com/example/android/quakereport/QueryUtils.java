@@ -1,22 +1,18 @@
 package com.example.android.quakereport;
 
-import android.text.TextUtils;
 import android.util.Log;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.io.BufferedReader;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
+import java.net.InetAddress;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.nio.charset.Charset;
-import java.util.ArrayList;
-import java.util.List;
+import java.net.UnknownHostException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Helper methods related to requesting and receiving earthquake data from USGS.
@@ -25,6 +21,42 @@ public final class QueryUtils {
 
     private static final String TAG = "QueryUtils";
 
+    private static final String MAX_AGE = "max-age=";
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 15000;
+    private static final int READ_TIMEOUT_MILLIS = 10000;
+
+    /**
+     * Number of times a request is sent at most, and the bounds of the waits between
+     */
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_BASE_DELAY_MILLIS = 500;
+    private static final long RETRY_MAX_DELAY_MILLIS = 4000;
+
+    /**
+     * Cache for HTTP responses, or null to always download
+     */
+    private static volatile DiskResponseCache sResponseCache;
+
+    /**
+     * Transport every request is made with: pooled keep-alive connections, with retries
+     */
+    private static volatile HttpTransport sTransport = new RetryingTransport(
+            new UrlConnectionTransport(CONNECT_TIMEOUT_MILLIS, READ_TIMEOUT_MILLIS, true),
+            MAX_ATTEMPTS, RETRY_BASE_DELAY_MILLIS, RETRY_MAX_DELAY_MILLIS);
+
+    /**
+     * Listener told about every table fetched, or null
+     */
+    private static volatile BatchListener sBatchListener;
+
+    /**
+     * Receives every table of earthquakes fetched, on the thread that fetched it
+     */
+    public interface BatchListener {
+        void onBatch(EarthquakeTable earthquakes);
+    }
+
     /**
      * Create a private constructor because no one should ever create a {@link QueryUtils} object.
      * This class is only meant to hold static variables and methods, which can be accessed
@@ -33,18 +65,73 @@ public final class QueryUtils {
     private QueryUtils() {
     }
 
-    public static List<Earthquake> fetchEarthquakeData(String requestUrl) {
+    /**
+     * Installs the cache used for every request made through this class.
+     *
+     * @param cache response cache, or null to disable caching
+     */
+    public static void setResponseCache(DiskResponseCache cache) {
+        sResponseCache = cache;
+    }
+
+    /**
+     * Returns the installed response cache, or null if there is none
+     */
+    public static DiskResponseCache getResponseCache() {
+        return sResponseCache;
+    }
+
+    /**
+     * Replaces the transport every request is made with, i.e. by a stub for tests
+     */
+    public static void setTransport(HttpTransport transport) {
+        sTransport = transport;
+    }
+
+    public static HttpTransport getTransport() {
+        return sTransport;
+    }
+
+    /**
+     * Installs the listener told about every table fetched through this class
+     *
+     * @param listener listener, or null to remove it
+     */
+    public static void setBatchListener(BatchListener listener) {
+        sBatchListener = listener;
+    }
+
+    /**
+     * Cancels the request the given thread is making, if any, so a connect or read it is
+     * blocked in fails right away. The thread should be interrupted first, so a request it is
+     * about to make is cancelled too.
+     */
+    public static void cancelRequest(Thread thread) {
+        sTransport.cancel(thread);
+    }
+
+    /**
+     * Query the USGS dataset and return a table of the earthquakes in the response.
+     *
+     * @param requestUrl USGS query url
+     * @return table of earthquakes, or null if the request failed or the response was cut
+     * short or malformed
+     */
+    public static EarthquakeTable fetchEarthquakeData(String requestUrl) {
         URL url = createUrl(requestUrl);
 
-        String jsonResponse = null;
+        EarthquakeTable earthquakes = null;
         try {
-            jsonResponse = makeHttpRequest(url);
+            earthquakes = makeHttpRequest(url);
         } catch (IOException e) {
             Log.e(TAG, "Error closing input stream", e);
         }
 
-        List<Earthquake> earthquakesList = extractFeatureFromJson(jsonResponse);
-        return earthquakesList;
+        BatchListener listener = sBatchListener;
+        if (earthquakes != null && listener != null) {
+            listener.onBatch(earthquakes);
+        }
+        return earthquakes;
     }
 
     /**
@@ -64,107 +151,246 @@ public final class QueryUtils {
     }
 
     /**
-     * Make an HTTP request to the given URL
+     * Make an HTTP request to the given URL and parse the response while it is being read.
+     * When a response cache is installed, a fresh cached response is used without touching the
+     * network and a stale one is revalidated with a conditional request.
      *
      * @param url url address to connect to
-     * @return a String as the response containing json formatted object.
+     * @return table of earthquakes from the response, or null if the request failed or the
+     * response could not be parsed to its end
      */
-    private static String makeHttpRequest(URL url) throws IOException {
-        String jsonResponse = null;
+    private static EarthquakeTable makeHttpRequest(URL url) throws IOException {
+        EarthquakeTable earthquakes = null;
 
         if (url == null) {
             return null;
         }
 
-        HttpURLConnection urlConnection = null;
+        UsgsQueryBuilder.Format format = UsgsQueryBuilder.Format.fromUrl(url.toString());
+        DiskResponseCache cache = sResponseCache;
+        DiskResponseCache.Snapshot cached = cache != null ? cache.get(url.toString()) : null;
+        DiskResponseCache.Editor editor = null;
+
+        HttpTransport.Response response = null;
         InputStream inputStream = null;
+        boolean fromNetwork = true;
         try {
-            urlConnection = (HttpURLConnection) url.openConnection();
-            urlConnection.setConnectTimeout(15000);
-            urlConnection.setReadTimeout(10000);
-            urlConnection.setRequestMethod("GET");
-            urlConnection.connect();
-
-            // if connection is successful
-            if (urlConnection.getResponseCode() == 200){
-                inputStream = urlConnection.getInputStream();
-                jsonResponse = readFromStream(inputStream);
+            if (cached != null && cached.isFresh(System.currentTimeMillis())) {
+                earthquakes = readCachedBody(cached, format);
+                if (earthquakes != null) {
+                    cache.recordHit();
+                    return earthquakes;
+                }
+                // Evicted since it was looked up, or corrupt: download it again, unconditionally
+                cache.remove(cached);
+                cached = null;
+            }
+
+            if (Metrics.isEnabled()) {
+                lookUpHost(url.getHost());
+            }
+
+            Map<String, String> headers = new HashMap<>();
+            headers.put("Accept-Encoding", "gzip");
+            if (cached != null) {
+                if (cached.getETag() != null) {
+                    headers.put("If-None-Match", cached.getETag());
+                }
+                if (cached.getLastModified() != null) {
+                    headers.put("If-Modified-Since", cached.getLastModified());
+                }
+            }
+            response = sTransport.get(url.toString(), headers);
+            int responseCode = response.getCode();
+            boolean revalidated = false;
+            if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+                try {
+                    inputStream = cached.openBody();
+                    revalidated = true;
+                } catch (FileNotFoundException e) {
+                    // Evicted since it was looked up: download it again, unconditionally
+                    response.close();
+                    response = null;
+                    headers.remove("If-None-Match");
+                    headers.remove("If-Modified-Since");
+                    response = sTransport.get(url.toString(), headers);
+                    responseCode = response.getCode();
+                }
+            }
+            if (revalidated) {
+                // The cached response is still valid, so there is no body to download
+                cache.recordRevalidation();
+                cache.update(cached, getExpiry(response));
+                fromNetwork = false;
+            } else if (responseCode == HttpURLConnection.HTTP_OK) {
+                inputStream = response.getBody();
+                if ("gzip".equalsIgnoreCase(response.getHeader("Content-Encoding"))) {
+                    inputStream = new GZIPInputStream(inputStream);
+                }
+                if (cache != null) {
+                    cache.recordMiss();
+                    if (isCacheable(response)) {
+                        editor = cache.edit(url.toString(),
+                                response.getHeader("ETag"),
+                                response.getHeader("Last-Modified"),
+                                getExpiry(response),
+                                inputStream);
+                        inputStream = editor;
+                    }
+                }
+            } else if (responseCode == HttpURLConnection.HTTP_NO_CONTENT) {
+                // How the csv and text formats answer a query without events
+                return new EarthquakeTable(0);
             } else {
-                Log.e(TAG, "Error response code: " + urlConnection.getResponseCode());
+                Log.e(TAG, "Error response code: " + responseCode);
+            }
+
+            if (inputStream != null) {
+                earthquakes = new EarthquakeTable();
+                if (!extractFeatureFromStream(inputStream, format, earthquakes, fromNetwork)) {
+                    // A table cut short would pass for the whole response, and a sync would
+                    // move its mark past the events that never arrived
+                    if (revalidated) {
+                        cache.remove(cached);
+                    }
+                    return null;
+                }
+                if (editor != null) {
+                    editor.commit();
+                }
             }
         } catch (IOException e) {
             Log.e(TAG, "Problem retrieving results", e);
         } finally {
-            if (urlConnection != null) {
-                urlConnection.disconnect();
+            if (response != null) {
+                // Reads what is left of the body first, so the connection can be reused
+                response.close();
             }
             if (inputStream != null) {
                 inputStream.close();
             }
         }
 
-        return jsonResponse;
+        return earthquakes;
     }
 
     /**
-     * Convert the {@link InputStream} into a String which contains the
-     * whole JSON response from the server.
-     * @return String as the response containing json formatted object.
+     * Reads a cached response
+     *
+     * @return table of its earthquakes, or null if the body is gone or could not be parsed to
+     * its end
      */
-    private static String readFromStream(InputStream inputStream) throws IOException {
-        StringBuilder output = new StringBuilder();
-        if (inputStream != null) {
-            InputStreamReader inputStreamReader = new InputStreamReader(inputStream, Charset.forName("UTF-8"));
-            BufferedReader reader = new BufferedReader(inputStreamReader);
-            String line = reader.readLine();
-            while (line != null) {
-                output.append(line);
-                line = reader.readLine();
+    private static EarthquakeTable readCachedBody(DiskResponseCache.Snapshot cached,
+                                                  UsgsQueryBuilder.Format format) {
+        InputStream inputStream = null;
+        try {
+            inputStream = cached.openBody();
+            EarthquakeTable earthquakes = new EarthquakeTable();
+            return extractFeatureFromStream(inputStream, format, earthquakes, false)
+                    ? earthquakes : null;
+        } catch (IOException e) {
+            return null;
+        } finally {
+            if (inputStream != null) {
+                try {
+                    inputStream.close();
+                } catch (IOException e) {
+                    // Nothing was written to it
+                }
             }
         }
-        return output.toString();
     }
 
     /**
-     * Return a list of {@link Earthquake} objects that has been built up from
-     * parsing a JSON response.
+     * Looks up the host before connecting, to time the lookup on its own. The connection then
+     * finds the address in the resolver cache.
      */
-    private static List<Earthquake> extractFeatureFromJson(String jsonResponse) {
-        // If the JSON string is empty or null, then return early.
-        if (TextUtils.isEmpty(jsonResponse)) {
-            return null;
+    private static void lookUpHost(String host) {
+        long start = Metrics.start();
+        try {
+            InetAddress.getAllByName(host);
+            Metrics.stop(Metrics.HTTP_DNS, start);
+        } catch (UnknownHostException e) {
+            // The connection fails and reports it
         }
+    }
 
-        // Create an empty ArrayList that we can start adding earthquakes to
-        List<Earthquake> earthquakes = new ArrayList<>();
+    /**
+     * Returns false if the server asked for the response not to be stored
+     */
+    private static boolean isCacheable(HttpTransport.Response response) {
+        String cacheControl = response.getHeader("Cache-Control");
+        return cacheControl == null || !cacheControl.contains("no-store");
+    }
 
-        // Parse the Json response string. If there's a problem with the way the JSON
-        // is formatted, a JSONException exception object will be thrown.
-        // Catch the exception so the app doesn't crash, and print the error message to the logs.
-        try {
-            // build up a list of Earthquake objects with the corresponding data.
-            JSONObject baseJsonResponse = new JSONObject(jsonResponse);
-            JSONArray earthquakeArray = baseJsonResponse.getJSONArray("features");
-            for (int i = 0; i < earthquakeArray.length(); i++) {
-                JSONObject currentEarthquake = earthquakeArray.getJSONObject(i);
-                JSONObject properties = currentEarthquake.getJSONObject("properties");
-                double magnitude = properties.getDouble("mag");
-                String location = properties.getString("place");
-                long time = properties.getLong("time");
-                String url = properties.getString("url");
-                Earthquake earthquake = new Earthquake(magnitude, location, time, url);
-                earthquakes.add(earthquake);
+    /**
+     * Returns the time until which the response can be used without revalidation, based on
+     * the max-age directive of the Cache-Control header.
+     */
+    private static long getExpiry(HttpTransport.Response response) {
+        long now = System.currentTimeMillis();
+        String cacheControl = response.getHeader("Cache-Control");
+        if (cacheControl == null || cacheControl.contains("no-cache")) {
+            return now;
+        }
+        for (String directive : cacheControl.split(",")) {
+            directive = directive.trim();
+            if (directive.startsWith(MAX_AGE)) {
+                try {
+                    return now + Long.parseLong(directive.substring(MAX_AGE.length())) * 1000;
+                } catch (NumberFormatException e) {
+                    return now;
+                }
             }
+        }
+        return now;
+    }
 
-        } catch (JSONException e) {
-            // If an error is thrown when executing any of the above statements in the "try" block,
-            // catch the exception here, so the app doesn't crash. Print a log message
-            // with the message from the exception.
-            Log.e("QueryUtils", "Problem parsing the earthquake JSON results", e);
+    /**
+     * Append the earthquakes parsed from the response, as it streams in,
+     * to the given table.
+     *
+     * @param format      format of the response, which picks the parser
+     * @param fromNetwork true if the response is read from the network rather than the cache
+     * @return true if the whole response was parsed
+     */
+    private static boolean extractFeatureFromStream(InputStream inputStream,
+                                                    UsgsQueryBuilder.Format format,
+                                                    EarthquakeTable earthquakes,
+                                                    boolean fromNetwork) {
+        // Time the reads apart from the parse they are streamed into
+        long start = Metrics.start();
+        Metrics.TimedInputStream timedStream = null;
+        if (start != 0) {
+            timedStream = new Metrics.TimedInputStream(inputStream);
+            inputStream = timedStream;
         }
+        int sizeBefore = earthquakes.size();
 
-        // Return the list of earthquakes
-        return earthquakes;
+        // Parse the response stream. If there's a problem with the way the response
+        // is formatted, an IOException will be thrown after the earthquakes read so far
+        // have been added to the table. Catch the exception so the app doesn't crash,
+        // and print the error message to the logs.
+        try {
+            if (format == UsgsQueryBuilder.Format.GEOJSON) {
+                EarthquakeJsonParser.parse(inputStream, earthquakes);
+            } else {
+                EarthquakeCsvParser.parse(inputStream, earthquakes);
+            }
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "Problem parsing the earthquake results", e);
+            return false;
+        } finally {
+            if (timedStream != null) {
+                long readNanos = timedStream.getReadNanos();
+                if (fromNetwork) {
+                    Metrics.HTTP_DOWNLOAD.record(readNanos / 1000);
+                }
+                Metrics.PARSE.record((System.nanoTime() - start - readNanos) / 1000);
+                Metrics.PARSE_FEATURES.record(earthquakes.size() - sizeBefore);
+            }
+        }
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,174 @@
+package com.example.android.quakereport;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Durable queue of the refreshes asked for while offline, as the request urls to sync. Every
+ * request is appended to a log file and synced to disk before {@link #add} returns, so it
+ * survives the process being killed; requests are only dropped once {@link #remove} is told
+ * they were synced. The same request queued twice is kept once.
+ * <p>
+ * This class has no Android dependencies. The file is only read on first use; all methods
+ * touch the disk and are meant to run off the main thread. It is thread-safe.
+ */
+public final class RefreshQueue {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final File mFile;
+
+    /**
+     * Queued request urls, oldest first; null until the file is read
+     */
+    private LinkedHashSet<String> mRequests;
+
+    /**
+     * True if the log ends with a request cut short, which appending would run into the next
+     */
+    private boolean mTruncated;
+
+    /**
+     * Constructs a new {@link RefreshQueue}
+     *
+     * @param file log file of the queue, created on the first request
+     */
+    public RefreshQueue(File file) {
+        mFile = file;
+    }
+
+    /**
+     * Queues a request, unless it is queued already
+     *
+     * @throws IOException if it could not be written; it is still queued until the process dies
+     */
+    public synchronized void add(String requestUrl) throws IOException {
+        if (!getRequests().add(requestUrl)) {
+            return;
+        }
+        if (mTruncated) {
+            writeLog(mRequests);
+            return;
+        }
+        FileOutputStream output = new FileOutputStream(mFile, true);
+        try {
+            output.write((requestUrl + "\n").getBytes(UTF_8));
+            output.flush();
+            output.getFD().sync();
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Returns the queued requests, oldest first
+     */
+    public synchronized List<String> getPending() {
+        return new ArrayList<>(getRequests());
+    }
+
+    public synchronized boolean isEmpty() {
+        return getRequests().isEmpty();
+    }
+
+    /**
+     * Drops requests that were synced; requests queued since stay
+     *
+     * @throws IOException if the log could not be rewritten; the requests are then synced again
+     *                     after the process restarts, which is harmless
+     */
+    public synchronized void remove(Collection<String> requestUrls) throws IOException {
+        LinkedHashSet<String> requests = getRequests();
+        if (!requests.removeAll(requestUrls)) {
+            return;
+        }
+        if (requests.isEmpty()) {
+            if (mFile.exists() && !mFile.delete()) {
+                throw new IOException("Could not delete " + mFile);
+            }
+            mTruncated = false;
+            return;
+        }
+        writeLog(requests);
+    }
+
+    /**
+     * Replaces the log with the given requests. They are written aside, then swapped in, so a
+     * crash leaves either the old or the new log.
+     */
+    private void writeLog(Collection<String> requests) throws IOException {
+        File temp = new File(mFile.getPath() + TEMP_SUFFIX);
+        FileOutputStream output = new FileOutputStream(temp);
+        try {
+            Writer writer = new OutputStreamWriter(output, UTF_8);
+            for (String request : requests) {
+                writer.write(request);
+                writer.write('\n');
+            }
+            writer.flush();
+            output.getFD().sync();
+        } finally {
+            output.close();
+        }
+        if (!temp.renameTo(mFile)) {
+            throw new IOException("Could not replace " + mFile);
+        }
+        mTruncated = false;
+    }
+
+    private LinkedHashSet<String> getRequests() {
+        if (mRequests == null) {
+            mRequests = new LinkedHashSet<>();
+            String log;
+            try {
+                log = readLog();
+            } catch (IOException e) {
+                // Nothing can be recovered; the refreshes are asked for again next time
+                log = "";
+            }
+            // The last line is cut short if the process died while appending it
+            int end = log.lastIndexOf('\n');
+            mTruncated = end + 1 < log.length();
+            for (String request : log.substring(0, end + 1).split("\n")) {
+                if (!request.isEmpty()) {
+                    mRequests.add(request);
+                }
+            }
+        }
+        return mRequests;
+    }
+
+    private String readLog() throws IOException {
+        StringBuilder log = new StringBuilder();
+        Reader reader;
+        try {
+            reader = new InputStreamReader(new FileInputStream(mFile), UTF_8);
+        } catch (FileNotFoundException e) {
+            // Nothing was queued
+            return "";
+        }
+        try {
+            char[] buffer = new char[1024];
+            int count;
+            while ((count = reader.read(buffer)) != -1) {
+                log.append(buffer, 0, count);
+            }
+        } finally {
+            reader.close();
+        }
+        return log.toString();
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.android.quakereport;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * {@link HttpTransport} retrying the requests of another one when no response arrived or the
+ * server answered that it is overloaded or down (429, 502, 503, 504). Every request is a GET,
+ * so sending it again is safe. Retries wait a random time up to an exponentially growing
+ * bound ("full jitter"), so clients failing together do not come back together.
+ * <p>
+ * A cancelled request is not retried. Once the headers of a response arrived it is returned;
+ * a failure while reading its body is left to the caller.
+ * <p>
+ * This class has no Android dependencies. It is thread-safe.
+ */
+public class RetryingTransport implements HttpTransport {
+
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+    private static final int HTTP_BAD_GATEWAY = 502;
+    private static final int HTTP_UNAVAILABLE = 503;
+    private static final int HTTP_GATEWAY_TIMEOUT = 504;
+
+    private final HttpTransport mDelegate;
+    private final int mMaxAttempts;
+    private final long mBaseDelayMillis;
+    private final long mMaxDelayMillis;
+    private final Random mRandom = new Random();
+
+    /**
+     * Constructs a new {@link RetryingTransport}
+     *
+     * @param delegate        transport the requests are made with
+     * @param maxAttempts     number of times a request is sent at most
+     * @param baseDelayMillis bound of the wait before the first retry, doubled for every
+     *                        later one
+     * @param maxDelayMillis  largest bound of a wait
+     */
+    public RetryingTransport(HttpTransport delegate, int maxAttempts, long baseDelayMillis,
+                             long maxDelayMillis) {
+        mDelegate = delegate;
+        mMaxAttempts = Math.max(1, maxAttempts);
+        mBaseDelayMillis = baseDelayMillis;
+        mMaxDelayMillis = maxDelayMillis;
+    }
+
+    @Override
+    public Response get(String url, Map<String, String> headers) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            boolean lastAttempt = attempt >= mMaxAttempts;
+            try {
+                Response response = mDelegate.get(url, headers);
+                if (lastAttempt || !isRetryable(response.getCode())) {
+                    return response;
+                }
+                response.close();
+            } catch (InterruptedIOException e) {
+                // Cancelled, or timed out: the timeout already waited long enough
+                throw e;
+            } catch (IOException e) {
+                if (lastAttempt || Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+            }
+            sleep(getDelayMillis(attempt));
+        }
+    }
+
+    @Override
+    public void cancel(Thread thread) {
+        mDelegate.cancel(thread);
+    }
+
+    @Override
+    public long getHandshakeCount() {
+        return mDelegate.getHandshakeCount();
+    }
+
+    /**
+     * Returns a random wait before the retry following the given attempt
+     */
+    long getDelayMillis(int attempt) {
+        long bound = mBaseDelayMillis << Math.min(attempt - 1, 30);
+        bound = Math.min(Math.max(bound, 0), mMaxDelayMillis);
+        synchronized (mRandom) {
+            return (long) (mRandom.nextDouble() * bound);
+        }
+    }
+
+    private static boolean isRetryable(int code) {
+        return code == HTTP_TOO_MANY_REQUESTS
+                || code == HTTP_BAD_GATEWAY
+                || code == HTTP_UNAVAILABLE
+                || code == HTTP_GATEWAY_TIMEOUT;
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Request cancelled");
+        }
+    }
+}
@@ -7,6 +7,10 @@ import android.preference.Preference;
 import android.preference.PreferenceFragment;
 import android.preference.PreferenceManager;
 import android.support.v7.app.AppCompatActivity;
+import android.text.TextUtils;
+import android.widget.Toast;
+
+import java.util.List;
 
 
 public class SettingsActivity extends AppCompatActivity {
@@ -28,11 +32,31 @@ public class SettingsActivity extends AppCompatActivity {
 
             Preference orderBy = findPreference(getString(R.string.settings_order_by_key));
             bindPreferenceSummaryToValue(orderBy);
+
+            Preference locationFilter = findPreference(getString(R.string.settings_location_filter_key));
+            bindPreferenceSummaryToValue(locationFilter);
+
+            Preference syncInterval = findPreference(getString(R.string.settings_sync_interval_key));
+            bindPreferenceSummaryToValue(syncInterval);
+
+            Preference alertRules = findPreference(getString(R.string.settings_alert_rules_key));
+            bindPreferenceSummaryToValue(alertRules);
         }
 
         @Override
         public boolean onPreferenceChange(Preference preference, Object newValue) {
             String stringValue = newValue.toString();
+            if (preference.getKey().equals(getString(R.string.settings_alert_rules_key))) {
+                // Rules that do not parse would never alert, reject them instead
+                List<String> invalid = AlertRule.findInvalid(stringValue);
+                if (!invalid.isEmpty()) {
+                    Toast.makeText(preference.getContext(),
+                            getString(R.string.settings_alert_rules_invalid,
+                                    TextUtils.join("; ", invalid)),
+                            Toast.LENGTH_LONG).show();
+                    return false;
+                }
+            }
             if (preference instanceof ListPreference) {
                 ListPreference listPreference = (ListPreference) preference;
                 int prefIndex = listPreference.findIndexOfValue(stringValue);
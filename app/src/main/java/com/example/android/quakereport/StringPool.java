@@ -0,0 +1,91 @@
+package com.example.android.quakereport;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Deduplicates strings that repeat across many earthquakes, such as the primary locations of
+ * the places ("Anchorage, Alaska") and their offsets ("43km WNW"), so every copy held by the
+ * tables is the same instance. It keeps at most a fixed number of strings; once full, strings
+ * it does not know are returned as they are.
+ * <p>
+ * It counts its lookups and an estimate of the bytes the duplicates it replaced would have
+ * retained. This class has no Android dependencies. It is thread-safe.
+ */
+public final class StringPool {
+
+    /**
+     * Bytes retained by a string besides its characters: the object and its array headers
+     */
+    private static final int STRING_OVERHEAD_BYTES = 32;
+
+    private final int mMaxSize;
+    private final Map<String, String> mStrings = new HashMap<>();
+
+    private long mLookups;
+    private long mHits;
+    private long mBytesSaved;
+
+    /**
+     * Constructs a new {@link StringPool}
+     *
+     * @param maxSize largest number of distinct strings kept
+     */
+    public StringPool(int maxSize) {
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * Returns the pooled instance equal to the given string, pooling it if there is none yet
+     *
+     * @param value string to deduplicate, or null
+     */
+    public synchronized String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        mLookups++;
+        String pooled = mStrings.get(value);
+        if (pooled != null) {
+            mHits++;
+            if (pooled != value) {
+                mBytesSaved += STRING_OVERHEAD_BYTES + 2L * value.length();
+            }
+            return pooled;
+        }
+        if (mStrings.size() < mMaxSize) {
+            mStrings.put(value, value);
+        }
+        return value;
+    }
+
+    /**
+     * Returns the number of distinct strings pooled
+     */
+    public synchronized int size() {
+        return mStrings.size();
+    }
+
+    public synchronized long getLookups() {
+        return mLookups;
+    }
+
+    public synchronized long getHits() {
+        return mHits;
+    }
+
+    /**
+     * Returns the share of lookups that found a pooled string, from 0 to 1
+     */
+    public synchronized double getHitRate() {
+        return mLookups == 0 ? 0 : (double) mHits / mLookups;
+    }
+
+    /**
+     * Returns an estimate of the bytes retained by the duplicates that were replaced by a
+     * pooled string, assuming they would all have been kept
+     */
+    public synchronized long getBytesSaved() {
+        return mBytesSaved;
+    }
+}
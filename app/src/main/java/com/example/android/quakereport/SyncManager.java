@@ -0,0 +1,221 @@
+package com.example.android.quakereport;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.BatteryManager;
+import android.support.v4.net.ConnectivityManagerCompat;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the earthquake catalog fresh in the background, so opening the app shows recent data
+ * without waiting for the network. Syncs run on the interval set in the settings, only on an
+ * unmetered network or while charging, and back off exponentially while they fail. Every sync
+ * of the app goes through {@link #syncNow}, which records its outcome. Refreshes asked for
+ * while offline are queued on disk and synced in one batch once the network is back.
+ */
+public final class SyncManager {
+
+    private static final String LOG_TAG = SyncManager.class.getSimpleName();
+
+    private static final String PREFS_NAME = "sync_state";
+    private static final String KEY_LAST_SUCCESS = "last_success";
+    private static final String KEY_FAILURES = "consecutive_failures";
+
+    private static final long INITIAL_BACKOFF_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private static final long MAX_BACKOFF_MILLIS = TimeUnit.HOURS.toMillis(6);
+
+    /**
+     * File the refreshes asked for while offline are queued in
+     */
+    private static final String REFRESH_QUEUE_FILE = "refresh_queue";
+
+    private static volatile SyncScheduler sScheduler;
+
+    private static RefreshQueue sRefreshQueue;
+
+    private SyncManager() {
+    }
+
+    /**
+     * Replaces the scheduler the syncs are run with, i.e. by one that runs them right away
+     */
+    public static void setScheduler(SyncScheduler scheduler) {
+        sScheduler = scheduler;
+    }
+
+    private static SyncScheduler getScheduler(Context context) {
+        if (sScheduler == null) {
+            sScheduler = new AlarmSyncScheduler(context);
+        }
+        return sScheduler;
+    }
+
+    /**
+     * Returns the sync policy for the current settings
+     */
+    public static SyncPolicy getPolicy(Context context) {
+        long interval = TimeUnit.MINUTES.toMillis(
+                EarthquakePreferences.getSyncIntervalMinutes(context));
+        return new SyncPolicy(interval, INITIAL_BACKOFF_MILLIS, MAX_BACKOFF_MILLIS);
+    }
+
+    /**
+     * Schedules the next background sync for the current settings and sync state, or cancels
+     * it if background syncs are turned off.
+     */
+    public static void scheduleSync(Context context) {
+        SharedPreferences state = getState(context);
+        getPolicy(context).scheduleNext(getScheduler(context), state.getInt(KEY_FAILURES, 0),
+                state.getLong(KEY_LAST_SUCCESS, 0), System.currentTimeMillis());
+    }
+
+    /**
+     * Runs a scheduled sync if the device allows it, then schedules the next one.
+     * This is on a background thread.
+     */
+    static void runScheduledSync(Context context) {
+        SyncPolicy policy = getPolicy(context);
+        if (!policy.isEnabled()) {
+            return;
+        }
+        if (policy.canRun(isOnUnmeteredNetwork(context), isCharging(context))) {
+            EarthquakeQuery query = EarthquakePreferences.getQuery(context);
+            syncNow(context, EarthquakeSync.buildCatalogUrl(query.getMinMagnitude()));
+        }
+        // When the device did not allow it the sync waits for the next run, or for charging
+        scheduleSync(context);
+    }
+
+    /**
+     * Syncs the store with the given request and records the outcome for the backoff. The
+     * refreshes queued while offline are synced along, in the same batch. Offline, the request
+     * is queued instead, to be synced once the network is back.
+     * This is on a background thread, which may be interrupted to cancel the sync.
+     *
+     * @return true if the store is up to date
+     */
+    public static boolean syncNow(Context context, String requestUrl) {
+        if (!ConnectivityMonitor.getInstance(context).isConnected()) {
+            queueRefresh(context, requestUrl);
+            return false;
+        }
+        List<String> requestUrls = getRefreshQueue(context).getPending();
+        if (!requestUrls.contains(requestUrl)) {
+            requestUrls.add(requestUrl);
+        }
+        return syncRequests(context, requestUrls);
+    }
+
+    /**
+     * Syncs the refreshes queued while offline, if the device is online.
+     * This is on a background thread.
+     */
+    static void drainRefreshQueue(Context context) {
+        List<String> requestUrls = getRefreshQueue(context).getPending();
+        if (requestUrls.isEmpty()) {
+            ConnectivityReceiver.setEnabled(context, false);
+        } else if (ConnectivityMonitor.getInstance(context).isConnected()) {
+            syncRequests(context, requestUrls);
+        }
+    }
+
+    /**
+     * Returns true if refreshes asked for while offline are waiting to be synced. The queue is
+     * a few bytes read from disk on its first use in the process.
+     */
+    public static boolean hasQueuedRefreshes(Context context) {
+        return !getRefreshQueue(context).isEmpty();
+    }
+
+    /**
+     * Queues a request to be synced once the network is back
+     */
+    private static void queueRefresh(Context context, String requestUrl) {
+        try {
+            getRefreshQueue(context).add(requestUrl);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem queueing the refresh", e);
+        }
+        ConnectivityReceiver.setEnabled(context, true);
+    }
+
+    private static boolean syncRequests(Context context, List<String> requestUrls) {
+        boolean success = EarthquakeSync.syncAll(EarthquakeStore.getInstance(context), requestUrls);
+        if (!success && Thread.currentThread().isInterrupted()) {
+            // Cancelled by the caller, which says nothing about the server
+            return false;
+        }
+        SharedPreferences state = getState(context);
+        if (success) {
+            state.edit()
+                    .putLong(KEY_LAST_SUCCESS, System.currentTimeMillis())
+                    .putInt(KEY_FAILURES, 0)
+                    .apply();
+            RefreshQueue queue = getRefreshQueue(context);
+            try {
+                queue.remove(requestUrls);
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Problem removing synced refreshes", e);
+            }
+            if (queue.isEmpty()) {
+                ConnectivityReceiver.setEnabled(context, false);
+            }
+        } else {
+            state.edit()
+                    .putInt(KEY_FAILURES, state.getInt(KEY_FAILURES, 0) + 1)
+                    .apply();
+        }
+        return success;
+    }
+
+    private static synchronized RefreshQueue getRefreshQueue(Context context) {
+        if (sRefreshQueue == null) {
+            sRefreshQueue = new RefreshQueue(new File(context.getFilesDir(), REFRESH_QUEUE_FILE));
+        }
+        return sRefreshQueue;
+    }
+
+    /**
+     * Returns true if a background sync refreshed the store recently enough that showing it
+     * does not need a sync first
+     */
+    public static boolean isFresh(Context context) {
+        return getPolicy(context).isFresh(getState(context).getLong(KEY_LAST_SUCCESS, 0),
+                System.currentTimeMillis());
+    }
+
+    /**
+     * Returns true if background syncs are on and the last successful one is stale
+     */
+    static boolean isSyncDue(Context context) {
+        return getPolicy(context).isEnabled() && !isFresh(context);
+    }
+
+    private static SharedPreferences getState(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    private static boolean isOnUnmeteredNetwork(Context context) {
+        ConnectivityManager connMgr =
+                (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo networkInfo = connMgr.getActiveNetworkInfo();
+        return networkInfo != null && networkInfo.isConnected()
+                && !ConnectivityManagerCompat.isActiveNetworkMetered(connMgr);
+    }
+
+    private static boolean isCharging(Context context) {
+        // The battery broadcast is sticky, so this returns its last value without a receiver
+        Intent battery = context.registerReceiver(null,
+                new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        return battery != null && battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.android.quakereport;
+
+/**
+ * When the background sync may run and how long to wait before the next one. Syncs only run
+ * on an unmetered network or while charging, so they ride along with the times the device is
+ * cheap to use, and back off exponentially while they keep failing.
+ * <p>
+ * This class has no Android dependencies.
+ */
+public class SyncPolicy {
+
+    private final long mIntervalMillis;
+    private final long mInitialBackoffMillis;
+    private final long mMaxBackoffMillis;
+
+    /**
+     * Constructs a new {@link SyncPolicy}
+     *
+     * @param intervalMillis       time between two successful syncs, 0 to never sync
+     * @param initialBackoffMillis delay before retrying after the first failure
+     * @param maxBackoffMillis     longest delay between retries
+     */
+    public SyncPolicy(long intervalMillis, long initialBackoffMillis, long maxBackoffMillis) {
+        mIntervalMillis = intervalMillis;
+        mInitialBackoffMillis = initialBackoffMillis;
+        mMaxBackoffMillis = maxBackoffMillis;
+    }
+
+    public long getIntervalMillis() {
+        return mIntervalMillis;
+    }
+
+    public boolean isEnabled() {
+        return mIntervalMillis > 0;
+    }
+
+    /**
+     * Returns true if the device is in a state where syncing is cheap enough
+     */
+    public boolean canRun(boolean unmetered, boolean charging) {
+        return unmetered || charging;
+    }
+
+    /**
+     * Returns the delay before the next sync
+     *
+     * @param consecutiveFailures number of syncs that failed since the last successful one
+     */
+    public long getNextDelay(int consecutiveFailures) {
+        if (consecutiveFailures <= 0) {
+            return mIntervalMillis;
+        }
+        long delay = mInitialBackoffMillis;
+        for (int i = 1; i < consecutiveFailures && delay < mMaxBackoffMillis; i++) {
+            delay *= 2;
+        }
+        return Math.min(delay, mMaxBackoffMillis);
+    }
+
+    /**
+     * Schedules the next sync with the given scheduler, or cancels it if syncs are off. While
+     * the last successful sync is fresh, the next one runs no later than when it gets stale.
+     *
+     * @param consecutiveFailures number of syncs that failed since the last successful one
+     * @param lastSuccessMillis   time the last sync succeeded, 0 if none did
+     */
+    public void scheduleNext(SyncScheduler scheduler, int consecutiveFailures,
+                             long lastSuccessMillis, long nowMillis) {
+        if (!isEnabled()) {
+            scheduler.cancel();
+            return;
+        }
+        long delay = getNextDelay(consecutiveFailures);
+        if (isFresh(lastSuccessMillis, nowMillis)) {
+            delay = Math.min(delay, lastSuccessMillis + mIntervalMillis - nowMillis);
+        }
+        scheduler.schedule(Math.max(delay, 0));
+    }
+
+    /**
+     * Returns true if a sync that succeeded at the given time is recent enough that opening
+     * the app does not need to sync again
+     */
+    public boolean isFresh(long lastSuccessMillis, long nowMillis) {
+        return isEnabled() && lastSuccessMillis > 0 && nowMillis >= lastSuccessMillis
+                && nowMillis - lastSuccessMillis < mIntervalMillis;
+    }
+}
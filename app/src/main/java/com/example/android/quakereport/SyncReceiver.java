@@ -0,0 +1,22 @@
+package com.example.android.quakereport;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+/**
+ * Schedules the background sync again after a reboot, which clears every alarm, and runs an
+ * overdue sync as soon as the device starts charging.
+ */
+public class SyncReceiver extends BroadcastReceiver {
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        if (Intent.ACTION_POWER_CONNECTED.equals(intent.getAction())
+                && SyncManager.isSyncDue(context)) {
+            context.startService(new Intent(context, SyncService.class));
+        } else {
+            SyncManager.scheduleSync(context);
+        }
+    }
+}
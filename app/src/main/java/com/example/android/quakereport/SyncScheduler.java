@@ -0,0 +1,18 @@
+package com.example.android.quakereport;
+
+/**
+ * Runs the background sync at a later time. The app schedules through this interface so the
+ * mechanism that wakes it up can be swapped, for instance for one that runs syncs right away.
+ */
+public interface SyncScheduler {
+
+    /**
+     * Replaces any pending sync with one that runs after the given delay
+     */
+    void schedule(long delayMillis);
+
+    /**
+     * Cancels the pending sync, if any
+     */
+    void cancel();
+}
@@ -0,0 +1,37 @@
+package com.example.android.quakereport;
+
+import android.app.IntentService;
+import android.content.Context;
+import android.content.Intent;
+
+/**
+ * Runs the scheduled background sync, and the refreshes queued while offline once the network
+ * is back. An {@link IntentService} handles one intent at a time, so two of its syncs never
+ * run together.
+ */
+public class SyncService extends IntentService {
+
+    private static final String ACTION_DRAIN_REFRESH_QUEUE =
+            "com.example.android.quakereport.action.DRAIN_REFRESH_QUEUE";
+
+    public SyncService() {
+        super(SyncService.class.getSimpleName());
+    }
+
+    /**
+     * Syncs the refreshes queued while offline, all in one sync
+     */
+    public static void drainRefreshQueue(Context context) {
+        context.startService(new Intent(context, SyncService.class)
+                .setAction(ACTION_DRAIN_REFRESH_QUEUE));
+    }
+
+    @Override
+    protected void onHandleIntent(Intent intent) {
+        if (ACTION_DRAIN_REFRESH_QUEUE.equals(intent.getAction())) {
+            SyncManager.drainRefreshQueue(this);
+        } else {
+            SyncManager.runScheduledSync(this);
+        }
+    }
+}
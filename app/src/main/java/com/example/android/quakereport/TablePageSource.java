@@ -0,0 +1,58 @@
+package com.example.android.quakereport;
+
+import java.io.IOException;
+
+/**
+ * {@link EarthquakePager.PageSource} over earthquakes already in memory, such as the result of
+ * an {@link EarthquakeQueryEngine} query. Once those run out, the following pages are asked
+ * from another source, if there is one.
+ */
+public class TablePageSource implements EarthquakePager.PageSource {
+
+    private final EarthquakeTable mTable;
+
+    private final EarthquakePager.PageSource mNext;
+
+    /**
+     * Constructs a new {@link TablePageSource}
+     *
+     * @param table earthquakes of the first rows of the list
+     * @param next  source of the rows following the table, with offsets counted from the end
+     *              of the table, or null if the table holds the whole list
+     */
+    public TablePageSource(EarthquakeTable table, EarthquakePager.PageSource next) {
+        mTable = table;
+        mNext = next;
+    }
+
+    @Override
+    public EarthquakeTable loadPage(int offset, int limit) throws IOException {
+        if (offset >= mTable.size()) {
+            return mNext != null ? mNext.loadPage(offset - mTable.size(), limit)
+                    : new EarthquakeTable(0);
+        }
+        EarthquakeTable page = slice(mTable, offset, limit);
+        int missing = limit - page.size();
+        if (missing > 0 && mNext != null) {
+            // The page straddles the end of the table, fill it from the next source
+            EarthquakeTable rest = mNext.loadPage(0, missing);
+            for (int row = 0; row < rest.size(); row++) {
+                page.addRow(rest, row);
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Returns a new table with up to {@code limit} rows of the given one, starting at
+     * {@code offset}
+     */
+    public static EarthquakeTable slice(EarthquakeTable table, int offset, int limit) {
+        int end = Math.min(table.size(), offset + limit);
+        EarthquakeTable page = new EarthquakeTable(Math.max(end - offset, 0));
+        for (int row = offset; row < end; row++) {
+            page.addRow(table, row);
+        }
+        return page;
+    }
+}
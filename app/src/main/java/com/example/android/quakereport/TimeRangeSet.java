@@ -0,0 +1,114 @@
+package com.example.android.quakereport;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Set of half-open time ranges, kept sorted and merged. Used to checkpoint which parts of a
+ * backfill are already in the store; it encodes to a short string so it can be saved after
+ * every slice.
+ * <p>
+ * This class has no Android dependencies. It is not thread-safe.
+ */
+public class TimeRangeSet {
+
+    private static final String RANGE_SEPARATOR = ",";
+    private static final String BOUND_SEPARATOR = "-";
+
+    /**
+     * Disjoint, non adjacent ranges as {start, end} pairs, sorted by start
+     */
+    private final List<long[]> mRanges = new ArrayList<>();
+
+    /**
+     * Adds the range from {@code start} (inclusive) to {@code end} (exclusive)
+     */
+    public void add(long start, long end) {
+        if (end <= start) {
+            return;
+        }
+        int i = 0;
+        // Skip the ranges that end before this one starts
+        while (i < mRanges.size() && mRanges.get(i)[1] < start) {
+            i++;
+        }
+        // Absorb every range that overlaps or touches this one
+        while (i < mRanges.size() && mRanges.get(i)[0] <= end) {
+            long[] range = mRanges.remove(i);
+            start = Math.min(start, range[0]);
+            end = Math.max(end, range[1]);
+        }
+        mRanges.add(i, new long[]{start, end});
+    }
+
+    /**
+     * Returns true if the whole range from {@code start} to {@code end} is in the set
+     */
+    public boolean covers(long start, long end) {
+        return getGaps(start, end).isEmpty();
+    }
+
+    /**
+     * Returns the parts of the range from {@code start} to {@code end} that are not in the
+     * set, as {start, end} pairs in order
+     */
+    public List<long[]> getGaps(long start, long end) {
+        List<long[]> gaps = new ArrayList<>();
+        long position = start;
+        for (long[] range : mRanges) {
+            if (range[1] <= position) {
+                continue;
+            }
+            if (range[0] >= end) {
+                break;
+            }
+            if (range[0] > position) {
+                gaps.add(new long[]{position, range[0]});
+            }
+            position = range[1];
+        }
+        if (position < end) {
+            gaps.add(new long[]{position, end});
+        }
+        return gaps;
+    }
+
+    /**
+     * Returns the set as a string {@link #decode} reads back (i.e. "100-200,300-400")
+     */
+    public String encode() {
+        StringBuilder builder = new StringBuilder();
+        for (long[] range : mRanges) {
+            if (builder.length() > 0) {
+                builder.append(RANGE_SEPARATOR);
+            }
+            builder.append(range[0]).append(BOUND_SEPARATOR).append(range[1]);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Returns the set encoded by {@link #encode}. Malformed ranges are skipped, so a damaged
+     * checkpoint only costs downloading those ranges again.
+     */
+    public static TimeRangeSet decode(String encoded) {
+        TimeRangeSet set = new TimeRangeSet();
+        if (encoded == null || encoded.isEmpty()) {
+            return set;
+        }
+        for (String range : encoded.split(RANGE_SEPARATOR)) {
+            // The start may be negative, so its sign is not a separator
+            int separator = range.indexOf(BOUND_SEPARATOR, 1);
+            if (separator <= 0) {
+                continue;
+            }
+            try {
+                set.add(Long.parseLong(range.substring(0, separator)),
+                        Long.parseLong(range.substring(separator + 1)));
+            } catch (NumberFormatException e) {
+                // Skip it
+            }
+        }
+        return set;
+    }
+}
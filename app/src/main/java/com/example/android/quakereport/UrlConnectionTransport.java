@@ -0,0 +1,242 @@
+package com.example.android.quakereport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * {@link HttpTransport} on {@link HttpURLConnection}. With keep-alive on, a response read to
+ * the end and closed leaves its connection in the platform pool, so the next request to the
+ * same host skips the TCP and TLS handshakes; with it off, every request makes a new
+ * connection, as the app used to.
+ * <p>
+ * This class has no Android dependencies. It is thread-safe.
+ */
+public class UrlConnectionTransport implements HttpTransport {
+
+    /**
+     * Most bytes read from what is left of a body on close, so its connection can be reused;
+     * a longer body is dropped with its connection
+     */
+    private static final int MAX_DRAIN_BYTES = 64 * 1024;
+
+    private final int mConnectTimeoutMillis;
+    private final int mReadTimeoutMillis;
+    private final boolean mKeepAlive;
+
+    /**
+     * Connection of every request being made, by the thread making it, so it can be cancelled
+     */
+    private final ConcurrentMap<Thread, HttpURLConnection> mConnections =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Shared by every https connection: the pool only reuses connections of the same factory
+     */
+    private final CountingSocketFactory mSocketFactory =
+            new CountingSocketFactory(HttpsURLConnection.getDefaultSSLSocketFactory());
+
+    /**
+     * Constructs a new {@link UrlConnectionTransport}
+     *
+     * @param connectTimeoutMillis time allowed to connect
+     * @param readTimeoutMillis    time allowed to wait for the next bytes of a response
+     * @param keepAlive            true to reuse connections between requests
+     */
+    public UrlConnectionTransport(int connectTimeoutMillis, int readTimeoutMillis,
+                                  boolean keepAlive) {
+        mConnectTimeoutMillis = connectTimeoutMillis;
+        mReadTimeoutMillis = readTimeoutMillis;
+        mKeepAlive = keepAlive;
+    }
+
+    @Override
+    public Response get(String url, Map<String, String> headers) throws IOException {
+        HttpURLConnection urlConnection = (HttpURLConnection) new URL(url).openConnection();
+        Thread thread = Thread.currentThread();
+        mConnections.put(thread, urlConnection);
+        try {
+            if (thread.isInterrupted()) {
+                throw new InterruptedIOException("Request cancelled");
+            }
+            if (urlConnection instanceof HttpsURLConnection) {
+                ((HttpsURLConnection) urlConnection).setSSLSocketFactory(mSocketFactory);
+            }
+            urlConnection.setConnectTimeout(mConnectTimeoutMillis);
+            urlConnection.setReadTimeout(mReadTimeoutMillis);
+            urlConnection.setRequestMethod("GET");
+            if (!mKeepAlive) {
+                urlConnection.setRequestProperty("Connection", "close");
+            }
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                urlConnection.setRequestProperty(header.getKey(), header.getValue());
+            }
+
+            long connectStart = Metrics.start();
+            urlConnection.connect();
+            Metrics.stop(Metrics.HTTP_CONNECT, connectStart);
+
+            long responseStart = Metrics.start();
+            int code = urlConnection.getResponseCode();
+            Metrics.stop(Metrics.HTTP_TTFB, responseStart);
+            return new UrlConnectionResponse(urlConnection, thread, code);
+        } catch (IOException e) {
+            mConnections.remove(thread, urlConnection);
+            urlConnection.disconnect();
+            throw e;
+        }
+    }
+
+    @Override
+    public void cancel(Thread thread) {
+        HttpURLConnection urlConnection = mConnections.get(thread);
+        if (urlConnection != null) {
+            urlConnection.disconnect();
+        }
+    }
+
+    @Override
+    public long getHandshakeCount() {
+        return mSocketFactory.getSocketCount();
+    }
+
+    private class UrlConnectionResponse implements Response {
+        private final HttpURLConnection mConnection;
+        private final Thread mThread;
+        private final int mCode;
+        private InputStream mBody;
+
+        UrlConnectionResponse(HttpURLConnection connection, Thread thread, int code) {
+            mConnection = connection;
+            mThread = thread;
+            mCode = code;
+        }
+
+        @Override
+        public int getCode() {
+            return mCode;
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return mConnection.getHeaderField(name);
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            if (mBody == null) {
+                mBody = mCode < HttpURLConnection.HTTP_BAD_REQUEST
+                        ? mConnection.getInputStream() : mConnection.getErrorStream();
+            }
+            return mBody;
+        }
+
+        @Override
+        public void close() {
+            mConnections.remove(mThread, mConnection);
+            if (!mKeepAlive) {
+                mConnection.disconnect();
+                return;
+            }
+            // A connection goes back to the pool once its body was read to the end and closed
+            try {
+                InputStream body = getBody();
+                if (body != null) {
+                    drain(body);
+                    body.close();
+                }
+            } catch (IOException e) {
+                mConnection.disconnect();
+            }
+        }
+
+        private void drain(InputStream body) throws IOException {
+            byte[] buffer = new byte[4096];
+            int drained = 0;
+            int count;
+            while ((count = body.read(buffer)) != -1) {
+                drained += count;
+                if (drained > MAX_DRAIN_BYTES) {
+                    throw new IOException("Body too long to drain");
+                }
+            }
+        }
+    }
+
+    /**
+     * Socket factory counting the TLS sockets it makes, each a new connection with its
+     * handshakes
+     */
+    private static class CountingSocketFactory extends SSLSocketFactory {
+        private final SSLSocketFactory mDelegate;
+        private final AtomicLong mSocketCount = new AtomicLong();
+
+        CountingSocketFactory(SSLSocketFactory delegate) {
+            mDelegate = delegate;
+        }
+
+        long getSocketCount() {
+            return mSocketCount.get();
+        }
+
+        @Override
+        public String[] getDefaultCipherSuites() {
+            return mDelegate.getDefaultCipherSuites();
+        }
+
+        @Override
+        public String[] getSupportedCipherSuites() {
+            return mDelegate.getSupportedCipherSuites();
+        }
+
+        @Override
+        public Socket createSocket() throws IOException {
+            mSocketCount.incrementAndGet();
+            return mDelegate.createSocket();
+        }
+
+        @Override
+        public Socket createSocket(Socket socket, String host, int port, boolean autoClose)
+                throws IOException {
+            mSocketCount.incrementAndGet();
+            return mDelegate.createSocket(socket, host, port, autoClose);
+        }
+
+        @Override
+        public Socket createSocket(String host, int port) throws IOException {
+            mSocketCount.incrementAndGet();
+            return mDelegate.createSocket(host, port);
+        }
+
+        @Override
+        public Socket createSocket(String host, int port, InetAddress localHost, int localPort)
+                throws IOException {
+            mSocketCount.incrementAndGet();
+            return mDelegate.createSocket(host, port, localHost, localPort);
+        }
+
+        @Override
+        public Socket createSocket(InetAddress host, int port) throws IOException {
+            mSocketCount.incrementAndGet();
+            return mDelegate.createSocket(host, port);
+        }
+
+        @Override
+        public Socket createSocket(InetAddress address, int port, InetAddress localAddress,
+                                   int localPort) throws IOException {
+            mSocketCount.incrementAndGet();
+            return mDelegate.createSocket(address, port, localAddress, localPort);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.android.quakereport;
+
+import java.io.IOException;
+
+/**
+ * {@link EarthquakePager.PageSource} that requests pages of a USGS query with the
+ * {@code offset}/{@code limit} parameters and keeps every page in the {@link EarthquakeStore}.
+ * Pages are formatted for display on the loading thread.
+ */
+public class UsgsPageSource implements EarthquakePager.PageSource {
+
+    /**
+     * Query URL, its paging parameters replaced for every page
+     */
+    private final String mRequestUrl;
+
+    private final EarthquakeStore mStore;
+
+    private final EarthquakeFormatter mFormatter;
+
+    /**
+     * Constructs a new {@link UsgsPageSource}
+     *
+     * @param requestUrl USGS query url; any offset or limit it has is replaced for every page
+     * @param store      local store the pages are merged into
+     * @param formatter  formatter only used by the thread loading the pages
+     */
+    public UsgsPageSource(String requestUrl, EarthquakeStore store, EarthquakeFormatter formatter) {
+        mRequestUrl = requestUrl;
+        mStore = store;
+        mFormatter = formatter;
+    }
+
+    @Override
+    public EarthquakeTable loadPage(int offset, int limit) throws IOException {
+        String pageUrl = UsgsQueryBuilder.fromUrl(mRequestUrl)
+                .offset(offset)
+                .limit(limit)
+                .build();
+
+        EarthquakeTable earthquakes = QueryUtils.fetchEarthquakeData(pageUrl);
+        if (earthquakes == null) {
+            throw new IOException("Could not load earthquakes at offset " + offset);
+        }
+        mStore.merge(earthquakes);
+        mFormatter.formatAll(earthquakes);
+        return earthquakes;
+    }
+}
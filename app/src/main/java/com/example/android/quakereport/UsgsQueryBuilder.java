@@ -0,0 +1,323 @@
+package com.example.android.quakereport;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+
+/**
+ * Builds the request url of a USGS event query, narrowed on the server so only the earthquakes
+ * a screen shows are downloaded: by magnitude, time window, bounding box or radius and event
+ * type, in the lightest format that has the fields the app needs. Each {@link Format} is read
+ * by its own parser, picked by {@link Format#fromUrl}.
+ * <p>
+ * Setting a parameter twice keeps the last value. This class has no Android dependencies.
+ */
+public final class UsgsQueryBuilder {
+
+    /**
+     * URL of the USGS event query service
+     */
+    public static final String QUERY_URL = "https://earthquake.usgs.gov/fdsnws/event/1/query";
+
+    /**
+     * Event type of natural earthquakes, leaving out quarry blasts, explosions and the like
+     */
+    public static final String EVENT_TYPE_EARTHQUAKE = "earthquake";
+
+    /**
+     * Response formats, from the heaviest to the lightest
+     */
+    public enum Format {
+        /**
+         * Every field of every event, read by {@link EarthquakeJsonParser}
+         */
+        GEOJSON("geojson"),
+        /**
+         * One line per event with every field the app stores, deleted events included, read by
+         * {@link EarthquakeCsvParser}
+         */
+        CSV("csv"),
+        /**
+         * One pipe separated line per event, without the update time or deleted events, read by
+         * {@link EarthquakeCsvParser}. Only fit for earthquakes that are shown, not synced.
+         */
+        TEXT("text");
+
+        private final String mParameter;
+
+        Format(String parameter) {
+            mParameter = parameter;
+        }
+
+        /**
+         * Returns the value of the format parameter of the query
+         */
+        public String getParameter() {
+            return mParameter;
+        }
+
+        /**
+         * Returns the format of the response to a query url, from its format parameter, or for
+         * a summary feed from its extension. Anything else is GeoJSON, the USGS default.
+         */
+        public static Format fromUrl(String url) {
+            int query = url.indexOf('?');
+            String path = query >= 0 ? url.substring(0, query) : url;
+            if (query >= 0) {
+                for (String parameter : url.substring(query + 1).split("&")) {
+                    if (parameter.startsWith(PARAM_FORMAT + "=")) {
+                        String value = parameter.substring(PARAM_FORMAT.length() + 1);
+                        for (Format format : values()) {
+                            if (format.mParameter.equals(value)) {
+                                return format;
+                            }
+                        }
+                    }
+                }
+            }
+            return path.endsWith(".csv") ? CSV : GEOJSON;
+        }
+    }
+
+    private static final String PARAM_FORMAT = "format";
+    private static final String PARAM_ORDER_BY = "orderby";
+    private static final String PARAM_LIMIT = "limit";
+
+    private final String mBaseUrl;
+    private final Map<String, String> mParameters = new LinkedHashMap<>();
+
+    /**
+     * Constructs a new {@link UsgsQueryBuilder} for the USGS event query service
+     */
+    public UsgsQueryBuilder() {
+        this(QUERY_URL);
+    }
+
+    /**
+     * Constructs a new {@link UsgsQueryBuilder}
+     *
+     * @param baseUrl url of an FDSN event query service, without parameters
+     */
+    public UsgsQueryBuilder(String baseUrl) {
+        mBaseUrl = baseUrl;
+    }
+
+    /**
+     * Returns a builder holding the parameters of the given request url, so they can be changed
+     * or added to without parsing the url again
+     */
+    public static UsgsQueryBuilder fromUrl(String url) {
+        int query = url.indexOf('?');
+        if (query < 0) {
+            return new UsgsQueryBuilder(url);
+        }
+        UsgsQueryBuilder builder = new UsgsQueryBuilder(url.substring(0, query));
+        for (String parameter : url.substring(query + 1).split("&")) {
+            if (parameter.isEmpty()) {
+                continue;
+            }
+            int equals = parameter.indexOf('=');
+            if (equals < 0) {
+                builder.put(decode(parameter), "");
+            } else {
+                builder.put(decode(parameter.substring(0, equals)),
+                        decode(parameter.substring(equals + 1)));
+            }
+        }
+        return builder;
+    }
+
+    public UsgsQueryBuilder format(Format format) {
+        return put(PARAM_FORMAT, format.getParameter());
+    }
+
+    /**
+     * Only earthquakes between the given times
+     *
+     * @param startMillis start of the window in milliseconds from the epoch, inclusive
+     * @param endMillis   end of the window in milliseconds from the epoch, exclusive
+     */
+    public UsgsQueryBuilder timeWindow(long startMillis, long endMillis) {
+        if (endMillis <= startMillis) {
+            throw new IllegalArgumentException("Empty time window");
+        }
+        put("starttime", formatTimestamp(startMillis));
+        // USGS end times are inclusive
+        return put("endtime", formatTimestamp(endMillis - 1));
+    }
+
+    /**
+     * Only earthquakes before the given time
+     *
+     * @param endMillis end of the window in milliseconds from the epoch, exclusive
+     */
+    public UsgsQueryBuilder before(long endMillis) {
+        return put("endtime", formatTimestamp(endMillis - 1));
+    }
+
+    public UsgsQueryBuilder minMagnitude(double minMagnitude) {
+        return put("minmag", String.valueOf(minMagnitude));
+    }
+
+    /**
+     * Only earthquakes inside the given rectangle. A west longitude greater than the east one
+     * spans the antimeridian.
+     */
+    public UsgsQueryBuilder boundingBox(double south, double west, double north, double east) {
+        checkLatitude(south);
+        checkLatitude(north);
+        checkLongitude(west);
+        checkLongitude(east);
+        if (north < south) {
+            throw new IllegalArgumentException("North of the box is south of it: " + north);
+        }
+        put("minlatitude", String.valueOf(south));
+        put("maxlatitude", String.valueOf(north));
+        put("minlongitude", String.valueOf(west));
+        // USGS takes longitudes past 180 for a box across the antimeridian
+        return put("maxlongitude", String.valueOf(east < west ? east + 360 : east));
+    }
+
+    /**
+     * Only earthquakes within the given distance of a point
+     */
+    public UsgsQueryBuilder radius(double latitude, double longitude, double radiusKm) {
+        checkLatitude(latitude);
+        checkLongitude(longitude);
+        if (!(radiusKm > 0)) {
+            throw new IllegalArgumentException("Radius must be positive: " + radiusKm);
+        }
+        put("latitude", String.valueOf(latitude));
+        put("longitude", String.valueOf(longitude));
+        return put("maxradiuskm", String.valueOf(radiusKm));
+    }
+
+    /**
+     * Only events of the given type, i.e. {@link #EVENT_TYPE_EARTHQUAKE}
+     */
+    public UsgsQueryBuilder eventType(String eventType) {
+        return put("eventtype", eventType);
+    }
+
+    /**
+     * Only events added, changed or deleted after the given time
+     *
+     * @param updatedMillis time in milliseconds from the epoch, exclusive
+     */
+    public UsgsQueryBuilder updatedAfter(long updatedMillis) {
+        return put("updatedafter", formatTimestamp(updatedMillis));
+    }
+
+    /**
+     * Deleted events too, as rows with a deleted status, so a sync can remove them
+     */
+    public UsgsQueryBuilder includeDeleted() {
+        return put("includedeleted", "true");
+    }
+
+    /**
+     * @param orderBy {@link EarthquakeQuery#ORDER_BY_TIME} or
+     *                {@link EarthquakeQuery#ORDER_BY_MAGNITUDE}, both descending
+     */
+    public UsgsQueryBuilder orderBy(String orderBy) {
+        return put(PARAM_ORDER_BY, orderBy);
+    }
+
+    /**
+     * Skips the given number of events of the result, to request the pages after the first
+     *
+     * @param offset number of events skipped, 0 for the first page
+     */
+    public UsgsQueryBuilder offset(int offset) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Negative offset: " + offset);
+        }
+        // USGS offsets start at 1
+        return put("offset", String.valueOf(offset + 1));
+    }
+
+    public UsgsQueryBuilder limit(int limit) {
+        return put(PARAM_LIMIT, String.valueOf(limit));
+    }
+
+    /**
+     * Returns the request url, its parameters in the order they were first set
+     */
+    public String build() {
+        StringBuilder url = new StringBuilder(mBaseUrl);
+        char separator = '?';
+        for (Map.Entry<String, String> parameter : mParameters.entrySet()) {
+            url.append(separator).append(parameter.getKey()).append('=')
+                    .append(encode(parameter.getValue()));
+            separator = '&';
+        }
+        return url.toString();
+    }
+
+    /**
+     * Returns a url naming the set of events the query selects, whatever the order its
+     * parameters were set in: they are sorted by name, and the sort order is left out unless a
+     * limit makes it pick which events belong to the result.
+     */
+    public String buildQueryKey() {
+        UsgsQueryBuilder key = new UsgsQueryBuilder(mBaseUrl);
+        for (Map.Entry<String, String> parameter : new TreeMap<>(mParameters).entrySet()) {
+            if (!PARAM_ORDER_BY.equals(parameter.getKey())
+                    || mParameters.containsKey(PARAM_LIMIT)) {
+                key.put(parameter.getKey(), parameter.getValue());
+            }
+        }
+        return key.build();
+    }
+
+    /**
+     * Return the ISO 8601 UTC timestamp USGS expects (i.e. "2017-06-25T11:32:07.000")
+     */
+    static String formatTimestamp(long timeInMilliseconds) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.format(new Date(timeInMilliseconds));
+    }
+
+    private UsgsQueryBuilder put(String name, String value) {
+        mParameters.put(name, value);
+        return this;
+    }
+
+    private static void checkLatitude(double latitude) {
+        if (!(latitude >= -90 && latitude <= 90)) {
+            throw new IllegalArgumentException("Latitude out of range: " + latitude);
+        }
+    }
+
+    private static void checkLongitude(double longitude) {
+        if (!(longitude >= -180 && longitude <= 180)) {
+            throw new IllegalArgumentException("Longitude out of range: " + longitude);
+        }
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            // Every JVM supports UTF-8
+            throw new AssertionError(e);
+        }
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            // Every JVM supports UTF-8
+            throw new AssertionError(e);
+        }
+    }
+}
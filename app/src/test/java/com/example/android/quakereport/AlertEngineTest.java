@@ -0,0 +1,85 @@
+package com.example.android.quakereport;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AlertEngineTest {
+
+    private static final long NOW = 1483228800000L;
+    private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    @Test
+    public void alertsOnlyOnceWithinTheWindow() {
+        AlertEngine engine = new AlertEngine(index("M5 12h"),
+                Collections.<String, Long>emptyMap());
+
+        assertEquals(1, engine.evaluate(table("us1", NOW - HOUR_MILLIS), NOW).size());
+        assertEquals(0, engine.evaluate(table("us1", NOW - HOUR_MILLIS), NOW + HOUR_MILLIS)
+                .size());
+        assertEquals(Long.valueOf(NOW - HOUR_MILLIS), engine.getAlertedIds().get("us1"));
+    }
+
+    @Test
+    public void forgetsEarthquakesOlderThanTheLongestWindow() {
+        AlertEngine engine = new AlertEngine(index("M5 12h; M7 2d"),
+                Collections.<String, Long>emptyMap());
+        engine.evaluate(table("us1", NOW - HOUR_MILLIS), NOW);
+
+        engine.evaluate(new EarthquakeTable(0), NOW + 24 * HOUR_MILLIS);
+        assertTrue(engine.getAlertedIds().containsKey("us1"));
+
+        engine.evaluate(new EarthquakeTable(0), NOW + 48 * HOUR_MILLIS);
+        assertFalse(engine.getAlertedIds().containsKey("us1"));
+    }
+
+    @Test
+    public void keepsSavedIdsUntilTheyLeaveTheWindow() {
+        Map<String, Long> saved = new LinkedHashMap<>();
+        saved.put("us1", NOW - HOUR_MILLIS);
+        saved.put("us2", NOW - 13 * HOUR_MILLIS);
+        AlertEngine engine = new AlertEngine(index("M5 12h"), saved);
+
+        assertEquals(0, engine.evaluate(table("us1", NOW - HOUR_MILLIS), NOW).size());
+        assertEquals(Collections.singleton("us1"), engine.getAlertedIds().keySet());
+    }
+
+    @Test
+    public void capDropsTheEarliestEarthquake() {
+        Map<String, Long> saved = new LinkedHashMap<>();
+        for (int i = 0; i < AlertEngine.MAX_ALERTED_IDS; i++) {
+            saved.put("us" + i, NOW - i);
+        }
+        AlertEngine engine = new AlertEngine(index("M5 12h"), saved);
+
+        assertEquals(1, engine.evaluate(table("new", NOW), NOW).size());
+        Map<String, Long> alerted = engine.getAlertedIds();
+        assertEquals(AlertEngine.MAX_ALERTED_IDS, alerted.size());
+        assertTrue(alerted.containsKey("new"));
+        assertFalse(alerted.containsKey("us" + (AlertEngine.MAX_ALERTED_IDS - 1)));
+    }
+
+    @Test
+    public void findsInvalidRules() {
+        assertEquals(Collections.singletonList("M6 500km"),
+                AlertRule.findInvalid("M6\n M6 500km ;M6 500km 35.68,139.69 12h\n\n"));
+        assertTrue(AlertRule.findInvalid("").isEmpty());
+    }
+
+    private static AlertIndex index(String rules) {
+        return new AlertIndex(AlertRule.parseAll(rules));
+    }
+
+    private static EarthquakeTable table(String id, long time) {
+        EarthquakeTable table = new EarthquakeTable(1);
+        table.add(id, 6.0, "Somewhere", time, time, null, 139.69, 35.68, 10);
+        return table;
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.android.quakereport;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the rule found by {@link AlertIndex} with trying every rule in order
+ */
+public class AlertIndexTest {
+
+    private static final long NOW = 1483228800000L;
+    private static final long WEEK_MILLIS = TimeUnit.DAYS.toMillis(7);
+
+    @Test
+    public void emptyIndexMatchesNothing() {
+        AlertIndex index = new AlertIndex(Collections.<AlertRule>emptyList());
+
+        assertEquals(0, index.size());
+        assertEquals(-1, index.findRule(9.5, 0, 0, NOW, NOW));
+    }
+
+    @Test
+    public void findsTheSameRuleAsALinearScan() {
+        Random random = new Random(42);
+        List<AlertRule> rules = randomRules(random, 500);
+        AlertIndex index = new AlertIndex(rules);
+
+        for (int i = 0; i < 20000; i++) {
+            double magnitude = 2.5 + random.nextDouble() * 6;
+            double latitude = randomLatitude(random);
+            double longitude = randomLongitude(random);
+            if (i % 50 == 0) {
+                latitude = Double.NaN;
+                longitude = Double.NaN;
+            }
+            long time = NOW - (long) (random.nextDouble() * WEEK_MILLIS);
+            String message = magnitude + " at " + latitude + "," + longitude;
+            assertEquals(message, scan(rules, magnitude, latitude, longitude, time),
+                    index.findRule(magnitude, latitude, longitude, time, NOW));
+        }
+    }
+
+    @Test
+    public void circlesAcrossTheAntimeridianAndThePoles() {
+        List<AlertRule> rules = new ArrayList<>();
+        rules.add(new AlertRule("fiji", 5, -17, 179.5, 300, WEEK_MILLIS));
+        rules.add(new AlertRule("north", 5, 89, 10, 500, WEEK_MILLIS));
+        rules.add(new AlertRule("south", 5, -90, 0, 200, WEEK_MILLIS));
+        AlertIndex index = new AlertIndex(rules);
+
+        assertEquals(0, index.findRule(6, -17, -179.5, NOW, NOW));
+        assertEquals(1, index.findRule(6, 88, -170, NOW, NOW));
+        assertEquals(2, index.findRule(6, -89, 135, NOW, NOW));
+        assertEquals(-1, index.findRule(6, 0, 0, NOW, NOW));
+        assertEquals(-1, index.findRule(4, -17, 179.5, NOW, NOW));
+        assertEquals(-1, index.findRule(6, -17, 179.5, NOW - 2 * WEEK_MILLIS, NOW));
+    }
+
+    /**
+     * Returns site rules of every size, some around the poles and the antimeridian, mixed with
+     * rules matching anywhere
+     */
+    private static List<AlertRule> randomRules(Random random, int size) {
+        List<AlertRule> rules = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            long window = TimeUnit.HOURS.toMillis(1 + random.nextInt(7 * 24));
+            double magnitude = 4 + random.nextDouble() * 4;
+            int kind = random.nextInt(10);
+            if (kind == 0) {
+                rules.add(new AlertRule("global" + i, magnitude + 1, Double.NaN, Double.NaN,
+                        Double.POSITIVE_INFINITY, window));
+                continue;
+            }
+            double latitude = randomLatitude(random);
+            double longitude = randomLongitude(random);
+            if (kind == 1) {
+                latitude = random.nextBoolean() ? 90 - random.nextDouble() * 5
+                        : -90 + random.nextDouble() * 5;
+            } else if (kind == 2) {
+                longitude = random.nextBoolean() ? 180 - random.nextDouble() * 5
+                        : -180 + random.nextDouble() * 5;
+            }
+            double radiusKm = Math.pow(10, 1 + random.nextDouble() * 3.5);
+            rules.add(new AlertRule("site" + i, magnitude, latitude, longitude, radiusKm,
+                    window));
+        }
+        return rules;
+    }
+
+    private static int scan(List<AlertRule> rules, double magnitude, double latitude,
+                            double longitude, long time) {
+        for (int position = 0; position < rules.size(); position++) {
+            if (rules.get(position).matches(magnitude, latitude, longitude, time, NOW)) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    private static double randomLatitude(Random random) {
+        return Math.toDegrees(Math.asin(2 * random.nextDouble() - 1));
+    }
+
+    private static double randomLongitude(Random random) {
+        return random.nextDouble() * 360 - 180;
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.android.quakereport;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CatalogBackfillTest {
+
+    private static final long MINUTE = 60 * 1000;
+    private static final long DAY = 24 * 60 * MINUTE;
+    private static final int RESULT_CAP = 100;
+
+    private ExecutorService mExecutor;
+
+    @Before
+    public void setUp() {
+        mExecutor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+    }
+
+    @Test
+    public void splitsFullSlicesUntilEveryEventIsFetched() throws Exception {
+        // One event an hour for 30 days, more than the cap allows in a 10 day slice
+        EventSource source = new EventSource(60 * MINUTE, 0, 0);
+        CatalogBackfill backfill = new CatalogBackfill(source, mExecutor, 4, RESULT_CAP,
+                10 * DAY, 10 * MINUTE);
+        TimeRangeSet checkpoint = new TimeRangeSet();
+        Set<String> ids = new HashSet<>();
+
+        assertTrue(backfill.run(0, 30 * DAY, checkpoint, collect(ids)));
+
+        assertEquals(30 * 24, ids.size());
+        assertTrue(backfill.getSplitSlices() > 0);
+        assertEquals(0, backfill.getPagedSlices());
+    }
+
+    @Test
+    public void pagesSlicesTooShortToSplit() throws Exception {
+        // A burst of 250 events in one minute, which no slice can hold
+        EventSource source = new EventSource(DAY, 2 * DAY, 250);
+        CatalogBackfill backfill = new CatalogBackfill(source, mExecutor, 4, RESULT_CAP,
+                10 * DAY, 10 * MINUTE);
+        TimeRangeSet checkpoint = new TimeRangeSet();
+        Set<String> ids = new HashSet<>();
+
+        assertTrue(backfill.run(0, 10 * DAY, checkpoint, collect(ids)));
+
+        assertEquals(10 + 250, ids.size());
+        assertEquals(1, backfill.getPagedSlices());
+        assertTrue(checkpoint.covers(0, 10 * DAY));
+    }
+
+    @Test
+    public void leavesASliceWithAFailedPageOutOfTheCheckpoint() throws Exception {
+        EventSource source = new EventSource(DAY, 2 * DAY, 250);
+        source.mFailingOffset = RESULT_CAP;
+        CatalogBackfill backfill = new CatalogBackfill(source, mExecutor, 4, RESULT_CAP,
+                10 * DAY, 10 * MINUTE);
+        TimeRangeSet checkpoint = new TimeRangeSet();
+
+        assertFalse(backfill.run(0, 10 * DAY, checkpoint, collect(new HashSet<String>())));
+        assertEquals(1, backfill.getFailedSlices());
+        assertFalse(checkpoint.covers(2 * DAY, 2 * DAY + 1));
+
+        // The next run fetches that slice again, from its first page
+        source.mFailingOffset = -1;
+        Set<String> ids = new HashSet<>();
+        assertTrue(backfill.run(0, 10 * DAY, checkpoint, collect(ids)));
+        assertEquals(250 + 1, ids.size());
+    }
+
+    @Test
+    public void leavesASliceCutShortByAParseErrorOutOfTheCheckpoint() throws Exception {
+        HttpTransport transport = QueryUtils.getTransport();
+        try {
+            // A response cut inside its second event, short of the cap like a complete slice
+            byte[] body = CsvResponses.of("us1", "us2");
+            QueryUtils.setTransport(new LoopbackTransport(Arrays.copyOf(body, body.length - 40)));
+            CatalogBackfill backfill = new CatalogBackfill(new QuerySource(), mExecutor, 4,
+                    RESULT_CAP, 10 * DAY, 10 * MINUTE);
+            TimeRangeSet checkpoint = new TimeRangeSet();
+            Set<String> ids = new HashSet<>();
+
+            assertFalse(backfill.run(0, 10 * DAY, checkpoint, collect(ids)));
+            assertEquals(1, backfill.getFailedSlices());
+            assertArrayEquals(new long[]{0, 10 * DAY}, checkpoint.getGaps(0, 10 * DAY).get(0));
+            assertTrue(ids.isEmpty());
+
+            // The next run fetches the slice again
+            QueryUtils.setTransport(new LoopbackTransport(body));
+            assertTrue(backfill.run(0, 10 * DAY, checkpoint, collect(ids)));
+            assertEquals(2, ids.size());
+        } finally {
+            QueryUtils.setTransport(transport);
+        }
+    }
+
+    private static CatalogBackfill.Listener collect(final Set<String> ids) {
+        return new CatalogBackfill.Listener() {
+            @Override
+            public void onSlice(long startMillis, long endMillis, EarthquakeTable earthquakes,
+                                TimeRangeSet checkpoint) {
+                for (int row = 0; row < earthquakes.size(); row++) {
+                    ids.add(earthquakes.getId(row));
+                }
+            }
+        };
+    }
+
+    /**
+     * Fetches the slices through {@link QueryUtils}, as {@link BackfillService} does
+     */
+    private static final class QuerySource implements CatalogBackfill.SliceSource {
+        @Override
+        public EarthquakeTable fetch(long startMillis, long endMillis, int offset, int limit)
+                throws IOException {
+            String url = new UsgsQueryBuilder()
+                    .format(UsgsQueryBuilder.Format.CSV)
+                    .timeWindow(startMillis, endMillis)
+                    .limit(limit)
+                    .build();
+            EarthquakeTable earthquakes = QueryUtils.fetchEarthquakeData(url);
+            if (earthquakes == null) {
+                throw new IOException("Could not fetch " + url);
+            }
+            return earthquakes;
+        }
+    }
+
+    /**
+     * Events at a fixed spacing, with a burst of more events at the time of one of them
+     */
+    private static final class EventSource implements CatalogBackfill.SliceSource {
+        final long mSpacing;
+        final long mBurstTime;
+        final int mBurstSize;
+        volatile int mFailingOffset = -1;
+
+        EventSource(long spacing, long burstTime, int burstSize) {
+            mSpacing = spacing;
+            mBurstTime = burstTime;
+            mBurstSize = burstSize;
+        }
+
+        @Override
+        public EarthquakeTable fetch(long startMillis, long endMillis, int offset, int limit)
+                throws IOException {
+            if (offset == mFailingOffset) {
+                throw new IOException("Server error");
+            }
+            // Newest first, as USGS orders by time
+            EarthquakeTable slice = new EarthquakeTable();
+            int position = 0;
+            long newest = (endMillis - 1) / mSpacing * mSpacing;
+            for (long time = newest; time >= startMillis && slice.size() < limit;
+                 time -= mSpacing) {
+                int events = 1 + (time == mBurstTime ? mBurstSize : 0);
+                for (int i = 0; i < events && slice.size() < limit; i++, position++) {
+                    if (position >= offset) {
+                        slice.add("ev" + time + "-" + i, 4.5, "Tonga", time, time, null);
+                    }
+                }
+            }
+            return slice;
+        }
+    }
+}
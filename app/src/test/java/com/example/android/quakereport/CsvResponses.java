@@ -0,0 +1,30 @@
+package com.example.android.quakereport;
+
+import java.nio.charset.Charset;
+
+/**
+ * Bodies of {@code format=csv} USGS responses for tests
+ */
+final class CsvResponses {
+
+    private static final String HEADER = "time,latitude,longitude,depth,mag,magType,nst,gap,"
+            + "dmin,rms,net,id,updated,place,type,horizontalError,depthError,magError,magNst,"
+            + "status,locationSource,magSource\n";
+
+    private CsvResponses() {
+    }
+
+    /**
+     * Returns a response with one magnitude 4.6 earthquake for every given event id
+     */
+    static byte[] of(String... ids) {
+        StringBuilder csv = new StringBuilder(HEADER);
+        for (String id : ids) {
+            csv.append("2017-06-25T11:32:07.000Z,61.1000,-150.2000,10.00,4.6,mww,,29,1.234,0.87,")
+                    .append("us,").append(id).append(",2017-06-25T12:32:07.000Z,")
+                    .append("\"43km WNW of Anchorage, Alaska\",earthquake,5.3,1.8,0.05,123,")
+                    .append("reviewed,us,us\n");
+        }
+        return csv.toString().getBytes(Charset.forName("UTF-8"));
+    }
+}
@@ -0,0 +1,224 @@
+package com.example.android.quakereport;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Requests made through {@link QueryUtils} with a {@link DiskResponseCache} installed, against
+ * a stub USGS server on the loopback interface
+ */
+public class DiskResponseCacheTest {
+
+    private static final String ETAG = "\"v1\"";
+
+    private static final byte[] BODY = CsvResponses.of("us1000a");
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private HttpServer mServer;
+    private HttpTransport mTransport;
+    private DiskResponseCache mCache;
+    private File mCacheDirectory;
+
+    /**
+     * If-None-Match header of every request received, empty for unconditional ones
+     */
+    private final List<String> mValidators = new CopyOnWriteArrayList<>();
+
+    private volatile String mCacheControl;
+    private volatile Runnable mOnConditionalRequest;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        mServer.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String validator = exchange.getRequestHeaders().getFirst("If-None-Match");
+                mValidators.add(validator == null ? "" : validator);
+                exchange.getResponseHeaders().set("ETag", ETAG);
+                if (mCacheControl != null) {
+                    exchange.getResponseHeaders().set("Cache-Control", mCacheControl);
+                }
+                if (ETAG.equals(validator)) {
+                    if (mOnConditionalRequest != null) {
+                        mOnConditionalRequest.run();
+                    }
+                    exchange.sendResponseHeaders(304, -1);
+                    exchange.close();
+                    return;
+                }
+                exchange.sendResponseHeaders(200, BODY.length);
+                OutputStream body = exchange.getResponseBody();
+                try {
+                    body.write(BODY);
+                } finally {
+                    body.close();
+                }
+            }
+        });
+        mServer.start();
+
+        mCacheDirectory = mFolder.newFolder("http");
+        mCache = new DiskResponseCache(mCacheDirectory, 1024 * 1024);
+        mTransport = QueryUtils.getTransport();
+        QueryUtils.setTransport(new UrlConnectionTransport(1000, 1000, true));
+        QueryUtils.setResponseCache(mCache);
+    }
+
+    @After
+    public void tearDown() {
+        QueryUtils.setResponseCache(null);
+        QueryUtils.setTransport(mTransport);
+        mServer.stop(0);
+    }
+
+    @Test
+    public void missDownloadsAndCaches() {
+        mCacheControl = "max-age=60";
+        assertFetched(QueryUtils.fetchEarthquakeData(url()));
+
+        assertEquals(1, mCache.getMissCount());
+        assertEquals(0, mCache.getHitCount());
+        assertEquals(BODY.length, mCache.getSize());
+        assertNotNull(mCache.get(url()));
+    }
+
+    @Test
+    public void freshHitSkipsTheNetwork() {
+        mCacheControl = "max-age=60";
+        QueryUtils.fetchEarthquakeData(url());
+        assertFetched(QueryUtils.fetchEarthquakeData(url()));
+
+        assertEquals(1, mValidators.size());
+        assertEquals(1, mCache.getHitCount());
+        assertEquals(0, mCache.getRevalidationCount());
+    }
+
+    @Test
+    public void freshHitAfterEvictionDownloadsAgain() {
+        mCacheControl = "max-age=60";
+        QueryUtils.fetchEarthquakeData(url());
+        deleteBodies();
+        assertFetched(QueryUtils.fetchEarthquakeData(url()));
+
+        assertEquals(2, mValidators.size());
+        assertEquals("", mValidators.get(1));
+        assertEquals(0, mCache.getHitCount());
+        assertEquals(2, mCache.getMissCount());
+        assertNotNull(mCache.get(url()));
+    }
+
+    @Test
+    public void corruptFreshHitIsDroppedAndDownloadedAgain() throws IOException {
+        mCacheControl = "max-age=60";
+        QueryUtils.fetchEarthquakeData(url());
+        for (File file : mCacheDirectory.listFiles()) {
+            if (file.getName().endsWith(".body")) {
+                // Cut inside the event
+                OutputStream body = new FileOutputStream(file);
+                try {
+                    body.write(Arrays.copyOf(BODY, BODY.length - 20));
+                } finally {
+                    body.close();
+                }
+            }
+        }
+        assertFetched(QueryUtils.fetchEarthquakeData(url()));
+
+        assertEquals(2, mValidators.size());
+        assertEquals(0, mCache.getHitCount());
+        assertEquals(2, mCache.getMissCount());
+        assertEquals(BODY.length, mCache.getSize());
+        assertFetched(QueryUtils.fetchEarthquakeData(url()));
+        assertEquals(1, mCache.getHitCount());
+    }
+
+    @Test
+    public void staleHitIsRevalidated() {
+        mCacheControl = "no-cache";
+        QueryUtils.fetchEarthquakeData(url());
+        assertFetched(QueryUtils.fetchEarthquakeData(url()));
+
+        assertEquals(2, mValidators.size());
+        assertEquals(ETAG, mValidators.get(1));
+        assertEquals(1, mCache.getRevalidationCount());
+        assertEquals(1, mCache.getMissCount());
+    }
+
+    @Test
+    public void notModifiedAfterEvictionDownloadsAgain() {
+        mCacheControl = "no-cache";
+        QueryUtils.fetchEarthquakeData(url());
+        mOnConditionalRequest = new Runnable() {
+            @Override
+            public void run() {
+                // Evicts the body between the lookup and the 304
+                deleteBodies();
+            }
+        };
+        assertFetched(QueryUtils.fetchEarthquakeData(url()));
+
+        assertEquals(3, mValidators.size());
+        assertEquals(ETAG, mValidators.get(1));
+        assertEquals("", mValidators.get(2));
+        assertEquals(0, mCache.getRevalidationCount());
+        assertEquals(2, mCache.getMissCount());
+        assertNotNull(mCache.get(url()));
+    }
+
+    @Test
+    public void noStoreIsNotCached() {
+        mCacheControl = "no-store";
+        assertFetched(QueryUtils.fetchEarthquakeData(url()));
+
+        assertEquals(0, mCache.getSize());
+        assertNull(mCache.get(url()));
+    }
+
+    /**
+     * Deletes the cached bodies behind the back of the cache, as an eviction by another
+     * request would
+     */
+    private void deleteBodies() {
+        for (File file : mCacheDirectory.listFiles()) {
+            if (file.getName().endsWith(".body")) {
+                file.delete();
+            }
+        }
+    }
+
+    private String url() {
+        return "http://127.0.0.1:" + mServer.getAddress().getPort()
+                + "/fdsnws/event/1/query?format=csv&minmag=4.5";
+    }
+
+    private static void assertFetched(EarthquakeTable earthquakes) {
+        assertNotNull(earthquakes);
+        assertEquals(1, earthquakes.size());
+        assertEquals("us1000a", earthquakes.getId(0));
+        assertEquals(4.6, earthquakes.getMagnitude(0), 0);
+    }
+}
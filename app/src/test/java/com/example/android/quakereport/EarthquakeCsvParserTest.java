@@ -0,0 +1,71 @@
+package com.example.android.quakereport;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EarthquakeCsvParserTest {
+
+    private static final String CSV_HEADER = "time,latitude,longitude,depth,mag,id,updated,"
+            + "place,type,status\n";
+
+    @Test
+    public void readsOtherEventTypesOfASummaryFeedAsDeleted() throws IOException {
+        EarthquakeTable table = parse(CSV_HEADER
+                + "2017-06-25T11:32:07.000Z,61.1,-150.2,10,4.6,ak1,2017-06-25T12:32:07.000Z,"
+                + "Anchorage,earthquake,reviewed\n"
+                + "2017-06-25T11:30:00.000Z,46.2,-122.1,0,1.4,uw2,2017-06-25T12:30:00.000Z,"
+                + "Yacolt,quarry blast,reviewed\n"
+                + "2017-06-25T11:20:00.000Z,37.6,-122.4,0,1.1,nc3,2017-06-25T12:20:00.000Z,"
+                + "Pacifica,explosion,automatic\n");
+
+        assertEquals(3, table.size());
+        assertFalse(table.isDeleted(0));
+        assertTrue(table.isDeleted(1));
+        assertEquals("uw2", table.getId(1));
+        assertTrue(table.isDeleted(2));
+    }
+
+    @Test
+    public void skipsEventsWithoutMagnitude() throws IOException {
+        EarthquakeTable table = parse(CSV_HEADER
+                + "2017-06-25T11:32:07.000Z,61.1,-150.2,10,,ak1,2017-06-25T12:32:07.000Z,"
+                + "Anchorage,earthquake,automatic\n"
+                + "2017-06-25T11:30:00.000Z,19.4,-155.3,2,2.1,hv2,2017-06-25T12:30:00.000Z,"
+                + "Volcano,earthquake,automatic\n");
+
+        assertEquals(1, table.size());
+        assertEquals("hv2", table.getId(0));
+        assertEquals(2.1, table.getMagnitude(0), 0);
+    }
+
+    @Test
+    public void readsTextResponsesWithAndWithoutEventType() throws IOException {
+        EarthquakeTable typed = parse("#EventID|Time|Latitude|Longitude|Depth/km|Magnitude|"
+                + "EventLocationName|EventType\n"
+                + "us1|2017-06-25T11:32:07.040|61.1|-150.2|10|4.6|Anchorage|earthquake\n"
+                + "us2|2017-06-25T11:30:00.000|46.2|-122.1|0|1.4|Yacolt|quarry blast\n");
+        EarthquakeTable untyped = parse("#EventID|Time|Latitude|Longitude|Depth/km|Magnitude|"
+                + "EventLocationName\n"
+                + "us1|2017-06-25T11:32:07.040|61.1|-150.2|10|4.6|Anchorage\n");
+
+        assertEquals(2, typed.size());
+        assertFalse(typed.isDeleted(0));
+        assertTrue(typed.isDeleted(1));
+        assertEquals(1, untyped.size());
+        assertFalse(untyped.isDeleted(0));
+    }
+
+    private static EarthquakeTable parse(String response) throws IOException {
+        EarthquakeTable table = new EarthquakeTable();
+        EarthquakeCsvParser.parse(new ByteArrayInputStream(
+                response.getBytes(Charset.forName("UTF-8"))), table);
+        return table;
+    }
+}
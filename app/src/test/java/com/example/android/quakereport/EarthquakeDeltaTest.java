@@ -0,0 +1,68 @@
+package com.example.android.quakereport;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EarthquakeDeltaTest {
+
+    private static final double MIN_MAGNITUDE = 4.5;
+
+    private static final EarthquakeQuery BY_TIME =
+            new EarthquakeQuery(MIN_MAGNITUDE, EarthquakeQuery.ORDER_BY_TIME, null);
+
+    @Test
+    public void knownEventsFallingBelowTheThresholdOrDeletedAreRemoved() {
+        EarthquakeDelta.Tracker tracker = new EarthquakeDelta.Tracker();
+        tracker.reset(loaded());
+
+        EarthquakeTable feed = new EarthquakeTable();
+        feed.add("us1", 4.2, "Tonga", 3000, 3500, null);
+        feed.addDeleted("us2", 3500);
+        feed.add("us3", 3.0, "Fiji", 3000, 3000, null);
+        EarthquakeDelta delta = tracker.diff(feed, MIN_MAGNITUDE);
+
+        assertEquals(0, delta.getInserted().size());
+        assertEquals(0, delta.getUpdated().size());
+        assertEquals(2, delta.getRemoved().size());
+        assertEquals("us1", delta.getRemoved().getId(0));
+        assertEquals(4.2, delta.getRemoved().getMagnitude(0), 0);
+        assertTrue(delta.getRemoved().isDeleted(1));
+
+        // Reported once, and back as new if it rises above the threshold again
+        assertTrue(tracker.diff(feed, MIN_MAGNITUDE).isEmpty());
+        EarthquakeTable revised = new EarthquakeTable();
+        revised.add("us1", 4.7, "Tonga", 3000, 4000, null);
+        assertEquals(1, tracker.diff(revised, MIN_MAGNITUDE).getInserted().size());
+    }
+
+    @Test
+    public void appliedChangesLeaveTheLoadedTableAlone() {
+        EarthquakeTable loaded = loaded();
+        EarthquakeQueryEngine engine = new EarthquakeQueryEngine(loaded, MIN_MAGNITUDE);
+        EarthquakeDelta.Tracker tracker = new EarthquakeDelta.Tracker();
+        tracker.reset(loaded);
+
+        EarthquakeTable feed = new EarthquakeTable();
+        feed.add("us1", 4.2, "Tonga", 1000, 3500, null);
+        feed.add("us3", 6.1, "Fiji", 3000, 3000, null);
+        int[] changed = engine.apply(tracker.diff(feed, MIN_MAGNITUDE));
+
+        assertArrayEquals(new int[]{0, 2}, changed);
+        assertEquals(2, loaded.size());
+        assertEquals(5.0, loaded.getMagnitude(0), 0);
+        EarthquakeTable result = engine.select(BY_TIME);
+        assertEquals(2, result.size());
+        assertEquals("us3", result.getId(0));
+        assertEquals("us2", result.getId(1));
+    }
+
+    private static EarthquakeTable loaded() {
+        EarthquakeTable table = new EarthquakeTable();
+        table.add("us1", 5.0, "Tonga", 1000, 1000, null);
+        table.add("us2", 4.8, "Chile", 2000, 2000, null);
+        return table;
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.android.quakereport;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class EarthquakePagerTest {
+
+    private static final int PAGE_SIZE = 10;
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Test
+    public void failedPageIsNotTheEndOfTheList() {
+        FlakySource source = new FlakySource(25);
+        RecordingCallback callback = new RecordingCallback();
+        EarthquakePager pager = new EarthquakePager(PAGE_SIZE, 3, DIRECT, DIRECT, callback);
+        pager.reset(source, null);
+
+        // The prefetch of the second page fails: its rows wait as placeholders
+        source.mFailing = true;
+        pager.onVisibleRangeChanged(0, PAGE_SIZE - 1);
+        assertEquals(2 * PAGE_SIZE, pager.getCount());
+        assertEquals("[failed 10: 10 -> 20]", callback.mEvents.toString());
+
+        // Shown, the page is requested again
+        source.mFailing = false;
+        assertNull(pager.getRow(PAGE_SIZE));
+        assertNotNull(pager.getRow(PAGE_SIZE));
+        assertEquals(2 * PAGE_SIZE, pager.getCount());
+
+        // Once the network is back, the failed pages in view are requested again
+        source.mFailing = true;
+        pager.onVisibleRangeChanged(PAGE_SIZE, 2 * PAGE_SIZE - 1);
+        assertEquals(3 * PAGE_SIZE, pager.getCount());
+        assertNull(pager.getRow(2 * PAGE_SIZE));
+        source.mFailing = false;
+        pager.retryFailedPages();
+        assertEquals(25, pager.getCount());
+        assertEquals("ev20", pager.getRow(2 * PAGE_SIZE).getId());
+    }
+
+    /**
+     * Source of the given number of earthquakes, failing while told to
+     */
+    private static final class FlakySource implements EarthquakePager.PageSource {
+        final int mSize;
+        volatile boolean mFailing;
+
+        FlakySource(int size) {
+            mSize = size;
+        }
+
+        @Override
+        public EarthquakeTable loadPage(int offset, int limit) throws IOException {
+            if (mFailing) {
+                throw new IOException("Response cut short");
+            }
+            EarthquakeTable page = new EarthquakeTable();
+            for (int i = offset; i < Math.min(mSize, offset + limit); i++) {
+                page.add("ev" + i, 5.0, "10km N of Somewhere", 1000000L - i, 1000000L, null);
+            }
+            return page;
+        }
+    }
+
+    private static final class RecordingCallback implements EarthquakePager.Callback {
+        final List<String> mEvents = new ArrayList<>();
+
+        @Override
+        public void onPagesReset() {
+        }
+
+        @Override
+        public void onPageLoaded(int positionStart, int itemCount, int oldCount, int newCount) {
+        }
+
+        @Override
+        public void onPageFailed(int positionStart, int oldCount, int newCount) {
+            mEvents.add("failed " + positionStart + ": " + oldCount + " -> " + newCount);
+        }
+    }
+}
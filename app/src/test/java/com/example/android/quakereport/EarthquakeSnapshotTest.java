@@ -0,0 +1,59 @@
+package com.example.android.quakereport;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class EarthquakeSnapshotTest {
+
+    private static final String KEY = "https://earthquake.usgs.gov/fdsnws/event/1/query";
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void savedSnapshotLoadsForItsKeyOnly() throws IOException {
+        File file = new File(mFolder.getRoot(), "earthquakes.snapshot");
+        EarthquakeSnapshot.save(file, KEY, table("us1", "us2"));
+
+        EarthquakeTable loaded = EarthquakeSnapshot.load(file, KEY);
+        assertEquals(2, loaded.size());
+        assertEquals("us2", loaded.getId(1));
+        assertEquals(35.68, loaded.getLatitude(1), 1e-5);
+        assertNull(EarthquakeSnapshot.load(file, KEY + "?minmag=6"));
+        assertNull(EarthquakeSnapshot.load(new File(mFolder.getRoot(), "missing"), KEY));
+    }
+
+    @Test
+    public void failedSaveKeepsThePreviousSnapshot() throws IOException {
+        File file = new File(mFolder.getRoot(), "earthquakes.snapshot");
+        EarthquakeSnapshot.save(file, KEY, table("us1"));
+
+        try {
+            EarthquakeSnapshot.save(file, KEY, null);
+            fail();
+        } catch (NullPointerException e) {
+            // Expected
+        }
+
+        assertEquals(1, EarthquakeSnapshot.load(file, KEY).size());
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+
+    private static EarthquakeTable table(String... ids) {
+        EarthquakeTable table = new EarthquakeTable(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            table.add(ids[i], 5.5, "10km N of Somewhere", 1000000L - i, 1000000L, null,
+                    139.69, 35.68, 10);
+        }
+        return table;
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.android.quakereport;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the viewport queries of {@link EarthquakeSpatialIndex} with a linear scan of the
+ * table
+ */
+public class EarthquakeSpatialIndexTest {
+
+    private static final double EPSILON = 1e-9;
+
+    @Test
+    public void emptyIndexFindsNothing() {
+        EarthquakeSpatialIndex index = new EarthquakeSpatialIndex(new EarthquakeTable(0));
+
+        assertEquals(0, index.size());
+        assertEquals(0, index.selectRows(-90, -180, 90, 180).length);
+        assertEquals(0, index.cluster(-90, -180, 90, 180, 0).size());
+    }
+
+    @Test
+    public void skipsDeletedRowsAndRowsWithoutCoordinates() {
+        EarthquakeTable table = new EarthquakeTable();
+        table.add("located", 5.0, "Tonga", 0, 0, null, 10, 20, 5);
+        table.add("unlocated", 5.0, "Tonga", 0, 0, null);
+        table.addDeleted("deleted", 0);
+        EarthquakeSpatialIndex index = new EarthquakeSpatialIndex(table);
+
+        assertEquals(1, index.size());
+        assertArrayEquals(new int[]{0}, index.selectRows(-90, -180, 90, 180));
+    }
+
+    @Test
+    public void selectsTheSameRowsAsALinearScan() {
+        Random random = new Random(42);
+        EarthquakeTable table = randomTable(random, 5000);
+        EarthquakeSpatialIndex index = new EarthquakeSpatialIndex(table);
+
+        for (double[] box : boxes(random)) {
+            assertArrayEquals(Arrays.toString(box), scan(table, box),
+                    sorted(index.selectRows(box[0], box[1], box[2], box[3])));
+        }
+    }
+
+    @Test
+    public void clustersHoldTheRowsOfALinearScan() {
+        Random random = new Random(7);
+        EarthquakeTable table = randomTable(random, 5000);
+        EarthquakeSpatialIndex index = new EarthquakeSpatialIndex(table);
+
+        for (double[] box : boxes(random)) {
+            int[] expected = scan(table, box);
+            for (int zoom = 0; zoom <= 16; zoom += 4) {
+                String message = Arrays.toString(box) + " at zoom " + zoom;
+                List<EarthquakeSpatialIndex.Cluster> clusters =
+                        index.cluster(box[0], box[1], box[2], box[3], zoom);
+
+                int count = 0;
+                double latitudeSum = 0;
+                for (EarthquakeSpatialIndex.Cluster cluster : clusters) {
+                    assertTrue(message, cluster.getCount() > 0);
+                    count += cluster.getCount();
+                    latitudeSum += cluster.getLatitude() * cluster.getCount();
+                    if (cluster.getCount() == 1) {
+                        assertTrue(message, Arrays.binarySearch(expected, cluster.getRow()) >= 0);
+                    } else {
+                        assertEquals(message, -1, cluster.getRow());
+                    }
+                }
+                assertEquals(message, expected.length, count);
+                double expectedSum = 0;
+                for (int row : expected) {
+                    expectedSum += table.getLatitude(row);
+                }
+                assertEquals(message, expectedSum, latitudeSum, EPSILON * (1 + count) * 90);
+            }
+        }
+    }
+
+    @Test
+    public void boxAcrossTheAntimeridianJoinsBothSides() {
+        EarthquakeTable table = new EarthquakeTable();
+        table.add("fiji", 5.0, "Fiji", 0, 0, null, 179.5, -17, 10);
+        table.add("samoa", 5.0, "Samoa", 0, 0, null, -172, -14, 10);
+        table.add("dateline", 5.0, "Dateline", 0, 0, null, 180, 0, 10);
+        table.add("chile", 5.0, "Chile", 0, 0, null, -71, -33, 10);
+        EarthquakeSpatialIndex index = new EarthquakeSpatialIndex(table);
+
+        assertArrayEquals(new int[]{0, 1, 2},
+                sorted(index.selectRows(-30, 170, 10, -170)));
+        assertEquals(3, totalCount(index.cluster(-30, 170, 10, -170, 0)));
+    }
+
+    @Test
+    public void polesAndWorldEdgesAreIncluded() {
+        EarthquakeTable table = new EarthquakeTable();
+        table.add("north", 5.0, "North Pole", 0, 0, null, 0, 90, 10);
+        table.add("south", 5.0, "South Pole", 0, 0, null, 135, -90, 10);
+        table.add("west", 5.0, "West edge", 0, 0, null, -180, 0, 10);
+        table.add("east", 5.0, "East edge", 0, 0, null, 180, 0, 10);
+        EarthquakeSpatialIndex index = new EarthquakeSpatialIndex(table);
+
+        assertArrayEquals(new int[]{0, 1, 2, 3}, sorted(index.selectRows(-90, -180, 90, 180)));
+        assertArrayEquals(new int[]{0}, sorted(index.selectRows(89.99, -1, 90, 1)));
+        assertArrayEquals(new int[]{1}, sorted(index.selectRows(-90, 100, -89, 170)));
+        assertEquals(4, totalCount(index.cluster(-90, -180, 90, 180, 3)));
+    }
+
+    /**
+     * Returns earthquakes spread over the globe, a tenth of them in a dense cluster, with
+     * some at the poles and on the antimeridian
+     */
+    private static EarthquakeTable randomTable(Random random, int size) {
+        EarthquakeTable table = new EarthquakeTable(size);
+        for (int i = 0; i < size; i++) {
+            double longitude;
+            double latitude;
+            int kind = random.nextInt(20);
+            if (kind < 2) {
+                longitude = 140 + random.nextDouble();
+                latitude = 36 + random.nextDouble();
+            } else if (kind == 2) {
+                longitude = random.nextDouble() * 360 - 180;
+                latitude = random.nextBoolean() ? 90 : -90;
+            } else if (kind == 3) {
+                longitude = random.nextBoolean() ? 180 : -180;
+                latitude = random.nextDouble() * 180 - 90;
+            } else {
+                longitude = random.nextDouble() * 360 - 180;
+                latitude = random.nextDouble() * 180 - 90;
+            }
+            table.add("ev" + i, 5.0, "Somewhere", i, i, null, longitude, latitude, 10);
+        }
+        return table;
+    }
+
+    /**
+     * Returns boxes of every size as south, west, north and east, some across the antimeridian
+     * and some touching the poles
+     */
+    private static List<double[]> boxes(Random random) {
+        List<double[]> boxes = new ArrayList<>();
+        boxes.add(new double[]{-90, -180, 90, 180});
+        boxes.add(new double[]{36.2, 140.2, 36.8, 140.9});
+        boxes.add(new double[]{80, -180, 90, 180});
+        boxes.add(new double[]{-90, 170, -60, -170});
+        boxes.add(new double[]{-10, 179, 10, -179});
+        boxes.add(new double[]{0, 0, 0, 0});
+        for (int i = 0; i < 200; i++) {
+            double size = Math.pow(10, random.nextDouble() * 3 - 1);
+            double south = random.nextDouble() * 180 - 90;
+            double north = Math.min(90, south + size);
+            double west = random.nextDouble() * 360 - 180;
+            double east = west + size * 2;
+            if (east > 180) {
+                // Across the antimeridian
+                east -= 360;
+            }
+            boxes.add(new double[]{south, west, north, east});
+        }
+        return boxes;
+    }
+
+    private static int[] scan(EarthquakeTable table, double[] box) {
+        double south = box[0];
+        double west = box[1];
+        double north = box[2];
+        double east = box[3];
+        int[] rows = new int[table.size()];
+        int count = 0;
+        for (int row = 0; row < table.size(); row++) {
+            double longitude = table.getLongitude(row);
+            double latitude = table.getLatitude(row);
+            boolean inLongitude = west <= east
+                    ? longitude >= west && longitude <= east
+                    : longitude >= west || longitude <= east;
+            if (latitude >= south && latitude <= north && inLongitude) {
+                rows[count++] = row;
+            }
+        }
+        return Arrays.copyOf(rows, count);
+    }
+
+    private static int[] sorted(int[] rows) {
+        int[] copy = rows.clone();
+        Arrays.sort(copy);
+        return copy;
+    }
+
+    private static int totalCount(List<EarthquakeSpatialIndex.Cluster> clusters) {
+        int count = 0;
+        for (EarthquakeSpatialIndex.Cluster cluster : clusters) {
+            count += cluster.getCount();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.android.quakereport;
+
+/**
+ * {@link SyncScheduler} that only records the sync it was asked to schedule, so tests can
+ * check when the next sync would run without any alarm
+ */
+public class FakeSyncScheduler implements SyncScheduler {
+
+    /**
+     * Delay of the pending sync, or -1 if none is pending
+     */
+    private long mDelayMillis = -1;
+
+    private int mScheduleCount;
+
+    @Override
+    public void schedule(long delayMillis) {
+        mDelayMillis = delayMillis;
+        mScheduleCount++;
+    }
+
+    @Override
+    public void cancel() {
+        mDelayMillis = -1;
+    }
+
+    public boolean isScheduled() {
+        return mDelayMillis >= 0;
+    }
+
+    /**
+     * Returns the delay of the pending sync, or -1 if none is pending
+     */
+    public long getDelayMillis() {
+        return mDelayMillis;
+    }
+
+    public int getScheduleCount() {
+        return mScheduleCount;
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.android.quakereport;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stub {@link HttpTransport} answering every request in memory with the same payload, without
+ * sockets. The next requests can be made to fail with a status code or an exception, to
+ * exercise retries.
+ */
+public final class LoopbackTransport implements HttpTransport {
+
+    private final byte[] mPayload;
+    private final AtomicInteger mRequestCount = new AtomicInteger();
+    private final AtomicInteger mFailures = new AtomicInteger();
+    private volatile int mFailureCode;
+    private volatile IOException mFailureException;
+
+    public LoopbackTransport(byte[] payload) {
+        mPayload = payload;
+    }
+
+    /**
+     * Answers the next requests with the given status code and an empty body
+     */
+    public void failNext(int count, int code) {
+        mFailureCode = code;
+        mFailureException = null;
+        mFailures.set(count);
+    }
+
+    /**
+     * Makes the next requests throw the given exception, as when no response arrived
+     */
+    public void throwNext(int count, IOException exception) {
+        mFailureException = exception;
+        mFailures.set(count);
+    }
+
+    /**
+     * Returns the number of requests answered so far
+     */
+    public int getRequestCount() {
+        return mRequestCount.get();
+    }
+
+    @Override
+    public Response get(String url, Map<String, String> headers) throws IOException {
+        mRequestCount.incrementAndGet();
+        if (mFailures.getAndDecrement() > 0) {
+            IOException exception = mFailureException;
+            if (exception != null) {
+                throw exception;
+            }
+            return new StubResponse(mFailureCode, new byte[0]);
+        }
+        return new StubResponse(200, mPayload);
+    }
+
+    @Override
+    public void cancel(Thread thread) {
+    }
+
+    @Override
+    public long getHandshakeCount() {
+        return 0;
+    }
+
+    private static class StubResponse implements Response {
+        private final int mCode;
+        private final byte[] mBody;
+
+        StubResponse(int code, byte[] body) {
+            mCode = code;
+            mBody = body;
+        }
+
+        @Override
+        public int getCode() {
+            return mCode;
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return "Content-Type".equalsIgnoreCase(name) ? "application/json" : null;
+        }
+
+        @Override
+        public InputStream getBody() {
+            return new ByteArrayInputStream(mBody);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
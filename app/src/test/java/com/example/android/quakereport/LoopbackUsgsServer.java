@@ -0,0 +1,118 @@
+package com.example.android.quakereport;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stand-in for the USGS query endpoint on the loopback interface. Every request is answered
+ * with the same payload after a fixed latency, which stands for the network round trip.
+ */
+public final class LoopbackUsgsServer {
+
+    static {
+        // Send responses without waiting for the ack of the headers, as a real server does;
+        // otherwise every request on a kept-alive connection waits for a delayed ack
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final HttpServer mServer;
+    private final ExecutorService mExecutor;
+    private final AtomicInteger mRequestCount = new AtomicInteger();
+    private final AtomicInteger mActiveRequests = new AtomicInteger();
+    private final AtomicInteger mMaxActiveRequests = new AtomicInteger();
+    private final Set<InetSocketAddress> mClients =
+            Collections.newSetFromMap(new ConcurrentHashMap<InetSocketAddress, Boolean>());
+
+    /**
+     * Starts a server on a free loopback port
+     *
+     * @param payload       body of every response
+     * @param latencyMillis time every request waits before it is answered
+     */
+    public LoopbackUsgsServer(final byte[] payload, final long latencyMillis) throws IOException {
+        mServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        mServer.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                mRequestCount.incrementAndGet();
+                mClients.add(exchange.getRemoteAddress());
+                int active = mActiveRequests.incrementAndGet();
+                while (true) {
+                    int max = mMaxActiveRequests.get();
+                    if (active <= max || mMaxActiveRequests.compareAndSet(max, active)) {
+                        break;
+                    }
+                }
+                try {
+                    Thread.sleep(latencyMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    mActiveRequests.decrementAndGet();
+                }
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, payload.length);
+                OutputStream body = exchange.getResponseBody();
+                try {
+                    body.write(payload);
+                } finally {
+                    body.close();
+                }
+            }
+        });
+        mExecutor = Executors.newCachedThreadPool();
+        mServer.setExecutor(mExecutor);
+        mServer.start();
+    }
+
+    /**
+     * Returns the url of a query on this server; the parameters only tell requests apart
+     */
+    public String url(String query) {
+        return "http://127.0.0.1:" + mServer.getAddress().getPort() + "/fdsnws/event/1/query?" + query;
+    }
+
+    /**
+     * Returns the number of requests answered so far
+     */
+    public int getRequestCount() {
+        return mRequestCount.get();
+    }
+
+    /**
+     * Returns the largest number of requests the server was waiting to answer at the same time
+     */
+    public int getMaxConcurrentRequests() {
+        return mMaxActiveRequests.get();
+    }
+
+    /**
+     * Returns the number of connections requests came in on so far
+     */
+    public int getConnectionCount() {
+        return mClients.size();
+    }
+
+    public void stop() {
+        mServer.stop(0);
+        mExecutor.shutdownNow();
+        try {
+            mExecutor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
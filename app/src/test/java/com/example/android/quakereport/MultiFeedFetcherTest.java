@@ -0,0 +1,163 @@
+package com.example.android.quakereport;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link MultiFeedFetcher} fetching from a {@link LoopbackUsgsServer} with injected latency
+ */
+public class MultiFeedFetcherTest {
+
+    private static final long LATENCY_MILLIS = 200;
+
+    private LoopbackUsgsServer mServer;
+    private ExecutorService mExecutor;
+    private ExecutorService mCallers;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = new LoopbackUsgsServer(CsvResponses.of("us1000a", "us1000b"), LATENCY_MILLIS);
+        mExecutor = Executors.newFixedThreadPool(8);
+        mCallers = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() {
+        mCallers.shutdownNow();
+        mExecutor.shutdownNow();
+        mServer.stop();
+    }
+
+    @Test
+    public void mergesEveryFeedWithEveryEventOnce() throws Exception {
+        MultiFeedFetcher fetcher = newFetcher(3);
+        List<String> urls = Arrays.asList(url("minmag=4"), url("minmag=5"));
+
+        MultiFeedFetcher.Result result = fetcher.fetchAll(urls);
+
+        assertTrue(result.isComplete());
+        assertEquals(2, result.getFeed(urls.get(0)).size());
+        assertEquals(2, result.getFeed(urls.get(1)).size());
+        assertEquals(2, result.getEarthquakes().size());
+    }
+
+    @Test
+    public void fetchesDuplicateUrlsOnce() throws Exception {
+        MultiFeedFetcher fetcher = newFetcher(3);
+        String url = url("minmag=4");
+
+        fetcher.fetchAll(Arrays.asList(url, url, url));
+
+        assertEquals(1, mServer.getRequestCount());
+    }
+
+    @Test
+    public void coalescesIdenticalRequestsInFlight() throws Exception {
+        final MultiFeedFetcher fetcher = newFetcher(3);
+        final List<String> urls = Collections.singletonList(url("minmag=4"));
+
+        List<Future<MultiFeedFetcher.Result>> results = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            results.add(mCallers.submit(new Callable<MultiFeedFetcher.Result>() {
+                @Override
+                public MultiFeedFetcher.Result call() throws Exception {
+                    return fetcher.fetchAll(urls);
+                }
+            }));
+        }
+        for (Future<MultiFeedFetcher.Result> result : results) {
+            assertEquals(2, result.get().getEarthquakes().size());
+        }
+
+        // Every caller started well within the latency of the first request
+        assertEquals(1, mServer.getRequestCount());
+
+        // Each caller got its own table, which it may change
+        EarthquakeTable first = results.get(0).get().getEarthquakes();
+        first.setRow(0, first, 1);
+        for (int i = 1; i < results.size(); i++) {
+            EarthquakeTable other = results.get(i).get().getEarthquakes();
+            assertNotSame(first, other);
+            assertEquals("us1000a", other.getId(0));
+        }
+    }
+
+    @Test
+    public void limitsConcurrentRequestsPerHost() throws Exception {
+        MultiFeedFetcher fetcher = newFetcher(2);
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            urls.add(url("minmag=" + i));
+        }
+
+        long start = System.nanoTime();
+        assertTrue(fetcher.fetchAll(urls).isComplete());
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+        assertEquals(6, mServer.getRequestCount());
+        assertEquals(2, mServer.getMaxConcurrentRequests());
+        // Three rounds of two requests
+        assertTrue(elapsedMillis >= 3 * LATENCY_MILLIS);
+    }
+
+    @Test
+    public void reportsFailedFeeds() throws Exception {
+        MultiFeedFetcher fetcher = newFetcher(3);
+        String good = url("minmag=4");
+        String bad = "http://127.0.0.1:1/fdsnws/event/1/query?minmag=4";
+
+        MultiFeedFetcher.Result result = fetcher.fetchAll(Arrays.asList(good, bad));
+
+        assertFalse(result.isComplete());
+        assertEquals(Collections.singletonList(bad), result.getFailedUrls());
+        assertNull(result.getFeed(bad));
+        assertEquals(2, result.getEarthquakes().size());
+    }
+
+    private String url(String query) {
+        return mServer.url("format=csv&" + query);
+    }
+
+    private MultiFeedFetcher newFetcher(int maxRequestsPerHost) {
+        final HttpTransport transport = new UrlConnectionTransport(1000, 5000, true);
+        return new MultiFeedFetcher(new MultiFeedFetcher.FeedSource() {
+            @Override
+            public EarthquakeTable fetch(String url) throws IOException {
+                HttpTransport.Response response =
+                        transport.get(url, Collections.<String, String>emptyMap());
+                try {
+                    if (response.getCode() != 200) {
+                        throw new IOException("Error response code: " + response.getCode());
+                    }
+                    EarthquakeTable earthquakes = new EarthquakeTable();
+                    EarthquakeCsvParser.parse(response.getBody(), earthquakes);
+                    return earthquakes;
+                } finally {
+                    response.close();
+                }
+            }
+
+            @Override
+            public void cancel(Thread thread) {
+                transport.cancel(thread);
+            }
+        }, mExecutor, maxRequestsPerHost);
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.android.quakereport;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Requests made through {@link QueryUtils} against a stub transport
+ */
+public class QueryUtilsTest {
+
+    private static final String URL =
+            "https://earthquake.usgs.gov/fdsnws/event/1/query?format=csv&minmag=4.5";
+
+    private HttpTransport mTransport;
+
+    @Before
+    public void setUp() {
+        mTransport = QueryUtils.getTransport();
+    }
+
+    @After
+    public void tearDown() {
+        QueryUtils.setTransport(mTransport);
+    }
+
+    @Test
+    public void wholeResponseIsReturned() {
+        QueryUtils.setTransport(new LoopbackTransport(CsvResponses.of("us1", "us2")));
+
+        EarthquakeTable earthquakes = QueryUtils.fetchEarthquakeData(URL);
+        assertNotNull(earthquakes);
+        assertEquals(2, earthquakes.size());
+    }
+
+    @Test
+    public void truncatedResponseFails() {
+        byte[] body = CsvResponses.of("us1", "us2");
+        // Cut inside the quoted place of the second event
+        String csv = new String(body, Charset.forName("UTF-8"));
+        int cut = csv.lastIndexOf("WNW");
+        QueryUtils.setTransport(new LoopbackTransport(Arrays.copyOf(body, cut)));
+
+        assertNull(QueryUtils.fetchEarthquakeData(URL));
+    }
+
+    @Test
+    public void malformedLineFails() {
+        String csv = new String(CsvResponses.of("us1", "us2"), Charset.forName("UTF-8"))
+                .replace("2017-06-25T12:32:07.000Z,\"43km WNW", "yesterday,\"43km WNW");
+        QueryUtils.setTransport(
+                new LoopbackTransport(csv.getBytes(Charset.forName("UTF-8"))));
+
+        assertNull(QueryUtils.fetchEarthquakeData(URL));
+    }
+}
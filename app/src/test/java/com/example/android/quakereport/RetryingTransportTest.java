@@ -0,0 +1,121 @@
+package com.example.android.quakereport;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RetryingTransportTest {
+
+    private static final String URL = "https://earthquake.usgs.gov/fdsnws/event/1/query";
+    private static final Map<String, String> NO_HEADERS = Collections.emptyMap();
+
+    private final LoopbackTransport mStub = new LoopbackTransport(CsvResponses.of("us1000a"));
+
+    /**
+     * Retries without waiting, so the tests do not sleep
+     */
+    private final RetryingTransport mTransport = new RetryingTransport(mStub, 3, 0, 0);
+
+    @After
+    public void tearDown() {
+        // Clears the interrupt a test may have left
+        Thread.interrupted();
+    }
+
+    @Test
+    public void retriesOverloadedAndUnavailableServers() throws IOException {
+        for (int code : new int[]{429, 502, 503, 504}) {
+            mStub.failNext(1, code);
+            int requests = mStub.getRequestCount();
+            assertEquals(200, mTransport.get(URL, NO_HEADERS).getCode());
+            assertEquals("Retries of " + code, 2, mStub.getRequestCount() - requests);
+        }
+    }
+
+    @Test
+    public void returnsOtherErrorsRightAway() throws IOException {
+        for (int code : new int[]{304, 400, 404, 500}) {
+            mStub.failNext(1, code);
+            int requests = mStub.getRequestCount();
+            assertEquals(code, mTransport.get(URL, NO_HEADERS).getCode());
+            assertEquals("Retries of " + code, 1, mStub.getRequestCount() - requests);
+        }
+    }
+
+    @Test
+    public void returnsTheLastResponseOnceAttemptsRunOut() throws IOException {
+        mStub.failNext(5, 503);
+        assertEquals(503, mTransport.get(URL, NO_HEADERS).getCode());
+        assertEquals(3, mStub.getRequestCount());
+    }
+
+    @Test
+    public void retriesWhenNoResponseArrived() throws IOException {
+        mStub.throwNext(2, new IOException("Connection reset"));
+        assertEquals(200, mTransport.get(URL, NO_HEADERS).getCode());
+        assertEquals(3, mStub.getRequestCount());
+    }
+
+    @Test
+    public void throwsOnceAttemptsRunOut() {
+        mStub.throwNext(3, new IOException("Connection reset"));
+        try {
+            mTransport.get(URL, NO_HEADERS);
+            fail();
+        } catch (IOException e) {
+            assertEquals(3, mStub.getRequestCount());
+        }
+    }
+
+    @Test
+    public void doesNotRetryCancelledRequests() {
+        mStub.throwNext(1, new InterruptedIOException("Request cancelled"));
+        try {
+            mTransport.get(URL, NO_HEADERS);
+            fail();
+        } catch (IOException e) {
+            assertTrue(e instanceof InterruptedIOException);
+            assertEquals(1, mStub.getRequestCount());
+        }
+    }
+
+    @Test
+    public void doesNotRetryOnAnInterruptedThread() {
+        mStub.throwNext(1, new IOException("Socket closed"));
+        Thread.currentThread().interrupt();
+        try {
+            mTransport.get(URL, NO_HEADERS);
+            fail();
+        } catch (IOException e) {
+            assertEquals(1, mStub.getRequestCount());
+        }
+    }
+
+    @Test
+    public void waitsAreJitteredWithinExponentialBounds() {
+        RetryingTransport transport = new RetryingTransport(mStub, 10, 100, 1000);
+        long[] bounds = {100, 200, 400, 800, 1000, 1000};
+        for (int attempt = 1; attempt <= bounds.length; attempt++) {
+            long smallest = Long.MAX_VALUE;
+            long largest = 0;
+            for (int i = 0; i < 1000; i++) {
+                long delay = transport.getDelayMillis(attempt);
+                assertTrue(delay >= 0 && delay < bounds[attempt - 1]);
+                smallest = Math.min(smallest, delay);
+                largest = Math.max(largest, delay);
+            }
+            // Spread over the whole range rather than fixed
+            assertTrue(smallest < bounds[attempt - 1] / 4);
+            assertTrue(largest >= bounds[attempt - 1] * 3 / 4);
+        }
+        assertTrue(transport.getDelayMillis(100) < 1000);
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.android.quakereport;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SyncPolicyTest {
+
+    private static final long MINUTE = 60 * 1000;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long NOW = 1498390327000L;
+
+    private final SyncPolicy mPolicy = new SyncPolicy(HOUR, 5 * MINUTE, 6 * HOUR);
+
+    @Test
+    public void waitsTheIntervalAfterASuccess() {
+        assertEquals(HOUR, mPolicy.getNextDelay(0));
+    }
+
+    @Test
+    public void backsOffExponentiallyUpToTheMaximum() {
+        assertEquals(5 * MINUTE, mPolicy.getNextDelay(1));
+        assertEquals(10 * MINUTE, mPolicy.getNextDelay(2));
+        assertEquals(20 * MINUTE, mPolicy.getNextDelay(3));
+        assertEquals(6 * HOUR, mPolicy.getNextDelay(8));
+        assertEquals(6 * HOUR, mPolicy.getNextDelay(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void isFreshWithinTheInterval() {
+        assertTrue(mPolicy.isFresh(NOW, NOW));
+        assertTrue(mPolicy.isFresh(NOW - HOUR + 1, NOW));
+        assertFalse(mPolicy.isFresh(NOW - HOUR, NOW));
+    }
+
+    @Test
+    public void isNotFreshWithoutSuccessOrWithTheClockSetBack() {
+        assertFalse(mPolicy.isFresh(0, NOW));
+        assertFalse(mPolicy.isFresh(NOW + MINUTE, NOW));
+    }
+
+    @Test
+    public void isNeverFreshWhenDisabled() {
+        SyncPolicy disabled = new SyncPolicy(0, 5 * MINUTE, 6 * HOUR);
+        assertFalse(disabled.isEnabled());
+        assertFalse(disabled.isFresh(NOW, NOW));
+    }
+
+    @Test
+    public void runsOnlyWhenUnmeteredOrCharging() {
+        assertTrue(mPolicy.canRun(true, false));
+        assertTrue(mPolicy.canRun(false, true));
+        assertFalse(mPolicy.canRun(false, false));
+    }
+
+    @Test
+    public void schedulesWhenTheLastSuccessGetsStale() {
+        FakeSyncScheduler scheduler = new FakeSyncScheduler();
+        mPolicy.scheduleNext(scheduler, 0, NOW - 40 * MINUTE, NOW);
+        assertEquals(20 * MINUTE, scheduler.getDelayMillis());
+    }
+
+    @Test
+    public void schedulesTheBackoffAfterFailures() {
+        FakeSyncScheduler scheduler = new FakeSyncScheduler();
+        mPolicy.scheduleNext(scheduler, 2, NOW - 2 * HOUR, NOW);
+        assertEquals(10 * MINUTE, scheduler.getDelayMillis());
+
+        // A fresh success still bounds the backoff
+        mPolicy.scheduleNext(scheduler, 2, NOW - 55 * MINUTE, NOW);
+        assertEquals(5 * MINUTE, scheduler.getDelayMillis());
+        assertEquals(2, scheduler.getScheduleCount());
+    }
+
+    @Test
+    public void cancelsWhenDisabled() {
+        FakeSyncScheduler scheduler = new FakeSyncScheduler();
+        scheduler.schedule(HOUR);
+        new SyncPolicy(0, 5 * MINUTE, 6 * HOUR).scheduleNext(scheduler, 0, NOW, NOW);
+        assertFalse(scheduler.isScheduled());
+    }
+}
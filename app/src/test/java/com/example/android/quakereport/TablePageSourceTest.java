@@ -0,0 +1,66 @@
+package com.example.android.quakereport;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class TablePageSourceTest {
+
+    @Test
+    public void pagesGoOnFromTheStartOfTheNextSource() throws Exception {
+        RecordingSource next = new RecordingSource();
+        TablePageSource source = new TablePageSource(table("local", 25), next);
+
+        assertIds(source.loadPage(0, 10), "local", 0, 10);
+        // Straddles the end of the table
+        EarthquakeTable straddling = source.loadPage(20, 10);
+        assertIds(TablePageSource.slice(straddling, 0, 5), "local", 20, 5);
+        assertIds(TablePageSource.slice(straddling, 5, 5), "next", 0, 5);
+        assertIds(source.loadPage(30, 10), "next", 5, 10);
+
+        assertEquals("[0+5, 5+10]", next.mRequests.toString());
+    }
+
+    @Test
+    public void listEndsWithTheTableWithoutNextSource() throws Exception {
+        TablePageSource source = new TablePageSource(table("local", 5), null);
+
+        assertEquals(5, source.loadPage(0, 10).size());
+        assertEquals(0, source.loadPage(10, 10).size());
+    }
+
+    private static EarthquakeTable table(String prefix, int size) {
+        return table(prefix, 0, size);
+    }
+
+    private static EarthquakeTable table(String prefix, int first, int size) {
+        EarthquakeTable table = new EarthquakeTable(size);
+        for (int i = first; i < first + size; i++) {
+            table.add(prefix + i, 5.0, "10km N of Somewhere", 1000000L - i, 1000000L, null);
+        }
+        return table;
+    }
+
+    private static void assertIds(EarthquakeTable page, String prefix, int first, int size) {
+        assertEquals(size, page.size());
+        for (int row = 0; row < size; row++) {
+            assertEquals(prefix + (first + row), page.getId(row));
+        }
+    }
+
+    /**
+     * Source of the rows past the table, recording the offsets it is asked for
+     */
+    private static final class RecordingSource implements EarthquakePager.PageSource {
+        final List<String> mRequests = new ArrayList<>();
+
+        @Override
+        public EarthquakeTable loadPage(int offset, int limit) {
+            mRequests.add(offset + "+" + limit);
+            return table("next", offset, limit);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.android.quakereport;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class UsgsQueryBuilderTest {
+
+    private static final String CATALOG_URL = UsgsQueryBuilder.QUERY_URL
+            + "?format=csv&eventtype=earthquake&limit=1000&minmag=4.5&orderby=time";
+
+    @Test
+    public void fromUrlKeepsEveryParameter() {
+        assertEquals(CATALOG_URL, UsgsQueryBuilder.fromUrl(CATALOG_URL).build());
+    }
+
+    @Test
+    public void pagingReplacesOffsetAndLimit() {
+        String page = UsgsQueryBuilder.fromUrl(CATALOG_URL + "&offset=1")
+                .offset(20)
+                .limit(20)
+                .build();
+        assertEquals(UsgsQueryBuilder.QUERY_URL + "?format=csv&eventtype=earthquake&limit=20"
+                + "&minmag=4.5&orderby=time&offset=21", page);
+    }
+
+    @Test
+    public void updatedAfterKeepsTheNarrowing() {
+        String sync = UsgsQueryBuilder.fromUrl(CATALOG_URL)
+                .updatedAfter(1498390327000L)
+                .includeDeleted()
+                .build();
+        assertEquals(CATALOG_URL + "&updatedafter=2017-06-25T11%3A32%3A07.000"
+                + "&includedeleted=true", sync);
+        assertEquals(UsgsQueryBuilder.Format.CSV, UsgsQueryBuilder.Format.fromUrl(sync));
+    }
+
+    @Test
+    public void queryKeyIgnoresParameterOrder() {
+        String reordered = UsgsQueryBuilder.QUERY_URL
+                + "?minmag=4.5&orderby=time&limit=1000&eventtype=earthquake&format=csv";
+        assertEquals(UsgsQueryBuilder.fromUrl(CATALOG_URL).buildQueryKey(),
+                UsgsQueryBuilder.fromUrl(reordered).buildQueryKey());
+    }
+
+    @Test
+    public void queryKeyKeepsTheOrderOfALimitedQuery() {
+        String byMagnitude = CATALOG_URL.replace("orderby=time", "orderby=magnitude");
+        assertNotEquals(UsgsQueryBuilder.fromUrl(CATALOG_URL).buildQueryKey(),
+                UsgsQueryBuilder.fromUrl(byMagnitude).buildQueryKey());
+    }
+
+    @Test
+    public void queryKeyDropsTheOrderOfAWholeQuery() {
+        String window = UsgsQueryBuilder.QUERY_URL + "?format=csv&minmag=4.5";
+        assertEquals(UsgsQueryBuilder.fromUrl(window + "&orderby=time").buildQueryKey(),
+                UsgsQueryBuilder.fromUrl(window + "&orderby=magnitude").buildQueryKey());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeOffsetIsRejected() {
+        new UsgsQueryBuilder().offset(-1);
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.android.quakereport.benchmark;
+
+import com.example.android.quakereport.EarthquakeAggregator;
+import com.example.android.quakereport.EarthquakeTable;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aggregates a year of {@code events} earthquakes with USGS place strings: on one thread, in
+ * slices on {@code THREADS} threads, and as an update of 100 overwritten rows of an aggregated
+ * table.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AggregationBenchmark {
+
+    private static final int THREADS = 4;
+    private static final int UPDATED_ROWS = 100;
+    private static final long YEAR_MILLIS = TimeUnit.DAYS.toMillis(365);
+    private static final long START_TIME = 1483228800000L;
+
+    @Param({"100000"})
+    public int events;
+
+    private EarthquakeTable mTable;
+    private EarthquakeTable mUpdates;
+    private int[] mUpdatedRows;
+    private EarthquakeAggregator mIncremental;
+    private ExecutorService mExecutor;
+
+    @Setup
+    public void setUp() throws InterruptedException {
+        Random random = new Random(42);
+        mTable = new EarthquakeTable(events);
+        for (int i = 0; i < events; i++) {
+            long time = START_TIME + (long) (random.nextDouble() * YEAR_MILLIS);
+            mTable.add("us" + i, 2.5 + random.nextDouble() * 6, UsgsPayloads.place(random),
+                    time, time, null);
+        }
+        mUpdates = new EarthquakeTable(UPDATED_ROWS);
+        mUpdatedRows = new int[UPDATED_ROWS];
+        for (int i = 0; i < UPDATED_ROWS; i++) {
+            mUpdatedRows[i] = random.nextInt(events);
+            long time = START_TIME + (long) (random.nextDouble() * YEAR_MILLIS);
+            mUpdates.add(mTable.getId(mUpdatedRows[i]), 2.5 + random.nextDouble() * 6,
+                    UsgsPayloads.place(random), time, time, null);
+        }
+        mExecutor = Executors.newFixedThreadPool(THREADS);
+        mIncremental = newAggregator();
+        mIncremental.aggregate();
+    }
+
+    @TearDown
+    public void tearDown() {
+        mExecutor.shutdownNow();
+    }
+
+    private EarthquakeAggregator newAggregator() {
+        return new EarthquakeAggregator(mTable, 4, START_TIME, TimeZone.getTimeZone("UTC"));
+    }
+
+    @Benchmark
+    public EarthquakeAggregator sequential() {
+        EarthquakeAggregator aggregator = newAggregator();
+        aggregator.aggregate();
+        aggregator.getTopRegions(10);
+        return aggregator;
+    }
+
+    @Benchmark
+    public EarthquakeAggregator parallel() throws InterruptedException {
+        EarthquakeAggregator aggregator = newAggregator();
+        aggregator.aggregate(mExecutor, THREADS);
+        aggregator.getTopRegions(10);
+        return aggregator;
+    }
+
+    @Benchmark
+    public EarthquakeAggregator incremental() {
+        // Overwrites the rows with the updates, then with themselves on the next call
+        for (int i = 0; i < UPDATED_ROWS; i++) {
+            int row = mUpdatedRows[i];
+            EarthquakeTable swap = new EarthquakeTable(1);
+            swap.addRow(mTable, row);
+            mTable.setRow(row, mUpdates, i);
+            mUpdates.setRow(i, swap, 0);
+        }
+        mIncremental.update(mUpdatedRows);
+        mIncremental.getTopRegions(10);
+        return mIncremental;
+    }
+}
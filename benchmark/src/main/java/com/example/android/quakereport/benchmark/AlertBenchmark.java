@@ -0,0 +1,119 @@
+package com.example.android.quakereport.benchmark;
+
+import com.example.android.quakereport.AlertEngine;
+import com.example.android.quakereport.AlertIndex;
+import com.example.android.quakereport.AlertRule;
+import com.example.android.quakereport.EarthquakeTable;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Matches a batch of {@code events} earthquakes of the last week against {@code rules} alert
+ * rules: with the compiled {@link AlertIndex} as the app does, and by trying every rule on
+ * every earthquake. Most rules are a circle of 100 to 1000 km around a random site, the rest
+ * match anywhere; magnitudes follow the Gutenberg-Richter law from 2.5 up, as in the USGS
+ * feeds. {@code compile} is the cost of building the index after the rules changed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AlertBenchmark {
+
+    private static final long NOW = 1483228800000L;
+    private static final long WEEK_MILLIS = TimeUnit.DAYS.toMillis(7);
+
+    /**
+     * Share of the rules matching anywhere
+     */
+    private static final double GLOBAL_RULES = 0.1;
+
+    @Param({"1000"})
+    public int rules;
+
+    @Param({"10000"})
+    public int events;
+
+    private List<AlertRule> mRules;
+    private AlertIndex mIndex;
+    private EarthquakeTable mTable;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        mRules = new ArrayList<>(rules);
+        for (int i = 0; i < rules; i++) {
+            long window = TimeUnit.HOURS.toMillis(1 + random.nextInt(7 * 24));
+            if (random.nextDouble() < GLOBAL_RULES) {
+                mRules.add(new AlertRule("global" + i, 6 + random.nextDouble() * 2,
+                        Double.NaN, Double.NaN, Double.POSITIVE_INFINITY, window));
+            } else {
+                mRules.add(new AlertRule("site" + i, 4 + random.nextDouble() * 3,
+                        randomLatitude(random), randomLongitude(random),
+                        100 + random.nextDouble() * 900, window));
+            }
+        }
+        mIndex = new AlertIndex(mRules);
+
+        mTable = new EarthquakeTable(events);
+        for (int i = 0; i < events; i++) {
+            long time = NOW - (long) (random.nextDouble() * WEEK_MILLIS);
+            double magnitude = 2.5 - Math.log(1 - random.nextDouble()) / Math.log(10);
+            mTable.add("us" + i, magnitude, UsgsPayloads.place(random), time, time, null,
+                    randomLongitude(random), randomLatitude(random), 10);
+        }
+    }
+
+    private static double randomLatitude(Random random) {
+        // Uniform over the sphere, not over the degrees
+        return Math.toDegrees(Math.asin(2 * random.nextDouble() - 1));
+    }
+
+    private static double randomLongitude(Random random) {
+        return random.nextDouble() * 360 - 180;
+    }
+
+    @Benchmark
+    public List<AlertEngine.Alert> indexed() {
+        AlertEngine engine = new AlertEngine(mIndex, Collections.<String, Long>emptyMap());
+        return engine.evaluate(mTable, NOW);
+    }
+
+    @Benchmark
+    public int bruteForce() {
+        int matches = 0;
+        for (int row = 0; row < mTable.size(); row++) {
+            for (AlertRule rule : mRules) {
+                if (rule.matches(mTable.getMagnitude(row), mTable.getLatitude(row),
+                        mTable.getLongitude(row), mTable.getTimeInMilliseconds(row), NOW)) {
+                    matches++;
+                    break;
+                }
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public AlertIndex compile() {
+        return new AlertIndex(mRules);
+    }
+}
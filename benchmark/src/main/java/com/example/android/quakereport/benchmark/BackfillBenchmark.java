@@ -0,0 +1,103 @@
+package com.example.android.quakereport.benchmark;
+
+import com.example.android.quakereport.CatalogBackfill;
+import com.example.android.quakereport.EarthquakeTable;
+import com.example.android.quakereport.TimeRangeSet;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to backfill a year of a synthetic catalog with a dense aftershock month, against a
+ * slice source with fixed latency and a result cap, with one slice at a time and with
+ * parallel slices.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BackfillBenchmark {
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+    private static final long YEAR = 365 * DAY;
+    private static final int RESULT_CAP = 2000;
+    private static final long LATENCY_MILLIS = 5;
+
+    /**
+     * Events per day, ten times as many during the dense month
+     */
+    private static final int EVENTS_PER_DAY = 20;
+    private static final long DENSE_START = 100 * DAY;
+    private static final long DENSE_END = 130 * DAY;
+
+    @Param({"1", "4"})
+    public int concurrency;
+
+    private ExecutorService mExecutor;
+
+    private final CatalogBackfill.SliceSource mSource = new CatalogBackfill.SliceSource() {
+        @Override
+        public EarthquakeTable fetch(long startMillis, long endMillis, int offset, int limit) {
+            try {
+                Thread.sleep(LATENCY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            EarthquakeTable table = new EarthquakeTable();
+            int skipped = 0;
+            for (long time = startMillis; time < endMillis && table.size() < limit;
+                 time += spacing(time)) {
+                if (skipped++ >= offset) {
+                    table.add("ev" + time, 4.5, "Tonga", time, time, null);
+                }
+            }
+            return table;
+        }
+    };
+
+    private static long spacing(long time) {
+        long spacing = DAY / EVENTS_PER_DAY;
+        return time >= DENSE_START && time < DENSE_END ? spacing / 10 : spacing;
+    }
+
+    @Setup
+    public void setUp() {
+        mExecutor = Executors.newFixedThreadPool(concurrency);
+    }
+
+    @TearDown
+    public void tearDown() {
+        mExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public int backfill() throws InterruptedException {
+        CatalogBackfill backfill = new CatalogBackfill(mSource, mExecutor, concurrency,
+                RESULT_CAP, 30 * DAY, TimeUnit.MINUTES.toMillis(10));
+        final int[] events = new int[1];
+        backfill.run(0, YEAR, new TimeRangeSet(), new CatalogBackfill.Listener() {
+            @Override
+            public void onSlice(long startMillis, long endMillis, EarthquakeTable earthquakes,
+                                TimeRangeSet checkpoint) {
+                events[0] += earthquakes.size();
+            }
+        });
+        return events[0];
+    }
+}
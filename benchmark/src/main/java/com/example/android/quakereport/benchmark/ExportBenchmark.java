@@ -0,0 +1,137 @@
+package com.example.android.quakereport.benchmark;
+
+import com.example.android.quakereport.EarthquakeExporter;
+import com.example.android.quakereport.EarthquakeTable;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exports {@code rows} synthetic earthquakes to a file in each format, the way the app exports
+ * its store: the rows are generated a chunk at a time, so the heap only ever holds one chunk
+ * whatever the number of rows. {@code readColumnar} reads the columnar file back.
+ * <p>
+ * Run with a small heap, e.g. {@code -jvmArgs -Xmx32m}, to see that the export does not grow
+ * with the number of rows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ExportBenchmark {
+
+    private static final long START = 1483228800000L;
+
+    @Param({"1000000"})
+    public int rows;
+
+    private File mDirectory;
+    private File mColumnarFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        mDirectory = File.createTempFile("export", "");
+        if (!mDirectory.delete() || !mDirectory.mkdir()) {
+            throw new IOException("Could not create " + mDirectory);
+        }
+        mColumnarFile = new File(mDirectory, "read.qcol");
+        EarthquakeExporter.exportToFile(new SyntheticSource(rows), rows,
+                EarthquakeExporter.Format.COLUMNAR, mColumnarFile, null);
+    }
+
+    @TearDown
+    public void tearDown() {
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                System.out.println(file.getName() + ": " + file.length() + " bytes");
+                file.delete();
+            }
+        }
+        mDirectory.delete();
+    }
+
+    @Benchmark
+    public long csv() throws IOException {
+        return export(EarthquakeExporter.Format.CSV);
+    }
+
+    @Benchmark
+    public long geoJson() throws IOException {
+        return export(EarthquakeExporter.Format.GEOJSON);
+    }
+
+    @Benchmark
+    public long columnar() throws IOException {
+        return export(EarthquakeExporter.Format.COLUMNAR);
+    }
+
+    @Benchmark
+    public long readColumnar() throws IOException {
+        FileChannel channel = new FileInputStream(mColumnarFile).getChannel();
+        try {
+            EarthquakeExporter.Source source = EarthquakeExporter.readColumnar(channel);
+            EarthquakeTable chunk = new EarthquakeTable(EarthquakeExporter.CHUNK_ROWS);
+            long count = 0;
+            while (source.read(chunk, EarthquakeExporter.CHUNK_ROWS)) {
+                count += chunk.size();
+            }
+            return count;
+        } finally {
+            channel.close();
+        }
+    }
+
+    private long export(EarthquakeExporter.Format format) throws IOException {
+        File file = new File(mDirectory, "earthquakes." + format.getExtension());
+        return EarthquakeExporter.exportToFile(new SyntheticSource(rows), rows, format, file,
+                null);
+    }
+
+    /**
+     * Generates earthquakes a chunk at a time, one every minute, spread over the globe
+     */
+    private static final class SyntheticSource implements EarthquakeExporter.Source {
+        private final int mRows;
+        private final Random mRandom = new Random(42);
+        private int mNextRow;
+
+        SyntheticSource(int rows) {
+            mRows = rows;
+        }
+
+        @Override
+        public boolean read(EarthquakeTable chunk, int maxRows) {
+            chunk.clear();
+            int end = Math.min(mRows, mNextRow + maxRows);
+            for (; mNextRow < end; mNextRow++) {
+                long time = START + TimeUnit.MINUTES.toMillis(mNextRow);
+                double magnitude = 2.5 - Math.log(1 - mRandom.nextDouble()) / Math.log(10);
+                chunk.add("us" + mNextRow, Math.round(magnitude * 100) / 100.0,
+                        UsgsPayloads.place(mRandom), time, time + 60000, null,
+                        mRandom.nextDouble() * 360 - 180, mRandom.nextDouble() * 180 - 90,
+                        mRandom.nextDouble() * 700);
+            }
+            return chunk.size() > 0;
+        }
+    }
+}
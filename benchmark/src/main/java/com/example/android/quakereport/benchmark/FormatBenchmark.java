@@ -0,0 +1,74 @@
+package com.example.android.quakereport.benchmark;
+
+import com.example.android.quakereport.EarthquakeCsvParser;
+import com.example.android.quakereport.EarthquakeJsonParser;
+import com.example.android.quakereport.EarthquakeTable;
+import com.example.android.quakereport.UsgsQueryBuilder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Parse time of the same USGS response in each {@code format}, by the parser the app picks for
+ * it. The payload size of each, as sent and gzipped, is printed at setup; with the gc profiler,
+ * gc.alloc.rate.norm is the number of bytes allocated per parse.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormatBenchmark {
+
+    @Param({"1000", "10000"})
+    public int events;
+
+    @Param({"GEOJSON", "CSV", "TEXT"})
+    public UsgsQueryBuilder.Format format;
+
+    private byte[] mPayload;
+
+    @Setup
+    public void setUp() throws IOException {
+        if (format == UsgsQueryBuilder.Format.GEOJSON) {
+            mPayload = UsgsPayloads.featureCollection(events);
+        } else if (format == UsgsQueryBuilder.Format.CSV) {
+            mPayload = UsgsPayloads.csv(events);
+        } else {
+            mPayload = UsgsPayloads.text(events);
+        }
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream(gzipped);
+        gzip.write(mPayload);
+        gzip.close();
+        System.out.println(format + " payload: " + mPayload.length + " bytes, "
+                + gzipped.size() + " bytes gzipped");
+    }
+
+    @Benchmark
+    public EarthquakeTable parse() throws IOException {
+        EarthquakeTable table = new EarthquakeTable();
+        if (format == UsgsQueryBuilder.Format.GEOJSON) {
+            EarthquakeJsonParser.parse(new ByteArrayInputStream(mPayload), table);
+        } else {
+            EarthquakeCsvParser.parse(new ByteArrayInputStream(mPayload), table);
+        }
+        return table;
+    }
+}
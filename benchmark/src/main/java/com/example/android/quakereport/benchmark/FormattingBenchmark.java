@@ -0,0 +1,104 @@
+package com.example.android.quakereport.benchmark;
+
+import com.example.android.quakereport.EarthquakeFormats;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.text.DecimalFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the formatting helpers for one list row. The {@code perBindFormats} benchmark
+ * reproduces what getView used to do on every bind (new formats and Date per call), and
+ * {@code reusedFormats} what the formatter does now, once per loaded earthquake.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormattingBenchmark {
+
+    private static final int ROWS = 1024;
+
+    private final String[] mPlaces = new String[ROWS];
+    private final double[] mMagnitudes = new double[ROWS];
+    private final long[] mTimes = new long[ROWS];
+    private EarthquakeFormats mFormats;
+    private int mRow;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < ROWS; i++) {
+            mPlaces[i] = UsgsPayloads.place(random);
+            mMagnitudes[i] = random.nextDouble() * 9;
+            mTimes[i] = 1483228800000L + random.nextInt(Integer.MAX_VALUE);
+        }
+        mFormats = new EarthquakeFormats(Locale.US);
+    }
+
+    private int nextRow() {
+        mRow = (mRow + 1) & (ROWS - 1);
+        return mRow;
+    }
+
+    @Benchmark
+    public String formatMagnitude() {
+        return mFormats.formatMagnitude(mMagnitudes[nextRow()]);
+    }
+
+    @Benchmark
+    public String formatDate() {
+        return mFormats.formatDate(mTimes[nextRow()]);
+    }
+
+    @Benchmark
+    public String[] splitLocation() {
+        return EarthquakeFormats.splitLocation(mPlaces[nextRow()]);
+    }
+
+    @Benchmark
+    public int getDirectionIndex() {
+        String[] location = EarthquakeFormats.splitLocation(mPlaces[nextRow()]);
+        if (location[0] == null) {
+            return -1;
+        }
+        String[] offset = EarthquakeFormats.splitOffset(location[0]);
+        return offset == null ? -1 : EarthquakeFormats.getDirectionIndex(offset[1]);
+    }
+
+    @Benchmark
+    public void perBindFormats(Blackhole blackhole) {
+        int row = nextRow();
+        Date date = new Date(mTimes[row]);
+        blackhole.consume(new DecimalFormat("0.0").format(mMagnitudes[row]));
+        blackhole.consume(new SimpleDateFormat("MMM dd, yyyy", Locale.US).format(date));
+        blackhole.consume(new SimpleDateFormat("h:mm a", Locale.US).format(date));
+        blackhole.consume(EarthquakeFormats.splitLocation(mPlaces[row]));
+    }
+
+    @Benchmark
+    public void reusedFormats(Blackhole blackhole) {
+        int row = nextRow();
+        blackhole.consume(mFormats.formatMagnitude(mMagnitudes[row]));
+        blackhole.consume(mFormats.formatDate(mTimes[row]));
+        blackhole.consume(mFormats.formatTime(mTimes[row]));
+        blackhole.consume(EarthquakeFormats.splitLocation(mPlaces[row]));
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.android.quakereport.benchmark;
+
+import com.example.android.quakereport.EarthquakeJsonParser;
+import com.example.android.quakereport.EarthquakeTable;
+import com.example.android.quakereport.StringPool;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Measures the heap retained by a parsed catalog, as an {@code ArrayList<Earthquake>} and as an
+ * {@link EarthquakeTable}. Several copies are kept alive at once and the used heap is compared
+ * after forced garbage collections, which is precise enough to compare the two layouts. Both
+ * share the offsets and primary locations of their places through
+ * {@link EarthquakeTable#PLACE_POOL}, whose hit rate and estimated savings are printed too.
+ * <p>
+ * Run it with: ./gradlew :benchmark:footprint [-Pevents=50000]
+ */
+public final class HeapFootprint {
+
+    private static final int COPIES = 20;
+
+    private HeapFootprint() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int events = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+        byte[] payload = UsgsPayloads.featureCollection(events);
+
+        Object[] lists = new Object[COPIES];
+        long before = usedHeap();
+        for (int i = 0; i < COPIES; i++) {
+            lists[i] = EarthquakeJsonParser.parse(new ByteArrayInputStream(payload));
+        }
+        long listBytes = (usedHeap() - before) / COPIES;
+        lists = null;
+
+        Object[] tables = new Object[COPIES];
+        before = usedHeap();
+        for (int i = 0; i < COPIES; i++) {
+            EarthquakeTable table = new EarthquakeTable();
+            EarthquakeJsonParser.parse(new ByteArrayInputStream(payload), table);
+            table.trimToSize();
+            tables[i] = table;
+        }
+        long tableBytes = (usedHeap() - before) / COPIES;
+
+        // Reading the tables after the measurement keeps them reachable until it is done
+        System.out.println(String.format(Locale.US, "Retained heap for %d events, average of %d copies",
+                events, tables.length));
+        print("ArrayList<Earthquake>", listBytes, events);
+        print("EarthquakeTable", tableBytes, events);
+        System.out.println(String.format(Locale.US, "EarthquakeTable saves %.1f%%",
+                100.0 * (listBytes - tableBytes) / listBytes));
+        StringPool pool = EarthquakeTable.PLACE_POOL;
+        System.out.println(String.format(Locale.US,
+                "Place pool: %,d strings, %.1f%% hits of %,d lookups, ~%,d bytes saved",
+                pool.size(), pool.getHitRate() * 100, pool.getLookups(), pool.getBytesSaved()));
+    }
+
+    static void print(String name, long bytes, int events) {
+        System.out.println(String.format(Locale.US, "  %-24s %,12d bytes  %8.1f bytes/event",
+                name, bytes, (double) bytes / events));
+    }
+
+    static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
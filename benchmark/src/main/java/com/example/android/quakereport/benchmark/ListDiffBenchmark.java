@@ -0,0 +1,70 @@
+package com.example.android.quakereport.benchmark;
+
+import com.example.android.quakereport.ListDiff;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Diff of a 1000 row list when a refresh brings two new events at the top, one updated event
+ * and one deleted event, and the number of list updates it sends compared with the
+ * 1000 row redraw of {@code clear()} and {@code addAll()}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ListDiffBenchmark {
+
+    private static final int LIST_SIZE = 1000;
+
+    private String[] mOldIds;
+    private long[] mOldVersions;
+    private String[] mNewIds;
+    private long[] mNewVersions;
+
+    @Setup
+    public void setUp() {
+        mOldIds = new String[LIST_SIZE];
+        mOldVersions = new long[LIST_SIZE];
+        for (int row = 0; row < LIST_SIZE; row++) {
+            mOldIds[row] = "us" + (100000 + row);
+            mOldVersions[row] = row;
+        }
+
+        // Newest first: two new events, the old list without its row 500, row 10 updated
+        mNewIds = new String[LIST_SIZE + 1];
+        mNewVersions = new long[LIST_SIZE + 1];
+        mNewIds[0] = "us200001";
+        mNewIds[1] = "us200000";
+        int row = 2;
+        for (int oldRow = 0; oldRow < LIST_SIZE; oldRow++) {
+            if (oldRow == 500) {
+                continue;
+            }
+            mNewIds[row] = mOldIds[oldRow];
+            mNewVersions[row] = mOldVersions[oldRow] + (oldRow == 10 ? 1 : 0);
+            row++;
+        }
+        System.out.println("\nList updates: " + ListDiff.compute(mOldIds, mOldVersions,
+                mNewIds, mNewVersions).getUpdateCount() + " (clear and add: "
+                + (mOldIds.length + mNewIds.length) + " rows)");
+    }
+
+    @Benchmark
+    public ListDiff.Result diff() {
+        return ListDiff.compute(mOldIds, mOldVersions, mNewIds, mNewVersions);
+    }
+}
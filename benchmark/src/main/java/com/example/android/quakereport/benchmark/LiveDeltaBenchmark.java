@@ -0,0 +1,79 @@
+package com.example.android.quakereport.benchmark;
+
+import com.example.android.quakereport.EarthquakeDelta;
+import com.example.android.quakereport.EarthquakeJsonParser;
+import com.example.android.quakereport.EarthquakeQueryEngine;
+import com.example.android.quakereport.EarthquakeTable;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Work of one live mode tick on a catalog of 1000 events when the past hour feed brings one
+ * updated event: computing the delta and applying it to the query engine, against rebuilding
+ * the engine from the whole catalog as a reload would (before its network and parse time).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LiveDeltaBenchmark {
+
+    private static final int CATALOG_SIZE = 1000;
+    private static final int FEED_SIZE = 20;
+
+    private EarthquakeTable mCatalog;
+    private EarthquakeTable mFeed;
+    private EarthquakeQueryEngine mEngine;
+    private EarthquakeDelta.Tracker mTracker;
+
+    @Setup
+    public void setUp() throws IOException {
+        EarthquakeTable all = new EarthquakeTable();
+        EarthquakeJsonParser.parse(new ByteArrayInputStream(
+                UsgsPayloads.featureCollection(CATALOG_SIZE + 1)), all);
+        mCatalog = new EarthquakeTable(CATALOG_SIZE);
+        for (int row = 0; row < CATALOG_SIZE; row++) {
+            mCatalog.addRow(all, row);
+        }
+        // The feed holds the latest events of the catalog
+        mFeed = new EarthquakeTable(FEED_SIZE);
+        for (int row = CATALOG_SIZE - FEED_SIZE; row < CATALOG_SIZE; row++) {
+            mFeed.addRow(all, row);
+        }
+        mEngine = new EarthquakeQueryEngine(mCatalog, 0);
+        mTracker = new EarthquakeDelta.Tracker();
+        mTracker.reset(mCatalog);
+    }
+
+    @Benchmark
+    public int[] deltaTick() {
+        // Every tick USGS updates the last event of the feed
+        int last = mFeed.size() - 1;
+        EarthquakeTable update = new EarthquakeTable(1);
+        update.add(mFeed.getId(last), mFeed.getMagnitude(last), mFeed.getLocation(last),
+                mFeed.getTimeInMilliseconds(last), mFeed.getUpdated(last) + 1, null);
+        mFeed.setRow(last, update, 0);
+        EarthquakeDelta delta = mTracker.diff(mFeed, 0);
+        return mEngine.apply(delta);
+    }
+
+    @Benchmark
+    public EarthquakeQueryEngine reloadTick() {
+        return new EarthquakeQueryEngine(mCatalog, 0);
+    }
+}
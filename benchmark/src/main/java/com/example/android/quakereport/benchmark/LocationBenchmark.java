@@ -0,0 +1,101 @@
+package com.example.android.quakereport.benchmark;
+
+import com.example.android.quakereport.EarthquakeFormats;
+import com.example.android.quakereport.LocationLocalizer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-bind cost of localizing a place string. {@code regexSplit} reproduces the former path
+ * (String.split for the location and offset, a resource lookup per direction and a format per
+ * row), {@code uncached} the indexOf split with pre-resolved directions and {@code cached} the
+ * {@link LocationLocalizer} as the app uses it, cycling over {@code places} distinct rows.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LocationBenchmark {
+
+    private static final String[] SPANISH_DIRECTIONS = {
+            "NORTE", "NE", "NO", "NNE", "NNO",
+            "SUR", "SE", "SO", "SSE", "SSO",
+            "ESTE", "ENE", "ESE",
+            "OESTE", "ONO", "OSO"
+    };
+    private static final String NEAR_THE = "Cerca de";
+    private static final String OFFSET_FORMAT = "%1$sKM al %2$s de";
+    private static final Locale SPANISH = new Locale("es");
+
+    /**
+     * Number of distinct place strings bound in turn; the cache holds 512
+     */
+    @Param({"256", "4096"})
+    public int places;
+
+    private String[] mPlaces;
+    private LocationLocalizer mCached;
+    private LocationLocalizer mUncached;
+    private int mRow;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        mPlaces = new String[places];
+        for (int i = 0; i < places; i++) {
+            mPlaces[i] = UsgsPayloads.place(random);
+        }
+        mCached = new LocationLocalizer(SPANISH, SPANISH_DIRECTIONS, NEAR_THE, OFFSET_FORMAT, 512);
+        mUncached = new LocationLocalizer(SPANISH, SPANISH_DIRECTIONS, NEAR_THE, OFFSET_FORMAT, 0);
+    }
+
+    private String nextPlace() {
+        mRow = mRow + 1 == places ? 0 : mRow + 1;
+        return mPlaces[mRow];
+    }
+
+    @Benchmark
+    public String[] regexSplit() {
+        String location = nextPlace();
+        String[] result = new String[2];
+        if (location.contains(EarthquakeFormats.LOCATION_SEPARATOR)) {
+            result = location.split(EarthquakeFormats.LOCATION_SEPARATOR);
+            String[] offsetParts = result[0].split(EarthquakeFormats.OFFSET_SEPARATOR);
+            int index = EarthquakeFormats.getDirectionIndex(offsetParts[1]);
+            // Stands in for the Resources.getString lookup of the direction
+            String direction = index < 0 ? offsetParts[1]
+                    : new String(SPANISH_DIRECTIONS[index].toCharArray());
+            result[0] = String.format(SPANISH, OFFSET_FORMAT, offsetParts[0], direction);
+        } else {
+            result[0] = NEAR_THE;
+            result[1] = location;
+        }
+        return result;
+    }
+
+    @Benchmark
+    public String[] uncached() {
+        return mUncached.localize(nextPlace());
+    }
+
+    @Benchmark
+    public String[] cached() {
+        return mCached.localize(nextPlace());
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.android.quakereport.benchmark;
+
+import com.example.android.quakereport.Histogram;
+import com.example.android.quakereport.Metrics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a timed section around a small piece of work, with metrics off and on, against the
+ * work alone; and of recording into one histogram from four threads at once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark {
+
+    private static final int WORK_TOKENS = 50;
+
+    private final Histogram mHistogram = new Histogram("bench", "us");
+
+    @Setup
+    public void setUp() {
+        Metrics.reset();
+    }
+
+    @Benchmark
+    public void work() {
+        Blackhole.consumeCPU(WORK_TOKENS);
+    }
+
+    @Benchmark
+    public void timedWorkDisabled() {
+        Metrics.setEnabled(false);
+        long start = Metrics.start();
+        Blackhole.consumeCPU(WORK_TOKENS);
+        Metrics.stop(Metrics.BIND, start);
+    }
+
+    @Benchmark
+    public void timedWorkEnabled() {
+        Metrics.setEnabled(true);
+        long start = Metrics.start();
+        Blackhole.consumeCPU(WORK_TOKENS);
+        Metrics.stop(Metrics.BIND, start);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordContended() {
+        mHistogram.record(Thread.currentThread().getId() * 37 % 5000);
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.android.quakereport.benchmark;
+
+import com.example.android.quakereport.EarthquakeJsonParser;
+import com.example.android.quakereport.EarthquakeTable;
+import com.example.android.quakereport.LoopbackUsgsServer;
+import com.example.android.quakereport.MultiFeedFetcher;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to fetch several USGS queries from a {@link LoopbackUsgsServer} with injected latency:
+ * one after the other as separate loaders would, and through a {@link MultiFeedFetcher}.
+ * The coalesced case asks for every query twice, as two screens watching the same region would.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MultiFeedBenchmark {
+
+    private static final int THREADS = 4;
+    private static final int MAX_REQUESTS_PER_HOST = 4;
+
+    @Param({"8"})
+    public int feeds;
+
+    @Param({"50"})
+    public long latencyMillis;
+
+    private LoopbackUsgsServer mServer;
+    private ExecutorService mExecutor;
+    private MultiFeedFetcher mFetcher;
+    private List<String> mUrls;
+    private List<String> mDuplicatedUrls;
+
+    private final MultiFeedFetcher.FeedSource mSource = new MultiFeedFetcher.FeedSource() {
+        @Override
+        public EarthquakeTable fetch(String url) throws IOException {
+            HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+            InputStream in = connection.getInputStream();
+            try {
+                EarthquakeTable table = new EarthquakeTable();
+                EarthquakeJsonParser.parse(in, table);
+                return table;
+            } finally {
+                in.close();
+            }
+        }
+
+        @Override
+        public void cancel(Thread thread) {
+        }
+    };
+
+    @Setup
+    public void setUp() throws IOException {
+        mServer = new LoopbackUsgsServer(UsgsPayloads.featureCollection(200), latencyMillis);
+        mExecutor = Executors.newFixedThreadPool(THREADS);
+        mFetcher = new MultiFeedFetcher(mSource, mExecutor, MAX_REQUESTS_PER_HOST);
+        mUrls = new ArrayList<>();
+        for (int i = 0; i < feeds; i++) {
+            mUrls.add(mServer.url("format=geojson&region=" + i));
+        }
+        mDuplicatedUrls = new ArrayList<>(mUrls);
+        mDuplicatedUrls.addAll(mUrls);
+    }
+
+    @TearDown
+    public void tearDown() {
+        mExecutor.shutdownNow();
+        mServer.stop();
+    }
+
+    @Benchmark
+    public EarthquakeTable sequential() throws IOException {
+        List<EarthquakeTable> tables = new ArrayList<>();
+        for (String url : mUrls) {
+            tables.add(mSource.fetch(url));
+        }
+        return tables.get(tables.size() - 1);
+    }
+
+    @Benchmark
+    public EarthquakeTable concurrent() throws InterruptedException {
+        return mFetcher.fetchAll(mUrls).getEarthquakes();
+    }
+
+    @Benchmark
+    public EarthquakeTable concurrentDuplicated() throws InterruptedException {
+        return mFetcher.fetchAll(mDuplicatedUrls).getEarthquakes();
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.android.quakereport.benchmark;
+
+import com.example.android.quakereport.Earthquake;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The String + org.json DOM parsing QueryUtils did before the streaming parser, kept as the
+ * baseline the streaming parser is compared against.
+ */
+final class OrgJsonParser {
+
+    private OrgJsonParser() {
+    }
+
+    static List<Earthquake> parse(InputStream inputStream) throws IOException {
+        return extractFeatureFromJson(readFromStream(inputStream));
+    }
+
+    private static String readFromStream(InputStream inputStream) throws IOException {
+        StringBuilder output = new StringBuilder();
+        InputStreamReader inputStreamReader = new InputStreamReader(inputStream, Charset.forName("UTF-8"));
+        BufferedReader reader = new BufferedReader(inputStreamReader);
+        String line = reader.readLine();
+        while (line != null) {
+            output.append(line);
+            line = reader.readLine();
+        }
+        return output.toString();
+    }
+
+    private static List<Earthquake> extractFeatureFromJson(String jsonResponse) {
+        List<Earthquake> earthquakes = new ArrayList<>();
+        JSONObject baseJsonResponse = new JSONObject(jsonResponse);
+        JSONArray earthquakeArray = baseJsonResponse.getJSONArray("features");
+        for (int i = 0; i < earthquakeArray.length(); i++) {
+            JSONObject currentEarthquake = earthquakeArray.getJSONObject(i);
+            JSONObject properties = currentEarthquake.getJSONObject("properties");
+            earthquakes.add(new Earthquake(
+                    currentEarthquake.getString("id"),
+                    properties.getDouble("mag"),
+                    properties.getString("place"),
+                    properties.getLong("time"),
+                    properties.getLong("updated"),
+                    properties.getString("url")));
+        }
+        return earthquakes;
+    }
+}
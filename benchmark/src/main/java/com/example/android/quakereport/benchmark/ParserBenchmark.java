@@ -0,0 +1,62 @@
+package com.example.android.quakereport.benchmark;
+
+import com.example.android.quakereport.Earthquake;
+import com.example.android.quakereport.EarthquakeJsonParser;
+import com.example.android.quakereport.EarthquakeTable;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parse time and allocation of a USGS response, streaming parser against the org.json DOM.
+ * With the gc profiler, gc.alloc.rate.norm is the number of bytes allocated per parse.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Param({"100", "1000", "10000", "20000"})
+    public int features;
+
+    private byte[] mPayload;
+
+    @Setup
+    public void setUp() {
+        mPayload = UsgsPayloads.featureCollection(features);
+    }
+
+    @Benchmark
+    public List<Earthquake> streaming() throws IOException {
+        return EarthquakeJsonParser.parse(new ByteArrayInputStream(mPayload));
+    }
+
+    @Benchmark
+    public EarthquakeTable streamingTable() throws IOException {
+        EarthquakeTable table = new EarthquakeTable();
+        EarthquakeJsonParser.parse(new ByteArrayInputStream(mPayload), table);
+        return table;
+    }
+
+    @Benchmark
+    public List<Earthquake> orgJson() throws IOException {
+        return OrgJsonParser.parse(new ByteArrayInputStream(mPayload));
+    }
+}
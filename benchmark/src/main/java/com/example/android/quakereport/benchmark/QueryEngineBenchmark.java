@@ -0,0 +1,85 @@
+package com.example.android.quakereport.benchmark;
+
+import com.example.android.quakereport.EarthquakeJsonParser;
+import com.example.android.quakereport.EarthquakeQuery;
+import com.example.android.quakereport.EarthquakeQueryEngine;
+import com.example.android.quakereport.EarthquakeTable;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of answering a settings change from the earthquakes on hand, against parsing the
+ * response again, which a refetch costs on top of the network round trip.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryEngineBenchmark {
+
+    @Param({"1000", "10000"})
+    public int features;
+
+    private byte[] mPayload;
+    private EarthquakeTable mCatalog;
+    private EarthquakeQueryEngine mEngine;
+
+    private final EarthquakeQuery mByMagnitude =
+            new EarthquakeQuery(4.5, EarthquakeQuery.ORDER_BY_MAGNITUDE, null);
+    private final EarthquakeQuery mByTime =
+            new EarthquakeQuery(4.5, EarthquakeQuery.ORDER_BY_TIME, null);
+    private final EarthquakeQuery mByLocation =
+            new EarthquakeQuery(0, EarthquakeQuery.ORDER_BY_TIME, "alaska");
+
+    @Setup
+    public void setUp() throws IOException {
+        mPayload = UsgsPayloads.featureCollection(features);
+        mCatalog = new EarthquakeTable();
+        EarthquakeJsonParser.parse(new ByteArrayInputStream(mPayload), mCatalog);
+        mCatalog.trimToSize();
+        mEngine = new EarthquakeQueryEngine(mCatalog, 0);
+    }
+
+    @Benchmark
+    public EarthquakeQueryEngine buildIndexes() {
+        return new EarthquakeQueryEngine(mCatalog, 0);
+    }
+
+    @Benchmark
+    public EarthquakeTable selectByMagnitude() {
+        return mEngine.select(mByMagnitude);
+    }
+
+    @Benchmark
+    public EarthquakeTable selectByTime() {
+        return mEngine.select(mByTime);
+    }
+
+    @Benchmark
+    public EarthquakeTable selectByLocation() {
+        return mEngine.select(mByLocation);
+    }
+
+    @Benchmark
+    public EarthquakeTable reparse() throws IOException {
+        EarthquakeTable table = new EarthquakeTable();
+        EarthquakeJsonParser.parse(new ByteArrayInputStream(mPayload), table);
+        return table;
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.android.quakereport.benchmark;
+
+import com.example.android.quakereport.Earthquake;
+import com.example.android.quakereport.EarthquakeJsonParser;
+import com.example.android.quakereport.EarthquakeSnapshot;
+import com.example.android.quakereport.EarthquakeTable;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup work before the first row can be shown, from a file already on disk: the saved
+ * USGS response read through the org.json DOM as the app first did, the same response
+ * streamed into a table, and the binary snapshot. The network time the snapshot also saves on
+ * a cold start is not included. Saving the snapshot after a load is measured too.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnapshotBenchmark {
+
+    private static final String KEY = "https://earthquake.usgs.gov/fdsnws/event/1/query";
+
+    @Param({"1000", "20000"})
+    public int features;
+
+    private File mResponseFile;
+    private File mSnapshotFile;
+    private EarthquakeTable mEarthquakes;
+
+    @Setup
+    public void setUp() throws IOException {
+        byte[] payload = UsgsPayloads.featureCollection(features);
+        mResponseFile = File.createTempFile("response", ".json");
+        OutputStream outputStream = new FileOutputStream(mResponseFile);
+        try {
+            outputStream.write(payload);
+        } finally {
+            outputStream.close();
+        }
+
+        mEarthquakes = new EarthquakeTable();
+        EarthquakeJsonParser.parse(new ByteArrayInputStream(payload), mEarthquakes);
+        mSnapshotFile = File.createTempFile("earthquakes", ".snapshot");
+        EarthquakeSnapshot.save(mSnapshotFile, KEY, mEarthquakes);
+        System.out.println("\nResponse: " + mResponseFile.length() + " bytes, snapshot: "
+                + mSnapshotFile.length() + " bytes");
+    }
+
+    @TearDown
+    public void tearDown() {
+        mResponseFile.delete();
+        mSnapshotFile.delete();
+    }
+
+    @Benchmark
+    public List<Earthquake> orgJsonResponse() throws IOException {
+        InputStream inputStream = new BufferedInputStream(new FileInputStream(mResponseFile));
+        try {
+            return OrgJsonParser.parse(inputStream);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    @Benchmark
+    public EarthquakeTable streamedResponse() throws IOException {
+        InputStream inputStream = new BufferedInputStream(new FileInputStream(mResponseFile));
+        try {
+            EarthquakeTable earthquakes = new EarthquakeTable();
+            EarthquakeJsonParser.parse(inputStream, earthquakes);
+            return earthquakes;
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    @Benchmark
+    public EarthquakeTable snapshot() throws IOException {
+        return EarthquakeSnapshot.load(mSnapshotFile, KEY);
+    }
+
+    @Benchmark
+    public File saveSnapshot() throws IOException {
+        EarthquakeSnapshot.save(mSnapshotFile, KEY, mEarthquakes);
+        return mSnapshotFile;
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.android.quakereport.benchmark;
+
+import com.example.android.quakereport.EarthquakeSpatialIndex;
+import com.example.android.quakereport.EarthquakeTable;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Map viewport queries over a synthetic global catalog: two thirds of the epicenters are
+ * bunched around a few hot spots, as along plate boundaries, the rest spread over the globe.
+ * Compares the spatial index with a scan of every row, for regional boxes of 20 by 10 degrees
+ * and for clusters of the whole world at zoom 2 and of a region at zoom 6.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpatialIndexBenchmark {
+
+    /**
+     * Longitude and latitude of the hot spots
+     */
+    private static final double[][] HOT_SPOTS = {
+            {142, 38}, {-72, -33}, {-155, 19}, {-118, 35}, {-150, 61},
+            {120, 23}, {-175, -20}, {100, 0}, {28, 38}, {-178, 52}
+    };
+
+    private static final int BOX_COUNT = 64;
+
+    @Param({"50000", "200000"})
+    public int points;
+
+    private EarthquakeTable mTable;
+    private EarthquakeSpatialIndex mIndex;
+
+    /**
+     * Viewports as {south, west, north, east}, cycled through by the benchmarks
+     */
+    private double[][] mBoxes;
+    private int mNextBox;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        mTable = new EarthquakeTable(points);
+        for (int i = 0; i < points; i++) {
+            double longitude;
+            double latitude;
+            if (random.nextInt(3) > 0) {
+                double[] spot = HOT_SPOTS[random.nextInt(HOT_SPOTS.length)];
+                longitude = wrap(spot[0] + random.nextGaussian() * 4);
+                latitude = Math.max(-90, Math.min(90, spot[1] + random.nextGaussian() * 3));
+            } else {
+                longitude = random.nextDouble() * 360 - 180;
+                latitude = Math.toDegrees(Math.asin(random.nextDouble() * 2 - 1));
+            }
+            mTable.add("us" + i, random.nextDouble() * 8, "Somewhere", i, i, null,
+                    longitude, latitude, random.nextDouble() * 700);
+        }
+        mIndex = new EarthquakeSpatialIndex(mTable);
+
+        // Half the viewports over a hot spot, half anywhere
+        mBoxes = new double[BOX_COUNT][];
+        for (int i = 0; i < BOX_COUNT; i++) {
+            double longitude;
+            double latitude;
+            if (i % 2 == 0) {
+                double[] spot = HOT_SPOTS[random.nextInt(HOT_SPOTS.length)];
+                longitude = spot[0];
+                latitude = spot[1];
+            } else {
+                longitude = random.nextDouble() * 360 - 180;
+                latitude = random.nextDouble() * 140 - 70;
+            }
+            mBoxes[i] = new double[]{latitude - 5, wrap(longitude - 10),
+                    latitude + 5, wrap(longitude + 10)};
+        }
+    }
+
+    @Benchmark
+    public int[] viewportIndexed() {
+        double[] box = nextBox();
+        return mIndex.selectRows(box[0], box[1], box[2], box[3]);
+    }
+
+    @Benchmark
+    public int viewportScan() {
+        double[] box = nextBox();
+        int count = 0;
+        for (int row = 0; row < mTable.size(); row++) {
+            double longitude = mTable.getLongitude(row);
+            double latitude = mTable.getLatitude(row);
+            boolean inLongitude = box[1] <= box[3]
+                    ? longitude >= box[1] && longitude <= box[3]
+                    : longitude >= box[1] || longitude <= box[3];
+            if (inLongitude && latitude >= box[0] && latitude <= box[2]) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public List<EarthquakeSpatialIndex.Cluster> worldClusters() {
+        return mIndex.cluster(-85, -180, 85, 180, 2);
+    }
+
+    @Benchmark
+    public List<EarthquakeSpatialIndex.Cluster> regionalClusters() {
+        double[] box = nextBox();
+        return mIndex.cluster(box[0], box[1], box[2], box[3], 6);
+    }
+
+    @Benchmark
+    public EarthquakeSpatialIndex build() {
+        return new EarthquakeSpatialIndex(mTable);
+    }
+
+    private double[] nextBox() {
+        mNextBox = (mNextBox + 1) % BOX_COUNT;
+        return mBoxes[mNextBox];
+    }
+
+    private static double wrap(double longitude) {
+        if (longitude >= 180) {
+            return longitude - 360;
+        }
+        if (longitude < -180) {
+            return longitude + 360;
+        }
+        return longitude;
+    }
+}
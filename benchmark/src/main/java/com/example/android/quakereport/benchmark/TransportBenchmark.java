@@ -0,0 +1,113 @@
+package com.example.android.quakereport.benchmark;
+
+import com.example.android.quakereport.EarthquakeJsonParser;
+import com.example.android.quakereport.EarthquakeTable;
+import com.example.android.quakereport.HttpTransport;
+import com.example.android.quakereport.LoopbackTransport;
+import com.example.android.quakereport.LoopbackUsgsServer;
+import com.example.android.quakereport.RetryingTransport;
+import com.example.android.quakereport.UrlConnectionTransport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of a refresh of {@code requests} requests against {@link LoopbackUsgsServer}, making
+ * a new connection for every request as the app used to, or reusing pooled keep-alive
+ * connections. The connections the server saw per refresh are printed after each run; on the
+ * loopback interface a new connection costs no round trip and no TLS handshake, so the gap is
+ * a lower bound. {@code stubRetry} is the cost of a retried request on {@link LoopbackTransport},
+ * without the wait.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransportBenchmark {
+
+    private static final Map<String, String> NO_HEADERS = Collections.emptyMap();
+
+    @Param({"8"})
+    public int requests;
+
+    private LoopbackUsgsServer mServer;
+    private String mUrl;
+    private HttpTransport mFresh;
+    private HttpTransport mPooled;
+    private LoopbackTransport mStub;
+    private HttpTransport mRetryingStub;
+    private int mRefreshes;
+
+    @Setup
+    public void setUp() throws IOException {
+        byte[] payload = UsgsPayloads.featureCollection(50);
+        mServer = new LoopbackUsgsServer(payload, 0);
+        mUrl = mServer.url("format=geojson");
+        mFresh = new UrlConnectionTransport(15000, 10000, false);
+        mPooled = new UrlConnectionTransport(15000, 10000, true);
+        mStub = new LoopbackTransport(payload);
+        mRetryingStub = new RetryingTransport(mStub, 3, 0, 0);
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.out.println(String.format(Locale.US, "%nConnections per refresh: %.2f",
+                (double) mServer.getConnectionCount() / Math.max(1, mRefreshes)));
+        mServer.stop();
+    }
+
+    private EarthquakeTable refresh(HttpTransport transport) throws IOException {
+        mRefreshes++;
+        EarthquakeTable earthquakes = new EarthquakeTable();
+        for (int i = 0; i < requests; i++) {
+            HttpTransport.Response response = transport.get(mUrl, NO_HEADERS);
+            try {
+                EarthquakeJsonParser.parse(response.getBody(), earthquakes);
+            } finally {
+                response.close();
+            }
+        }
+        return earthquakes;
+    }
+
+    @Benchmark
+    public EarthquakeTable freshConnections() throws IOException {
+        return refresh(mFresh);
+    }
+
+    @Benchmark
+    public EarthquakeTable pooledConnections() throws IOException {
+        return refresh(mPooled);
+    }
+
+    @Benchmark
+    public EarthquakeTable stubRetry() throws IOException {
+        mStub.failNext(1, 503);
+        HttpTransport.Response response = mRetryingStub.get(mUrl, NO_HEADERS);
+        try {
+            EarthquakeTable earthquakes = new EarthquakeTable();
+            EarthquakeJsonParser.parse(response.getBody(), earthquakes);
+            return earthquakes;
+        } finally {
+            response.close();
+        }
+    }
+}
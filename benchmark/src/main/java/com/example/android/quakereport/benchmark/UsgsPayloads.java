@@ -0,0 +1,176 @@
+package com.example.android.quakereport.benchmark;
+
+import com.example.android.quakereport.EarthquakeFormats;
+
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * Generates USGS responses for the benchmarks. The events have every field of a real
+ * {@code fdsnws/event/1/query} response in the {@code geojson}, {@code csv} or {@code text}
+ * format, so the parsers skip as much as they do in the app. A fixed seed keeps the payloads
+ * identical between runs, and the same in every format.
+ */
+public final class UsgsPayloads {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String[] REGIONS = {
+            "Anchorage, Alaska", "Ridgecrest, CA", "The Geysers, CA", "Hawaiian Volcano Observatory, Hawaii",
+            "Tonga", "Fiji region", "Kermadec Islands, New Zealand", "Honshu, Japan", "Hualien City, Taiwan",
+            "Valparaiso, Chile", "Lima, Peru", "Pahrump, Nevada", "Mid-Atlantic Ridge", "Guerrero, Mexico",
+            "Sumatra, Indonesia", "Papua New Guinea", "Kodiak, Alaska", "Puerto Rico", "Iceland",
+            "Crete, Greece"
+    };
+
+    /**
+     * Start of the generated time range, 2017-01-01T00:00:00Z
+     */
+    private static final long START_TIME = 1483228800000L;
+
+    private UsgsPayloads() {
+    }
+
+    /**
+     * Returns a response with the given number of features, encoded in UTF-8
+     */
+    public static byte[] featureCollection(int featureCount) {
+        Random random = new Random(featureCount);
+        StringBuilder json = new StringBuilder(featureCount * 1100);
+        json.append("{\"type\":\"FeatureCollection\",\"metadata\":{\"generated\":1498390327000,")
+                .append("\"url\":\"https://earthquake.usgs.gov/fdsnws/event/1/query?format=geojson\",")
+                .append("\"title\":\"USGS Earthquakes\",\"status\":200,\"api\":\"1.5.8\",\"count\":")
+                .append(featureCount).append("},\"features\":[");
+        for (int i = 0; i < featureCount; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            appendFeature(json, random, i);
+        }
+        json.append("],\"bbox\":[-179.9,-62.1,0.2,179.9,82.3,650.1]}");
+        return json.toString().getBytes(UTF_8);
+    }
+
+    /**
+     * Returns a {@code format=csv} response with the same events as
+     * {@link #featureCollection}, encoded in UTF-8
+     */
+    public static byte[] csv(int eventCount) {
+        Random random = new Random(eventCount);
+        SimpleDateFormat format = isoFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+        StringBuilder csv = new StringBuilder(eventCount * 200);
+        csv.append("time,latitude,longitude,depth,mag,magType,nst,gap,dmin,rms,net,id,updated,")
+                .append("place,type,horizontalError,depthError,magError,magNst,status,")
+                .append("locationSource,magSource\n");
+        for (int i = 0; i < eventCount; i++) {
+            Event event = new Event(random, i);
+            csv.append(format.format(new Date(event.time))).append(',')
+                    .append(String.format(Locale.US, "%.4f,%.4f,%.2f", event.latitude,
+                            event.longitude, event.depth))
+                    .append(',').append(event.magnitude).append(",mww,,29,1.234,0.87,us,")
+                    .append(event.id).append(',')
+                    .append(format.format(new Date(event.time + 3600000)))
+                    .append(",\"").append(event.place)
+                    .append("\",earthquake,5.3,1.8,0.05,123,reviewed,us,us\n");
+        }
+        return csv.toString().getBytes(UTF_8);
+    }
+
+    /**
+     * Returns a {@code format=text} response with the same events as
+     * {@link #featureCollection}, encoded in UTF-8
+     */
+    public static byte[] text(int eventCount) {
+        Random random = new Random(eventCount);
+        SimpleDateFormat format = isoFormat("yyyy-MM-dd'T'HH:mm:ss.SSS");
+        StringBuilder text = new StringBuilder(eventCount * 150);
+        text.append("#EventID|Time|Latitude|Longitude|Depth/km|Author|Catalog|Contributor|")
+                .append("ContributorID|MagType|Magnitude|MagAuthor|EventLocationName\n");
+        for (int i = 0; i < eventCount; i++) {
+            Event event = new Event(random, i);
+            text.append(event.id).append('|')
+                    .append(format.format(new Date(event.time))).append('|')
+                    .append(String.format(Locale.US, "%.4f|%.4f|%.2f", event.latitude,
+                            event.longitude, event.depth))
+                    .append("|us|us|us|").append(event.id).append("|mww|")
+                    .append(event.magnitude).append("|us|").append(event.place).append('\n');
+        }
+        return text.toString().getBytes(UTF_8);
+    }
+
+    private static SimpleDateFormat isoFormat(String pattern) {
+        SimpleDateFormat format = new SimpleDateFormat(pattern, Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format;
+    }
+
+    /**
+     * Returns a place string as USGS writes them (i.e. "43km WNW of Anchorage, Alaska")
+     */
+    public static String place(Random random) {
+        String region = REGIONS[random.nextInt(REGIONS.length)];
+        if (random.nextInt(10) == 0) {
+            return region;
+        }
+        String direction = EarthquakeFormats.DIRECTIONS[random.nextInt(EarthquakeFormats.DIRECTIONS.length)];
+        return (1 + random.nextInt(300)) + "km " + direction + " of " + region;
+    }
+
+    private static void appendFeature(StringBuilder json, Random random, int index) {
+        Event event = new Event(random, index);
+        String id = event.id;
+        double magnitude = event.magnitude;
+        long time = event.time;
+        String place = event.place;
+
+        json.append("{\"type\":\"Feature\",\"properties\":{\"mag\":").append(magnitude)
+                .append(",\"place\":\"").append(place)
+                .append("\",\"time\":").append(time)
+                .append(",\"updated\":").append(time + 3600000)
+                .append(",\"tz\":-480,\"url\":\"https://earthquake.usgs.gov/earthquakes/eventpage/")
+                .append(id).append("\",\"detail\":\"https://earthquake.usgs.gov/fdsnws/event/1/query?eventid=")
+                .append(id).append("&format=geojson\",\"felt\":").append(event.felt)
+                .append(",\"cdi\":3.4,\"mmi\":4.21,\"alert\":\"green\",\"status\":\"reviewed\",\"tsunami\":0,\"sig\":")
+                .append(event.significance)
+                .append(",\"net\":\"us\",\"code\":\"").append(1000000 + index)
+                .append("\",\"ids\":\",").append(id).append(",at").append(index)
+                .append(",\",\"sources\":\",us,at,\",\"types\":\",dyfi,geoserve,origin,phase-data,\",")
+                .append("\"nst\":null,\"dmin\":1.234,\"rms\":0.87,\"gap\":29,\"magType\":\"mww\",")
+                .append("\"type\":\"earthquake\",\"title\":\"M ").append(magnitude).append(" - ").append(place)
+                .append("\"},\"geometry\":{\"type\":\"Point\",\"coordinates\":[")
+                .append(String.format(Locale.US, "%.4f,%.4f,%.2f", event.longitude,
+                        event.latitude, event.depth))
+                .append("]},\"id\":\"").append(id).append("\"}");
+    }
+
+    /**
+     * Values of one generated event, drawn in the same order for every format
+     */
+    private static final class Event {
+        final String id;
+        final double magnitude;
+        final long time;
+        final String place;
+        final double longitude;
+        final double latitude;
+        final double depth;
+        final int felt;
+        final int significance;
+
+        Event(Random random, int index) {
+            id = "us" + (1000000 + index);
+            magnitude = Math.round(random.nextDouble() * 90) / 10.0;
+            time = START_TIME + index * 60000L + random.nextInt(60000);
+            place = place(random);
+            longitude = random.nextDouble() * 360 - 180;
+            latitude = random.nextDouble() * 180 - 90;
+            depth = random.nextDouble() * 700;
+            felt = random.nextInt(50);
+            significance = random.nextInt(1000);
+        }
+    }
+}